@@ -32,6 +32,8 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    // 不打开unitTests.isReturnDefaultValues：测试里只有android.util.Log由src/test下的替身实现，
+    // 其它Android方法调用直接报错.
 }
 
 dependencies {
@@ -45,4 +47,6 @@ dependencies {
     implementation("com.squareup.okhttp3:okhttp:4.9.3")
     implementation("androidx.appcompat:appcompat:1.4.1")
     implementation("com.github.bumptech.glide:glide:4.12.0")
+    testImplementation("com.squareup.okhttp3:mockwebserver:4.9.3")
+    testImplementation("org.json:json:20231013")
 }
\ No newline at end of file
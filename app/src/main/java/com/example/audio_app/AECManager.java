@@ -5,7 +5,10 @@ import android.media.AudioManager;
 import android.media.audiofx.AcousticEchoCanceler;
 import android.util.Log;
 
+import static com.example.audio_app.Config.*;
+
 // 回声消除管理器，负责管理AEC的初始化、配置和清理.
+// 系统AcousticEchoCanceler不可用时（按AEC_TYPE）改用软件AEC，远端参考由播放线程通过pushFarEnd写入.
 public class AECManager {
     private static final String TAG = "AECManager";
     
@@ -14,12 +17,38 @@ public class AECManager {
     private boolean aecEnabled = false;
     private boolean isInitialized = false;
 
+    // 软件AEC，只在处理线程使用；远端参考由播放线程写入.
+    private volatile SoftwareAec softwareAec;
+    private final EchoReference farEnd = new EchoReference(PLAYBACK_RATE, RECORD_RATE,
+            SOFTWARE_AEC_REFERENCE_MS * RECORD_RATE / 1000);
+    private final float[] farBlock = new float[SOFTWARE_AEC_BLOCK_SAMPLES];
+
+    // 回声延迟估计和对齐：参考先经过一段可调的延迟线再送给软件AEC，扣掉扬声器到麦克风的固定延迟，
+    // 滤波器只需要覆盖回声本身的拖尾. 只在处理线程使用.
+    private final DelayEstimator delayEstimator = new DelayEstimator(RECORD_RATE, AEC_DELAY_DECIMATION,
+            AEC_DELAY_WINDOW_MS, AEC_DELAY_MAX_MS, AEC_DELAY_UPDATE_MS);
+    private final float[] delayLine = new float[(AEC_DELAY_MAX_MS * RECORD_RATE / 1000) + SOFTWARE_AEC_BLOCK_SAMPLES];
+    private final float[] alignedBlock = new float[SOFTWARE_AEC_BLOCK_SAMPLES];
+    private int delayLinePos = 0;
+    private volatile int compensationSamples = 0;
+
     public AECManager(Context context) {
         this.context = context.getApplicationContext();
     }
 
     // 初始化AEC
     public boolean initAEC(int audioSessionId) {
+        if (AEC_TYPE != AEC_TYPE_SOFTWARE && initPlatformAEC(audioSessionId)) {
+            return true;
+        }
+        if (AEC_TYPE == AEC_TYPE_PLATFORM) {
+            return false;
+        }
+        initSoftwareAEC();
+        return true;
+    }
+
+    private boolean initPlatformAEC(int audioSessionId) {
         if (AcousticEchoCanceler.isAvailable()) {
             try {
                 // 释放之前的AEC实例
@@ -60,9 +89,36 @@ public class AECManager {
         }
     }
 
+    private void initSoftwareAEC() {
+        releaseAEC();
+        int partitions = Math.max(1, SOFTWARE_AEC_TAIL_MS * RECORD_RATE / 1000 / SOFTWARE_AEC_BLOCK_SAMPLES);
+        farEnd.clear();
+        delayEstimator.reset();
+        java.util.Arrays.fill(delayLine, 0);
+        delayLinePos = 0;
+        compensationSamples = 0;
+        softwareAec = new SoftwareAec(SOFTWARE_AEC_BLOCK_SAMPLES, partitions, SOFTWARE_AEC_STEP_SIZE);
+        Log.d(TAG, "使用软件AEC，尾长: " + SOFTWARE_AEC_TAIL_MS + "ms");
+    }
+
+    // 播放线程调用：写入送给AudioTrack的PCM，作为软件AEC的远端参考.
+    public void pushFarEnd(byte[] pcm, int offset, int length) {
+        if (softwareAec != null) {
+            farEnd.write(pcm, offset, length);
+        }
+    }
+
+    // 播放被清空（打断）时调用，丢弃不会再播放出来的参考.
+    public void clearFarEnd() {
+        farEnd.clear();
+    }
+
     // 处理音频数据（应用AEC效果）
     public void processAudio(byte[] inputBuffer, byte[] outputBuffer, int length) {
-        if (aecEnabled && isInitialized) {
+        SoftwareAec software = softwareAec;
+        if (software != null) {
+            processSoftware(software, inputBuffer, outputBuffer, length);
+        } else if (aecEnabled && isInitialized) {
             try {
                 // 复制输入数据到输出缓冲区
                 System.arraycopy(inputBuffer, 0, outputBuffer, 0, length);
@@ -79,6 +135,64 @@ public class AECManager {
         }
     }
 
+    // 按块运行软件AEC；不足一块的尾部原样输出，但照样消耗参考，保持远端和近端对齐.
+    private void processSoftware(SoftwareAec software, byte[] inputBuffer, byte[] outputBuffer, int length) {
+        int blockSize = software.getBlockSize();
+        int offset = 0;
+        for (; offset + blockSize * 2 <= length; offset += blockSize * 2) {
+            alignFarEnd(inputBuffer, offset, blockSize);
+            software.process(inputBuffer, offset, alignedBlock, outputBuffer, offset);
+        }
+        if (offset < length) {
+            alignFarEnd(inputBuffer, offset, (length - offset) / 2);
+            System.arraycopy(inputBuffer, offset, outputBuffer, offset, length - offset);
+        }
+        updateCompensation(software);
+    }
+
+    // 取出count个参考样本，送给延迟估计（用原始麦克风信号），再经过延迟线写入alignedBlock.
+    private void alignFarEnd(byte[] mic, int micOffset, int count) {
+        farEnd.read(farBlock, count);
+        delayEstimator.process(farBlock, mic, micOffset, count);
+        int compensation = compensationSamples;
+        for (int i = 0; i < count; i++) {
+            delayLine[delayLinePos] = farBlock[i];
+            int index = delayLinePos - compensation;
+            alignedBlock[i] = delayLine[index < 0 ? index + delayLine.length : index];
+            delayLinePos = delayLinePos + 1 == delayLine.length ? 0 : delayLinePos + 1;
+        }
+    }
+
+    // 延迟估计变化超过一个块时重新对齐参考，对齐后滤波器需要重新收敛.
+    private void updateCompensation(SoftwareAec software) {
+        int delay = delayEstimator.getDelaySamples();
+        if (delay < 0) return;
+        int margin = AEC_DELAY_MARGIN_MS * RECORD_RATE / 1000;
+        int target = Math.max(0, Math.min(delay - margin, delayLine.length - software.getBlockSize()));
+        if (Math.abs(target - compensationSamples) < software.getBlockSize()) return;
+        compensationSamples = target;
+        software.reset();
+        Log.d(TAG, "回声延迟: " + delay * 1000 / RECORD_RATE + "ms，参考延迟补偿: "
+                + target * 1000 / RECORD_RATE + "ms");
+    }
+
+    // 估计的扬声器到麦克风的回声延迟（ms），还没有可靠估计时返回-1.
+    public int getEchoDelayMs() {
+        int delay = delayEstimator.getDelaySamples();
+        return delay < 0 ? -1 : delay * 1000 / RECORD_RATE;
+    }
+
+    // 当前对参考做的延迟补偿（ms）.
+    public int getEchoCompensationMs() {
+        return compensationSamples * 1000 / RECORD_RATE;
+    }
+
+    // 软件AEC当前的回声抑制量（dB），未启用时返回0.
+    public float getSoftwareErleDb() {
+        SoftwareAec software = softwareAec;
+        return software != null ? software.getErleDb() : 0;
+    }
+
     // 检查AEC是否可用
     public boolean isAECAvailable() {
         return AcousticEchoCanceler.isAvailable();
@@ -86,7 +200,11 @@ public class AECManager {
 
     // 检查AEC是否已启用
     public boolean isAECEnabled() {
-        return aecEnabled && isInitialized;
+        return (aecEnabled && isInitialized) || softwareAec != null;
+    }
+
+    public boolean isSoftwareAEC() {
+        return softwareAec != null;
     }
 
     // 启用/禁用AEC
@@ -104,6 +222,11 @@ public class AECManager {
 
     // 释放AEC资源
     public void releaseAEC() {
+        if (softwareAec != null) {
+            softwareAec = null;
+            farEnd.clear();
+            Log.d(TAG, "软件AEC已停用");
+        }
         if (aec != null) {
             try {
                 if (aecEnabled) {
@@ -132,7 +255,7 @@ public class AECManager {
 
     // 获取AEC状态信息
     public String getAECStatus() {
-        return String.format("AEC状态 - 可用: %s, 已初始化: %s, 已启用: %s", 
-            isAECAvailable(), isInitialized, aecEnabled);
+        return String.format("AEC状态 - 可用: %s, 已初始化: %s, 已启用: %s, 软件AEC: %s, 回声延迟: %dms",
+            isAECAvailable(), isInitialized, aecEnabled, softwareAec != null, getEchoDelayMs());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.example.audio_app;
+
+// 自适应噪声底的能量检测.
+// 噪声底取最近一段时间（窗口）内平滑电平的最小值：说话中总有字间停顿，最小值会落在背景噪声上；
+// 环境噪声整体变大时，窗口滑过后噪声底随之抬高，不会一直判定为语音.
+// 判定带滞回：静默时电平超过 噪声底+onMargin 才进入语音，语音中低于 噪声底+offMargin 才退出.
+public class AdaptiveEnergyVad implements VoiceActivityDetector {
+    private final float onMarginDb;
+    private final float offMarginDb;
+    private final float minSpeechDb;
+    private final float smoothing;
+
+    // 平滑电平的滑动窗口（环形数组），用于求最小值.
+    private final float[] history;
+    private int historyIndex = 0;
+    private int historyCount = 0;
+
+    private float smoothedDb = 0;
+    private float noiseFloorDb = 0;
+    private float lastLevelDb = 0;
+    private boolean speech = false;
+
+    public AdaptiveEnergyVad(float onMarginDb, float offMarginDb, float minSpeechRms, int windowFrames) {
+        this.onMarginDb = onMarginDb;
+        this.offMarginDb = offMarginDb;
+        this.minSpeechDb = toDb(minSpeechRms);
+        this.smoothing = 0.5f;
+        this.history = new float[Math.max(windowFrames, 1)];
+    }
+
+    @Override
+    public boolean isSpeech(byte[] frame, int length) {
+        lastLevelDb = toDb(Pcm16.rms(frame, 0, length));
+        smoothedDb = historyCount == 0 ? lastLevelDb : smoothedDb + smoothing * (lastLevelDb - smoothedDb);
+
+        history[historyIndex] = smoothedDb;
+        historyIndex = (historyIndex + 1) % history.length;
+        if (historyCount < history.length) historyCount++;
+
+        float floor = Float.MAX_VALUE;
+        for (int i = 0; i < historyCount; i++) {
+            if (history[i] < floor) floor = history[i];
+        }
+        noiseFloorDb = floor;
+
+        float onThreshold = Math.max(noiseFloorDb + onMarginDb, minSpeechDb);
+        float offThreshold = Math.max(noiseFloorDb + offMarginDb, minSpeechDb - (onMarginDb - offMarginDb));
+        if (speech) {
+            speech = lastLevelDb >= offThreshold;
+        } else {
+            speech = lastLevelDb > onThreshold;
+        }
+        return speech;
+    }
+
+    // 只清除语音状态，噪声估计跨轮次保留.
+    @Override
+    public void reset() {
+        speech = false;
+    }
+
+    public float getNoiseFloorDb() {
+        return noiseFloorDb;
+    }
+
+    public float getLastLevelDb() {
+        return lastLevelDb;
+    }
+
+    static float toDb(float rms) {
+        return (float) (20 * Math.log10(rms + 1));
+    }
+}
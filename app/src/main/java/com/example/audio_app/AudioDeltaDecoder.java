@@ -0,0 +1,101 @@
+package com.example.audio_app;
+
+// response.audio.delta 消息的快速解码：不构建JSON树，直接在原始文本上定位 "delta" 字段，
+// 把其中的Base64字符解码进池化的PCM缓冲区. 只扫描一遍字符串，稳定状态下不分配内存.
+// 识别不了的消息返回null，由调用方走原来的JSONObject解析路径.
+public class AudioDeltaDecoder {
+    private static final String TYPE_KEY = "\"type\"";
+    private static final String DELTA_KEY = "\"delta\"";
+    private static final String AUDIO_DELTA_TYPE = "\"response.audio.delta\"";
+
+    private static final int[] DECODE_TABLE = new int[128];
+
+    static {
+        java.util.Arrays.fill(DECODE_TABLE, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = i;
+        }
+        // 同时兼容URL安全字母表.
+        DECODE_TABLE['-'] = 62;
+        DECODE_TABLE['_'] = 63;
+    }
+
+    private final PcmBufferPool pool;
+
+    public AudioDeltaDecoder(PcmBufferPool pool) {
+        this.pool = pool;
+    }
+
+    // 判断消息的type是否为response.audio.delta.
+    public static boolean isAudioDelta(String text) {
+        int valueStart = findValue(text, TYPE_KEY);
+        return valueStart >= 0 && text.startsWith(AUDIO_DELTA_TYPE, valueStart);
+    }
+
+    // 解码delta字段，成功返回池中的缓冲区（用完需要release），格式不符返回null.
+    public PcmBufferPool.Buffer decode(String text) {
+        int valueStart = findValue(text, DELTA_KEY);
+        if (valueStart < 0 || text.charAt(valueStart) != '"') return null;
+        int start = valueStart + 1;
+        int end = text.indexOf('"', start);
+        if (end < 0) return null;
+
+        PcmBufferPool.Buffer buffer = pool.acquire((end - start) / 4 * 3 + 3);
+        int length = decodeBase64(text, start, end, buffer.data);
+        if (length < 0) {
+            pool.release(buffer);
+            return null;
+        }
+        buffer.length = length;
+        return buffer;
+    }
+
+    // 返回 key 后面（跳过冒号和空白）值的起始下标，找不到返回-1.
+    private static int findValue(String text, String key) {
+        int keyIndex = text.indexOf(key);
+        if (keyIndex < 0) return -1;
+        int i = keyIndex + key.length();
+        int n = text.length();
+        while (i < n && isWhitespace(text.charAt(i))) i++;
+        if (i >= n || text.charAt(i) != ':') return -1;
+        i++;
+        while (i < n && isWhitespace(text.charAt(i))) i++;
+        return i < n ? i : -1;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    // 解码text[start, end)中的Base64到dst，跳过空白，返回字节数. 只认 \/ 这一种JSON转义，
+    // 其它转义（如 \u002B）返回-1，由调用方走org.json路径.
+    static int decodeBase64(String text, int start, int end, byte[] dst) {
+        int accumulator = 0;
+        int bits = 0;
+        int out = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                // JSON转义：\/ 表示 '/'. 其它转义要完整解析，不在这里处理.
+                if (++i >= end) return -1;
+                c = text.charAt(i);
+                if (c != '/') return -1;
+            }
+            if (c == '=') break;
+            if (c >= 128) return -1;
+            int value = DECODE_TABLE[c];
+            if (value < 0) {
+                if (isWhitespace(c)) continue;
+                return -1;
+            }
+            accumulator = (accumulator << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                dst[out++] = (byte) (accumulator >> bits);
+            }
+        }
+        return out;
+    }
+}
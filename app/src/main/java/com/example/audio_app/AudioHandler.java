@@ -9,46 +9,117 @@ import android.util.Log;
 import androidx.core.content.ContextCompat;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayDeque;
-import java.util.Date;
-import java.util.Deque;
-import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import static com.example.audio_app.Config.*;
 
 public class AudioHandler {
     private static final String TAG = "AudioHandler";
+
     private AudioRecord audioRecord;
-    private boolean isRecording = false;
-    private WebSocketClient webSocketClient;
+    // 录音设备和线程是否在运行（整个会话期间为true）.
+    private volatile boolean isRecording = false;
+
+    // 延迟统计：打开设备耗时.
+    private volatile long deviceOpenLatencyNanos = -1;
+    // 每轮端到端延迟（说话结束 -> commit -> 首个delta -> 首次播放），WebSocketClient和播放端共用.
+    private final TurnLatencyTrace latencyTrace = new TurnLatencyTrace(LATENCY_TRACE_TURNS);
+    // 上行：WebSocketClient还没创建时的音频和commit先缓存，setWebSocketClient时按顺序交给客户端.
+    private final PreConnectUplink uplink = new PreConnectUplink(UPLINK_QUEUE_MAX_BYTES);
     private final Context context;
-    private final Deque<byte[]> preAudioBuffer = new ArrayDeque<>(PRE_AUDIO_BUFFER_SIZE);
-    private byte[] accumulatedAudio = new byte[0];
-    private Long silenceStartTime = null;
-    private boolean isVoiceActive = false;
+    // 语音分段（VAD、预缓存、短静默发送、长静默commit），只在处理线程使用.
+    private final SpeechSegmenter segmenter =
+            new SpeechSegmenter(SpeechSegmenter.createVad(VAD_TYPE), new SegmentListener());
+    private volatile boolean lastVadDecision = false;
+    // 打断检测：回复开始播放后才启用，由播放端调用arm().
+    private final BargeInDetector bargeIn = new BargeInDetector(BARGE_IN_THRESHOLD, BARGE_IN_MIN_FRAMES);
+    // 轮次状态（IDLE/LISTENING/SPEAKING），处理线程每帧经它进入分段.
+    private final TurnStateMachine turns =
+            new TurnStateMachine(segmenter, BARGE_IN_ENABLED ? bargeIn : null, this::cancelResponse, latencyTrace);
+
+    // 录音线程和处理线程之间的无锁环形缓冲区.
+    private final PcmRingBuffer captureRing = new PcmRingBuffer(CAPTURE_RING_FRAMES, FRAMES_PER_BUFFER);
+    private Thread captureThread;
+    private Thread processingThread;
+    // stopRecording的后台收尾（等线程退出、释放设备），下次打开设备前先等它结束.
+    private Thread stopThread;
 
     //------------回声消除AEC------------
     private final AECManager aecManager;
     //------------回声消除AEC------------
 
     private static final String RECORDINGS_DIR = "audio_recordings";
+    // 调试录音：每个语音段保存成WAV，后台线程写文件. 会话开始时创建，结束时关闭.
+    private DebugRecorder debugRecorder;
+    // 飞行记录：最近几分钟的原始、AEC后和播放音频，打开失败或未启用时为null.
+    private final FlightRecorder flightRecorder;
 
     public AudioHandler(Context context) {
         this.context = context.getApplicationContext();
         //------------回声消除AEC------------
         this.aecManager = new AECManager(context);
         //------------回声消除AEC------------
+        this.flightRecorder = FLIGHT_RECORDER_ENABLED ? openFlightRecorder() : null;
+    }
+
+    private FlightRecorder openFlightRecorder() {
+        File file = new File(context.getFilesDir(), FLIGHT_RECORDER_FILE);
+        try {
+            return new FlightRecorder(file, FLIGHT_RECORDER_SECONDS, RECORD_RATE, PLAYBACK_RATE,
+                    FLIGHT_RECORDER_SLOT_BYTES);
+        } catch (IOException e) {
+            Log.e(TAG, "打开飞行记录失败", e);
+            return null;
+        }
     }
 
     public void setWebSocketClient(WebSocketClient client) {
-        this.webSocketClient = client;
+        uplink.setClient(client);
     }
 
-    // 开始录音.
-    public void startRecording() throws SecurityException {
+    // 当前客户端还是client时才断开，用于撤销被取消的会话启动.
+    public void clearWebSocketClient(WebSocketClient client) {
+        uplink.clearClient(client);
+    }
+
+    public AECManager getAecManager() {
+        return aecManager;
+    }
+
+    // 播放端写入输出设备时调用arm()，启用打断检测.
+    public BargeInDetector getBargeInDetector() {
+        return bargeIn;
+    }
+
+    public TurnLatencyTrace getLatencyTrace() {
+        return latencyTrace;
+    }
+
+    // 飞行记录，未启用时返回null.
+    public FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
+    // 替换语音活动检测算法，下一帧生效.
+    public void setVoiceActivityDetector(VoiceActivityDetector detector) {
+        segmenter.setVoiceActivityDetector(detector);
+    }
+
+    // 最近一帧的VAD判定结果.
+    public boolean getLastVadDecision() {
+        return lastVadDecision;
+    }
+
+    // 开始录音：会话内第一次调用时打开录音设备并启动线程，之后只切换到监听状态.
+    public synchronized void startRecording() throws SecurityException {
+        if (isRecording) {
+            startListening();
+            return;
+        }
+        awaitStopped();
+        long openStart = System.nanoTime();
+
         // 检查权限.
         if (ContextCompat.checkSelfPermission(context, Manifest.permission.RECORD_AUDIO)
                 != PackageManager.PERMISSION_GRANTED) {
@@ -79,25 +150,74 @@ public class AudioHandler {
             aecManager.setCommunicationAudioMode();
             //------------回声消除AEC------------
 
-            Log.d(TAG, "AudioRecord初始化成功");
+            deviceOpenLatencyNanos = System.nanoTime() - openStart;
+            Log.d(TAG, "AudioRecord初始化成功，耗时: " + deviceOpenLatencyNanos / 1000000 + "ms");
             isRecording = true;
+            captureRing.reset();
+            if (DEBUG_RECORDING_SEGMENTS) {
+                openDebugRecorder();
+            }
+            startListening();
 
-//            new Thread(this::recordingLoop).start();
-            new Thread(() -> {
+            // 录音线程只负责读取和拷贝，处理线程负责AEC、VAD和发送.
+            captureThread = new Thread(() -> {
                 Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
-                recordingLoop();
-            }).start();
+                captureLoop();
+            }, "AudioCapture");
+            processingThread = new Thread(this::processingLoop, "AudioProcessing");
+            processingThread.start();
+            captureThread.start();
 
         } catch (IllegalArgumentException e) {
             Log.e(TAG, "录音参数错误: " + e.getMessage());
         }
     }
 
-    private void recordingLoop() {
+    // 切换到监听状态（AI回复播放完后调用），不重新打开设备.
+    public void startListening() {
+        if (!isRecording) {
+            Log.w(TAG, "录音设备未打开，忽略监听请求");
+            return;
+        }
+        turns.startListening();
+    }
+
+    // 分段事件：发送音频、保存录音，长静默时commit并切换到SPEAKING等待回复.
+    private class SegmentListener implements SpeechSegmenter.Listener {
+        @Override
+        public void onSpeechStart() {
+            Log.d(TAG, "检测到声音，开始录音，包含预缓存");
+        }
+
+        @Override
+        public void onAudio(byte[] pcm, int offset, int length) {
+            sendAudioSegment(pcm, offset, length);
+        }
+
+        @Override
+        public void onSegment(byte[] pcm, int length) {
+            // 保存录音用作测试，只拷贝进队列，写文件在后台线程.
+            if (debugRecorder != null) {
+                debugRecorder.record(pcm, 0, length);
+            }
+        }
+
+        @Override
+        public void onDropped(int length) {
+            Log.d(TAG, "音频太短，丢弃");
+        }
+
+        @Override
+        public void onCommit() {
+            Log.d(TAG, String.format("静默≥%.1fs，发送音频并 commit", LONG_SILENCE_DURATION));
+            turns.onCommit();
+            sendCommit();
+        }
+    }
+
+    // 录音线程：只读取音频并拷贝进环形缓冲区，不分配内存也不阻塞在下游处理上.
+    private void captureLoop() {
         byte[] chunk = new byte[FRAMES_PER_BUFFER]; // 2048个字节（即一帧
-        //------------回声消除AEC------------
-        byte[] processedBuffer = new byte[FRAMES_PER_BUFFER];
-        //------------回声消除AEC------------
 
         audioRecord.startRecording(); // 不是上面的那个startRecording.
         Log.d(TAG, "开始Recording Loop!");
@@ -113,111 +233,99 @@ public class AudioHandler {
                     }
                     continue;
                 }
-
-                //------------回声消除AEC------------
-                // 使用AECManager处理音频数据
-                aecManager.processAudio(chunk, processedBuffer, bytesRead);
-                chunk = processedBuffer;
-                //------------回声消除AEC------------
-
-                processAudioChunk(chunk, bytesRead);
+                // 缓冲区满时丢弃该帧，由环形缓冲区计数.
+                captureRing.offer(chunk, 0, bytesRead);
             }
         } finally {
-            // 停止录音并发送剩下语音.
             Log.d(TAG, "结束Recording Loop!");
-            stopRecording();
+            captureRing.close();
         }
     }
 
-    private void processAudioChunk(byte[] chunk, int length) {
+    // 处理线程：从环形缓冲区取帧，做AEC和静默检测，并发送音频.
+    private void processingLoop() {
+        byte[] chunk = new byte[FRAMES_PER_BUFFER];
+        //------------回声消除AEC------------
+        byte[] processedBuffer = new byte[FRAMES_PER_BUFFER];
+        //------------回声消除AEC------------
 
-        // 预缓存最近五帧.
-        if (preAudioBuffer.size() >= 5) {
-            preAudioBuffer.removeFirst(); // 达到或超过5个音频chunk，就移除最老的一块.
-        }
-        preAudioBuffer.addLast(chunk.clone());
-
-        float rms = calculateRms(chunk, length);
-        long now = System.currentTimeMillis();
-
-//        Log.d(TAG, "rms:"+rms);
-        if (rms > SILENCE_THRESHOLD) {
-            //检测到声音.
-            silenceStartTime = null;
-            handleVoiceActive();
-        } else {
-            //检测到静默.
-            handleSilence(now);
+        while (isRecording) {
+            int length = captureRing.poll(chunk, PROCESSING_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (length < 0) break; // 录音线程已结束
+            if (length == 0) continue;
+
+            //------------回声消除AEC------------
+            // 使用AECManager处理音频数据
+            aecManager.processAudio(chunk, processedBuffer, length);
+            //------------回声消除AEC------------
+            if (flightRecorder != null) {
+                flightRecorder.write(FlightRecorder.STREAM_RAW, chunk, 0, length);
+                flightRecorder.write(FlightRecorder.STREAM_PROCESSED, processedBuffer, 0, length);
+            }
+
+            // AI回复期间设备保持打开，只在监听时进入分段（开启打断时检测用户说话）.
+            lastVadDecision = turns.process(processedBuffer, length);
         }
+        Log.d(TAG, "结束Processing Loop!");
     }
 
-    private void handleVoiceActive() {
-        if (!isVoiceActive) {
-            // 开始声音活动，将预缓存的音频块复制到result数组中.
-            isVoiceActive = true;
-            int totalLength = preAudioBuffer.stream().mapToInt(b -> b.length).sum();
-            byte[] result = new byte[totalLength];
-            int offset = 0;
-            for (byte[] buffer : preAudioBuffer) {
-                System.arraycopy(buffer, 0, result, offset, buffer.length);
-                offset += buffer.length;
-            }
-            accumulatedAudio = result;
-            Log.d(TAG, "检测到声音，开始录音，包含预缓存");
-        } else {
-            // 继续累计声音.
-            byte[] newBuffer = new byte[accumulatedAudio.length + FRAMES_PER_BUFFER]; // 拓展一帧.
-            System.arraycopy(accumulatedAudio, 0, newBuffer, 0, accumulatedAudio.length);
-            System.arraycopy(preAudioBuffer.getLast(), 0, newBuffer, accumulatedAudio.length, FRAMES_PER_BUFFER);
-            accumulatedAudio = newBuffer;
+    // 检测到用户打断：停止播放并取消回复.
+    private void cancelResponse() {
+        Log.d(TAG, "检测到用户打断，停止播放并取消回复");
+        WebSocketClient client = uplink.getClient();
+        if (client != null) {
+            client.cancelResponse();
         }
     }
 
-    private void handleSilence(long currentTime) {
-        // 静默处理，只有在已录音状态才处理.
+    // 结束会话：通知录音线程和处理线程停止后立即返回，不阻塞调用方（一般是UI线程）.
+    // 等线程退出、发送剩余语音和释放设备在后台线程做.
+    public synchronized void stopRecording() {
+        isRecording = false;
+        Thread capture = captureThread;
+        Thread processing = processingThread;
+        Thread previous = stopThread;
+        captureThread = null;
+        processingThread = null;
+        stopThread = new Thread(() -> {
+            joinThread(previous);
+            // 等录音线程退出read()、处理线程处理完当前帧后再收尾和释放AudioRecord.
+            joinThread(capture);
+            joinThread(processing);
+            finishRecording();
+        }, "AudioStop");
+        stopThread.start();
+    }
 
-        if (!isVoiceActive) return;
-        if (silenceStartTime == null) {
-            silenceStartTime = currentTime;
-            return;
-        }
-        float silenceDuration = (currentTime - silenceStartTime) / 1000f;
-
-
-        //Log.d(TAG, "静默秒数："+silenceDuration);
-        if (silenceDuration >= SHORT_SILENCE_DURATION && silenceDuration < LONG_SILENCE_DURATION) {
-            // 短静默，发送audio但不commit.
-            if (accumulatedAudio.length > 0) {
-                if (accumulatedAudio.length > (5 + 1 + 1) * FRAMES_PER_BUFFER) { // 至少在预缓存5帧的基础上多3帧
-                    Log.d(TAG, String.format("静默≥%.1fs，先发送音频（不 commit）", SHORT_SILENCE_DURATION));
-                    sendAudioSegment(accumulatedAudio);
-                } else {
-                    Log.d(TAG, "音频太短，丢弃");
-                }
-                accumulatedAudio = new byte[0];
-                preAudioBuffer.clear();
-//                Log.d(TAG, "短静默后清空预缓存，避免音频重叠");
-            }
-        } else if (silenceDuration >= LONG_SILENCE_DURATION) {
-            // 长静默，发送audio并commit.
-            Log.d(TAG, String.format("静默≥%.1fs，发送音频并 commit", LONG_SILENCE_DURATION));
-            isVoiceActive = false;
-            isRecording = false;
-        } else {
-            // 短静默阈值之前的帧保留（防止说话过程中短暂音量低于阈值的丢帧.
-            handleVoiceActive();
+    // 等上一次stopRecording的后台收尾完成.
+    private void awaitStopped() {
+        Thread thread = stopThread;
+        if (thread == null) return;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    public void stopRecording() {
-        isRecording = false;
-        silenceStartTime = null;
-        if (accumulatedAudio.length > 0) {
-            sendAudioSegment(accumulatedAudio);
+    // 录音线程和处理线程退出后调用：发送剩余语音并释放设备.
+    private void finishRecording() {
+        turns.stop();
+        if (captureRing.getOverrunCount() > 0) {
+            Log.w(TAG, "环形缓冲区溢出，丢弃帧数: " + captureRing.getOverrunCount()
+                    + ", 最大积压: " + captureRing.getMaxDepth());
         }
+        segmenter.flush();
         sendCommit();
-        accumulatedAudio = new byte[0];
+        // 会话没建立起来时缓存的音频不再需要.
+        uplink.clear();
         safeReleaseAudioRecord();
+        closeDebugRecorder();
+        if (flightRecorder != null) {
+            flightRecorder.flush();
+        }
+        Log.d(TAG, "延迟统计 - " + latencyTrace.summary());
+        dumpLatencyTrace();
 
         //------------回声消除AEC------------
         if (aecManager != null) {
@@ -226,96 +334,117 @@ public class AudioHandler {
         //------------回声消除AEC------------
     }
 
-    private float calculateRms(byte[] audioData, int length) {
-        int sum = 0;
-        for (int i = 0; i < length; i += 2) {
-            short sample = (short) ((audioData[i + 1] << 8) | audioData[i]);
-            sum += sample * sample;
-        }
-        return (float) Math.sqrt(sum / (length / 2.0));
+    private void openDebugRecorder() {
+        File recordingsDir = new File(context.getExternalFilesDir(null), RECORDINGS_DIR);
+        debugRecorder = new DebugRecorder(recordingsDir, "recording_", RECORD_RATE,
+                DEBUG_RECORDING_BLOCK_BYTES, DEBUG_RECORDING_QUEUE_BLOCKS, DEBUG_RECORDING_LOSSLESS,
+                new DebugRecorder.Listener() {
+            @Override
+            public void onSaved(File file, long pcmBytes, Pcm16.Stats stats, boolean truncated) {
+                Log.d(TAG, "录音已保存: " + file.getAbsolutePath() + ", PCM: " + pcmBytes
+                        + " 字节, 文件: " + file.length() + " 字节, 统计: " + stats);
+                if (truncated) {
+                    Log.w(TAG, "录音队列满，文件缺少部分音频");
+                }
+                if (stats.rms() < 10) {
+                    Log.w(TAG, "录音几乎是静音");
+                }
+                if (stats.clipCount > 0) {
+                    Log.w(TAG, "录音有削波，样本数: " + stats.clipCount);
+                }
+            }
+
+            @Override
+            public void onError(File file, IOException e) {
+                Log.e(TAG, "保存录音失败: " + file, e);
+            }
+        });
+        debugRecorder.start();
     }
 
-    private void sendAudioSegment(byte[] pcmData) {
-        // 保存录音用作测试.
-        if (pcmData.length > 0){
-            saveRecordingToFile(pcmData);
+    private void closeDebugRecorder() {
+        if (debugRecorder == null) return;
+        debugRecorder.close();
+        if (debugRecorder.getDroppedBytes() > 0 || debugRecorder.getDroppedFiles() > 0) {
+            Log.w(TAG, "调试录音队列满，丢弃文件: " + debugRecorder.getDroppedFiles()
+                    + ", 丢弃字节: " + debugRecorder.getDroppedBytes()
+                    + ", 最大积压块数: " + debugRecorder.getMaxQueuedBlocks());
         }
+        debugRecorder = null;
+    }
 
-        if (webSocketClient != null) {
-            webSocketClient.sendAudioData(pcmData);
-        }else{
-            Log.d(TAG, "webSocketClient连接未就绪，发送audio失败");
+    private void joinThread(Thread thread) {
+        if (thread == null || thread == Thread.currentThread()) return;
+        try {
+            thread.join(CAPTURE_JOIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    // 保存录音用作测试.
-    private void saveRecordingToFile(byte[] pcmData) {
-        int length = pcmData.length;
+    public TurnStateMachine.State getState() {
+        return turns.getState();
+    }
 
-        if (length <= 0) {
-            Log.w(TAG, "音频数据无效");
-            return;
-        }
+    // 最近一次轮次切换耗时（纳秒），尚未切换过返回-1.
+    public long getLastTurnSwitchLatencyNanos() {
+        return turns.getLastTurnSwitchLatencyNanos();
+    }
 
-        // 检查数据长度
-        if (length % 2 != 0) {
-            Log.w(TAG, "音频数据长度不是偶数: " + length);
-        }
+    // 会话开始时打开录音设备和AEC的耗时（纳秒）.
+    public long getDeviceOpenLatencyNanos() {
+        return deviceOpenLatencyNanos;
+    }
 
-        // 计算RMS值
-        float rms = calculateRms(pcmData, length);
+    // 估计的扬声器到麦克风回声延迟（ms），软件AEC未启用或还没有可靠估计时返回-1.
+    public int getEchoDelayMs() {
+        return aecManager.getEchoDelayMs();
+    }
 
-        // 检查是否有静音数据
-        boolean isSilent = rms < 10;
+    // 录音线程因缓冲区满而丢弃的帧数.
+    public long getCaptureOverrunCount() {
+        return captureRing.getOverrunCount();
+    }
 
-        // 检查数据范围
-        short maxSample = 0;
-        short minSample = 0;
-        for (int i = 0; i < length; i += 2) {
-            short sample = (short) ((pcmData[i + 1] << 8) | pcmData[i]);
-            if (sample > maxSample) maxSample = sample;
-            if (sample < minSample) minSample = sample;
+    // 把延迟统计导出到应用的外部文件目录，返回文件，失败返回null.
+    public File dumpLatencyTrace() {
+        File file = new File(context.getExternalFilesDir(null), LATENCY_TRACE_FILE);
+        try {
+            latencyTrace.dump(file);
+            Log.d(TAG, "延迟统计已导出: " + file.getAbsolutePath());
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "导出延迟统计失败", e);
+            return null;
         }
+    }
 
-        File recordingsDir = new File(context.getExternalFilesDir(null), RECORDINGS_DIR);
-        if (!recordingsDir.exists()) {
-            recordingsDir.mkdirs();
-        }
-        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String fileName = "recording_" + timeStamp + ".wav";
-        File outputFile = new File(recordingsDir, fileName);
-
-//        // 保存原始PCM数据用于对比
-//        try {
-//            String pcmFileName = "recording_" + timeStamp + ".pcm";
-//            File pcmFile = new File(recordingsDir, pcmFileName);
-//            try (FileOutputStream pcmFos = new FileOutputStream(pcmFile)) {
-//                pcmFos.write(pcmData);
-//                pcmFos.flush();
-//                Log.d(TAG, "PCM数据已保存: " + pcmFile.getAbsolutePath() + ", 大小: " + pcmData.length + " 字节");
-//            }
-//        } catch (IOException e) {
-//            Log.e(TAG, "保存PCM数据失败", e);
-//        }
-
-        try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-            byte[] wavData = webSocketClient.convertPcmToWav(pcmData);
-            fos.write(wavData);
-            fos.flush();
-            Log.d(TAG, "录音已保存: " + outputFile.getAbsolutePath() + ", 大小: " + wavData.length + " 字节");
+    // 导出飞行记录到应用的外部文件目录，返回导出目录，失败或未启用返回null.
+    public File dumpFlightRecorder(String reason) {
+        if (flightRecorder == null) return null;
+        try {
+            File dir = flightRecorder.dump(new File(context.getExternalFilesDir(null), FLIGHT_RECORDER_DUMP_DIR), reason);
+            Log.d(TAG, "飞行记录已导出: " + dir.getAbsolutePath());
+            return dir;
         } catch (IOException e) {
-            Log.e(TAG, "保存录音失败", e);
-        } catch (Exception e) {
-            Log.e(TAG, "转换或保存录音时发生未知错误", e);
+            Log.e(TAG, "导出飞行记录失败", e);
+            return null;
         }
     }
 
+    // 出错时调用：在单独的线程导出，不阻塞调用方.
+    public void dumpFlightRecorderAsync(String reason) {
+        if (flightRecorder == null) return;
+        new Thread(() -> dumpFlightRecorder(reason), "FlightRecorderDump").start();
+    }
+
+    // 只发送pcmData中 [offset, offset + length) 的部分（PcmSegmentBuffer的零拷贝视图）.
+    private void sendAudioSegment(byte[] pcmData, int offset, int length) {
+        uplink.sendAudio(pcmData, offset, length);
+    }
+
     private void sendCommit() {
-        if (webSocketClient != null) {
-            webSocketClient.sendCommit();
-        }else{
-            Log.d(TAG, "webSocketClient连接未就绪，commit失败");
-        }
+        uplink.sendCommit();
     }
 
     private void safeReleaseAudioRecord() {
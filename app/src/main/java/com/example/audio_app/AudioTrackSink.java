@@ -0,0 +1,118 @@
+package com.example.audio_app;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.util.Log;
+
+import static com.example.audio_app.Config.*;
+
+// 基于AudioTrack的播放输出端，第一次写入时才创建AudioTrack.
+// 写入AudioTrack的PCM同时交给AECManager作为软件AEC的远端参考和飞行记录，并记录每轮第一次播放的时间.
+public class AudioTrackSink implements PlaybackEngine.Sink {
+    private static final String TAG = "AudioTrackSink";
+    private volatile AudioTrack audioTrack;
+    private volatile boolean isAudioTrackInitialized = false;
+    private final AECManager aecManager;
+    private final TurnLatencyTrace latencyTrace;
+    private final FlightRecorder flightRecorder;
+    // 回复真正开始播放后才启用打断检测，可以为null.
+    private final BargeInDetector bargeIn;
+
+    public AudioTrackSink(AECManager aecManager, TurnLatencyTrace latencyTrace, FlightRecorder flightRecorder,
+                          BargeInDetector bargeIn) {
+        this.aecManager = aecManager;
+        this.latencyTrace = latencyTrace;
+        this.flightRecorder = flightRecorder;
+        this.bargeIn = bargeIn;
+    }
+
+    private synchronized void initializeAudioTrack() {
+        if (isAudioTrackInitialized) return;
+
+        int bufferSize = AudioTrack.getMinBufferSize(
+                PLAYBACK_RATE,
+                PLAYBACK_CHANNELS,
+                PLAYBACK_FORMAT);
+
+        audioTrack = new AudioTrack(
+                new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_VOICE_COMMUNICATION)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                        .build(),
+                new AudioFormat.Builder()
+                        .setSampleRate(PLAYBACK_RATE)
+                        .setChannelMask(PLAYBACK_CHANNELS)
+                        .setEncoding(PLAYBACK_FORMAT)
+                        .build(),
+                bufferSize,
+                AudioTrack.MODE_STREAM,
+                AudioManager.AUDIO_SESSION_ID_GENERATE);
+
+        if (audioTrack.getState() == AudioTrack.STATE_INITIALIZED) {
+            isAudioTrackInitialized = true;
+            audioTrack.play();
+        } else {
+            Log.e(TAG, "AudioTrack初始化失败");
+        }
+    }
+
+    // 提前创建并启动AudioTrack（会话启动时和网络请求并行），第一次写入时不用再等.
+    public void warmUp() {
+        initializeAudioTrack();
+    }
+
+    @Override
+    public int write(byte[] data, int offset, int length) {
+        // 确保AudioTrack已初始化
+        initializeAudioTrack();
+        AudioTrack track = audioTrack;
+        if (!isAudioTrackInitialized || track == null) return -1;
+        int written = track.write(data, offset, length);
+        if (written > 0 && latencyTrace != null) {
+            latencyTrace.mark(TurnLatencyTrace.FIRST_PLAYBACK);
+        }
+        if (written > 0 && bargeIn != null) {
+            bargeIn.arm();
+        }
+        if (written > 0 && aecManager != null) {
+            aecManager.pushFarEnd(data, offset, written);
+        }
+        if (written > 0 && flightRecorder != null) {
+            flightRecorder.write(FlightRecorder.STREAM_PLAYBACK, data, offset, written);
+        }
+        return written;
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (aecManager != null) {
+            aecManager.clearFarEnd();
+        }
+        if (audioTrack == null) return;
+        try {
+            audioTrack.pause();
+            audioTrack.flush();
+            audioTrack.play();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "清空AudioTrack失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void release() {
+        if (audioTrack != null) {
+            try {
+                if (audioTrack.getPlayState() == AudioTrack.PLAYSTATE_PLAYING) {
+                    audioTrack.pause();
+                }
+                audioTrack.flush();
+                audioTrack.stop();
+            } catch (IllegalStateException ignored) {}
+            try { audioTrack.release(); } catch (Exception ignored) {}
+            audioTrack = null;
+            isAudioTrackInitialized = false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.audio_app;
+
+// 打断检测：AI回复开始播放后，在回声消除后的信号上检测用户说话，连续多帧超过阈值就打断.
+// commit之后到回复真正开始播放之前不检测：用户还没听到的回复不应该被他自己的话尾或噪声取消.
+// arm()由播放线程在写入输出设备时调用，其余方法只在处理线程调用.
+public class BargeInDetector {
+    private final float threshold;
+    private final int minFrames;
+    private volatile boolean armed = false;
+    private int loudFrames = 0;
+
+    public BargeInDetector(float threshold, int minFrames) {
+        this.threshold = threshold;
+        this.minFrames = minFrames;
+    }
+
+    // 回复开始播放（FIRST_PLAYBACK）.
+    public void arm() {
+        armed = true;
+    }
+
+    // 新一轮commit或打断之后：等下一次回复开始播放再检测.
+    public void reset() {
+        armed = false;
+        loudFrames = 0;
+    }
+
+    public boolean isArmed() {
+        return armed;
+    }
+
+    // 处理一帧，判定为打断时返回true并回到未启用状态.
+    public boolean process(byte[] pcm, int offset, int length) {
+        if (!armed) {
+            loudFrames = 0;
+            return false;
+        }
+        if (Pcm16.rms(pcm, offset, length) > threshold) {
+            loudFrames++;
+        } else {
+            loudFrames = 0;
+        }
+        if (loudFrames < minFrames) return false;
+        reset();
+        return true;
+    }
+}
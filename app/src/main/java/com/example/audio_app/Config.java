@@ -20,6 +20,17 @@ public class Config {
     public static final int PLAYBACK_RATE = 24000;
     public static final int PLAYBACK_CHANNELS = AudioFormat.CHANNEL_OUT_MONO;
     public static final int PLAYBACK_FORMAT = android.media.AudioFormat.ENCODING_PCM_16BIT;
+    // 下行音频缓冲池：最多缓存的缓冲区个数和默认容量（约200ms）.
+    public static final int PLAYBACK_POOL_SIZE = 64;
+    public static final int PLAYBACK_BUFFER_CAPACITY = PLAYBACK_RATE * 2 / 5;
+    // 抖动缓冲区：每段回复先预缓冲到目标深度（或等待超时）再开始播放. 服务端发送快于实时，
+    // 最大深度要装得下一整段回复的突发（30秒约1.4MB），超过时丢弃最旧的数据（输出端卡住）.
+    public static final int PLAYBACK_TARGET_DEPTH_MS = 120;
+    public static final int PLAYBACK_MAX_DEPTH_MS = 30000;
+    public static final long PLAYBACK_PREROLL_TIMEOUT_MS = 300;
+    public static final long PLAYBACK_JOIN_TIMEOUT_MS = 500;
+    // 播放线程每次写入输出端的最大时长：flush后正在写的那一块最多再写出一片.
+    public static final int PLAYBACK_WRITE_SLICE_MS = 10;
 
     // -------------------- 音频检测参数 --------------------
     public static final float SHORT_SILENCE_DURATION = 0.5f;
@@ -27,6 +38,123 @@ public class Config {
     public static final int SILENCE_THRESHOLD = 300;
     public static final int PRE_AUDIO_BUFFER_SIZE = 5;
 
+    // -------------------- VAD --------------------
+    // RMS: 固定阈值SILENCE_THRESHOLD；ADAPTIVE: 跟踪噪声底，带滞回的开/关阈值；
+    // SPECTRAL: 在ADAPTIVE基础上再检查频段能量占比、频谱平坦度和过零率，过滤风扇、音乐、电视等.
+    public static final int VAD_TYPE_RMS = 0;
+    public static final int VAD_TYPE_ADAPTIVE = 1;
+    public static final int VAD_TYPE_SPECTRAL = 2;
+    public static final int VAD_TYPE = VAD_TYPE_ADAPTIVE;
+    public static final float ADAPTIVE_VAD_ON_MARGIN_DB = 10f;
+    public static final float ADAPTIVE_VAD_OFF_MARGIN_DB = 6f;
+    // 电平低于该RMS的帧永远不算语音，避免安静环境下噪声底太低导致误触发.
+    public static final float ADAPTIVE_VAD_MIN_RMS = 150f;
+    // 噪声底取该时间窗口内的最小电平.
+    public static final int ADAPTIVE_VAD_WINDOW_MS = 3000;
+    // 300~3400Hz能量占比下限、频谱平坦度上限（1为白噪声）、过零率上限（每样本）.
+    public static final float SPECTRAL_VAD_MIN_BAND_RATIO = 0.5f;
+    public static final float SPECTRAL_VAD_MAX_FLATNESS = 0.45f;
+    public static final float SPECTRAL_VAD_MAX_ZCR = 0.35f;
+
+    // -------------------- 打断（barge-in） --------------------
+    // 开启后AI说话时继续监听，回声消除后的信号连续BARGE_IN_MIN_FRAMES帧超过阈值即打断回复.
+    public static final boolean BARGE_IN_ENABLED = false;
+    public static final int BARGE_IN_THRESHOLD = SILENCE_THRESHOLD * 2;
+    public static final int BARGE_IN_MIN_FRAMES = 3;
+
+    // -------------------- 回声消除 --------------------
+    // PLATFORM: 只用系统AcousticEchoCanceler；SOFTWARE: 只用软件AEC；AUTO: 系统AEC不可用时使用软件AEC.
+    public static final int AEC_TYPE_PLATFORM = 0;
+    public static final int AEC_TYPE_SOFTWARE = 1;
+    public static final int AEC_TYPE_AUTO = 2;
+    public static final int AEC_TYPE = AEC_TYPE_AUTO;
+    // 软件AEC的块长（样本）、回声尾长和NLMS步长（0~1）.
+    public static final int SOFTWARE_AEC_BLOCK_SAMPLES = 256;
+    public static final int SOFTWARE_AEC_TAIL_MS = 256;
+    public static final float SOFTWARE_AEC_STEP_SIZE = 0.5f;
+    // 远端参考最多积压的时长.
+    public static final int SOFTWARE_AEC_REFERENCE_MS = 1000;
+    // 回声延迟估计：降采样倍数、互相关窗口、最大搜索延迟和更新间隔.
+    public static final int AEC_DELAY_DECIMATION = 4;
+    public static final int AEC_DELAY_WINDOW_MS = 1000;
+    public static final int AEC_DELAY_MAX_MS = 500;
+    public static final int AEC_DELAY_UPDATE_MS = 250;
+    // 补偿延迟时给滤波器留的提前量，延迟变化超过一个块才重新对齐.
+    public static final int AEC_DELAY_MARGIN_MS = 32;
+
+    // -------------------- 流式上传 --------------------
+    // 开启后说话过程中每累计STREAM_SLICE_MS就发送一次append，长静默时照常commit.
+    public static final boolean STREAMING_UPLOAD = false;
+    public static final int STREAM_SLICE_MS = 160;
+    public static final int STREAM_SLICE_BYTES = RECORD_RATE * 2 * STREAM_SLICE_MS / 1000;
+    // 握手时请求二进制上行协议（原始PCM + 固定头），服务端未协商时退回JSON.
+    public static final boolean BINARY_UPLOAD = true;
+    // 二进制上行时优先请求IMA-ADPCM（4:1，64kbit/s），服务端不支持时用原始PCM.
+    public static final boolean ADPCM_UPLOAD = true;
+
+    // -------------------- 上行发送队列 --------------------
+    // 本地最多积压的未发送音频（10秒），超过后按策略处理.
+    public static final int UPLINK_QUEUE_MAX_BYTES = RECORD_RATE * 2 * 10;
+    // OkHttp发送队列（queueSize）超过这个值时先不交给WebSocket，OkHttp队列到16MB会直接断开连接.
+    public static final long UPLINK_SOCKET_HIGH_WATER_BYTES = 64 * 1024;
+    // 积压时合并后单条消息的最大字节数（500ms）.
+    public static final int UPLINK_COALESCE_BYTES = RECORD_RATE * 2 / 2;
+    // 队列满时：false丢弃最旧的未commit音频；true让处理线程最多等UPLINK_BLOCK_TIMEOUT_MS，之后仍然丢弃.
+    // 已经commit的音频不丢，只剩它们时等发送线程，仍然放不下就丢弃新来的音频.
+    public static final boolean UPLINK_BLOCK_WHEN_FULL = false;
+    public static final long UPLINK_BLOCK_TIMEOUT_MS = 200;
+    // 等OkHttp队列降下来时的检查间隔.
+    public static final long UPLINK_DRAIN_POLL_MS = 10;
+    // 关闭连接前最多等多久把队列发完.
+    public static final long UPLINK_CLOSE_DRAIN_MS = 1000;
+
+    // -------------------- 重连 --------------------
+    // 第n次重连前等待 min(MAX, BASE * 2^n)，实际在它的[1/2, 1]之间随机；超过次数后结束会话.
+    public static final long RECONNECT_BASE_DELAY_MS = 250;
+    public static final long RECONNECT_MAX_DELAY_MS = 8000;
+    public static final int RECONNECT_MAX_ATTEMPTS = 8;
+    // 预先打开的备用连接数，主连接断开时直接切换（几十毫秒）. 每个备用连接占服务端一个连接，默认不开.
+    public static final int RECONNECT_STANDBY_CONNECTIONS = 0;
+    // 等待回复期间超过这么久没有收到任何消息，认为连接已经断了（半开连接），主动重连.
+    public static final long NETWORK_IDLE_TIMEOUT_MS = 15000;
+    public static final long NETWORK_IDLE_CHECK_MS = 500;
+
+    // -------------------- 会话启动 --------------------
+    // 创建会话、打开麦克风、预热AudioTrack各占一个线程并行执行，再加一个给WebSocket握手.
+    public static final int BOOTSTRAP_THREADS = 4;
+
+    // -------------------- 录音线程/处理线程 --------------------
+    // 环形缓冲区帧数（每帧FRAMES_PER_BUFFER字节，32帧约2秒）.
+    public static final int CAPTURE_RING_FRAMES = 32;
+    // 处理线程无数据时最长等待时间.
+    public static final long PROCESSING_POLL_TIMEOUT_MS = 20;
+    public static final long CAPTURE_JOIN_TIMEOUT_MS = 500;
+
+    // -------------------- 调试录音 --------------------
+    // 每个语音段保存成WAV，后台线程写文件. 飞行记录已经包含全部音频，默认关闭.
+    public static final boolean DEBUG_RECORDING_SEGMENTS = false;
+    // 队列按块预分配（64 × 32KB约64秒音频），满时丢弃并计数.
+    public static final int DEBUG_RECORDING_BLOCK_BYTES = 32 * 1024;
+    public static final int DEBUG_RECORDING_QUEUE_BLOCKS = 64;
+    // 保存成无损压缩的.lac（后台线程编码，约为WAV的一半大小），回放工具可以直接读取.
+    public static final boolean DEBUG_RECORDING_LOSSLESS = true;
+    // 会话结束时等待后台线程写完的最长时间.
+    public static final long DEBUG_RECORDING_CLOSE_TIMEOUT_MS = 2000;
+
+    // -------------------- 飞行记录 --------------------
+    // 内存映射的环形文件，持续保存最近FLIGHT_RECORDER_SECONDS秒的原始麦克风、AEC后和播放的PCM（约11MB），
+    // 重连失败时或手动调用时导出. 上一次运行留下的文件改名为 .prev 保留.
+    public static final boolean FLIGHT_RECORDER_ENABLED = true;
+    public static final int FLIGHT_RECORDER_SECONDS = 120;
+    public static final int FLIGHT_RECORDER_SLOT_BYTES = FRAMES_PER_BUFFER;
+    public static final String FLIGHT_RECORDER_FILE = "flight_recorder.ring";
+    public static final String FLIGHT_RECORDER_DUMP_DIR = "flight_dumps";
+
+    // -------------------- 延迟统计 --------------------
+    // 每轮端到端延迟的跟踪，导出文件时保留的最近轮数.
+    public static final int LATENCY_TRACE_TURNS = 64;
+    public static final String LATENCY_TRACE_FILE = "latency_trace.csv";
+
     // -------------------- 睡眠时间 --------------------
     public static final int SLEEP_INTERVAL = 0;
 }
@@ -0,0 +1,383 @@
+package com.example.audio_app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static com.example.audio_app.Config.DEBUG_RECORDING_CLOSE_TIMEOUT_MS;
+
+// 调试录音：处理线程把语音段交给后台线程写成WAV，自己只做一次数组拷贝，不做文件I/O也不分配内存.
+// 数据按固定大小的块排队，块在构造时分配、写完归还循环使用；空闲块不够时丢弃这次写入并计数，从不阻塞调用方.
+// 后台线程把连续的数据块合并成一次FileChannel聚集写入；每个文件先写data长度为0的占位头，
+// 结束时回填RIFF和data长度. 中途崩溃留下的文件头长度为0，WavFile.read会按文件实际长度读取.
+// lossless模式下改为在后台线程边收边压缩成.lac（见LacFile），文件大小约为WAV的一半.
+//
+// begin/write/end只能由同一个线程调用（处理线程）.
+public class DebugRecorder {
+    // 后台线程的回调，用于日志.
+    public interface Listener {
+        // 文件已写完. truncated表示有写入因队列满被丢弃.
+        void onSaved(File file, long pcmBytes, Pcm16.Stats stats, boolean truncated);
+
+        void onError(File file, IOException e);
+    }
+
+    private static final int BEGIN = 0;
+    private static final int DATA = 1;
+    private static final int END = 2;
+    private static final int STOP = 3;
+
+    // 队列中的一项：开始/结束文件的命令，或一块PCM.
+    private static final class Entry {
+        final byte[] data;
+        final ByteBuffer buffer;
+        int type;
+        int length;
+        long wallClockMillis;
+        boolean truncated;
+
+        Entry(int capacity) {
+            data = new byte[capacity];
+            buffer = ByteBuffer.wrap(data);
+        }
+    }
+
+    private final File directory;
+    private final String prefix;
+    private final int sampleRate;
+    private final int blockBytes;
+    private final boolean lossless;
+    private final Listener listener;
+    private final ArrayBlockingQueue<Entry> free;
+    private final ArrayBlockingQueue<Entry> pending;
+    private final Entry stopEntry = new Entry(0);
+    private Thread thread;
+
+    // 生产者状态，只在调用begin/write/end的线程使用.
+    private Entry reservedEnd;
+    private boolean dropping = false;
+    private boolean truncated = false;
+
+    // 统计信息.
+    private volatile long droppedBytes = 0;
+    private volatile long droppedWrites = 0;
+    private volatile long droppedFiles = 0;
+    private volatile long writtenBytes = 0;
+    private volatile long savedFiles = 0;
+    private volatile int maxQueuedBlocks = 0;
+
+    // 后台线程的状态.
+    private final List<Entry> batch = new ArrayList<>();
+    private final ByteBuffer[] gather;
+    private final byte[] header = new byte[WavFile.HEADER_SIZE];
+    private final ByteBuffer sizeField = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+    private final Pcm16.Stats blockStats = new Pcm16.Stats();
+    private final Pcm16.Stats fileStats = new Pcm16.Stats();
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US);
+    private FileChannel channel;
+    private LacFile.Writer lacWriter;
+    private File currentFile;
+    private long currentBytes;
+
+    // 文件名为 prefix + 开始时间 + ".wav"（lossless时为".lac"），同一秒内的文件加序号. queueBlocks个blockBytes大小的块.
+    public DebugRecorder(File directory, String prefix, int sampleRate, int blockBytes, int queueBlocks,
+                         boolean lossless, Listener listener) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.sampleRate = sampleRate;
+        this.blockBytes = blockBytes;
+        this.lossless = lossless;
+        this.listener = listener;
+        this.free = new ArrayBlockingQueue<>(queueBlocks);
+        this.pending = new ArrayBlockingQueue<>(queueBlocks + 1);
+        this.gather = new ByteBuffer[queueBlocks];
+        for (int i = 0; i < queueBlocks; i++) {
+            free.add(new Entry(blockBytes));
+        }
+        stopEntry.type = STOP;
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this::writerLoop, "DebugRecorder");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // 开始一个新文件（上一个文件没有结束时先结束）. 空闲块不够时整个文件都被丢弃，返回false.
+    public boolean begin() {
+        if (reservedEnd != null || dropping) end();
+        truncated = false;
+        // 开始时就预留结束命令的块，保证已经开始的文件一定能正常结束.
+        if (free.size() < 2) {
+            dropping = true;
+            droppedFiles++;
+            return false;
+        }
+        Entry entry = free.poll();
+        reservedEnd = free.poll();
+        entry.type = BEGIN;
+        entry.wallClockMillis = System.currentTimeMillis();
+        submit(entry);
+        return true;
+    }
+
+    // 追加PCM. 空闲块不够放下整段时丢弃这次写入（文件会缺一段，结束时标记为不完整）.
+    public void write(byte[] pcm, int offset, int length) {
+        if (reservedEnd == null) {
+            if (dropping) {
+                droppedBytes += length;
+                droppedWrites++;
+            }
+            return;
+        }
+        int blocks = (length + blockBytes - 1) / blockBytes;
+        // 只有这一个线程取空闲块，后台线程只会归还，所以检查之后一定取得到.
+        if (free.size() < blocks) {
+            droppedBytes += length;
+            droppedWrites++;
+            truncated = true;
+            return;
+        }
+        for (int done = 0; done < length; ) {
+            Entry entry = free.poll();
+            int n = Math.min(blockBytes, length - done);
+            System.arraycopy(pcm, offset + done, entry.data, 0, n);
+            entry.type = DATA;
+            entry.length = n;
+            submit(entry);
+            done += n;
+        }
+    }
+
+    // 结束当前文件，后台线程回填文件头后关闭.
+    public void end() {
+        dropping = false;
+        if (reservedEnd == null) return;
+        Entry entry = reservedEnd;
+        reservedEnd = null;
+        entry.type = END;
+        entry.truncated = truncated;
+        submit(entry);
+    }
+
+    // 一次写入整个文件.
+    public boolean record(byte[] pcm, int offset, int length) {
+        boolean started = begin();
+        write(pcm, offset, length);
+        end();
+        return started;
+    }
+
+    private void submit(Entry entry) {
+        pending.offer(entry);
+        int queued = pending.size();
+        if (queued > maxQueuedBlocks) {
+            maxQueuedBlocks = queued;
+        }
+    }
+
+    // 结束当前文件，等后台线程写完队列中的数据后退出（最多等DEBUG_RECORDING_CLOSE_TIMEOUT_MS）.
+    public void close() {
+        end();
+        Thread writer;
+        synchronized (this) {
+            writer = thread;
+            thread = null;
+        }
+        if (writer == null) return;
+        try {
+            pending.put(stopEntry);
+            writer.join(DEBUG_RECORDING_CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writerLoop() {
+        try {
+            while (true) {
+                batch.clear();
+                batch.add(pending.take());
+                pending.drainTo(batch);
+                if (!processBatch()) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeFile(false);
+        }
+    }
+
+    // 处理一批队列项，连续的数据块合并成一次聚集写入. 收到STOP返回false.
+    private boolean processBatch() {
+        int gathered = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            if (entry.type == DATA) {
+                if (channel != null && lacWriter != null) {
+                    Pcm16.analyze(entry.data, 0, entry.length, blockStats);
+                    fileStats.add(blockStats);
+                    encode(entry);
+                } else if (channel != null) {
+                    entry.buffer.clear().limit(entry.length);
+                    gather[gathered++] = entry.buffer;
+                    Pcm16.analyze(entry.data, 0, entry.length, blockStats);
+                    fileStats.add(blockStats);
+                }
+                continue;
+            }
+            if (gathered > 0) {
+                writeGathered(gathered);
+                gathered = 0;
+            }
+            if (entry.type == STOP) {
+                releaseUpTo(i);
+                return false;
+            }
+            if (entry.type == BEGIN) {
+                closeFile(false);
+                openFile(entry.wallClockMillis);
+            } else {
+                closeFile(entry.truncated);
+            }
+        }
+        if (gathered > 0) writeGathered(gathered);
+        releaseUpTo(batch.size() - 1);
+        return true;
+    }
+
+    private void releaseUpTo(int last) {
+        for (int i = 0; i <= last; i++) {
+            Entry entry = batch.get(i);
+            if (entry != stopEntry) free.offer(entry);
+        }
+    }
+
+    private void encode(Entry entry) {
+        try {
+            lacWriter.write(entry.data, 0, entry.length);
+            currentBytes += entry.length;
+            writtenBytes += entry.length;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void writeGathered(int count) {
+        if (channel == null) return;
+        try {
+            long written = 0;
+            while (gather[count - 1].hasRemaining()) {
+                written += channel.write(gather, 0, count);
+            }
+            currentBytes += written;
+            writtenBytes += written;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void openFile(long wallClockMillis) {
+        if (!directory.exists()) directory.mkdirs();
+        String name = prefix + dateFormat.format(new Date(wallClockMillis));
+        String extension = lossless ? LacFile.EXTENSION : ".wav";
+        File file = new File(directory, name + extension);
+        for (int i = 1; file.exists(); i++) {
+            file = new File(directory, name + "_" + i + extension);
+        }
+        currentFile = file;
+        currentBytes = 0;
+        fileStats.reset();
+        try {
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            channel.truncate(0);
+            if (lossless) {
+                lacWriter = new LacFile.Writer(channel, sampleRate, 1);
+                return;
+            }
+            WavFile.writeHeader(header, 0, 0, sampleRate);
+            ByteBuffer buffer = ByteBuffer.wrap(header);
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // 回填文件头中的长度后关闭当前文件.
+    private void closeFile(boolean truncated) {
+        if (channel == null) return;
+        try {
+            if (lacWriter != null) {
+                lacWriter.finish();
+                lacWriter = null;
+            } else {
+                writeSizeField(4, currentBytes + 36);
+                writeSizeField(40, currentBytes);
+            }
+            channel.close();
+            channel = null;
+            savedFiles++;
+            if (listener != null) listener.onSaved(currentFile, currentBytes, fileStats, truncated);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void writeSizeField(long position, long value) throws IOException {
+        sizeField.clear();
+        sizeField.putInt((int) value).flip();
+        while (sizeField.hasRemaining()) {
+            channel.write(sizeField, position + sizeField.position());
+        }
+    }
+
+    // 写入出错：关闭文件，这个文件剩下的数据都忽略.
+    private void fail(IOException e) {
+        lacWriter = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+        if (listener != null) listener.onError(currentFile, e);
+    }
+
+    // 因队列满丢弃的字节数、写入次数和整个文件数.
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    public long getDroppedWrites() {
+        return droppedWrites;
+    }
+
+    public long getDroppedFiles() {
+        return droppedFiles;
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    public long getSavedFiles() {
+        return savedFiles;
+    }
+
+    // 队列中出现过的最大块数.
+    public int getMaxQueuedBlocks() {
+        return maxQueuedBlocks;
+    }
+}
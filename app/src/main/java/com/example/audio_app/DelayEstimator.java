@@ -0,0 +1,186 @@
+package com.example.audio_app;
+
+// 回声路径延迟估计：远端参考和麦克风信号做互相关（GCC-PHAT），峰值位置就是扬声器到麦克风的延迟.
+// 两路信号先降采样（多相滤波）减少计算量，每隔updateMs用最近windowMs的数据更新一次，
+// 白化后的互功率谱在多次更新之间做平滑，单次估计受近端说话干扰时结果也比较稳定.
+// 只有峰值明显高于其他延迟（置信度足够）时才更新结果. 所有缓冲区在构造时分配，process不分配内存.
+public class DelayEstimator {
+    private static final int TAPS_PER_PHASE = 16;
+    // 内部每次降采样的样本数.
+    private static final int CHUNK_SAMPLES = 512;
+    private static final float SPECTRUM_SMOOTHING = 0.3f;
+    // 峰值/平均值低于该值认为没有可靠的相关峰.
+    private static final float MIN_CONFIDENCE = 8f;
+    private static final float EPSILON = 1e-12f;
+
+    private final int decimation;
+    private final int window;
+    private final int maxLag;
+    private final int updateInterval;
+    // 远端窗口内的平均功率低于该值（远端静音）时不更新.
+    private final float minFarPower;
+
+    private final PolyphaseResampler farDecimator;
+    private final PolyphaseResampler micDecimator;
+    private final float[] farScratch;
+    private final float[] micScratch;
+    private final float[] micInput;
+
+    // 降采样后的历史：far保留 window + maxLag，mic保留window.
+    private final float[] farHistory;
+    private final float[] micHistory;
+    private int farPos = 0;
+    private int micPos = 0;
+    private int samplesSinceUpdate = 0;
+    private int filled = 0;
+
+    private final Fft fft;
+    private final float[] farRe;
+    private final float[] farIm;
+    private final float[] micRe;
+    private final float[] micIm;
+    private final float[] crossRe;
+    private final float[] crossIm;
+
+    private volatile int delaySamples = -1;
+    private volatile float confidence = 0;
+    private long updateCount = 0;
+
+    public DelayEstimator(int sampleRate, int decimation, int windowMs, int maxDelayMs, int updateMs) {
+        this.decimation = decimation;
+        int rate = sampleRate / decimation;
+        this.window = rate * windowMs / 1000;
+        this.maxLag = rate * maxDelayMs / 1000;
+        this.updateInterval = Math.max(1, rate * updateMs / 1000);
+        // 约等于幅度为100的信号.
+        this.minFarPower = 100f * 100f;
+        this.farDecimator = new PolyphaseResampler(sampleRate, rate, TAPS_PER_PHASE);
+        this.micDecimator = new PolyphaseResampler(sampleRate, rate, TAPS_PER_PHASE);
+        this.farScratch = new float[farDecimator.maxOutput(CHUNK_SAMPLES)];
+        this.micScratch = new float[micDecimator.maxOutput(CHUNK_SAMPLES)];
+        this.micInput = new float[CHUNK_SAMPLES];
+        this.farHistory = new float[window + maxLag];
+        this.micHistory = new float[window];
+
+        // 不产生循环混叠：长度至少为 window + 2·maxLag.
+        int size = Integer.highestOneBit(window + 2 * maxLag - 1) << 1;
+        this.fft = new Fft(size);
+        this.farRe = new float[size];
+        this.farIm = new float[size];
+        this.micRe = new float[size];
+        this.micIm = new float[size];
+        this.crossRe = new float[size];
+        this.crossIm = new float[size];
+    }
+
+    // far和mic是同一时段、同一采样率的count个样本：far为交给AEC的远端参考，mic为原始麦克风PCM.
+    public void process(float[] far, byte[] mic, int micOffset, int count) {
+        for (int start = 0; start < count; start += CHUNK_SAMPLES) {
+            processChunk(far, start, mic, micOffset + 2 * start, Math.min(CHUNK_SAMPLES, count - start));
+        }
+    }
+
+    private void processChunk(float[] far, int farOffset, byte[] mic, int micOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            int p = micOffset + 2 * i;
+            micInput[i] = (short) ((mic[p] & 0xff) | (mic[p + 1] << 8));
+        }
+        int farCount = farDecimator.process(far, farOffset, count, farScratch, 0);
+        int micCount = micDecimator.process(micInput, 0, count, micScratch, 0);
+        // 两路的降采样器状态一致，输出个数总是相同.
+        for (int i = 0; i < Math.min(farCount, micCount); i++) {
+            farHistory[farPos] = farScratch[i];
+            farPos = (farPos + 1) % farHistory.length;
+            micHistory[micPos] = micScratch[i];
+            micPos = (micPos + 1) % micHistory.length;
+            if (filled < farHistory.length) filled++;
+            if (++samplesSinceUpdate >= updateInterval && filled == farHistory.length) {
+                samplesSinceUpdate = 0;
+                update();
+            }
+        }
+    }
+
+    private void update() {
+        int size = farRe.length;
+        // far放在 [0, window + maxLag)，mic和它按时间对齐放在 [maxLag, window + maxLag).
+        float farPower = 0;
+        for (int j = 0; j < farHistory.length; j++) {
+            float v = farHistory[(farPos + j) % farHistory.length];
+            farRe[j] = v;
+            farPower += v * v;
+        }
+        if (farPower / farHistory.length < minFarPower) return;
+        java.util.Arrays.fill(farRe, farHistory.length, size, 0);
+        java.util.Arrays.fill(farIm, 0);
+        java.util.Arrays.fill(micRe, 0, maxLag, 0);
+        for (int j = 0; j < window; j++) {
+            micRe[maxLag + j] = micHistory[(micPos + j) % window];
+        }
+        java.util.Arrays.fill(micRe, maxLag + window, size, 0);
+        java.util.Arrays.fill(micIm, 0);
+        fft.transform(farRe, farIm);
+        fft.transform(micRe, micIm);
+
+        // 互功率谱 conj(F)·M 做PHAT白化后平滑.
+        for (int k = 0; k < size; k++) {
+            float re = farRe[k] * micRe[k] + farIm[k] * micIm[k];
+            float im = farRe[k] * micIm[k] - farIm[k] * micRe[k];
+            float magnitude = (float) Math.sqrt(re * re + im * im) + EPSILON;
+            if (updateCount == 0) {
+                crossRe[k] = re / magnitude;
+                crossIm[k] = im / magnitude;
+            } else {
+                crossRe[k] += SPECTRUM_SMOOTHING * (re / magnitude - crossRe[k]);
+                crossIm[k] += SPECTRUM_SMOOTHING * (im / magnitude - crossIm[k]);
+            }
+        }
+        updateCount++;
+
+        // r[d] = Σ far[i]·mic[i + d]，只看 d ∈ [0, maxLag]（远端领先麦克风）.
+        for (int k = 0; k < size; k++) {
+            farRe[k] = crossRe[k];
+            farIm[k] = crossIm[k];
+        }
+        fft.inverse(farRe, farIm);
+        int best = 0;
+        float peak = -Float.MAX_VALUE;
+        float sum = 0;
+        for (int d = 0; d <= maxLag; d++) {
+            float v = farRe[d];
+            sum += Math.abs(v);
+            if (v > peak) {
+                peak = v;
+                best = d;
+            }
+        }
+        float mean = sum / (maxLag + 1);
+        confidence = peak / (mean + EPSILON);
+        if (confidence >= MIN_CONFIDENCE) {
+            delaySamples = best * decimation;
+        }
+    }
+
+    // 估计的延迟（原采样率的样本数），还没有可靠估计时返回-1.
+    public int getDelaySamples() {
+        return delaySamples;
+    }
+
+    public float getConfidence() {
+        return confidence;
+    }
+
+    public void reset() {
+        farDecimator.reset();
+        micDecimator.reset();
+        java.util.Arrays.fill(farHistory, 0);
+        java.util.Arrays.fill(micHistory, 0);
+        farPos = 0;
+        micPos = 0;
+        filled = 0;
+        samplesSinceUpdate = 0;
+        updateCount = 0;
+        delaySamples = -1;
+        confidence = 0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.audio_app;
+
+// 软件AEC的远端参考：播放线程写入送给AudioTrack的PCM（播放采样率），处理线程按麦克风采样率取出.
+// 写入时用多相滤波重采样到录音采样率；积压超过容量时丢弃最旧的样本. 读写都不分配内存.
+public class EchoReference {
+    // 每次最多重采样的输入样本数，决定中间缓冲区大小.
+    private static final int CHUNK_SAMPLES = 480;
+    private static final int TAPS_PER_PHASE = 24;
+
+    private final float[] ring;
+    private final PolyphaseResampler resampler;
+    private final float[] resampled;
+    private int head = 0;
+    private int size = 0;
+    private long droppedSamples = 0;
+
+    public EchoReference(int inputRate, int outputRate, int capacitySamples) {
+        this.ring = new float[capacitySamples];
+        this.resampler = new PolyphaseResampler(inputRate, outputRate, TAPS_PER_PHASE);
+        this.resampled = new float[resampler.maxOutput(CHUNK_SAMPLES)];
+    }
+
+    // 播放线程调用：写入16位小端PCM.
+    public synchronized void write(byte[] pcm, int offset, int length) {
+        int end = offset + (length & ~1);
+        for (int p = offset; p < end; p += CHUNK_SAMPLES * 2) {
+            int count = resampler.process(pcm, p, Math.min(CHUNK_SAMPLES * 2, end - p), resampled, 0);
+            for (int i = 0; i < count; i++) {
+                push(resampled[i]);
+            }
+        }
+    }
+
+    private void push(float sample) {
+        if (size == ring.length) {
+            head = (head + 1) % ring.length;
+            size--;
+            droppedSamples++;
+        }
+        ring[(head + size) % ring.length] = sample;
+        size++;
+    }
+
+    // 处理线程调用：取出count个样本到dst，不够的部分补0（远端静音），返回实际取到的样本数.
+    public synchronized int read(float[] dst, int count) {
+        int n = Math.min(count, size);
+        for (int i = 0; i < n; i++) {
+            dst[i] = ring[head];
+            head = (head + 1) % ring.length;
+        }
+        size -= n;
+        for (int i = n; i < count; i++) {
+            dst[i] = 0;
+        }
+        return n;
+    }
+
+    // 播放被打断时，已写入但不会播放出来的参考也一起丢弃.
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+        resampler.reset();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getDroppedSamples() {
+        return droppedSamples;
+    }
+}
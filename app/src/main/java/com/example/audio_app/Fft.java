@@ -0,0 +1,72 @@
+package com.example.audio_app;
+
+// 原地基2复数FFT，旋转因子和位反转表在构造时预先算好，transform()不分配内存.
+public class Fft {
+    private final int size;
+    private final float[] cos;
+    private final float[] sin;
+    private final int[] bitReverse;
+
+    // size必须是2的幂.
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT长度必须是2的幂: " + size);
+        }
+        this.size = size;
+        this.cos = new float[size / 2];
+        this.sin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2 * Math.PI * i / size;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+        this.bitReverse = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 对re/im（长度至少为size）做正向变换，结果写回原数组.
+    public void transform(float[] re, float[] im) {
+        int n = size;
+        for (int i = 0; i < n; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                float t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int half = 1; half < n; half <<= 1) {
+            int step = n / (half << 1);
+            for (int start = 0; start < n; start += half << 1) {
+                for (int k = 0, w = 0; k < half; k++, w += step) {
+                    int a = start + k;
+                    int b = a + half;
+                    float tr = re[b] * cos[w] - im[b] * sin[w];
+                    float ti = re[b] * sin[w] + im[b] * cos[w];
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    // 逆变换（含1/size归一化）：利用 ifft(X) = conj(fft(conj(X))) / N.
+    public void inverse(float[] re, float[] im) {
+        int n = size;
+        for (int i = 0; i < n; i++) im[i] = -im[i];
+        transform(re, im);
+        float scale = 1f / n;
+        for (int i = 0; i < n; i++) {
+            re[i] *= scale;
+            im[i] = -im[i] * scale;
+        }
+    }
+}
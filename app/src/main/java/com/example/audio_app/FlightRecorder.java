@@ -0,0 +1,222 @@
+package com.example.audio_app;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// 飞行记录：一个固定大小的内存映射环形文件，持续保存最近若干秒的原始麦克风、AEC后和播放的PCM及时间戳.
+// 写入只是内存拷贝（不分配内存、没有系统调用），由内核负责落盘，进程崩溃后文件内容仍然保留.
+// 出错时或手动调用dump导出成每路一个WAV加一个帧时间表.
+//
+// 文件布局（小端）：64字节文件头，之后每路一个区域，区域由固定大小的槽组成.
+// 槽 = 序号(8) + System.nanoTime时间戳(8) + 长度(4) + 保留(4) + PCM. 序号从1开始，0表示空槽.
+// 每路只能由一个线程写入；写槽时先把序号清零、写完数据再写序号，导出时序号前后不一致的槽跳过.
+public class FlightRecorder {
+    public static final int STREAM_RAW = 0;        // 麦克风原始数据
+    public static final int STREAM_PROCESSED = 1;  // AEC之后
+    public static final int STREAM_PLAYBACK = 2;   // 写入AudioTrack的数据
+    static final int STREAM_COUNT = 3;
+    private static final String[] STREAM_NAMES = {"raw", "processed", "playback"};
+
+    private static final int MAGIC = 0x52544c46; // "FLTR"
+    private static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 64;
+    static final int SLOT_HEADER_BYTES = 24;
+    // 文件头字段的偏移.
+    private static final int HEADER_SLOT_BYTES = 8;
+    private static final int HEADER_WALL_CLOCK = 12;
+    private static final int HEADER_NANO_BASE = 20;
+    private static final int HEADER_STREAMS = 28; // 每路：采样率(4) + 槽数(4)
+
+    private final File file;
+    private final MappedByteBuffer mapped;
+    private final int slotBytes;
+    private final int[] regionOffsets = new int[STREAM_COUNT];
+    private final int[] slotCounts = new int[STREAM_COUNT];
+    // 每路一个视图，只在该路的写线程使用（相对put会改变position）.
+    private final ByteBuffer[] views = new ByteBuffer[STREAM_COUNT];
+    private final long[] nextSeq = new long[STREAM_COUNT];
+
+    // 打开环形文件：已有的文件改名为 .prev 保留（上一次运行的现场），再新建一个.
+    // 每路保存seconds秒，采样率分别为recordRate（原始/AEC后）和playbackRate，每槽最多slotBytes字节PCM.
+    public FlightRecorder(File file, int seconds, int recordRate, int playbackRate, int slotBytes)
+            throws IOException {
+        this.file = file;
+        this.slotBytes = slotBytes;
+        File previous = previousFile(file);
+        if (file.exists()) {
+            previous.delete();
+            if (!file.renameTo(previous)) file.delete();
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+
+        int[] rates = {recordRate, recordRate, playbackRate};
+        long size = FILE_HEADER_BYTES;
+        for (int s = 0; s < STREAM_COUNT; s++) {
+            slotCounts[s] = Math.max(1, (int) ((long) seconds * rates[s] * 2 / slotBytes));
+            regionOffsets[s] = (int) size;
+            size += (long) slotCounts[s] * (SLOT_HEADER_BYTES + slotBytes);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("飞行记录文件太大: " + size);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            // 映射在通道关闭后仍然有效.
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, VERSION);
+        mapped.putInt(HEADER_SLOT_BYTES, slotBytes);
+        mapped.putLong(HEADER_WALL_CLOCK, System.currentTimeMillis());
+        mapped.putLong(HEADER_NANO_BASE, System.nanoTime());
+        for (int s = 0; s < STREAM_COUNT; s++) {
+            mapped.putInt(HEADER_STREAMS + 8 * s, rates[s]);
+            mapped.putInt(HEADER_STREAMS + 8 * s + 4, slotCounts[s]);
+            views[s] = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    public static File previousFile(File file) {
+        return new File(file.getPath() + ".prev");
+    }
+
+    // 追加一路PCM，超过槽大小时拆成多个槽. 只能由该路的写线程调用.
+    public void write(int stream, byte[] pcm, int offset, int length) {
+        ByteBuffer view = views[stream];
+        int slotSize = SLOT_HEADER_BYTES + slotBytes;
+        long now = System.nanoTime();
+        for (int done = 0; done < length; ) {
+            int n = Math.min(slotBytes, length - done);
+            long seq = ++nextSeq[stream];
+            int slot = regionOffsets[stream] + (int) ((seq - 1) % slotCounts[stream]) * slotSize;
+            view.putLong(slot, 0);
+            view.putLong(slot + 8, now);
+            view.putInt(slot + 16, n);
+            view.position(slot + SLOT_HEADER_BYTES);
+            view.put(pcm, offset + done, n);
+            view.putLong(slot, seq);
+            done += n;
+        }
+    }
+
+    // 写入过的槽数（拆分后的帧数）.
+    public long getWrittenFrames(int stream) {
+        return nextSeq[stream];
+    }
+
+    // 把当前内容导出到 parentDir/flight_<时间>_<原因>/，返回导出目录. 可以在任意线程调用，写入不用停.
+    public File dump(File parentDir, String reason) throws IOException {
+        return dump(mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN), parentDir, reason);
+    }
+
+    // 导出一个已有的环形文件（例如上一次运行留下的 .prev）.
+    public static File dump(File ringFile, File parentDir, String reason) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(ringFile, "r")) {
+            ByteBuffer ring = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            return dump(ring.order(ByteOrder.LITTLE_ENDIAN), parentDir, reason);
+        }
+    }
+
+    // 把数据刷到磁盘（正常退出时调用，崩溃时由内核落盘）.
+    public void flush() {
+        mapped.force();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // 一个有效的槽.
+    private static final class Frame {
+        final long seq;
+        final long timestampNanos;
+        final byte[] pcm;
+
+        Frame(long seq, long timestampNanos, byte[] pcm) {
+            this.seq = seq;
+            this.timestampNanos = timestampNanos;
+            this.pcm = pcm;
+        }
+    }
+
+    private static File dump(ByteBuffer ring, File parentDir, String reason) throws IOException {
+        if (ring.capacity() < FILE_HEADER_BYTES || ring.getInt(0) != MAGIC || ring.getInt(4) != VERSION) {
+            throw new IOException("不是飞行记录文件");
+        }
+        int slotBytes = ring.getInt(HEADER_SLOT_BYTES);
+        long wallClock = ring.getLong(HEADER_WALL_CLOCK);
+        long nanoBase = ring.getLong(HEADER_NANO_BASE);
+        String name = "flight_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date())
+                + (reason == null || reason.isEmpty() ? "" : "_" + reason);
+        File dir = new File(parentDir, name);
+        for (int i = 1; dir.exists(); i++) {
+            dir = new File(parentDir, name + "_" + i);
+        }
+        if (!dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir);
+        }
+
+        try (PrintWriter index = new PrintWriter(new File(dir, "frames.csv"), "UTF-8")) {
+            index.println("# stream,seq,wall_clock_ms,offset_bytes,bytes");
+            int offset = FILE_HEADER_BYTES;
+            for (int s = 0; s < STREAM_COUNT; s++) {
+                int sampleRate = ring.getInt(HEADER_STREAMS + 8 * s);
+                int slotCount = ring.getInt(HEADER_STREAMS + 8 * s + 4);
+                List<Frame> frames = readStream(ring, offset, slotCount, slotBytes);
+                offset += slotCount * (SLOT_HEADER_BYTES + slotBytes);
+
+                long pcmBytes = 0;
+                for (Frame frame : frames) pcmBytes += frame.pcm.length;
+                byte[] header = new byte[WavFile.HEADER_SIZE];
+                WavFile.writeHeader(header, 0, (int) pcmBytes, sampleRate);
+                long position = 0;
+                try (FileOutputStream out = new FileOutputStream(new File(dir, STREAM_NAMES[s] + ".wav"))) {
+                    out.write(header);
+                    for (Frame frame : frames) {
+                        out.write(frame.pcm);
+                        index.printf(Locale.ROOT, "%s,%d,%.3f,%d,%d%n", STREAM_NAMES[s], frame.seq,
+                                wallClock + (frame.timestampNanos - nanoBase) / 1e6, position, frame.pcm.length);
+                        position += frame.pcm.length;
+                    }
+                }
+            }
+        }
+        return dir;
+    }
+
+    // 读出一路的有效槽，按序号排序.
+    private static List<Frame> readStream(ByteBuffer ring, int offset, int slotCount, int slotBytes) {
+        List<Frame> frames = new ArrayList<>();
+        ByteBuffer view = ring.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < slotCount; i++) {
+            int slot = offset + i * (SLOT_HEADER_BYTES + slotBytes);
+            long seq = view.getLong(slot);
+            if (seq <= 0) continue;
+            long timestamp = view.getLong(slot + 8);
+            int length = view.getInt(slot + 16);
+            if (length <= 0 || length > slotBytes) continue;
+            byte[] pcm = new byte[length];
+            view.position(slot + SLOT_HEADER_BYTES);
+            view.get(pcm);
+            // 拷贝期间被覆盖的槽丢弃.
+            if (view.getLong(slot) != seq) continue;
+            frames.add(new Frame(seq, timestamp, pcm));
+        }
+        frames.sort((a, b) -> Long.compare(a.seq, b.seq));
+        return frames;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.audio_app;
+
+// IMA-ADPCM：每个16位样本编码成4位，4:1压缩，用于弱网下的上行.
+// 编码按帧增量进行，预测值和步长下标在帧之间延续；每帧开头写一个4字节的块头（帧开始时的状态），
+// 所以每帧都能单独解码，丢帧或重发不影响后面的帧.
+//
+// 块格式（小端）：
+//   0-1  帧开始时的预测值（int16）
+//   2    步长下标（0-88）
+//   3    最后一个字节是否只有低4位有效（样本数为奇数）
+//   4-   每字节两个样本，先低4位后高4位
+// 状态是几个int，不分配内存；一个实例只在一个线程（或加锁后）使用.
+public final class ImaAdpcm {
+    public static final int BLOCK_HEADER_SIZE = 4;
+
+    private static final int[] STEP_TABLE = {
+            7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+            50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+            337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+            2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442,
+            11487, 12635, 13899, 15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+    private static final int[] INDEX_TABLE = {-1, -1, -1, -1, 2, 4, 6, 8, -1, -1, -1, -1, 2, 4, 6, 8};
+
+    private int predictor = 0;
+    private int stepIndex = 0;
+
+    // 新的连接或新的流，从零状态开始.
+    public void reset() {
+        predictor = 0;
+        stepIndex = 0;
+    }
+
+    // length字节PCM编码后的字节数（含块头）.
+    public static int encodedSize(int pcmLength) {
+        return BLOCK_HEADER_SIZE + (pcmLength / 2 + 1) / 2;
+    }
+
+    // encodedLength字节的块解码后的PCM字节数.
+    public static int decodedSize(byte[] block, int offset, int encodedLength) {
+        if (encodedLength < BLOCK_HEADER_SIZE) return 0;
+        int samples = (encodedLength - BLOCK_HEADER_SIZE) * 2 - (block[offset + 3] != 0 ? 1 : 0);
+        return Math.max(samples, 0) * 2;
+    }
+
+    // 编码pcm[offset, offset + length)（小端16位），写到out[outOffset]，返回写入的字节数.
+    public int encode(byte[] pcm, int offset, int length, byte[] out, int outOffset) {
+        int samples = length / 2;
+        out[outOffset] = (byte) predictor;
+        out[outOffset + 1] = (byte) (predictor >> 8);
+        out[outOffset + 2] = (byte) stepIndex;
+        out[outOffset + 3] = (byte) (samples & 1);
+        int o = outOffset + BLOCK_HEADER_SIZE;
+        int p = predictor;
+        int index = stepIndex;
+        for (int i = 0; i < samples; i++) {
+            int sample = (short) ((pcm[offset + 2 * i] & 0xff) | (pcm[offset + 2 * i + 1] << 8));
+            int step = STEP_TABLE[index];
+            int diff = sample - p;
+            int nibble = 0;
+            if (diff < 0) {
+                nibble = 8;
+                diff = -diff;
+            }
+            int delta = step >> 3;
+            if (diff >= step) {
+                nibble |= 4;
+                diff -= step;
+                delta += step;
+            }
+            step >>= 1;
+            if (diff >= step) {
+                nibble |= 2;
+                diff -= step;
+                delta += step;
+            }
+            step >>= 1;
+            if (diff >= step) {
+                nibble |= 1;
+                delta += step;
+            }
+            p += (nibble & 8) != 0 ? -delta : delta;
+            p = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, p));
+            index = Math.max(0, Math.min(88, index + INDEX_TABLE[nibble]));
+            if ((i & 1) == 0) {
+                out[o] = (byte) nibble;
+            } else {
+                out[o++] |= (byte) (nibble << 4);
+            }
+        }
+        predictor = p;
+        stepIndex = index;
+        return o + (samples & 1) - outOffset;
+    }
+
+    // 解码一个块到out[outOffset]（小端16位），返回写入的PCM字节数. 块头无效时返回-1.
+    public static int decode(byte[] block, int offset, int length, byte[] out, int outOffset) {
+        if (length < BLOCK_HEADER_SIZE) return -1;
+        int p = (short) ((block[offset] & 0xff) | (block[offset + 1] << 8));
+        int index = block[offset + 2] & 0xff;
+        if (index > 88) return -1;
+        int samples = decodedSize(block, offset, length) / 2;
+        int o = outOffset;
+        for (int i = 0; i < samples; i++) {
+            int b = block[offset + BLOCK_HEADER_SIZE + (i >> 1)];
+            int nibble = (i & 1) == 0 ? b & 0x0f : (b >> 4) & 0x0f;
+            int step = STEP_TABLE[index];
+            int delta = step >> 3;
+            if ((nibble & 4) != 0) delta += step;
+            if ((nibble & 2) != 0) delta += step >> 1;
+            if ((nibble & 1) != 0) delta += step >> 2;
+            p += (nibble & 8) != 0 ? -delta : delta;
+            p = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, p));
+            index = Math.max(0, Math.min(88, index + INDEX_TABLE[nibble]));
+            out[o++] = (byte) p;
+            out[o++] = (byte) (p >> 8);
+        }
+        return o - outOffset;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.audio_app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+// 无损压缩录音（.lac）的文件格式，编码见LosslessCodec. 大小一般是WAV的一半左右.
+//
+// 文件头（20字节，小端）："LAC1" + 采样率(4) + 声道数(2) + 位数(2，固定16) + 块长(4) + 总帧数(4).
+// 之后是若干块：同步字0x4C41(2) + 本块帧数(2) + 每个声道的编码数据，块末尾补齐到整字节.
+// 总帧数在写完时回填；中途中断的文件总帧数为0，读取时以实际的块为准.
+public final class LacFile {
+    public static final String EXTENSION = ".lac";
+    static final int HEADER_SIZE = 20;
+    private static final byte[] MAGIC = {'L', 'A', 'C', '1'};
+    private static final int SYNC = 0x4C41;
+
+    private LacFile() {}
+
+    // 流式写入：按任意大小追加交错的16位PCM，凑满一块就编码写出. 只能在一个线程使用.
+    public static final class Writer {
+        private final FileChannel channel;
+        private final int channels;
+        private final int blockSamples;
+        private final int[][] samples;
+        private final LosslessCodec.Encoder encoder = new LosslessCodec.Encoder();
+        private final LosslessCodec.BitWriter bits;
+        private int frames = 0;           // 当前块已有的帧数
+        private int channelIndex = 0;     // 下一个样本所属的声道
+        private int pendingByte = -1;     // 上次写入剩下的半个样本
+        private long totalFrames = 0;
+        private long encodedBytes = HEADER_SIZE;
+
+        public Writer(FileChannel channel, int sampleRate, int channels) throws IOException {
+            this(channel, sampleRate, channels, LosslessCodec.MAX_BLOCK_SAMPLES);
+        }
+
+        Writer(FileChannel channel, int sampleRate, int channels, int blockSamples) throws IOException {
+            this.channel = channel;
+            this.channels = channels;
+            this.blockSamples = blockSamples;
+            this.samples = new int[channels][blockSamples];
+            this.bits = new LosslessCodec.BitWriter(blockSamples * channels * 2 + 64);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(sampleRate).putShort((short) channels).putShort((short) 16)
+                    .putInt(blockSamples).putInt(0).flip();
+            writeFully(header);
+        }
+
+        public void write(byte[] pcm, int offset, int length) throws IOException {
+            int end = offset + length;
+            int i = offset;
+            if (pendingByte >= 0 && i < end) {
+                addSample((short) (pendingByte | (pcm[i++] << 8)));
+                pendingByte = -1;
+            }
+            for (; i + 1 < end; i += 2) {
+                addSample((short) ((pcm[i] & 0xff) | (pcm[i + 1] << 8)));
+            }
+            if (i < end) pendingByte = pcm[i] & 0xff;
+        }
+
+        private void addSample(int sample) throws IOException {
+            samples[channelIndex][frames] = sample;
+            if (++channelIndex < channels) return;
+            channelIndex = 0;
+            if (++frames == blockSamples) flushBlock();
+        }
+
+        private void flushBlock() throws IOException {
+            if (frames == 0) return;
+            bits.reset();
+            bits.write(SYNC, 16);
+            bits.write(frames, 16);
+            for (int c = 0; c < channels; c++) {
+                encoder.encode(samples[c], frames, bits);
+            }
+            bits.align();
+            writeFully(ByteBuffer.wrap(bits.buffer(), 0, bits.length()));
+            totalFrames += frames;
+            frames = 0;
+        }
+
+        // 写出最后不满一块的数据（不完整的帧丢弃），回填总帧数. 返回文件字节数.
+        public long finish() throws IOException {
+            flushBlock();
+            ByteBuffer field = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            field.putInt(0, (int) totalFrames);
+            while (field.hasRemaining()) {
+                channel.write(field, HEADER_SIZE - 4 + field.position());
+            }
+            return encodedBytes;
+        }
+
+        public long getTotalFrames() {
+            return totalFrames;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            encodedBytes += buffer.remaining();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    // 把一段交错的16位PCM写成.lac文件，返回文件字节数.
+    public static long write(File file, byte[] pcm, int offset, int length, int sampleRate, int channels)
+            throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            Writer writer = new Writer(raf.getChannel(), sampleRate, channels);
+            writer.write(pcm, offset, length);
+            return writer.finish();
+        }
+    }
+
+    public static boolean isLac(byte[] content) {
+        if (content.length < HEADER_SIZE) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (content[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    public static WavFile.Data read(File file) throws IOException {
+        return decode(Files.readAllBytes(file.toPath()), file);
+    }
+
+    // 按文件内容判断格式，.lac解码，其他按WAV读取. 回放和测试工具统一用这个.
+    public static WavFile.Data readAudio(File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        return isLac(content) ? decode(content, file) : WavFile.read(file);
+    }
+
+    private static WavFile.Data decode(byte[] content, File file) throws IOException {
+        if (!isLac(content)) throw new IOException("不是LAC文件: " + file);
+        ByteBuffer header = ByteBuffer.wrap(content, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int sampleRate = header.getInt(4);
+        int channels = header.getShort(8);
+        int bitsPerSample = header.getShort(10);
+        int blockSamples = header.getInt(12);
+        long totalFrames = header.getInt(16) & 0xffffffffL;
+        if (bitsPerSample != 16 || channels < 1 || blockSamples < 1
+                || blockSamples > LosslessCodec.MAX_BLOCK_SAMPLES) {
+            throw new IOException("不支持的LAC参数: channels=" + channels + ", bits=" + bitsPerSample
+                    + ", block=" + blockSamples);
+        }
+
+        LosslessCodec.BitReader in = new LosslessCodec.BitReader(content, HEADER_SIZE, content.length - HEADER_SIZE);
+        java.io.ByteArrayOutputStream pcm = new java.io.ByteArrayOutputStream(
+                (int) Math.min(Integer.MAX_VALUE, Math.max(totalFrames, 0) * channels * 2));
+        int[][] samples = new int[channels][blockSamples];
+        byte[] block = new byte[blockSamples * channels * 2];
+        long decodedFrames = 0;
+        while (in.remainingBytes() >= 4) {
+            if (in.read(16) != SYNC) throw new IOException("LAC块同步字错误: " + file);
+            int frames = (int) in.read(16);
+            if (frames == 0 || frames > blockSamples) throw new IOException("无效的LAC块长: " + frames);
+            try {
+                for (int c = 0; c < channels; c++) {
+                    LosslessCodec.decode(in, samples[c], frames);
+                }
+            } catch (java.io.EOFException e) {
+                // 写入中断留下的不完整块.
+                break;
+            }
+            in.align();
+            int p = 0;
+            for (int i = 0; i < frames; i++) {
+                for (int c = 0; c < channels; c++) {
+                    int s = samples[c][i];
+                    block[p++] = (byte) s;
+                    block[p++] = (byte) (s >> 8);
+                }
+            }
+            pcm.write(block, 0, p);
+            decodedFrames += frames;
+        }
+        if (totalFrames != 0 && totalFrames != decodedFrames) {
+            throw new IOException("LAC帧数不一致: 头=" + totalFrames + ", 实际=" + decodedFrames);
+        }
+        return new WavFile.Data(sampleRate, channels, pcm.toByteArray());
+    }
+}
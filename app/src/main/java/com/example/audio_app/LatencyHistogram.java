@@ -0,0 +1,71 @@
+package com.example.audio_app;
+
+// 延迟直方图（微秒）：对数-线性分桶，每个2的幂区间再均分16个子桶，相对误差不超过1/16.
+// 桶数组在构造时分配，record不分配内存；不是线程安全的，由调用方加锁.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 覆盖到 2^40 微秒（约12天），再大的值计入最后一个桶.
+    private static final int MAX_EXPONENT = 40;
+
+    private final long[] counts = new long[(MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) return (int) Math.max(micros, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // 桶的下界（含）.
+    static long bucketLowest(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    public void record(long micros) {
+        counts[Math.min(bucketIndex(micros), counts.length - 1)]++;
+        count++;
+        sum += micros;
+        if (micros > max) max = micros;
+    }
+
+    // 百分位数（0-100），取所在桶的中点，不超过最大值. 没有数据返回-1.
+    public long percentile(double percentile) {
+        if (count == 0) return -1;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long low = bucketLowest(i);
+                long high = bucketLowest(i + 1) - 1;
+                return Math.min((low + high) / 2, max);
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getMean() {
+        return count == 0 ? -1 : sum / count;
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.audio_app;
+
+// 16位PCM的无损压缩（FLAC风格）：每块对每个声道分别选择预测器——固定多项式（0~4阶）或量化系数的LPC，
+// 残差按PARTITION_SAMPLES分区做Rice编码，每个分区单独选参数；压缩后反而变大时直接存原始样本.
+// 预测全部用整数运算，编码器和解码器算出的预测值完全相同，所以逐位还原.
+// 每块开头用前order个样本热身，块之间没有依赖.
+public final class LosslessCodec {
+    public static final int MAX_BLOCK_SAMPLES = 4096;
+    static final int PARTITION_SAMPLES = 256;
+    static final int MAX_LPC_ORDER = 12;
+    // 量化LPC系数的位数（含符号位）.
+    static final int LPC_PRECISION = 14;
+    private static final int[] LPC_ORDERS = {4, 8, MAX_LPC_ORDER};
+    private static final int MAX_FIXED_ORDER = 4;
+    // 残差超过这个范围的预测器不用（Rice编码会过长）.
+    private static final long MAX_RESIDUAL = 1 << 24;
+
+    private static final int TYPE_VERBATIM = 0;
+    private static final int TYPE_FIXED = 1;
+    private static final int TYPE_LPC = 2;
+
+    private LosslessCodec() {}
+
+    // 按位写入到可增长的字节数组.
+    public static final class BitWriter {
+        private byte[] buffer;
+        private int length = 0;
+        private long bits = 0;
+        private int bitCount = 0;
+
+        public BitWriter(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        // 写入value的低count位（count <= 32）.
+        public void write(long value, int count) {
+            bits = (bits << count) | (value & ((1L << count) - 1));
+            bitCount += count;
+            while (bitCount >= 8) {
+                bitCount -= 8;
+                put((byte) (bits >>> bitCount));
+            }
+        }
+
+        // q个0后跟一个1.
+        void writeUnary(int q) {
+            while (q >= 32) {
+                write(0, 32);
+                q -= 32;
+            }
+            write(1, q + 1);
+        }
+
+        // 补0到整字节.
+        public void align() {
+            if (bitCount > 0) write(0, 8 - bitCount);
+        }
+
+        private void put(byte b) {
+            if (length == buffer.length) {
+                buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[length++] = b;
+        }
+
+        public byte[] buffer() {
+            return buffer;
+        }
+
+        // 已写满的字节数.
+        public int length() {
+            return length;
+        }
+
+        public void reset() {
+            length = 0;
+            bits = 0;
+            bitCount = 0;
+        }
+    }
+
+    // 按位读取.
+    public static final class BitReader {
+        private final byte[] data;
+        private final int end;
+        private int position;
+        private long bits = 0;
+        private int bitCount = 0;
+
+        public BitReader(byte[] data, int offset, int length) {
+            this.data = data;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        // 读取count位（count <= 32）.
+        public long read(int count) throws java.io.EOFException {
+            while (bitCount < count) {
+                if (position >= end) throw new java.io.EOFException();
+                bits = (bits << 8) | (data[position++] & 0xff);
+                bitCount += 8;
+            }
+            bitCount -= count;
+            return (bits >>> bitCount) & ((1L << count) - 1);
+        }
+
+        int readSigned(int count) throws java.io.EOFException {
+            long value = read(count);
+            return (int) (value << (64 - count) >> (64 - count));
+        }
+
+        int readUnary() throws java.io.EOFException {
+            int q = 0;
+            while (read(1) == 0) q++;
+            return q;
+        }
+
+        public void align() {
+            bitCount -= bitCount % 8;
+        }
+
+        // 还没读取的整字节数.
+        public int remainingBytes() {
+            return end - position + bitCount / 8;
+        }
+    }
+
+    // 编码器：可复用的工作数组，只在一个线程使用.
+    public static final class Encoder {
+        private final int[] residual = new int[MAX_BLOCK_SAMPLES];
+        private final int[] bestResidual = new int[MAX_BLOCK_SAMPLES];
+        private final double[] windowed = new double[MAX_BLOCK_SAMPLES];
+        private final double[] autocorrelation = new double[MAX_LPC_ORDER + 1];
+        private final double[][] lpc = new double[MAX_LPC_ORDER + 1][MAX_LPC_ORDER];
+        private final int[] coefficients = new int[MAX_LPC_ORDER];
+        private final int[] bestCoefficients = new int[MAX_LPC_ORDER];
+        private final int[] riceParameters = new int[MAX_BLOCK_SAMPLES / PARTITION_SAMPLES + 1];
+
+        // 编码一个声道的一块（n <= MAX_BLOCK_SAMPLES个样本）.
+        public void encode(int[] samples, int n, BitWriter out) {
+            long bestBits = 2 + 16L * n;
+            int bestType = TYPE_VERBATIM;
+            int bestOrder = 0;
+            int bestShift = 0;
+
+            for (int order = 0; order <= MAX_FIXED_ORDER && order < n; order++) {
+                if (!fixedResidual(samples, n, order, residual)) continue;
+                long bits = 2 + 3 + 16L * order + residualBits(residual, n - order);
+                if (bits < bestBits) {
+                    bestBits = bits;
+                    bestType = TYPE_FIXED;
+                    bestOrder = order;
+                    System.arraycopy(residual, 0, bestResidual, 0, n - order);
+                }
+            }
+
+            if (n > 2 * MAX_LPC_ORDER && computeLpc(samples, n)) {
+                for (int order : LPC_ORDERS) {
+                    int shift = quantize(lpc[order], order, coefficients);
+                    if (shift < 0 || !lpcResidual(samples, n, order, coefficients, shift, residual)) continue;
+                    long bits = 2 + 4 + 4 + (long) LPC_PRECISION * order + 16L * order
+                            + residualBits(residual, n - order);
+                    if (bits < bestBits) {
+                        bestBits = bits;
+                        bestType = TYPE_LPC;
+                        bestOrder = order;
+                        bestShift = shift;
+                        System.arraycopy(coefficients, 0, bestCoefficients, 0, order);
+                        System.arraycopy(residual, 0, bestResidual, 0, n - order);
+                    }
+                }
+            }
+
+            out.write(bestType, 2);
+            if (bestType == TYPE_VERBATIM) {
+                for (int i = 0; i < n; i++) out.write(samples[i], 16);
+                return;
+            }
+            if (bestType == TYPE_FIXED) {
+                out.write(bestOrder, 3);
+            } else {
+                out.write(bestOrder, 4);
+                out.write(bestShift, 4);
+                for (int j = 0; j < bestOrder; j++) out.write(bestCoefficients[j], LPC_PRECISION);
+            }
+            for (int i = 0; i < bestOrder; i++) out.write(samples[i], 16);
+            writeResidual(bestResidual, n - bestOrder, out);
+        }
+
+        // 估算Rice编码残差需要的位数，同时选出每个分区的参数.
+        private long residualBits(int[] res, int count) {
+            long bits = 0;
+            int partition = 0;
+            for (int start = 0; start < count; start += PARTITION_SAMPLES, partition++) {
+                int end = Math.min(count, start + PARTITION_SAMPLES);
+                long sum = 0;
+                for (int i = start; i < end; i++) sum += zigzag(res[i]);
+                int k = riceParameter(sum, end - start);
+                riceParameters[partition] = k;
+                bits += 5 + (long) (end - start) * (k + 1) + (sum >>> k);
+            }
+            return bits;
+        }
+
+        private void writeResidual(int[] res, int count, BitWriter out) {
+            // 重新计算分区参数（residualBits最后一次调用的可能不是选中的预测器）.
+            residualBits(res, count);
+            int partition = 0;
+            for (int start = 0; start < count; start += PARTITION_SAMPLES, partition++) {
+                int end = Math.min(count, start + PARTITION_SAMPLES);
+                int k = riceParameters[partition];
+                out.write(k, 5);
+                for (int i = start; i < end; i++) {
+                    long u = zigzag(res[i]);
+                    out.writeUnary((int) (u >>> k));
+                    if (k > 0) out.write(u, k);
+                }
+            }
+        }
+
+        // 加窗后算自相关，Levinson-Durbin递推得到1~MAX_LPC_ORDER阶的系数. 信号全零时返回false.
+        private boolean computeLpc(int[] samples, int n) {
+            for (int i = 0; i < n; i++) {
+                // Welch窗.
+                double x = (2.0 * i - (n - 1)) / (n + 1);
+                windowed[i] = samples[i] * (1 - x * x);
+            }
+            for (int lag = 0; lag <= MAX_LPC_ORDER; lag++) {
+                double sum = 0;
+                for (int i = lag; i < n; i++) sum += windowed[i] * windowed[i - lag];
+                autocorrelation[lag] = sum;
+            }
+            if (autocorrelation[0] <= 0) return false;
+            // 轻微的白噪声修正，避免病态.
+            autocorrelation[0] *= 1.0 + 1e-9;
+
+            double error = autocorrelation[0];
+            double[] previous = null;
+            for (int order = 1; order <= MAX_LPC_ORDER; order++) {
+                double acc = autocorrelation[order];
+                for (int j = 0; j < order - 1; j++) acc -= previous[j] * autocorrelation[order - 1 - j];
+                double reflection = acc / error;
+                double[] current = lpc[order];
+                for (int j = 0; j < order - 1; j++) {
+                    current[j] = previous[j] - reflection * previous[order - 2 - j];
+                }
+                current[order - 1] = reflection;
+                error *= 1 - reflection * reflection;
+                if (error <= 0) error = 1e-9;
+                previous = current;
+            }
+            return true;
+        }
+    }
+
+    // 系数量化为LPC_PRECISION位整数，返回移位数（系数 ≈ q / 2^shift），系数太大无法表示时返回-1.
+    static int quantize(double[] lpc, int order, int[] out) {
+        double max = 0;
+        for (int j = 0; j < order; j++) max = Math.max(max, Math.abs(lpc[j]));
+        if (max == 0 || Double.isNaN(max) || Double.isInfinite(max)) return -1;
+        int shift = LPC_PRECISION - 2 - Math.getExponent(max);
+        if (shift < 0) return -1;
+        shift = Math.min(shift, 15);
+        int limit = (1 << (LPC_PRECISION - 1)) - 1;
+        // 误差反馈，量化误差不累积到后面的系数.
+        double error = 0;
+        for (int j = 0; j < order; j++) {
+            error += lpc[j] * (1 << shift);
+            long q = Math.round(error);
+            q = Math.max(-limit - 1, Math.min(limit, q));
+            out[j] = (int) q;
+            error -= q;
+        }
+        return shift;
+    }
+
+    static boolean fixedResidual(int[] x, int n, int order, int[] out) {
+        for (int i = order; i < n; i++) {
+            int r;
+            switch (order) {
+                case 0: r = x[i]; break;
+                case 1: r = x[i] - x[i - 1]; break;
+                case 2: r = x[i] - 2 * x[i - 1] + x[i - 2]; break;
+                case 3: r = x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3]; break;
+                default: r = x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4]; break;
+            }
+            out[i - order] = r;
+        }
+        return true;
+    }
+
+    static boolean lpcResidual(int[] x, int n, int order, int[] coefficients, int shift, int[] out) {
+        for (int i = order; i < n; i++) {
+            long sum = 0;
+            for (int j = 0; j < order; j++) sum += (long) coefficients[j] * x[i - 1 - j];
+            long r = x[i] - (sum >> shift);
+            if (r >= MAX_RESIDUAL || r <= -MAX_RESIDUAL) return false;
+            out[i - order] = (int) r;
+        }
+        return true;
+    }
+
+    static long zigzag(int r) {
+        return ((long) r << 1) ^ (r >> 31);
+    }
+
+    static int unzigzag(long u) {
+        return (int) ((u >>> 1) ^ -(u & 1));
+    }
+
+    // 分区残差绝对值均值对应的Rice参数.
+    static int riceParameter(long sum, int count) {
+        if (count == 0 || sum < count) return 0;
+        int k = 63 - Long.numberOfLeadingZeros(sum / count);
+        return Math.min(k, 30);
+    }
+
+    // 解码一个声道的一块到samples[0, n).
+    public static void decode(BitReader in, int[] samples, int n) throws java.io.IOException {
+        int type = (int) in.read(2);
+        if (type == TYPE_VERBATIM) {
+            for (int i = 0; i < n; i++) samples[i] = in.readSigned(16);
+            return;
+        }
+        int order;
+        int shift = 0;
+        int[] coefficients = null;
+        if (type == TYPE_FIXED) {
+            order = (int) in.read(3);
+            if (order > MAX_FIXED_ORDER) throw new java.io.IOException("无效的预测阶数: " + order);
+        } else if (type == TYPE_LPC) {
+            order = (int) in.read(4);
+            shift = (int) in.read(4);
+            if (order == 0 || order > MAX_LPC_ORDER) throw new java.io.IOException("无效的LPC阶数: " + order);
+            coefficients = new int[order];
+            for (int j = 0; j < order; j++) coefficients[j] = in.readSigned(LPC_PRECISION);
+        } else {
+            throw new java.io.IOException("无效的块类型: " + type);
+        }
+        if (order > n) throw new java.io.IOException("预测阶数大于块长");
+        for (int i = 0; i < order; i++) samples[i] = in.readSigned(16);
+
+        // 先把残差读到samples[order..]，再原地加上预测值.
+        int count = n - order;
+        for (int start = 0; start < count; start += PARTITION_SAMPLES) {
+            int end = Math.min(count, start + PARTITION_SAMPLES);
+            int k = (int) in.read(5);
+            for (int i = start; i < end; i++) {
+                long u = ((long) in.readUnary() << k) | (k > 0 ? in.read(k) : 0);
+                samples[order + i] = unzigzag(u);
+            }
+        }
+        int[] x = samples;
+        for (int i = order; i < n; i++) {
+            int r = x[i];
+            if (type == TYPE_FIXED) {
+                switch (order) {
+                    case 0: x[i] = r; break;
+                    case 1: x[i] = r + x[i - 1]; break;
+                    case 2: x[i] = r + 2 * x[i - 1] - x[i - 2]; break;
+                    case 3: x[i] = r + 3 * x[i - 1] - 3 * x[i - 2] + x[i - 3]; break;
+                    default: x[i] = r + 4 * x[i - 1] - 6 * x[i - 2] + 4 * x[i - 3] - x[i - 4]; break;
+                }
+            } else {
+                long sum = 0;
+                for (int j = 0; j < order; j++) sum += (long) coefficients[j] * x[i - 1 - j];
+                x[i] = (int) (r + (sum >> shift));
+            }
+        }
+    }
+}
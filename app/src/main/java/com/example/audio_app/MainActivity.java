@@ -18,6 +18,10 @@ import androidx.core.content.ContextCompat;
 import com.bumptech.glide.Glide;
 import com.example.audio_app.databinding.ActivityMainBinding;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
 public class MainActivity extends AppCompatActivity implements WebSocketClient.ReconnectFailedCallback {
     private static final String TAG = "MainActivityCheck";
     private Button recordButton;
@@ -25,6 +29,17 @@ public class MainActivity extends AppCompatActivity implements WebSocketClient.R
     private SessionManager sessionManager;
     private ActivityMainBinding binding;
     private ImageView staticPic;
+    // 会话启动用的共享线程池：创建会话、打开麦克风、预热播放并行执行.
+    private final ExecutorService bootstrapExecutor = Executors.newFixedThreadPool(Config.BOOTSTRAP_THREADS, r -> {
+        Thread thread = new Thread(r, "SessionBootstrap");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 正在进行的启动流水线和它预热的播放端，停止会话时取消/释放.
+    private SessionBootstrap bootstrap;
+    private AudioTrackSink playbackSink;
+    // 打开录音设备的那个启动流水线的Steps，由audioHandler的锁保护. 撤销时只停止自己打开的录音.
+    private SessionBootstrap.Steps recordingOwner;
 
     // ------------测试回音消除------------
     private MediaPlayer mediaPlayer;
@@ -76,33 +91,81 @@ public class MainActivity extends AppCompatActivity implements WebSocketClient.R
         recordButton.setText("开始交流");
     }
 
-    // 初始化：创建会话，创建websocket客户端，设置相互引用.
+    // 初始化：创建会话、打开麦克风、预热播放并行进行，会话创建后立即建立websocket，设置相互引用.
+    // 连接建立前录到的音频先缓存，连上后按顺序发出.
     public void initAll(View view) {
         closeAll();
 
-        new Thread(() -> {
-            if (sessionManager.createSession()) {
-                // 创建WebSocket客户端.
-                sessionManager.connectWebSocket(audioHandler);
-                // 设置相互引用.
-                audioHandler.setWebSocketClient(sessionManager.getWebSocketClient());
-                // 启动录音.
-                audioHandler.startRecording();
-                runOnUiThread(() -> {
-                    // ui表现.
-                    Toast.makeText(MainActivity.this, "会话创建成功！", Toast.LENGTH_SHORT).show();
-                    binding.gifView.setVisibility(View.VISIBLE);
-                    staticPic.setVisibility(View.GONE);
-                    recordButton.setText("停止交流");
-                    Log.d(TAG, "会话创建成功！");
-                });
+        AudioTrackSink sink = new AudioTrackSink(audioHandler.getAecManager(),
+                audioHandler.getLatencyTrace(), audioHandler.getFlightRecorder(),
+                audioHandler.getBargeInDetector());
+        SessionBootstrap current = new SessionBootstrap(new SessionBootstrap.Steps() {
+            @Override
+            public boolean createSession() {
+                return sessionManager.createSession();
+            }
+
+            @Override
+            public boolean openMicrophone(BooleanSupplier cancelled) {
+                // 和closeAll里的停止录音用同一把锁：取消之后不会再打开录音设备.
+                synchronized (audioHandler) {
+                    if (cancelled.getAsBoolean()) return false;
+                    audioHandler.startRecording();
+                    recordingOwner = this;
+                    return true;
+                }
+            }
+
+            @Override
+            public void warmUpPlayback() {
+                sink.warmUp();
+            }
+
+            @Override
+            public WebSocketClient connect() {
+                // 创建WebSocket客户端，使用预热好的AudioTrack.
+                sessionManager.connectWebSocket(audioHandler, sink);
+                WebSocketClient client = sessionManager.getWebSocketClient();
+                // 设置相互引用，缓存的音频交给客户端.
+                audioHandler.setWebSocketClient(client);
+                return client;
+            }
+
+            @Override
+            public void closeMicrophone() {
+                synchronized (audioHandler) {
+                    // closeAll已经停止过，或者新的会话重新打开了录音设备.
+                    if (recordingOwner != this) return;
+                    recordingOwner = null;
+                    audioHandler.stopRecording();
+                }
+            }
+
+            @Override
+            public void disconnect(WebSocketClient client) {
+                // 新的会话可能已经设置了自己的客户端，只断开这次启动创建的.
+                audioHandler.clearWebSocketClient(client);
+                client.close();
+            }
+        }, bootstrapExecutor);
+        bootstrap = current;
+        playbackSink = sink;
+
+        current.start().whenComplete((client, error) -> runOnUiThread(() -> {
+            if (bootstrap != current) return; // 已经停止或重新开始，打开的资源由cancel()撤销
+            if (error == null) {
+                // ui表现.
+                Toast.makeText(MainActivity.this, "会话创建成功！", Toast.LENGTH_SHORT).show();
+                binding.gifView.setVisibility(View.VISIBLE);
+                staticPic.setVisibility(View.GONE);
+                recordButton.setText("停止交流");
+                Log.d(TAG, "会话创建成功！启动耗时: " + current.summary());
             } else {
-                runOnUiThread(() -> {
-                    Toast.makeText(MainActivity.this, "会话创建失败！", Toast.LENGTH_SHORT).show();
-                    Log.d(TAG, "会话创建失败！");
-                });
+                closeAll();
+                Toast.makeText(MainActivity.this, "会话创建失败！", Toast.LENGTH_SHORT).show();
+                Log.d(TAG, "会话创建失败！" + error.getMessage());
             }
-        }).start();
+        }));
     }
 
     // 开始交流.
@@ -125,11 +188,27 @@ public class MainActivity extends AppCompatActivity implements WebSocketClient.R
     // 关闭所有.
     public void closeAll(){
         try {
+            // 先停止录音再取消启动：之后才打开的录音设备记在recordingOwner里，由cancel()撤销.
+            if (audioHandler != null) {
+                synchronized (audioHandler) {
+                    recordingOwner = null;
+                    audioHandler.stopRecording();
+                }
+            }
+            if (bootstrap != null) {
+                bootstrap.cancel();
+                bootstrap = null;
+            }
             if (sessionManager != null) {
                 sessionManager.close();
             }
             if (audioHandler != null) {
-                audioHandler.stopRecording();
+                audioHandler.setWebSocketClient(null);
+            }
+            // 会话没建立起来时预热的AudioTrack没有交给WebSocketClient，这里释放.
+            if (playbackSink != null) {
+                playbackSink.release();
+                playbackSink = null;
             }
             Log.d(TAG, "关闭所有");
         } catch (Exception e) {
@@ -169,19 +248,23 @@ public class MainActivity extends AppCompatActivity implements WebSocketClient.R
     // 实现重连失败回调
     @Override
     public void onReconnectFailed() {
-        Log.d(TAG, "重连失败达到最大次数，停止会话");
-        Toast.makeText(this, "重连失败达到最大次数，退出会话...", Toast.LENGTH_SHORT).show();
+        // 在WebSocket的重连线程上回调，切到主线程更新界面.
+        runOnUiThread(() -> {
+            Log.d(TAG, "重连失败达到最大次数，停止会话");
+            Toast.makeText(this, "重连失败达到最大次数，退出会话...", Toast.LENGTH_SHORT).show();
 
-        closeAll();
-        binding.gifView.setVisibility(View.GONE);
-        staticPic.setVisibility(View.VISIBLE);
-        recordButton.setText("开始交流");
+            closeAll();
+            binding.gifView.setVisibility(View.GONE);
+            staticPic.setVisibility(View.VISIBLE);
+            recordButton.setText("开始交流");
+        });
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
         closeAll();
+        bootstrapExecutor.shutdownNow();
 
         // ------------测试回音消除------------
         if (mediaPlayer != null) {
@@ -0,0 +1,148 @@
+package com.example.audio_app;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+// PCM16（小端）的基础统计：RMS、峰值、最小/最大值、直流偏移和削波计数.
+// 一次遍历算完，累加用long（大音量帧的平方和会超出int），不分配内存.
+// 循环体只有局部变量和简单的计数下标，方便JIT展开和消除边界检查.
+public final class Pcm16 {
+    // 达到满幅即认为削波.
+    public static final int CLIP_LEVEL = Short.MAX_VALUE;
+
+    private Pcm16() {}
+
+    // 统计结果，可重复使用.
+    public static final class Stats {
+        public int sampleCount;
+        public long sum;
+        public long sumSquares;
+        public int min;
+        public int max;
+        public int clipCount;
+
+        public void reset() {
+            sampleCount = 0;
+            sum = 0;
+            sumSquares = 0;
+            min = 0;
+            max = 0;
+            clipCount = 0;
+        }
+
+        // 累加另一段的统计（分块统计整段音频时用）.
+        public void add(Stats other) {
+            if (other.sampleCount == 0) return;
+            min = sampleCount == 0 ? other.min : Math.min(min, other.min);
+            max = sampleCount == 0 ? other.max : Math.max(max, other.max);
+            sampleCount += other.sampleCount;
+            sum += other.sum;
+            sumSquares += other.sumSquares;
+            clipCount += other.clipCount;
+        }
+
+        public float rms() {
+            return sampleCount == 0 ? 0 : (float) Math.sqrt((double) sumSquares / sampleCount);
+        }
+
+        public int peak() {
+            return Math.max(max, -min);
+        }
+
+        public float dcOffset() {
+            return sampleCount == 0 ? 0 : (float) sum / sampleCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US, "samples=%d rms=%.1f peak=%d min=%d max=%d dc=%.1f clipped=%d",
+                    sampleCount, rms(), peak(), min, max, dcOffset(), clipCount);
+        }
+    }
+
+    // 只算RMS，VAD每帧调用.
+    public static float rms(byte[] pcm, int offset, int length) {
+        int samples = length >> 1;
+        long sumSquares = 0;
+        for (int i = 0; i < samples; i++) {
+            int p = offset + 2 * i;
+            int sample = (short) ((pcm[p] & 0xff) | (pcm[p + 1] << 8));
+            sumSquares += sample * sample;
+        }
+        return samples == 0 ? 0 : (float) Math.sqrt((double) sumSquares / samples);
+    }
+
+    public static void analyze(byte[] pcm, int offset, int length, Stats out) {
+        int samples = length >> 1;
+        long sum = 0;
+        long sumSquares = 0;
+        int min = Short.MAX_VALUE;
+        int max = Short.MIN_VALUE;
+        int clipped = 0;
+        for (int i = 0; i < samples; i++) {
+            int p = offset + 2 * i;
+            int sample = (short) ((pcm[p] & 0xff) | (pcm[p + 1] << 8));
+            sum += sample;
+            sumSquares += sample * sample;
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+            clipped += (sample >= CLIP_LEVEL || sample <= -CLIP_LEVEL) ? 1 : 0;
+        }
+        store(out, samples, sum, sumSquares, min, max, clipped);
+    }
+
+    // 按小端读取ByteBuffer中 [position, limit) 的样本，不改变position.
+    public static void analyze(ByteBuffer pcm, Stats out) {
+        if (pcm.hasArray()) {
+            analyze(pcm.array(), pcm.arrayOffset() + pcm.position(), pcm.remaining(), out);
+            return;
+        }
+        int base = pcm.position();
+        int samples = pcm.remaining() >> 1;
+        long sum = 0;
+        long sumSquares = 0;
+        int min = Short.MAX_VALUE;
+        int max = Short.MIN_VALUE;
+        int clipped = 0;
+        for (int i = 0; i < samples; i++) {
+            int p = base + 2 * i;
+            int sample = (short) ((pcm.get(p) & 0xff) | (pcm.get(p + 1) << 8));
+            sum += sample;
+            sumSquares += sample * sample;
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+            clipped += (sample >= CLIP_LEVEL || sample <= -CLIP_LEVEL) ? 1 : 0;
+        }
+        store(out, samples, sum, sumSquares, min, max, clipped);
+    }
+
+    // ShortBuffer中 [position, limit) 的样本，字节序由视图本身决定，不改变position.
+    public static void analyze(ShortBuffer samplesView, Stats out) {
+        int base = samplesView.position();
+        int samples = samplesView.remaining();
+        long sum = 0;
+        long sumSquares = 0;
+        int min = Short.MAX_VALUE;
+        int max = Short.MIN_VALUE;
+        int clipped = 0;
+        for (int i = 0; i < samples; i++) {
+            int sample = samplesView.get(base + i);
+            sum += sample;
+            sumSquares += sample * sample;
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+            clipped += (sample >= CLIP_LEVEL || sample <= -CLIP_LEVEL) ? 1 : 0;
+        }
+        store(out, samples, sum, sumSquares, min, max, clipped);
+    }
+
+    private static void store(Stats out, int samples, long sum, long sumSquares, int min, int max, int clipped) {
+        out.sampleCount = samples;
+        out.sum = sum;
+        out.sumSquares = sumSquares;
+        // 没有样本时最小/最大值记为0.
+        out.min = samples == 0 ? 0 : min;
+        out.max = samples == 0 ? 0 : max;
+        out.clipCount = clipped;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.audio_app;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+// PCM缓冲区对象池：收到的音频数据解码进池中的缓冲区，播放完再归还，稳定状态下不再分配内存.
+// ArrayBlockingQueue的offer/poll不分配节点对象；池满时归还的缓冲区直接丢弃交给GC.
+public class PcmBufferPool {
+
+    // 池中的一块PCM数据，data中只有前length个字节有效.
+    public static final class Buffer {
+        public byte[] data;
+        public int length;
+
+        Buffer(int capacity) {
+            this.data = new byte[capacity];
+        }
+    }
+
+    private final ArrayBlockingQueue<Buffer> free;
+    private final int defaultCapacity;
+
+    public PcmBufferPool(int maxPooled, int defaultCapacity) {
+        this.free = new ArrayBlockingQueue<>(maxPooled);
+        this.defaultCapacity = defaultCapacity;
+    }
+
+    // 取一块容量至少为minCapacity的缓冲区，length重置为0.
+    public Buffer acquire(int minCapacity) {
+        Buffer buffer = free.poll();
+        if (buffer == null) {
+            buffer = new Buffer(Math.max(minCapacity, defaultCapacity));
+        } else if (buffer.data.length < minCapacity) {
+            buffer.data = new byte[minCapacity];
+        }
+        buffer.length = 0;
+        return buffer;
+    }
+
+    public void release(Buffer buffer) {
+        if (buffer != null) {
+            free.offer(buffer);
+        }
+    }
+
+    public int pooledCount() {
+        return free.size();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.audio_app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// 单生产者/单消费者的无锁PCM帧环形缓冲区.
+// 生产者（录音线程）只做一次数组拷贝，不分配内存、不加锁、不阻塞；缓冲区满时丢弃新帧并计数.
+// 消费者（处理线程）在没有数据时最多park指定的时间，生产者写入后会立即唤醒它.
+public class PcmRingBuffer {
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final int mask;
+
+    // head: 下一个要写入的序号（只由生产者修改）；tail: 下一个要读取的序号（只由消费者修改）.
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong overrunCount = new AtomicLong();
+    private volatile int maxDepth = 0;
+    private volatile Thread consumer;
+    private volatile boolean closed = false;
+
+    // capacity会向上取整到2的幂.
+    public PcmRingBuffer(int capacity, int frameSize) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.slots = new byte[size][frameSize];
+        this.lengths = new int[size];
+        this.mask = size - 1;
+    }
+
+    // 生产者调用：拷贝一帧进缓冲区，满了返回false（该帧被丢弃并计入溢出次数）.
+    public boolean offer(byte[] src, int offset, int length) {
+        long h = head.get();
+        int depth = (int) (h - tail.get());
+        if (depth >= slots.length) {
+            overrunCount.incrementAndGet();
+            return false;
+        }
+        int index = (int) (h & mask);
+        int n = Math.min(length, slots[index].length);
+        System.arraycopy(src, offset, slots[index], 0, n);
+        lengths[index] = n;
+        // 发布该帧. 必须是volatile写：和下面读consumer之间需要StoreLoad屏障，
+        // 否则消费者可能在登记自己之前看不到新帧、生产者也看不到消费者，消费者一直park到超时.
+        head.set(h + 1);
+        if (depth + 1 > maxDepth) {
+            maxDepth = depth + 1;
+        }
+
+        Thread waiting = consumer;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+        return true;
+    }
+
+    // 消费者调用：取出一帧拷贝到dst，返回字节数；超时返回0；已关闭且取空返回-1.
+    public int poll(byte[] dst, long timeout, TimeUnit unit) {
+        long t = tail.get();
+        if (head.get() == t) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            consumer = Thread.currentThread();
+            try {
+                while (head.get() == t) {
+                    if (closed) {
+                        // 生产者可能在上面读head之后、close之前刚发布最后一帧.
+                        if (head.get() != t) break;
+                        return -1;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) return 0;
+                    LockSupport.parkNanos(this, remaining);
+                }
+            } finally {
+                consumer = null;
+            }
+        }
+        int index = (int) (t & mask);
+        int n = Math.min(lengths[index], dst.length);
+        System.arraycopy(slots[index], 0, dst, 0, n);
+        tail.lazySet(t + 1); // 释放该槽位
+        return n;
+    }
+
+    // 生产者结束时调用，唤醒等待中的消费者.
+    public void close() {
+        closed = true;
+        Thread waiting = consumer;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    // 仅在生产者和消费者都已停止时调用.
+    public void reset() {
+        head.set(0);
+        tail.set(0);
+        overrunCount.set(0);
+        maxDepth = 0;
+        closed = false;
+    }
+
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public long getOverrunCount() {
+        return overrunCount.get();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.audio_app;
+
+// 语音段累积缓冲区：容量按倍数扩展，并在多个语音段之间复用底层数组.
+// 每帧追加只拷贝新帧本身，整段的拷贝总量是线性的；发送时直接交出底层数组和有效长度（零拷贝视图）.
+public class PcmSegmentBuffer {
+    private byte[] data;
+    private int length = 0;
+
+    // 统计信息：累计分配的字节数和扩容次数，用于观察内存开销.
+    private long allocatedBytes;
+    private int growCount = 0;
+
+    public PcmSegmentBuffer(int initialCapacity) {
+        this.data = new byte[Math.max(initialCapacity, 2)];
+        this.allocatedBytes = data.length;
+    }
+
+    // 追加一段PCM数据，容量不够时翻倍扩容.
+    public void append(byte[] src, int offset, int len) {
+        if (len <= 0) return;
+        ensureCapacity(length + len);
+        System.arraycopy(src, offset, data, length, len);
+        length += len;
+    }
+
+    public void append(byte[] src) {
+        append(src, 0, src.length);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= data.length) return;
+        int newCapacity = data.length;
+        while (newCapacity < required) {
+            newCapacity = newCapacity <= Integer.MAX_VALUE / 2 ? newCapacity * 2 : Integer.MAX_VALUE;
+        }
+        byte[] newData = new byte[newCapacity];
+        System.arraycopy(data, 0, newData, 0, length);
+        data = newData;
+        allocatedBytes += newCapacity;
+        growCount++;
+    }
+
+    // 清空当前语音段，只重置长度，保留底层数组给下一段复用.
+    public void clear() {
+        length = 0;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    // 零拷贝视图：只有 [0, length()) 范围内的数据有效，下一次 append/clear 之前有效.
+    public byte[] array() {
+        return data;
+    }
+
+    // 需要独立副本时使用（例如交给其他线程长期持有）.
+    public byte[] toByteArray() {
+        byte[] copy = new byte[length];
+        System.arraycopy(data, 0, copy, 0, length);
+        return copy;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public int getGrowCount() {
+        return growCount;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.audio_app;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.example.audio_app.Config.*;
+
+// 播放引擎：独立的播放线程 + 抖动缓冲区.
+// WebSocket读线程只负责把解码好的PCM放进队列，阻塞的写入在播放线程里完成，不会影响下一条消息的接收.
+// 每段回复开始（或欠载后）先预缓冲到目标深度再写入输出设备，避免网络抖动造成断续.
+// 服务端发送快于实时，最大深度按一整段回复的突发量设置，入队从不等待；
+// 只有输出端卡住、缓冲超过最大深度时才丢弃最旧的数据.
+public class PlaybackEngine {
+    private static final int BYTES_PER_MS = PLAYBACK_RATE * 2 / 1000;
+    private static final int WRITE_SLICE_BYTES = PLAYBACK_WRITE_SLICE_MS * BYTES_PER_MS;
+
+    // 音频输出端，正式运行时是AudioTrack，测试时可以替换.
+    public interface Sink {
+        // 阻塞写入，返回写入的字节数，出错返回负数.
+        int write(byte[] data, int offset, int length);
+
+        // 丢弃已写入但还没播放的数据.
+        void flush();
+
+        void release();
+    }
+
+    private final Sink sink;
+    private final PcmBufferPool pool;
+    private final int targetDepthBytes;
+    private final int maxDepthBytes;
+    private final long prerollTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dataAvailable = lock.newCondition();
+    private final ArrayDeque<PcmBufferPool.Buffer> queue = new ArrayDeque<>();
+    private int bufferedBytes = 0;
+    private boolean prerolling = true;
+    private long prerollStartNanos = 0;
+    private boolean endOfStream = false;
+    // 回复还没结束时队列空了. 之后又来了数据才算一次欠载；等来的是audio.done则是正常结束.
+    private boolean starved = false;
+    private Runnable onDrained;
+    private boolean running = false;
+    private boolean released = false;
+    private Thread thread;
+    // flush时加一. 播放线程取出一块时记下当时的值，分片写入，值变了就不再写这一块剩下的部分.
+    private volatile int generation = 0;
+
+    // 统计信息.
+    private volatile long underrunCount = 0;
+    private volatile long overrunCount = 0;
+    private volatile long droppedBytes = 0;
+    private volatile int maxBufferedBytes = 0;
+
+    public PlaybackEngine(Sink sink, PcmBufferPool pool) {
+        this(sink, pool, PLAYBACK_TARGET_DEPTH_MS, PLAYBACK_MAX_DEPTH_MS, PLAYBACK_PREROLL_TIMEOUT_MS);
+    }
+
+    public PlaybackEngine(Sink sink, PcmBufferPool pool, int targetDepthMs, int maxDepthMs, long prerollTimeoutMs) {
+        this.sink = sink;
+        this.pool = pool;
+        this.targetDepthBytes = targetDepthMs * BYTES_PER_MS;
+        this.maxDepthBytes = maxDepthMs * BYTES_PER_MS;
+        this.prerollTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(prerollTimeoutMs);
+    }
+
+    public void start() {
+        lock.lock();
+        try {
+            if (running) return;
+            running = true;
+        } finally {
+            lock.unlock();
+        }
+        thread = new Thread(this::playbackLoop, "AudioPlayback");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    // 放入一块待播放的PCM（来自pool），播放完由引擎归还. 在WebSocket读线程调用，从不阻塞：
+    // 超过最大深度时立即丢弃最旧的数据并计一次溢出.
+    public void enqueue(PcmBufferPool.Buffer pcm) {
+        lock.lock();
+        try {
+            if (released) {
+                pool.release(pcm);
+                return;
+            }
+            if (queue.isEmpty() && bufferedBytes == 0 && prerolling) {
+                prerollStartNanos = System.nanoTime();
+            }
+            if (starved) {
+                underrunCount++;
+                starved = false;
+            }
+            endOfStream = false;
+            queue.addLast(pcm);
+            bufferedBytes += pcm.length;
+            while (bufferedBytes > maxDepthBytes && queue.size() > 1) {
+                PcmBufferPool.Buffer dropped = queue.pollFirst();
+                bufferedBytes -= dropped.length;
+                droppedBytes += dropped.length;
+                overrunCount++;
+                pool.release(dropped);
+            }
+            if (bufferedBytes > maxBufferedBytes) {
+                maxBufferedBytes = bufferedBytes;
+            }
+            dataAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 当前回复的音频已经全部到达：不再等待预缓冲，播放完剩余数据后回调onDrained（在播放线程执行）.
+    public void endOfStream(Runnable onDrained) {
+        lock.lock();
+        try {
+            endOfStream = true;
+            starved = false;
+            this.onDrained = onDrained;
+            dataAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 立即丢弃所有排队和已写入设备的数据. 正在写入的一块不再继续写，
+    // flush时已经交给输出端的那一片由播放线程写完后再清空一次.
+    public void flush() {
+        lock.lock();
+        try {
+            generation++;
+            clearQueueLocked();
+            onDrained = null;
+            endOfStream = false;
+        } finally {
+            lock.unlock();
+        }
+        sink.flush();
+    }
+
+    // 停止播放线程并释放输出设备.
+    public void release() {
+        Thread playbackThread;
+        lock.lock();
+        try {
+            running = false;
+            released = true;
+            clearQueueLocked();
+            onDrained = null;
+            dataAvailable.signal();
+            playbackThread = thread;
+            thread = null;
+        } finally {
+            lock.unlock();
+        }
+        if (playbackThread != null && playbackThread != Thread.currentThread()) {
+            try {
+                playbackThread.join(PLAYBACK_JOIN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sink.release();
+    }
+
+    private void clearQueueLocked() {
+        PcmBufferPool.Buffer pcm;
+        while ((pcm = queue.pollFirst()) != null) {
+            pool.release(pcm);
+        }
+        bufferedBytes = 0;
+        prerolling = true;
+        starved = false;
+    }
+
+    private void playbackLoop() {
+        while (true) {
+            PcmBufferPool.Buffer pcm = null;
+            Runnable drained = null;
+            int pcmGeneration = 0;
+            lock.lock();
+            try {
+                while (running) {
+                    if (queue.isEmpty()) {
+                        if (endOfStream && onDrained != null) {
+                            drained = onDrained;
+                            onDrained = null;
+                            prerolling = true;
+                            break;
+                        }
+                        if (!prerolling && !endOfStream) {
+                            // 回复还没结束但数据断了，重新预缓冲. 是否算欠载等下一块数据或audio.done到了再定：
+                            // 最后一块播完时audio.done通常还在路上.
+                            starved = true;
+                            prerolling = true;
+                        }
+                        dataAvailable.await();
+                        continue;
+                    }
+                    if (prerolling && !endOfStream && bufferedBytes < targetDepthBytes) {
+                        long waited = System.nanoTime() - prerollStartNanos;
+                        if (waited < prerollTimeoutNanos) {
+                            dataAvailable.awaitNanos(prerollTimeoutNanos - waited);
+                            continue;
+                        }
+                    }
+                    prerolling = false;
+                    pcm = queue.pollFirst();
+                    bufferedBytes -= pcm.length;
+                    pcmGeneration = generation;
+                    break;
+                }
+                if (!running) return;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            if (drained != null) {
+                drained.run();
+                continue;
+            }
+            // 阻塞写入放在锁外，读线程可以继续入队.
+            write(pcm, pcmGeneration);
+            pool.release(pcm);
+        }
+    }
+
+    // 分片写入输出端，每片前后检查是否flush过. 写入途中被flush时这一片可能在清空之后才进入设备，
+    // 由播放线程再清空一次：此时设备里只有被丢弃的数据，新的数据要等这里返回后才会写.
+    private void write(PcmBufferPool.Buffer pcm, int pcmGeneration) {
+        int offset = 0;
+        while (offset < pcm.length && generation == pcmGeneration) {
+            int written = sink.write(pcm.data, offset, Math.min(WRITE_SLICE_BYTES, pcm.length - offset));
+            if (generation != pcmGeneration) {
+                sink.flush();
+                return;
+            }
+            if (written <= 0) return;
+            offset += written;
+        }
+    }
+
+    public long getUnderrunCount() {
+        return underrunCount;
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    public int getBufferedMs() {
+        lock.lock();
+        try {
+            return bufferedBytes / BYTES_PER_MS;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxBufferedMs() {
+        return maxBufferedBytes / BYTES_PER_MS;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.audio_app;
+
+// 流式多相重采样器：有理数比例 outputRate/inputRate = L/M（约分后），加窗sinc低通抗混叠.
+// 原型滤波器按相位拆成L组，每个输出样本只算其中一组（tapsPerPhase次乘加），不需要真的插零再抽取.
+// 状态（历史样本和当前相位）跨调用保留，任意分块输入的结果和一次性输入相同. process不分配内存.
+public class PolyphaseResampler {
+    private final int up;
+    private final int down;
+    private final int tapsPerPhase;
+    // coefficients[phase * tapsPerPhase + t] 对应 x[k - t].
+    private final float[] coefficients;
+    // 历史样本存两份，history[pos .. pos + tapsPerPhase) 从新到旧，不需要取模.
+    private final float[] history;
+    private int pos = 0;
+    private int phase = 0;
+
+    public PolyphaseResampler(int inputRate, int outputRate, int tapsPerPhase) {
+        int g = gcd(inputRate, outputRate);
+        this.up = outputRate / g;
+        this.down = inputRate / g;
+        this.tapsPerPhase = tapsPerPhase;
+        this.coefficients = new float[up * tapsPerPhase];
+        this.history = new float[tapsPerPhase * 2];
+
+        // 在上采样后的采样率上设计低通，截止频率取两者奈奎斯特频率较小者的90%.
+        int length = up * tapsPerPhase;
+        double cutoff = 0.5 / Math.max(up, down) * 0.9;
+        double center = (length - 1) / 2.0;
+        for (int n = 0; n < length; n++) {
+            double x = n - center;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            // Blackman窗.
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * n / (length - 1))
+                    + 0.08 * Math.cos(4 * Math.PI * n / (length - 1));
+            int p = n % up;
+            int t = n / up;
+            coefficients[p * tapsPerPhase + t] = (float) (sinc * window * up);
+        }
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    // 每输入count个样本最多产生的输出样本数，用于分配输出缓冲区.
+    public int maxOutput(int count) {
+        return (int) (((long) count * up + down - 1) / down) + 1;
+    }
+
+    // 输入16位小端PCM，输出写入out[outOffset]，返回输出样本数.
+    public int process(byte[] pcm, int offset, int length, float[] out, int outOffset) {
+        int samples = length >> 1;
+        int produced = 0;
+        for (int i = 0; i < samples; i++) {
+            int p = offset + 2 * i;
+            produced += push((short) ((pcm[p] & 0xff) | (pcm[p + 1] << 8)), out, outOffset + produced);
+        }
+        return produced;
+    }
+
+    // 输入浮点样本，输出写入out[outOffset]，返回输出样本数.
+    public int process(float[] in, int offset, int count, float[] out, int outOffset) {
+        int produced = 0;
+        for (int i = 0; i < count; i++) {
+            produced += push(in[offset + i], out, outOffset + produced);
+        }
+        return produced;
+    }
+
+    private int push(float sample, float[] out, int outOffset) {
+        pos = pos == 0 ? tapsPerPhase - 1 : pos - 1;
+        history[pos] = sample;
+        history[pos + tapsPerPhase] = sample;
+        int produced = 0;
+        while (phase < up) {
+            int base = phase * tapsPerPhase;
+            float acc = 0;
+            for (int t = 0; t < tapsPerPhase; t++) {
+                acc += coefficients[base + t] * history[pos + t];
+            }
+            out[outOffset + produced++] = acc;
+            phase += down;
+        }
+        phase -= up;
+        return produced;
+    }
+
+    // 滤波器群延迟（输出采样率下的样本数）.
+    public float getDelay() {
+        return (up * tapsPerPhase - 1) / 2f / down;
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(history, 0);
+        pos = 0;
+        phase = 0;
+    }
+}
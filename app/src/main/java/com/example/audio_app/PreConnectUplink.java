@@ -0,0 +1,94 @@
+package com.example.audio_app;
+
+import android.util.Log;
+
+// 会话启动时麦克风和创建会话并行：WebSocketClient还没创建时的音频和commit先记在上行日志里，
+// setClient时按顺序交给客户端（客户端自己的上行日志会在连接建立后发出）. 可以在多个线程调用.
+public class PreConnectUplink {
+    private static final String TAG = "PreConnectUplink";
+
+    private final UplinkJournal journal;
+    private volatile WebSocketClient client;
+
+    public PreConnectUplink(int capacity) {
+        this.journal = new UplinkJournal(capacity);
+    }
+
+    // 设置客户端，缓存的音频和commit按顺序交给它. 传null时丢弃缓存，之后的音频重新缓存.
+    public void setClient(WebSocketClient client) {
+        synchronized (journal) {
+            if (client != null && journal.getPendingBytes() + journal.getPendingCommits() > 0) {
+                long bytes = journal.replay(new UplinkJournal.Sink() {
+                    @Override
+                    public void appendAudio(byte[] pcm, int offset, int length) {
+                        client.sendAudioData(pcm, offset, length);
+                    }
+
+                    @Override
+                    public void commit() {
+                        client.sendCommit();
+                    }
+                });
+                Log.d(TAG, "连接前缓存的音频交给WebSocketClient: " + bytes + "字节");
+            }
+            journal.clear();
+            this.client = client;
+        }
+    }
+
+    // 当前客户端还是client时才断开：撤销被取消的启动时不影响新会话设置的客户端.
+    public void clearClient(WebSocketClient client) {
+        synchronized (journal) {
+            if (this.client == client) {
+                journal.clear();
+                this.client = null;
+            }
+        }
+    }
+
+    // 当前客户端，还没设置时返回null.
+    public WebSocketClient getClient() {
+        return client;
+    }
+
+    public void sendAudio(byte[] pcm, int offset, int length) {
+        WebSocketClient current = client;
+        if (current == null) {
+            synchronized (journal) {
+                current = client;
+                if (current == null) {
+                    // 会话还在创建中：先缓存，客户端创建后再发.
+                    journal.append(pcm, offset, length);
+                    return;
+                }
+            }
+        }
+        current.sendAudioData(pcm, offset, length);
+    }
+
+    public void sendCommit() {
+        WebSocketClient current = client;
+        if (current == null) {
+            synchronized (journal) {
+                current = client;
+                if (current == null) {
+                    journal.markCommit();
+                    return;
+                }
+            }
+        }
+        current.sendCommit();
+    }
+
+    // 丢弃缓存的音频和commit.
+    public void clear() {
+        synchronized (journal) {
+            journal.clear();
+        }
+    }
+
+    // 缓存中等待客户端的音频字节数.
+    public int getPendingBytes() {
+        return journal.getPendingBytes();
+    }
+}
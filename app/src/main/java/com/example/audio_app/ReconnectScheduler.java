@@ -0,0 +1,95 @@
+package com.example.audio_app;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// 重连调度：单独的线程（不占用主线程），指数退避 + 随机抖动 + 上限.
+// 第n次重连的等待时间：d = min(maxDelay, baseDelay * 2^n)，实际在 [d/2, d] 内随机，
+// 避免很多客户端在服务端恢复的同一时刻一起重连. 连接成功后reset()，退避从头开始.
+public class ReconnectScheduler {
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final int maxAttempts;
+    private final Random random;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "WebSocketReconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private int attempts = 0;
+    private ScheduledFuture<?> pending;
+
+    public ReconnectScheduler(long baseDelayMs, long maxDelayMs, int maxAttempts, Random random) {
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxAttempts = maxAttempts;
+        this.random = random;
+    }
+
+    // 第attempt次（从0开始）重连前的等待时间.
+    public long delayMs(int attempt) {
+        long delay = baseDelayMs;
+        for (int i = 0; i < attempt && delay < maxDelayMs; i++) {
+            delay <<= 1;
+        }
+        delay = Math.min(delay, maxDelayMs);
+        long half = delay / 2;
+        synchronized (random) {
+            return half + (long) (random.nextDouble() * (delay - half + 1));
+        }
+    }
+
+    // 按退避时间安排下一次重连，返回等待的毫秒数. 已经有一次在等待时不重复安排（返回0）；
+    // 次数用完或已经关闭返回-1.
+    public synchronized long schedule(Runnable reconnect) {
+        if (pending != null && !pending.isDone()) return 0;
+        if (attempts >= maxAttempts) return -1;
+        long delay = delayMs(attempts++);
+        try {
+            pending = executor.schedule(reconnect, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return -1;
+        }
+        return delay;
+    }
+
+    // 在重连线程上立即执行（切换到备用连接、补充备用连接、回调等）.
+    public void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ignored) {
+            // 已经关闭.
+        }
+    }
+
+    // 在重连线程上定时执行（空闲检测）.
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long periodMs) {
+        try {
+            return executor.scheduleAtFixedRate(task, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    // 连接成功：重置次数，取消还在等待的重连.
+    public synchronized void reset() {
+        attempts = 0;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
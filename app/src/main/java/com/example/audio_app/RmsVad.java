@@ -0,0 +1,26 @@
+package com.example.audio_app;
+
+// 固定阈值的能量检测：RMS超过阈值即认为是语音（原来的SILENCE_THRESHOLD逻辑）.
+public class RmsVad implements VoiceActivityDetector {
+    private final float threshold;
+    private float lastRms = 0;
+
+    public RmsVad(float threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean isSpeech(byte[] frame, int length) {
+        lastRms = Pcm16.rms(frame, 0, length);
+        return lastRms > threshold;
+    }
+
+    @Override
+    public void reset() {
+        lastRms = 0;
+    }
+
+    public float getLastRms() {
+        return lastRms;
+    }
+}
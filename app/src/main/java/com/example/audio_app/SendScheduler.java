@@ -0,0 +1,414 @@
+package com.example.audio_app;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 上行发送调度：处理线程把音频、commit和控制消息放进有界队列，独立的发送线程按顺序交给WebSocket.
+// OkHttp的发送队列（queueSize）超过高水位时先不交出去，积压留在本地队列里按字节计预算.
+// 预算用完时按策略丢弃最旧的未commit音频，或者让调用方（处理线程）等一会儿；录音线程只写环形缓冲区，不会被阻塞.
+// 已经commit的音频不丢：服务端会收到空的或截断的commit.
+// 积压时新的音频合并进队尾的音频块，减少消息数. commit排在它之前的音频后面，控制消息（cancel）插到队首.
+public class SendScheduler implements UplinkJournal.Sink {
+    // 实际的发送端，正式运行时是WebSocket + UplinkProtocol，测试时可以替换.
+    public interface Transport {
+        // 连接是否可用，不可用时队列里的消息直接丢弃.
+        boolean isReady();
+
+        // 已经交给WebSocket但还没写到网络的字节数.
+        long queueSize();
+
+        boolean sendAudio(byte[] pcm, int offset, int length);
+
+        boolean sendCommit();
+
+        boolean sendText(String text);
+    }
+
+    public enum Policy { DROP_OLDEST, BLOCK }
+
+    private static final int AUDIO = 0;
+    private static final int COMMIT = 1;
+    private static final int TEXT = 2;
+
+    private static final class Entry {
+        int type;
+        byte[] data;
+        int length;
+        String text;
+    }
+
+    private final Transport transport;
+    private final int maxQueuedBytes;
+    private final long socketHighWaterBytes;
+    private final int coalesceBytes;
+    private final Policy policy;
+    private final long blockTimeoutNanos;
+    private final long pollNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private final ArrayDeque<Entry> free = new ArrayDeque<>();
+    private int queuedBytes = 0;
+    private boolean running = false;
+    private boolean sending = false;
+    private Thread thread;
+
+    // 统计信息.
+    private volatile int maxQueuedBytesSeen = 0;
+    private volatile long maxSocketQueueBytes = 0;
+    private volatile long sentMessages = 0;
+    private volatile long sentAudioBytes = 0;
+    private volatile long coalescedWrites = 0;
+    private volatile long droppedBytes = 0;
+    private volatile long droppedMessages = 0;
+    private volatile long failedSends = 0;
+    private volatile long blockedNanos = 0;
+    private volatile long socketWaits = 0;
+
+    public SendScheduler(Transport transport, int maxQueuedBytes, long socketHighWaterBytes, int coalesceBytes,
+                         Policy policy, long blockTimeoutMs, long pollMs) {
+        this.transport = transport;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.socketHighWaterBytes = socketHighWaterBytes;
+        this.coalesceBytes = coalesceBytes;
+        this.policy = policy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        this.pollNanos = TimeUnit.MILLISECONDS.toNanos(pollMs);
+        // 预算内的音频块加上若干commit/控制消息，稳定状态下不再分配.
+        int entries = maxQueuedBytes / coalesceBytes + 8;
+        for (int i = 0; i < entries; i++) {
+            free.add(new Entry());
+        }
+    }
+
+    public void start() {
+        lock.lock();
+        try {
+            if (running) return;
+            running = true;
+        } finally {
+            lock.unlock();
+        }
+        thread = new Thread(this::sendLoop, "UplinkSender");
+        thread.start();
+    }
+
+    // 追加一段音频（拷贝），队列满时按策略处理.
+    @Override
+    public void appendAudio(byte[] pcm, int offset, int length) {
+        lock.lock();
+        try {
+            if (!running) return;
+            while (length > 0) {
+                Entry tail = queue.peekLast();
+                boolean coalesce = tail != null && tail.type == AUDIO && tail.length < coalesceBytes;
+                int n = Math.min(length, coalesce ? coalesceBytes - tail.length : coalesceBytes);
+                if (!makeRoomLocked(n)) {
+                    // 积压的都是已经commit的音频：这段新音频就是最旧的未commit音频，丢弃它.
+                    droppedBytes += n;
+                    droppedMessages++;
+                    offset += n;
+                    length -= n;
+                    continue;
+                }
+                // 等待或丢弃之后队尾可能已经变了.
+                if (queue.peekLast() != tail) continue;
+                if (coalesce) {
+                    coalescedWrites++;
+                } else {
+                    tail = obtainLocked(AUDIO);
+                    queue.addLast(tail);
+                }
+                System.arraycopy(pcm, offset, tail.data, tail.length, n);
+                tail.length += n;
+                queuedBytes += n;
+                offset += n;
+                length -= n;
+            }
+            if (queuedBytes > maxQueuedBytesSeen) {
+                maxQueuedBytesSeen = queuedBytes;
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // commit排在已经入队的音频后面.
+    @Override
+    public void commit() {
+        lock.lock();
+        try {
+            if (!running) return;
+            queue.addLast(obtainLocked(COMMIT));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 控制消息不等积压的音频，插到队首.
+    public void sendControl(String text) {
+        lock.lock();
+        try {
+            if (!running) return;
+            Entry entry = obtainLocked(TEXT);
+            entry.text = text;
+            queue.addFirst(entry);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 丢掉还没发出的消息（重连后由UplinkJournal重放），不计入丢弃统计. 返回丢掉的音频字节数.
+    public int clear() {
+        lock.lock();
+        try {
+            int bytes = queuedBytes;
+            while (!queue.isEmpty()) {
+                recycleLocked(queue.pollFirst());
+            }
+            queuedBytes = 0;
+            spaceAvailable.signalAll();
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 腾出needed字节的预算：BLOCK时先等发送线程消化，超时或DROP_OLDEST时丢弃最旧的未commit音频.
+    // 没有未commit的音频可丢时（DROP_OLDEST）也等发送线程消化. 最后仍然放不下返回false.
+    private boolean makeRoomLocked(int needed) {
+        if (queuedBytes + needed <= maxQueuedBytes) return true;
+        if (policy == Policy.BLOCK) {
+            awaitSpaceLocked(needed);
+        }
+        while (queuedBytes + needed > maxQueuedBytes && dropOldestUncommittedAudioLocked()) {
+            // 继续丢，直到放得下.
+        }
+        if (policy == Policy.DROP_OLDEST && queuedBytes + needed > maxQueuedBytes) {
+            awaitSpaceLocked(needed);
+        }
+        return queuedBytes + needed <= maxQueuedBytes;
+    }
+
+    private void awaitSpaceLocked(int needed) {
+        if (!running) return;
+        long start = System.nanoTime();
+        long remaining = blockTimeoutNanos;
+        try {
+            while (queuedBytes + needed > maxQueuedBytes && remaining > 0 && running) {
+                remaining = spaceAvailable.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        blockedNanos += System.nanoTime() - start;
+    }
+
+    // 丢弃最后一个commit之后的第一块音频. 在它之前的音频属于已经commit的一轮，不能丢.
+    private boolean dropOldestUncommittedAudioLocked() {
+        Entry oldest = null;
+        for (Entry entry : queue) {
+            if (entry.type == COMMIT) {
+                oldest = null;
+            } else if (entry.type == AUDIO && oldest == null) {
+                oldest = entry;
+            }
+        }
+        if (oldest == null) return false;
+        queue.removeFirstOccurrence(oldest);
+        queuedBytes -= oldest.length;
+        droppedBytes += oldest.length;
+        droppedMessages++;
+        recycleLocked(oldest);
+        return true;
+    }
+
+    private Entry obtainLocked(int type) {
+        Entry entry = free.pollFirst();
+        if (entry == null) {
+            entry = new Entry();
+        }
+        if (type == AUDIO && entry.data == null) {
+            entry.data = new byte[coalesceBytes];
+        }
+        entry.type = type;
+        entry.length = 0;
+        entry.text = null;
+        return entry;
+    }
+
+    private void recycleLocked(Entry entry) {
+        entry.text = null;
+        free.addLast(entry);
+    }
+
+    private void sendLoop() {
+        while (true) {
+            Entry entry;
+            lock.lock();
+            try {
+                while (running && queue.isEmpty()) {
+                    notEmpty.await();
+                }
+                if (queue.isEmpty()) break;
+                // OkHttp的队列积压超过高水位时先不交出去，新来的音频在本地合并.
+                while (running && transport.isReady() && !queue.isEmpty() && queue.peekFirst().type != TEXT) {
+                    long socketQueue = transport.queueSize();
+                    if (socketQueue > maxSocketQueueBytes) {
+                        maxSocketQueueBytes = socketQueue;
+                    }
+                    if (socketQueue <= socketHighWaterBytes) break;
+                    socketWaits++;
+                    notEmpty.awaitNanos(pollNanos);
+                }
+                // 等待期间排队的音频可能都被丢弃了.
+                if (queue.isEmpty()) continue;
+                entry = queue.pollFirst();
+                if (entry.type == AUDIO) {
+                    queuedBytes -= entry.length;
+                }
+                sending = true;
+                spaceAvailable.signalAll();
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                lock.unlock();
+            }
+
+            boolean sent = transport.isReady() && send(entry);
+
+            lock.lock();
+            try {
+                if (sent) {
+                    sentMessages++;
+                    if (entry.type == AUDIO) sentAudioBytes += entry.length;
+                } else {
+                    failedSends++;
+                    if (entry.type == AUDIO) droppedBytes += entry.length;
+                }
+                sending = false;
+                recycleLocked(entry);
+                spaceAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean send(Entry entry) {
+        switch (entry.type) {
+            case AUDIO:
+                return transport.sendAudio(entry.data, 0, entry.length);
+            case COMMIT:
+                return transport.sendCommit();
+            default:
+                return transport.sendText(entry.text);
+        }
+    }
+
+    // 等队列发完（最多timeoutMs）再停止发送线程，剩下的丢弃.
+    public void close(long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Thread senderThread;
+        lock.lock();
+        try {
+            long remaining = deadline - System.nanoTime();
+            while (running && thread != null && (!queue.isEmpty() || sending) && remaining > 0) {
+                remaining = spaceAvailable.awaitNanos(remaining);
+            }
+            running = false;
+            while (!queue.isEmpty()) {
+                Entry entry = queue.pollFirst();
+                if (entry.type == AUDIO) droppedBytes += entry.length;
+                droppedMessages++;
+                recycleLocked(entry);
+            }
+            queuedBytes = 0;
+            notEmpty.signalAll();
+            spaceAvailable.signalAll();
+            senderThread = thread;
+            thread = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+            notEmpty.signalAll();
+            senderThread = thread;
+            thread = null;
+        } finally {
+            lock.unlock();
+        }
+        if (senderThread != null && senderThread != Thread.currentThread()) {
+            try {
+                senderThread.join(Math.max(1, timeoutMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public int getQueuedBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxQueuedBytes() {
+        return maxQueuedBytesSeen;
+    }
+
+    public long getMaxSocketQueueBytes() {
+        return maxSocketQueueBytes;
+    }
+
+    public long getSentMessages() {
+        return sentMessages;
+    }
+
+    public long getSentAudioBytes() {
+        return sentAudioBytes;
+    }
+
+    public long getCoalescedWrites() {
+        return coalescedWrites;
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages;
+    }
+
+    public long getFailedSends() {
+        return failedSends;
+    }
+
+    public long getBlockedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(blockedNanos);
+    }
+
+    public long getSocketWaits() {
+        return socketWaits;
+    }
+
+    public String summary() {
+        return "已发送: " + sentMessages + "条/" + sentAudioBytes + "字节"
+                + ", 合并: " + coalescedWrites
+                + ", 丢弃: " + droppedMessages + "条/" + droppedBytes + "字节"
+                + ", 发送失败: " + failedSends
+                + ", 最大积压: " + maxQueuedBytesSeen + "字节"
+                + ", OkHttp队列最大: " + maxSocketQueueBytes + "字节"
+                + ", 阻塞: " + getBlockedMs() + "ms";
+    }
+}
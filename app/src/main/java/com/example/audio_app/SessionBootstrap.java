@@ -0,0 +1,192 @@
+package com.example.audio_app;
+
+import android.util.Log;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+
+// 会话启动流水线：创建会话（HTTP）、打开麦克风和AEC、预热AudioTrack在共享线程池上同时进行，
+// 会话一创建好就开始WebSocket握手，不再等麦克风. 连接建立前采集的音频由AudioHandler和
+// WebSocketClient的上行日志缓存，连上后按顺序发出. 每个阶段记录耗时.
+public class SessionBootstrap {
+    private static final String TAG = "SessionBootstrap";
+
+    // 各阶段的实际操作，由MainActivity（或测试）提供，在线程池上调用.
+    public interface Steps {
+        // 创建会话，成功返回true.
+        boolean createSession();
+
+        // 打开录音设备和AEC并开始采集. 要和停止录音在同一把锁里检查cancelled：已取消时不打开，返回false.
+        boolean openMicrophone(BooleanSupplier cancelled);
+
+        // 提前创建AudioTrack.
+        void warmUpPlayback();
+
+        // 会话创建后调用：创建WebSocketClient并开始握手，失败返回null.
+        WebSocketClient connect();
+
+        // 启动被取消时撤销openMicrophone：停止录音.
+        void closeMicrophone();
+
+        // 启动被取消时撤销connect：不再把音频交给client，并关闭它.
+        void disconnect(WebSocketClient client);
+    }
+
+    public static final int PHASE_SESSION = 0;
+    public static final int PHASE_MICROPHONE = 1;
+    public static final int PHASE_PLAYBACK = 2;
+    // 从创建WebSocketClient到第一次连接建立.
+    public static final int PHASE_HANDSHAKE = 3;
+    // 从start()到会话、麦克风、播放端和连接全部就绪.
+    public static final int PHASE_TOTAL = 4;
+    private static final String[] PHASE_NAMES = {"session", "mic", "playback", "handshake", "total"};
+
+    private final Steps steps;
+    private final Executor executor;
+    // 各阶段耗时（纳秒），-1表示还没完成.
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(PHASE_NAMES.length);
+    private volatile boolean cancelled = false;
+    private volatile long connectStartNanos;
+    // 这次启动打开的资源，取消时撤销.
+    private volatile boolean microphoneOpened = false;
+    private volatile WebSocketClient createdClient;
+    // 各阶段都结束（不管成功与否）后完成，之后不会再打开新的资源.
+    private volatile CompletableFuture<Void> stepsDone;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    public SessionBootstrap(Steps steps, Executor executor) {
+        this.steps = steps;
+        this.executor = executor;
+        for (int i = 0; i < PHASE_NAMES.length; i++) phaseNanos.set(i, -1);
+    }
+
+    // 启动所有阶段，返回的future在全部就绪后给出已连接的WebSocketClient；任一阶段失败则异常结束，
+    // 由调用方关闭已经打开的资源. 取消后这次启动打开的资源由cancel()撤销.
+    public CompletableFuture<WebSocketClient> start() {
+        long startNanos = System.nanoTime();
+        CompletableFuture<Void> session = CompletableFuture.runAsync(timed(PHASE_SESSION, () -> {
+            if (!steps.createSession()) {
+                throw new IllegalStateException("创建会话失败");
+            }
+        }), executor);
+        CompletableFuture<Void> microphone = CompletableFuture.runAsync(timed(PHASE_MICROPHONE, () -> {
+            if (!steps.openMicrophone(() -> cancelled)) {
+                checkCancelled();
+            }
+            microphoneOpened = true;
+        }), executor);
+        CompletableFuture<Void> playback = CompletableFuture.runAsync(
+                timed(PHASE_PLAYBACK, steps::warmUpPlayback), executor);
+
+        CompletableFuture<WebSocketClient> created = session.thenApplyAsync(ignored -> {
+            checkCancelled();
+            connectStartNanos = System.nanoTime();
+            WebSocketClient client = steps.connect();
+            if (client == null) {
+                throw new IllegalStateException("创建WebSocket失败");
+            }
+            createdClient = client;
+            // 创建期间会话被停止：由release()撤销.
+            checkCancelled();
+            return client;
+        }, executor);
+        CompletableFuture<WebSocketClient> connected = created.thenCompose(client ->
+                client.whenConnected().thenApply(ignored -> {
+                    phaseNanos.set(PHASE_HANDSHAKE, System.nanoTime() - connectStartNanos);
+                    return client;
+                }));
+
+        CompletableFuture<Void> done = CompletableFuture.allOf(microphone, playback, created);
+        stepsDone = done;
+        done.whenComplete((ignored, error) -> {
+            if (cancelled) release();
+        });
+
+        CompletableFuture<WebSocketClient> result = new CompletableFuture<>();
+        connected.thenCombine(CompletableFuture.allOf(microphone, playback), (client, ignored) -> {
+            checkCancelled();
+            phaseNanos.set(PHASE_TOTAL, System.nanoTime() - startNanos);
+            Log.d(TAG, "会话启动完成 - " + summary());
+            return client;
+        }).whenComplete((client, error) -> {
+            if (error == null) {
+                result.complete(client);
+            } else if (cancelled) {
+                // 撤销时关闭连接也会让握手失败，取消后统一按取消结束.
+                result.completeExceptionally(new CancellationException("会话启动已取消"));
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    // 停止会话时调用：还没开始的阶段不再打开资源，已经完成的结果作废. 这次启动打开的麦克风和
+    // WebSocketClient在各阶段结束后撤销（已经结束的在这里直接撤销）.
+    public void cancel() {
+        cancelled = true;
+        CompletableFuture<Void> done = stepsDone;
+        if (done != null && done.isDone()) release();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // 撤销这次启动打开的资源，只执行一次.
+    private void release() {
+        if (!released.compareAndSet(false, true)) return;
+        if (microphoneOpened) {
+            steps.closeMicrophone();
+        }
+        WebSocketClient client = createdClient;
+        if (client != null) {
+            steps.disconnect(client);
+        }
+        Log.d(TAG, "会话启动已取消，撤销已打开的资源");
+    }
+
+    private void checkCancelled() {
+        if (cancelled) throw new CancellationException("会话启动已取消");
+    }
+
+    private Runnable timed(int phase, Runnable step) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                step.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, PHASE_NAMES[phase] + "阶段失败: " + e.getMessage());
+                throw e;
+            }
+            phaseNanos.set(phase, System.nanoTime() - start);
+        };
+    }
+
+    // 某个阶段的耗时（毫秒），没有完成返回-1.
+    public long getPhaseMs(int phase) {
+        long nanos = phaseNanos.get(phase);
+        return nanos < 0 ? -1 : nanos / 1000000;
+    }
+
+    // 各阶段串行执行的总耗时，和total对比可以看出并行省下的时间.
+    public long getSerialMs() {
+        long sum = 0;
+        for (int i = PHASE_SESSION; i <= PHASE_HANDSHAKE; i++) {
+            sum += Math.max(0, getPhaseMs(i));
+        }
+        return sum;
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < PHASE_NAMES.length; i++) {
+            sb.append(PHASE_NAMES[i]).append('=').append(getPhaseMs(i)).append("ms, ");
+        }
+        return sb.append("serial=").append(getSerialMs()).append("ms").toString();
+    }
+}
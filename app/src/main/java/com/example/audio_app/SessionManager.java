@@ -12,11 +12,20 @@ import android.util.Log;
 
 public class SessionManager {
     private final OkHttpClient client;
+    // 服务端地址，默认Config中的远端服务，本地测试时指向假服务端.
+    private final String apiBaseUrl;
+    private final String wsBaseUrl;
     private String sessionId;
     private WebSocketClient webSocketClient;
     private WebSocketClient.ReconnectFailedCallback reconnectCallback;
 
     public SessionManager() {
+        this(API_BASE_URL, WS_BASE_URL);
+    }
+
+    public SessionManager(String apiBaseUrl, String wsBaseUrl) {
+        this.apiBaseUrl = apiBaseUrl;
+        this.wsBaseUrl = wsBaseUrl;
         this.client = new OkHttpClient.Builder()
                 .connectTimeout(15, TimeUnit.SECONDS)
                 .readTimeout(15, TimeUnit.SECONDS)
@@ -29,7 +38,7 @@ public class SessionManager {
                 + "\"instructions\":\"普通聊天\"}";
 
         Request request = new Request.Builder()
-                .url(API_BASE_URL + "/v1/realtime/sessions")
+                .url(apiBaseUrl + "/v1/realtime/sessions")
                 .addHeader("Content-Type", "application/json")
                 .addHeader("Authorization", "Bearer " + AUTHORIZATION_TOKEN)
                 .post(RequestBody.create(jsonBody, MediaType.get("application/json")))
@@ -46,8 +55,13 @@ public class SessionManager {
     }
 
     public void connectWebSocket(AudioHandler audioHandler) {
+        connectWebSocket(audioHandler, null);
+    }
+
+    // sink为提前预热好的播放端，null时由WebSocketClient自己创建AudioTrack.
+    public void connectWebSocket(AudioHandler audioHandler, PlaybackEngine.Sink sink) {
         if (sessionId != null) {
-            this.webSocketClient = new WebSocketClient(sessionId, audioHandler, null); // 暂时传null
+            this.webSocketClient = new WebSocketClient(wsBaseUrl, sessionId, audioHandler, null, sink); // context暂时传null
             // 设置回调
             if (webSocketClient != null && reconnectCallback != null) {
                 webSocketClient.setReconnectFailedCallback(reconnectCallback);
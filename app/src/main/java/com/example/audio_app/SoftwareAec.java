@@ -0,0 +1,279 @@
+package com.example.audio_app;
+
+// 软件回声消除：分块频域NLMS自适应滤波（PBFDAF，overlap-save）.
+// 远端参考（送给AudioTrack的PCM）经自适应滤波器估计出麦克风里的回声，从近端信号中减去.
+// 滤波器按块长分成若干段，总长度覆盖回声尾长；每块4次FFT + 1段约束的2次FFT，16kHz下单核开销很小.
+// 步长按频点用远端功率归一化，再按 残留回声/残差 的估计值缩放（类似Speex MDF的泄漏估计）：
+// 残差主要是残留回声时用大步长快速收敛，近端说话（双讲）时步长自动变小，滤波器不会被带偏.
+// 所有缓冲区在构造时分配，process()不分配内存.
+public class SoftwareAec {
+    private static final float ENERGY_SMOOTHING = 0.1f;
+    private static final float POWER_SMOOTHING = 0.2f;
+    private static final float LEAK_SMOOTHING = 0.05f;
+    // 累计这么多块有远端声音之前还估计不出泄漏，用固定步长.
+    private static final int WARMUP_BLOCKS = 32;
+
+    private final int blockSize;
+    private final int fftSize;
+    private final int bins;
+    private final int partitions;
+    private final float stepSize;
+    // 频点功率的正则项，避免远端很安静时步长过大.
+    private final float regularization;
+    private final Fft fft;
+
+    // 远端频谱的环形历史，newest是最新一块，(newest + p) % partitions 是第p段对应的块.
+    private final float[][] xRe;
+    private final float[][] xIm;
+    private int newest = 0;
+    // 滤波器各分段的频域系数.
+    private final float[][] wRe;
+    private final float[][] wIm;
+    private int constrainIndex = 0;
+
+    private final float[] previousFar;
+    private final float[] power;
+    private final float[] re;
+    private final float[] im;
+    private final float[] errRe;
+    private final float[] errIm;
+    private final float[] echoRe;
+    private final float[] echoIm;
+
+    private float nearEnergy = 0;
+    private float errorEnergy = 0;
+    private float lastErleDb = 0;
+    // 泄漏估计：残差谱与回声估计谱的协方差 / 回声估计谱的方差.
+    private float crossPower = 0;
+    private float echoPower = 0;
+    private float leak = 0;
+    private int activeBlocks = 0;
+
+    public SoftwareAec(int blockSize, int partitions, float stepSize) {
+        this.blockSize = blockSize;
+        this.fftSize = blockSize * 2;
+        this.bins = blockSize + 1;
+        this.partitions = partitions;
+        this.stepSize = stepSize;
+        this.fft = new Fft(fftSize);
+        // 约等于幅度为30的白噪声在一个FFT块上的功率.
+        this.regularization = fftSize * 30f * 30f;
+        this.xRe = new float[partitions][bins];
+        this.xIm = new float[partitions][bins];
+        this.wRe = new float[partitions][bins];
+        this.wIm = new float[partitions][bins];
+        this.previousFar = new float[blockSize];
+        this.power = new float[bins];
+        this.re = new float[fftSize];
+        this.im = new float[fftSize];
+        this.errRe = new float[fftSize];
+        this.errIm = new float[fftSize];
+        this.echoRe = new float[fftSize];
+        this.echoIm = new float[fftSize];
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    // 处理一块：near[nearOffset]起blockSize个16位小端样本，far是同一时段的远端参考，结果写入out[outOffset].
+    public void process(byte[] near, int nearOffset, float[] far, byte[] out, int outOffset) {
+        int b = blockSize;
+
+        // 1. 远端块（前一块 + 当前块）变换到频域，放进历史.
+        newest = newest == 0 ? partitions - 1 : newest - 1;
+        for (int i = 0; i < b; i++) {
+            re[i] = previousFar[i];
+            re[b + i] = far[i];
+            previousFar[i] = far[i];
+        }
+        java.util.Arrays.fill(im, 0);
+        fft.transform(re, im);
+        float[] xr = xRe[newest];
+        float[] xi = xIm[newest];
+        float farPower = 0;
+        for (int k = 0; k < bins; k++) {
+            xr[k] = re[k];
+            xi[k] = im[k];
+            farPower += re[k] * re[k] + im[k] * im[k];
+        }
+
+        // 2. 回声估计 Y = Σ W_p·X_p，取时域后半段.
+        java.util.Arrays.fill(re, 0, bins, 0);
+        java.util.Arrays.fill(im, 0, bins, 0);
+        for (int p = 0; p < partitions; p++) {
+            float[] pr = xRe[(newest + p) % partitions];
+            float[] pi = xIm[(newest + p) % partitions];
+            float[] hr = wRe[p];
+            float[] hi = wIm[p];
+            for (int k = 0; k < bins; k++) {
+                re[k] += hr[k] * pr[k] - hi[k] * pi[k];
+                im[k] += hr[k] * pi[k] + hi[k] * pr[k];
+            }
+        }
+        mirror(re, im);
+        fft.inverse(re, im);
+
+        // 3. 残差 = 近端 - 回声估计.
+        float blockNear = 0;
+        float blockError = 0;
+        for (int i = 0; i < b; i++) {
+            int p = nearOffset + 2 * i;
+            float d = (short) ((near[p] & 0xff) | (near[p + 1] << 8));
+            float y = re[b + i];
+            float e = d - y;
+            errRe[i] = 0;
+            errRe[b + i] = e;
+            echoRe[i] = 0;
+            echoRe[b + i] = y;
+            blockNear += d * d;
+            blockError += e * e;
+        }
+        nearEnergy += ENERGY_SMOOTHING * (blockNear - nearEnergy);
+        errorEnergy += ENERGY_SMOOTHING * (blockError - errorEnergy);
+        lastErleDb = (float) (10 * Math.log10((nearEnergy + 1) / (errorEnergy + 1)));
+
+        // 滤波器发散（残差比输入还大）时直接输出近端，不会比不做回声消除更差.
+        boolean useError = blockError <= blockNear;
+        for (int i = 0; i < b; i++) {
+            int p = outOffset + 2 * i;
+            if (useError) {
+                int value = Math.round(errRe[b + i]);
+                value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+                out[p] = (byte) value;
+                out[p + 1] = (byte) (value >> 8);
+            } else {
+                out[p] = near[nearOffset + 2 * i];
+                out[p + 1] = near[nearOffset + 2 * i + 1];
+            }
+        }
+
+        // 远端静音时没有可学习的回声.
+        if (farPower > regularization * bins) {
+            adapt();
+        }
+
+        // 每块轮流约束一段：时域后半段清零，保证是线性卷积.
+        constrain(constrainIndex);
+        constrainIndex = (constrainIndex + 1) % partitions;
+    }
+
+    private void adapt() {
+        java.util.Arrays.fill(errIm, 0);
+        fft.transform(errRe, errIm);
+        java.util.Arrays.fill(echoIm, 0);
+        fft.transform(echoRe, echoIm);
+
+        // 泄漏估计：残差谱中与回声估计谱同形状的部分是残留回声，它占残差的比例决定步长.
+        float totalError = 0;
+        float totalEcho = 0;
+        for (int k = 0; k < bins; k++) {
+            totalError += errRe[k] * errRe[k] + errIm[k] * errIm[k];
+            totalEcho += echoRe[k] * echoRe[k] + echoIm[k] * echoIm[k];
+        }
+        float meanError = totalError / bins;
+        float meanEcho = totalEcho / bins;
+        float cross = 0;
+        float variance = 0;
+        for (int k = 0; k < bins; k++) {
+            float pe = errRe[k] * errRe[k] + errIm[k] * errIm[k] - meanError;
+            float py = echoRe[k] * echoRe[k] + echoIm[k] * echoIm[k] - meanEcho;
+            cross += pe * py;
+            variance += py * py;
+        }
+        crossPower += LEAK_SMOOTHING * (cross - crossPower);
+        echoPower += LEAK_SMOOTHING * (variance - echoPower);
+        leak = echoPower > 0 ? Math.max(0.005f, Math.min(1f, crossPower / echoPower)) : 1f;
+
+        float scale;
+        if (activeBlocks < WARMUP_BLOCKS) {
+            activeBlocks++;
+            scale = 1f;
+        } else {
+            // 残留回声 ≈ leak·回声估计，最优步长约为 残留回声/残差（乘2加快单讲时的收敛）.
+            scale = Math.min(1f, 2 * leak * totalEcho / (totalError + 1));
+        }
+        float mu = stepSize * scale;
+
+        for (int k = 0; k < bins; k++) {
+            float sum = 0;
+            for (int p = 0; p < partitions; p++) {
+                float pr = xRe[p][k];
+                float pi = xIm[p][k];
+                sum += pr * pr + pi * pi;
+            }
+            power[k] += POWER_SMOOTHING * (sum - power[k]);
+        }
+        for (int p = 0; p < partitions; p++) {
+            float[] pr = xRe[(newest + p) % partitions];
+            float[] pi = xIm[(newest + p) % partitions];
+            float[] hr = wRe[p];
+            float[] hi = wIm[p];
+            for (int k = 0; k < bins; k++) {
+                float g = mu / (power[k] + regularization);
+                // W += g·conj(X)·E
+                hr[k] += g * (pr[k] * errRe[k] + pi[k] * errIm[k]);
+                hi[k] += g * (pr[k] * errIm[k] - pi[k] * errRe[k]);
+            }
+        }
+    }
+
+    private void constrain(int p) {
+        float[] hr = wRe[p];
+        float[] hi = wIm[p];
+        for (int k = 0; k < bins; k++) {
+            re[k] = hr[k];
+            im[k] = hi[k];
+        }
+        mirror(re, im);
+        fft.inverse(re, im);
+        for (int i = blockSize; i < fftSize; i++) {
+            re[i] = 0;
+        }
+        java.util.Arrays.fill(im, 0);
+        fft.transform(re, im);
+        for (int k = 0; k < bins; k++) {
+            hr[k] = re[k];
+            hi[k] = im[k];
+        }
+    }
+
+    // 实信号的频谱共轭对称，只维护前 size/2+1 个频点，逆变换前补全后半部分.
+    private void mirror(float[] re, float[] im) {
+        im[0] = 0;
+        im[blockSize] = 0;
+        for (int k = 1; k < blockSize; k++) {
+            re[fftSize - k] = re[k];
+            im[fftSize - k] = -im[k];
+        }
+    }
+
+    // 清空滤波器和历史，回声路径变化很大（比如切换扬声器）时调用.
+    public void reset() {
+        for (int p = 0; p < partitions; p++) {
+            java.util.Arrays.fill(xRe[p], 0);
+            java.util.Arrays.fill(xIm[p], 0);
+            java.util.Arrays.fill(wRe[p], 0);
+            java.util.Arrays.fill(wIm[p], 0);
+        }
+        java.util.Arrays.fill(previousFar, 0);
+        java.util.Arrays.fill(power, 0);
+        nearEnergy = 0;
+        errorEnergy = 0;
+        lastErleDb = 0;
+        crossPower = 0;
+        echoPower = 0;
+        leak = 0;
+        activeBlocks = 0;
+    }
+
+    // 平滑后的回声抑制量（近端能量/残差能量），单位dB.
+    public float getErleDb() {
+        return lastErleDb;
+    }
+
+    // 当前估计的残留回声比例（0~1）.
+    public float getLeak() {
+        return leak;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.audio_app;
+
+// 频谱特征VAD：在能量检测的基础上，再用语音频段能量占比、频谱平坦度和过零率区分语音和稳态噪声.
+// 风扇等宽带噪声频谱平坦、音乐/电视的能量常落在语音频段之外，单靠RMS会误判为语音.
+// 所有缓冲区在构造时分配，isSpeech()不分配内存.
+public class SpectralVad implements VoiceActivityDetector {
+    private static final float EPSILON = 1e-9f;
+
+    private final VoiceActivityDetector energyGate;
+    private final Fft fft;
+    private final float[] window;
+    private final float[] re;
+    private final float[] im;
+    private final int bandStart;
+    private final int bandEnd;
+    private final float minBandRatio;
+    private final float maxFlatness;
+    private final float maxZeroCrossingRate;
+
+    // 最近一帧的特征值，便于调参.
+    private float lastBandRatio;
+    private float lastFlatness;
+    private float lastZeroCrossingRate;
+
+    public SpectralVad(VoiceActivityDetector energyGate, int frameSamples, int sampleRate,
+                       float minBandRatio, float maxFlatness, float maxZeroCrossingRate) {
+        this.energyGate = energyGate;
+        int fftSize = Integer.highestOneBit(Math.max(frameSamples, 2) - 1) << 1;
+        this.fft = new Fft(fftSize);
+        this.re = new float[fftSize];
+        this.im = new float[fftSize];
+        // Hann窗.
+        this.window = new float[frameSamples];
+        for (int i = 0; i < frameSamples; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / Math.max(frameSamples - 1, 1)));
+        }
+        // 语音频段 300~3400Hz 对应的频点.
+        this.bandStart = Math.max(1, 300 * fftSize / sampleRate);
+        this.bandEnd = Math.min(fftSize / 2, 3400 * fftSize / sampleRate + 1);
+        this.minBandRatio = minBandRatio;
+        this.maxFlatness = maxFlatness;
+        this.maxZeroCrossingRate = maxZeroCrossingRate;
+    }
+
+    @Override
+    public boolean isSpeech(byte[] frame, int length) {
+        // 能量检测始终运行，保证噪声底持续更新.
+        boolean loudEnough = energyGate.isSpeech(frame, length);
+        computeFeatures(frame, length);
+        return loudEnough
+                && lastBandRatio >= minBandRatio
+                && lastFlatness <= maxFlatness
+                && lastZeroCrossingRate <= maxZeroCrossingRate;
+    }
+
+    private void computeFeatures(byte[] frame, int length) {
+        int samples = Math.min(length / 2, window.length);
+        int crossings = 0;
+        int previous = 0;
+        for (int i = 0; i < samples; i++) {
+            int sample = (short) ((frame[2 * i] & 0xff) | (frame[2 * i + 1] << 8));
+            if ((sample ^ previous) < 0 && i > 0) crossings++;
+            previous = sample;
+            re[i] = sample * window[i];
+            im[i] = 0;
+        }
+        for (int i = samples; i < re.length; i++) {
+            re[i] = 0;
+            im[i] = 0;
+        }
+        lastZeroCrossingRate = samples > 1 ? (float) crossings / (samples - 1) : 0;
+
+        fft.transform(re, im);
+
+        double total = 0;
+        double band = 0;
+        double logSum = 0;
+        int half = re.length / 2;
+        for (int k = 1; k <= half; k++) {
+            float power = re[k] * re[k] + im[k] * im[k];
+            total += power;
+            if (k >= bandStart && k < bandEnd) {
+                band += power;
+                logSum += Math.log(power + EPSILON);
+            }
+        }
+        int bandBins = bandEnd - bandStart;
+        lastBandRatio = (float) (band / (total + EPSILON));
+        double arithmeticMean = band / bandBins;
+        double geometricMean = Math.exp(logSum / bandBins);
+        lastFlatness = (float) (geometricMean / (arithmeticMean + EPSILON));
+    }
+
+    @Override
+    public void reset() {
+        energyGate.reset();
+    }
+
+    public float getLastBandRatio() {
+        return lastBandRatio;
+    }
+
+    public float getLastFlatness() {
+        return lastFlatness;
+    }
+
+    public float getLastZeroCrossingRate() {
+        return lastZeroCrossingRate;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.audio_app;
+
+import static com.example.audio_app.Config.*;
+
+// 语音分段：按帧做VAD，累积语音段，短静默发送（不commit），长静默发送并commit.
+// 静默时长按已处理的音频样本数计算（帧时间），不读系统时钟：AudioHandler实时使用，
+// 离线回放工具用同样的逻辑尽快跑完录音，结果和真机一致. 只在单个线程使用，不依赖Android.
+public class SpeechSegmenter {
+    // 至少在预缓存5帧的基础上多3帧.
+    public static final int MIN_SEGMENT_BYTES = (5 + 1 + 1) * FRAMES_PER_BUFFER;
+
+    // 分段事件. pcm是PcmSegmentBuffer的零拷贝视图，回调返回后可能被覆盖.
+    public interface Listener {
+        // 检测到声音，开始新的语音段（包含预缓存）.
+        void onSpeechStart();
+
+        // 发送 pcm[offset, offset + length).
+        void onAudio(byte[] pcm, int offset, int length);
+
+        // 一个语音段结束，pcm[0, length)是整段语音（用于保存录音）.
+        void onSegment(byte[] pcm, int length);
+
+        // 语音段太短，丢弃.
+        void onDropped(int length);
+
+        // 长静默，本轮结束，应该commit.
+        void onCommit();
+    }
+
+    private final Listener listener;
+    private final boolean streaming;
+    private volatile VoiceActivityDetector vad;
+
+    // 预缓存：固定的环形帧数组，每帧复制进去，不分配. preAudioStart是最老一帧的下标.
+    private final byte[][] preAudioBuffer = new byte[PRE_AUDIO_BUFFER_SIZE][FRAMES_PER_BUFFER];
+    private final int[] preAudioLengths = new int[PRE_AUDIO_BUFFER_SIZE];
+    private int preAudioStart = 0;
+    private int preAudioCount = 0;
+    // 累积当前语音段，底层数组在各语音段之间复用.
+    private final PcmSegmentBuffer accumulatedAudio =
+            new PcmSegmentBuffer((PRE_AUDIO_BUFFER_SIZE + 16) * FRAMES_PER_BUFFER);
+    // 流式模式下当前语音段已经上传的字节数.
+    private int streamedBytes = 0;
+    // 帧时间：已处理的样本数；静默开始位置，-1表示当前不在静默中.
+    private long position = 0;
+    private long silenceStart = -1;
+    private boolean isVoiceActive = false;
+
+    public SpeechSegmenter(VoiceActivityDetector vad, boolean streaming, Listener listener) {
+        this.vad = vad;
+        this.streaming = streaming;
+        this.listener = listener;
+    }
+
+    public SpeechSegmenter(VoiceActivityDetector vad, Listener listener) {
+        this(vad, STREAMING_UPLOAD, listener);
+    }
+
+    // 按Config中的参数创建VAD，vadType为Config.VAD_TYPE_*.
+    public static VoiceActivityDetector createVad(int vadType) {
+        if (vadType == VAD_TYPE_RMS) {
+            return new RmsVad(SILENCE_THRESHOLD);
+        }
+        int frameMs = FRAMES_PER_BUFFER / 2 * 1000 / RECORD_RATE;
+        VoiceActivityDetector energyVad = new AdaptiveEnergyVad(ADAPTIVE_VAD_ON_MARGIN_DB,
+                ADAPTIVE_VAD_OFF_MARGIN_DB, ADAPTIVE_VAD_MIN_RMS, ADAPTIVE_VAD_WINDOW_MS / frameMs);
+        if (vadType == VAD_TYPE_SPECTRAL) {
+            return new SpectralVad(energyVad, FRAMES_PER_BUFFER / 2, RECORD_RATE,
+                    SPECTRAL_VAD_MIN_BAND_RATIO, SPECTRAL_VAD_MAX_FLATNESS, SPECTRAL_VAD_MAX_ZCR);
+        }
+        return energyVad;
+    }
+
+    // 替换语音活动检测算法，下一帧生效.
+    public void setVoiceActivityDetector(VoiceActivityDetector detector) {
+        this.vad = detector;
+    }
+
+    // 每轮开始时清空上一轮残留的分段状态.
+    public void reset() {
+        clearPreAudio();
+        accumulatedAudio.clear();
+        streamedBytes = 0;
+        silenceStart = -1;
+        isVoiceActive = false;
+        vad.reset();
+    }
+
+    // 处理一帧16位小端PCM（FRAMES_PER_BUFFER字节），返回VAD判定结果.
+    public boolean process(byte[] chunk, int length) {
+        pushPreAudio(chunk, length);
+
+        boolean speech = vad.isSpeech(chunk, length);
+        if (speech) {
+            //检测到声音.
+            silenceStart = -1;
+            handleVoiceActive();
+        } else {
+            //检测到静默.
+            handleSilence();
+        }
+        position += length / 2;
+        return speech;
+    }
+
+    // 不做VAD，只把这一帧放进预缓存（AI说话期间检测打断时使用）.
+    public void bufferPreAudio(byte[] chunk, int length) {
+        pushPreAudio(chunk, length);
+        position += length / 2;
+    }
+
+    // 打断：丢弃当前的语音段，用预缓存直接开始新的语音段.
+    public void startSegment() {
+        accumulatedAudio.clear();
+        streamedBytes = 0;
+        silenceStart = -1;
+        isVoiceActive = false;
+        handleVoiceActive();
+    }
+
+    // 结束会话时发送还没发送的语音（不commit）.
+    public void flush() {
+        if (!accumulatedAudio.isEmpty()) {
+            flushSegment();
+        }
+    }
+
+    // 帧时间（毫秒），从创建开始累计.
+    public long getPositionMs() {
+        return position * 1000 / RECORD_RATE;
+    }
+
+    private void pushPreAudio(byte[] chunk, int length) {
+        // 预缓存最近五帧，满了就覆盖最老的一帧.
+        int slot;
+        if (preAudioCount == PRE_AUDIO_BUFFER_SIZE) {
+            slot = preAudioStart;
+            preAudioStart = (preAudioStart + 1) % PRE_AUDIO_BUFFER_SIZE;
+        } else {
+            slot = (preAudioStart + preAudioCount++) % PRE_AUDIO_BUFFER_SIZE;
+        }
+        int n = Math.min(length, FRAMES_PER_BUFFER);
+        System.arraycopy(chunk, 0, preAudioBuffer[slot], 0, n);
+        preAudioLengths[slot] = n;
+    }
+
+    private void clearPreAudio() {
+        preAudioStart = 0;
+        preAudioCount = 0;
+    }
+
+    private void handleVoiceActive() {
+        if (!isVoiceActive) {
+            // 开始声音活动，将预缓存的音频块复制到result数组中.
+            isVoiceActive = true;
+            accumulatedAudio.clear();
+            for (int i = 0; i < preAudioCount; i++) {
+                int slot = (preAudioStart + i) % PRE_AUDIO_BUFFER_SIZE;
+                accumulatedAudio.append(preAudioBuffer[slot], 0, preAudioLengths[slot]);
+            }
+            listener.onSpeechStart();
+        } else {
+            // 继续累计声音，只追加最新一帧.
+            int last = (preAudioStart + preAudioCount - 1) % PRE_AUDIO_BUFFER_SIZE;
+            accumulatedAudio.append(preAudioBuffer[last], 0, preAudioLengths[last]);
+        }
+        if (streaming) {
+            streamSlices();
+        }
+    }
+
+    // 流式上传：语音段超过最短长度后，每累计够一个切片就立即发送，不等短静默.
+    private void streamSlices() {
+        if (accumulatedAudio.length() <= MIN_SEGMENT_BYTES) return;
+        while (accumulatedAudio.length() - streamedBytes >= STREAM_SLICE_BYTES) {
+            listener.onAudio(accumulatedAudio.array(), streamedBytes, STREAM_SLICE_BYTES);
+            streamedBytes += STREAM_SLICE_BYTES;
+        }
+    }
+
+    // 语音段结束：发送还没上传的部分（流式模式下只剩尾巴），并交出整段录音.
+    private void flushSegment() {
+        int length = accumulatedAudio.length();
+        if (length > streamedBytes) {
+            listener.onAudio(accumulatedAudio.array(), streamedBytes, length - streamedBytes);
+        }
+        listener.onSegment(accumulatedAudio.array(), length);
+        accumulatedAudio.clear();
+        streamedBytes = 0;
+    }
+
+    private void handleSilence() {
+        // 静默处理，只有在已录音状态才处理.
+        if (!isVoiceActive) return;
+        if (silenceStart < 0) {
+            silenceStart = position;
+            return;
+        }
+        float silenceDuration = (position - silenceStart) / (float) RECORD_RATE;
+
+        if (silenceDuration >= SHORT_SILENCE_DURATION && silenceDuration < LONG_SILENCE_DURATION) {
+            // 短静默，发送audio但不commit.
+            if (!accumulatedAudio.isEmpty()) {
+                if (accumulatedAudio.length() > MIN_SEGMENT_BYTES) {
+                    flushSegment();
+                } else {
+                    listener.onDropped(accumulatedAudio.length());
+                    accumulatedAudio.clear();
+                }
+                clearPreAudio();
+            }
+        } else if (silenceDuration >= LONG_SILENCE_DURATION) {
+            // 长静默，发送audio并commit.
+            isVoiceActive = false;
+            silenceStart = -1;
+            flush();
+            listener.onCommit();
+        } else {
+            // 短静默阈值之前的帧保留（防止说话过程中短暂音量低于阈值的丢帧.
+            handleVoiceActive();
+        }
+    }
+}
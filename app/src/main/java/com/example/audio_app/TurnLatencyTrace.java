@@ -0,0 +1,158 @@
+package com.example.audio_app;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+// 每轮对话的端到端延迟跟踪：各线程在关键点调用mark记录System.nanoTime，
+// 一轮结束（audio.done和首次播放都到了，或下一轮开始）时算出各区间延迟计入直方图，并保留最近若干轮的原始时间点.
+// 短回复或预缓冲超时的时候首次播放可能在audio.done之后，所以不能在audio.done时就结束.
+// 所有存储在构造时分配，mark不分配内存也不打日志；读取统计和导出文件在调用方线程进行.
+//
+// 上行事件（说话结束、发送）在commit之后再出现说明是新的一轮，先结束上一轮；
+// 下行事件（首个delta、首次播放、audio.done）只在commit之后、每轮记录第一次.
+public class TurnLatencyTrace {
+    // 时间点.
+    public static final int SPEECH_END = 0;      // 本轮最后一个语音帧（commit时记录）
+    public static final int SEGMENT_SENT = 1;    // 发送线程最后一次把语音段交给WebSocket
+    public static final int COMMIT = 2;          // 发送线程把commit交给WebSocket
+    public static final int FIRST_DELTA = 3;     // 收到第一个response.audio.delta
+    public static final int FIRST_PLAYBACK = 4;  // 第一次写入AudioTrack
+    public static final int AUDIO_DONE = 5;      // 收到response.audio.done
+    static final int EVENT_COUNT = 6;
+    private static final String[] EVENT_NAMES =
+            {"speech_end", "segment_sent", "commit", "first_delta", "first_playback", "audio_done"};
+
+    // 统计的区间.
+    public static final int ENDPOINTING = 0;     // 说话结束 -> commit（静默等待）
+    public static final int SERVER_FIRST_BYTE = 1; // commit -> 首个delta
+    public static final int PLAYBACK_START = 2;  // 首个delta -> 首次播放（抖动缓冲）
+    public static final int END_TO_END = 3;      // 说话结束 -> 首次播放（用户感知的延迟）
+    public static final int RESPONSE = 4;        // commit -> audio.done
+    static final int METRIC_COUNT = 5;
+    private static final String[] METRIC_NAMES =
+            {"endpointing", "server_first_byte", "playback_start", "end_to_end", "response"};
+    private static final int[][] METRIC_EVENTS = {
+            {SPEECH_END, COMMIT},
+            {COMMIT, FIRST_DELTA},
+            {FIRST_DELTA, FIRST_PLAYBACK},
+            {SPEECH_END, FIRST_PLAYBACK},
+            {COMMIT, AUDIO_DONE},
+    };
+
+    private final long[] current = new long[EVENT_COUNT];
+    // 最近完成的轮次（环形），0表示该时间点没有出现.
+    private final long[][] recent;
+    private int recentHead = 0;
+    private long completedTurns = 0;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[METRIC_COUNT];
+
+    public TurnLatencyTrace(int recentTurns) {
+        this.recent = new long[recentTurns][EVENT_COUNT];
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void mark(int event) {
+        markAt(event, System.nanoTime());
+    }
+
+    synchronized void markAt(int event, long nanos) {
+        boolean committed = current[COMMIT] != 0;
+        switch (event) {
+            case SPEECH_END:
+            case SEGMENT_SENT:
+                if (committed) finishTurn();
+                current[event] = nanos;
+                break;
+            case COMMIT:
+                if (committed) finishTurn();
+                current[COMMIT] = nanos;
+                break;
+            default:
+                if (!committed || current[event] != 0) return;
+                current[event] = nanos;
+                if (current[AUDIO_DONE] != 0 && current[FIRST_PLAYBACK] != 0) finishTurn();
+        }
+    }
+
+    private void finishTurn() {
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            long start = current[METRIC_EVENTS[i][0]];
+            long end = current[METRIC_EVENTS[i][1]];
+            if (start != 0 && end != 0 && end >= start) {
+                histograms[i].record((end - start) / 1000);
+            }
+        }
+        System.arraycopy(current, 0, recent[recentHead], 0, EVENT_COUNT);
+        recentHead = (recentHead + 1) % recent.length;
+        completedTurns++;
+        java.util.Arrays.fill(current, 0);
+    }
+
+    // 区间延迟的百分位数（毫秒，小数），没有数据返回-1.
+    public synchronized double getPercentileMs(int metric, double percentile) {
+        long micros = histograms[metric].percentile(percentile);
+        return micros < 0 ? -1 : micros / 1000.0;
+    }
+
+    public synchronized long getCount(int metric) {
+        return histograms[metric].getCount();
+    }
+
+    public synchronized long getCompletedTurns() {
+        return completedTurns;
+    }
+
+    public synchronized void reset() {
+        for (LatencyHistogram histogram : histograms) histogram.reset();
+        for (long[] turn : recent) java.util.Arrays.fill(turn, 0);
+        java.util.Arrays.fill(current, 0);
+        recentHead = 0;
+        completedTurns = 0;
+    }
+
+    // 各区间的 p50/p95/p99，用于日志.
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("轮次: ").append(completedTurns);
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            LatencyHistogram h = histograms[i];
+            if (h.getCount() == 0) continue;
+            sb.append(String.format(Locale.ROOT, ", %s(n=%d) p50=%.1f p95=%.1f p99=%.1f max=%.1fms",
+                    METRIC_NAMES[i], h.getCount(), h.percentile(50) / 1000.0, h.percentile(95) / 1000.0,
+                    h.percentile(99) / 1000.0, h.getMax() / 1000.0));
+        }
+        return sb.toString();
+    }
+
+    // 导出到文件：直方图统计，以及最近各轮相对于commit的时间点（ms，空表示没有出现）.
+    public synchronized void dump(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("# metric,count,p50_ms,p95_ms,p99_ms,max_ms,mean_ms");
+            for (int i = 0; i < METRIC_COUNT; i++) {
+                LatencyHistogram h = histograms[i];
+                out.printf(Locale.ROOT, "%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f%n", METRIC_NAMES[i], h.getCount(),
+                        h.percentile(50) / 1000.0, h.percentile(95) / 1000.0, h.percentile(99) / 1000.0,
+                        h.getMax() / 1000.0, h.getMean() / 1000.0);
+            }
+            out.println();
+            out.println("# turn," + String.join(",", EVENT_NAMES));
+            int turns = (int) Math.min(completedTurns, recent.length);
+            for (int t = 0; t < turns; t++) {
+                long[] turn = recent[(recentHead - turns + t + recent.length) % recent.length];
+                StringBuilder row = new StringBuilder().append(completedTurns - turns + t);
+                for (int e = 0; e < EVENT_COUNT; e++) {
+                    row.append(',');
+                    if (turn[e] != 0 && turn[COMMIT] != 0) {
+                        row.append(String.format(Locale.ROOT, "%.1f", (turn[e] - turn[COMMIT]) / 1e6));
+                    }
+                }
+                out.println(row);
+            }
+        }
+    }
+}
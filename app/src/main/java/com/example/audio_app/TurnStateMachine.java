@@ -0,0 +1,103 @@
+package com.example.audio_app;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 会话内的音频轮次状态：录音设备只在会话开始时打开一次，轮次之间只切换状态.
+// IDLE: 设备未打开；LISTENING: 监听用户说话；SPEAKING: 已commit，等待/播放AI回复，麦克风数据不上传.
+// 切换可以在任意线程请求（播放端、UI），分段状态只在处理线程上重置. AudioHandler的处理线程每帧调用process，
+// 这里不依赖AudioRecord.
+public class TurnStateMachine {
+    public enum State { IDLE, LISTENING, SPEAKING }
+
+    private final SpeechSegmenter segmenter;
+    // AI回复期间的打断检测，null表示不检测.
+    private final BargeInDetector bargeIn;
+    // 检测到打断时在处理线程调用（取消回复）.
+    private final Runnable onBargeIn;
+    // 每轮的延迟统计，commit时记下说话结束的时间，null表示不统计.
+    private final TurnLatencyTrace latencyTrace;
+
+    private volatile State state = State.IDLE;
+    // 切换到LISTENING后由处理线程重置分段状态.
+    private final AtomicBoolean resetPending = new AtomicBoolean(false);
+    // 轮次切换耗时（从请求监听到第一帧进入VAD）.
+    private volatile long listenRequestedNanos = 0;
+    private volatile long lastTurnSwitchLatencyNanos = -1;
+    // 本轮最后一个语音帧的时间，0表示还没有. 只在处理线程使用.
+    private long lastVoicedNanos = 0;
+
+    public TurnStateMachine(SpeechSegmenter segmenter, BargeInDetector bargeIn, Runnable onBargeIn,
+                            TurnLatencyTrace latencyTrace) {
+        this.segmenter = segmenter;
+        this.bargeIn = bargeIn;
+        this.onBargeIn = onBargeIn;
+        this.latencyTrace = latencyTrace;
+    }
+
+    // 切换到监听（会话开始或AI回复播放完），下一帧在处理线程上清空上一轮的语音段和预缓存.
+    public void startListening() {
+        listenRequestedNanos = System.nanoTime();
+        resetPending.set(true);
+        state = State.LISTENING;
+    }
+
+    // 分段器commit时在处理线程调用：本轮结束，等待AI回复.
+    // 说话结束记为最后一个语音帧的时间，在commit时才记：说话中间的停顿不会提前结束上一轮的统计.
+    public void onCommit() {
+        if (latencyTrace != null && lastVoicedNanos != 0) {
+            latencyTrace.markAt(TurnLatencyTrace.SPEECH_END, lastVoicedNanos);
+        }
+        lastVoicedNanos = 0;
+        state = State.SPEAKING;
+        if (bargeIn != null) {
+            bargeIn.reset();
+        }
+    }
+
+    // 会话结束.
+    public void stop() {
+        state = State.IDLE;
+    }
+
+    // 处理线程每帧调用，返回VAD判定结果；这一帧没有进入分段（不在监听）时返回false.
+    public boolean process(byte[] frame, int length) {
+        // AI回复期间开启打断时继续检测用户说话，否则麦克风数据不进入分段.
+        if (state == State.SPEAKING && bargeIn != null) {
+            detectBargeIn(frame, length);
+            return false;
+        }
+        if (state != State.LISTENING) return false;
+        if (resetPending.getAndSet(false)) {
+            segmenter.reset();
+            lastTurnSwitchLatencyNanos = System.nanoTime() - listenRequestedNanos;
+        }
+        boolean speech = segmenter.process(frame, length);
+        if (speech) {
+            lastVoicedNanos = System.nanoTime();
+        }
+        return speech;
+    }
+
+    // 打断检测：AI回复播放时在回声消除后的信号上检测用户说话，连续多帧超过阈值就打断.
+    private void detectBargeIn(byte[] frame, int length) {
+        // 打断前的帧也进入预缓存，打断后作为这段语音的开头.
+        segmenter.bufferPreAudio(frame, length);
+        if (!bargeIn.process(frame, 0, length)) return;
+
+        onBargeIn.run();
+        lastVoicedNanos = System.nanoTime();
+        // 直接切到监听并用预缓存开始新的语音段，不等回复结束.
+        resetPending.set(false);
+        state = State.LISTENING;
+        segmenter.startSegment();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    // 最近一次轮次切换耗时（纳秒），尚未切换过返回-1.
+    public long getLastTurnSwitchLatencyNanos() {
+        return lastTurnSwitchLatencyNanos;
+    }
+}
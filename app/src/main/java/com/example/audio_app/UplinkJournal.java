@@ -0,0 +1,118 @@
+package com.example.audio_app;
+
+import java.util.ArrayDeque;
+
+// 上行日志：记录上次commit之后追加的音频，断线重连后按顺序重放，用户说的话不会丢.
+// commit先记下位置，真正交给WebSocket后才丢弃它之前的音频；重放时在对应位置补发commit.
+// 容量有限（环形缓冲区），超出时丢弃最旧的音频并计数. 所有方法加锁，可以在多个线程调用.
+public class UplinkJournal {
+
+    // 重放的目标，一般是SendScheduler.
+    public interface Sink {
+        void appendAudio(byte[] pcm, int offset, int length);
+
+        void commit();
+    }
+
+    private final byte[] buffer;
+    // 绝对位置（从创建开始追加的总字节数），start之前的已经丢弃.
+    private long start = 0;
+    private long end = 0;
+    // 已请求但还没发出的commit的位置，按顺序.
+    private final ArrayDeque<Long> pendingCommits = new ArrayDeque<>();
+
+    // 统计信息.
+    private long droppedBytes = 0;
+    private long replayedBytes = 0;
+    private int replayCount = 0;
+
+    public UplinkJournal(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    public synchronized void append(byte[] pcm, int offset, int length) {
+        if (length > buffer.length) {
+            // 只保留最新的部分.
+            int skip = length - buffer.length;
+            droppedBytes += skip;
+            end += skip;
+            start = end;
+            offset += skip;
+            length = buffer.length;
+        }
+        long overflow = end + length - start - buffer.length;
+        if (overflow > 0) {
+            start += overflow;
+            droppedBytes += overflow;
+        }
+        int pos = (int) (end % buffer.length);
+        int first = Math.min(length, buffer.length - pos);
+        System.arraycopy(pcm, offset, buffer, pos, first);
+        System.arraycopy(pcm, offset + first, buffer, 0, length - first);
+        end += length;
+    }
+
+    // 记下commit的位置，之前的音频等commit发出后再丢弃.
+    public synchronized void markCommit() {
+        pendingCommits.addLast(end);
+    }
+
+    // 最早的一个commit已经发出.
+    public synchronized void commitSent() {
+        Long position = pendingCommits.pollFirst();
+        if (position != null && position > start) {
+            start = Math.min(position, end);
+        }
+    }
+
+    // 按顺序重放未commit的音频和未发出的commit. 重放后的commit仍然等commitSent确认.
+    public synchronized long replay(Sink sink) {
+        long position = start;
+        for (Long commit : pendingCommits) {
+            long until = Math.max(position, commit);
+            emit(sink, position, until);
+            sink.commit();
+            position = until;
+        }
+        emit(sink, position, end);
+        long bytes = end - start;
+        replayedBytes += bytes;
+        replayCount++;
+        return bytes;
+    }
+
+    // 丢弃所有音频和未发出的commit（内容已经交给别处，或者会话结束）.
+    public synchronized void clear() {
+        start = end;
+        pendingCommits.clear();
+    }
+
+    private void emit(Sink sink, long from, long to) {
+        while (from < to) {
+            int pos = (int) (from % buffer.length);
+            int n = (int) Math.min(to - from, buffer.length - pos);
+            sink.appendAudio(buffer, pos, n);
+            from += n;
+        }
+    }
+
+    public synchronized int getPendingBytes() {
+        return (int) (end - start);
+    }
+
+    public synchronized int getPendingCommits() {
+        return pendingCommits.size();
+    }
+
+    public synchronized long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    public synchronized long getReplayedBytes() {
+        return replayedBytes;
+    }
+
+    public synchronized int getReplayCount() {
+        return replayCount;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.audio_app;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+import static com.example.audio_app.Config.RECORD_RATE;
+
+// 上行音频协议：JSON模式（WAV + Base64 + JSON文本帧，服务端默认支持）
+// 和二进制模式（固定头 + 原始PCM的二进制帧，需要握手时通过Sec-WebSocket-Protocol协商）.
+// 二进制模式还可以协商IMA-ADPCM（4:1压缩，见ImaAdpcm），客户端按优先级列出，服务端回传选中的一个.
+//
+// 二进制帧格式（小端）：
+//   0-1  magic 'A' 'U'
+//   2    版本号 1
+//   3    类型：1 = append（PCM），2 = commit，3 = append（ADPCM）
+//   4-7  序号，每个连接从0开始递增
+//   8-11 payload长度（字节）
+//   12-  payload（16k单声道16位PCM，或一个ADPCM块）
+public class UplinkProtocol {
+    public static final String SUBPROTOCOL_HEADER = "Sec-WebSocket-Protocol";
+    public static final String SUBPROTOCOL_BINARY = "pcm16-binary.v1";
+    public static final String SUBPROTOCOL_ADPCM = "adpcm-binary.v1";
+
+    public static final int HEADER_SIZE = 12;
+    public static final byte MAGIC_0 = 'A';
+    public static final byte MAGIC_1 = 'U';
+    public static final byte VERSION = 1;
+    public static final byte TYPE_APPEND = 1;
+    public static final byte TYPE_COMMIT = 2;
+    public static final byte TYPE_APPEND_ADPCM = 3;
+
+    public enum Mode { JSON, BINARY, ADPCM }
+
+    private volatile Mode mode = Mode.JSON;
+    private int sequence = 0;
+    // 二进制帧的拼装缓冲区，按需扩容后复用.
+    private byte[] frameBuffer = new byte[HEADER_SIZE];
+    private final ImaAdpcm adpcm = new ImaAdpcm();
+    // 上行统计：交给send的PCM字节数和实际帧字节数.
+    private long pcmBytes = 0;
+    private long wireBytes = 0;
+
+    // 握手时请求的子协议（按优先级）.
+    public static String offeredSubprotocols(boolean adpcm) {
+        return adpcm ? SUBPROTOCOL_ADPCM + ", " + SUBPROTOCOL_BINARY : SUBPROTOCOL_BINARY;
+    }
+
+    // 根据握手响应确定协议：服务端回传了二进制子协议才使用二进制模式，否则退回JSON.
+    public synchronized Mode negotiate(Response response) {
+        String accepted = response != null ? response.header(SUBPROTOCOL_HEADER) : null;
+        if (SUBPROTOCOL_ADPCM.equals(accepted)) {
+            mode = Mode.ADPCM;
+        } else if (SUBPROTOCOL_BINARY.equals(accepted)) {
+            mode = Mode.BINARY;
+        } else {
+            mode = Mode.JSON;
+        }
+        sequence = 0;
+        adpcm.reset();
+        return mode;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public synchronized long getPcmBytes() {
+        return pcmBytes;
+    }
+
+    public synchronized long getWireBytes() {
+        return wireBytes;
+    }
+
+    // 发送 [offset, offset + length) 的PCM，返回webSocket.send的结果.
+    public synchronized boolean sendAppend(WebSocket webSocket, byte[] pcmData, int offset, int length)
+            throws JSONException {
+        pcmBytes += length;
+        if (mode == Mode.ADPCM) {
+            ensureFrameCapacity(HEADER_SIZE + ImaAdpcm.encodedSize(length));
+            int encoded = adpcm.encode(pcmData, offset, length, frameBuffer, HEADER_SIZE);
+            writeHeader(frameBuffer, TYPE_APPEND_ADPCM, sequence++, encoded);
+            wireBytes += HEADER_SIZE + encoded;
+            return webSocket.send(ByteString.of(frameBuffer, 0, HEADER_SIZE + encoded));
+        }
+        if (mode == Mode.BINARY) {
+            ensureFrameCapacity(HEADER_SIZE + length);
+            writeHeader(frameBuffer, TYPE_APPEND, sequence++, length);
+            System.arraycopy(pcmData, offset, frameBuffer, HEADER_SIZE, length);
+            wireBytes += HEADER_SIZE + length;
+            return webSocket.send(ByteString.of(frameBuffer, 0, HEADER_SIZE + length));
+        }
+
+        byte[] wavData = WavFile.fromPcm(pcmData, offset, length, RECORD_RATE);
+        String base64Data = ByteString.of(wavData, 0, wavData.length).base64();
+
+        JSONObject json = new JSONObject();
+        json.put("type", "input_audio_buffer.append");
+        json.put("event_id", "evt_" + System.currentTimeMillis());
+        json.put("audio", base64Data);
+        String text = json.toString();
+        wireBytes += text.length();
+        return webSocket.send(text);
+    }
+
+    public synchronized boolean sendCommit(WebSocket webSocket) throws JSONException {
+        if (mode != Mode.JSON) {
+            byte[] frame = new byte[HEADER_SIZE];
+            writeHeader(frame, TYPE_COMMIT, sequence++, 0);
+            return webSocket.send(ByteString.of(frame, 0, HEADER_SIZE));
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("type", "input_audio_buffer.commit");
+        json.put("event_id", "evt_" + System.currentTimeMillis());
+        return webSocket.send(json.toString());
+    }
+
+    private void ensureFrameCapacity(int required) {
+        if (frameBuffer.length < required) {
+            frameBuffer = new byte[Math.max(required, frameBuffer.length * 2)];
+        }
+    }
+
+    static void writeHeader(byte[] frame, byte type, int sequence, int payloadLength) {
+        frame[0] = MAGIC_0;
+        frame[1] = MAGIC_1;
+        frame[2] = VERSION;
+        frame[3] = type;
+        WavFile.writeIntLE(frame, 4, sequence);
+        WavFile.writeIntLE(frame, 8, payloadLength);
+    }
+}
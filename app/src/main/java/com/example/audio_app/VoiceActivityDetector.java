@@ -0,0 +1,10 @@
+package com.example.audio_app;
+
+// 语音活动检测接口，AudioHandler按帧调用，可以替换不同的检测算法.
+public interface VoiceActivityDetector {
+    // 判断一帧16位小端PCM是否为语音，每帧调用一次.
+    boolean isSpeech(byte[] frame, int length);
+
+    // 新的一轮开始时清空内部状态（噪声估计可以保留）.
+    void reset();
+}
@@ -0,0 +1,137 @@
+package com.example.audio_app;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+// WAV（单声道16位PCM）文件头相关的工具方法.
+public final class WavFile {
+    public static final int HEADER_SIZE = 44;
+
+    private WavFile() {}
+
+    // 在header[offset]处写入44字节的WAV header.
+    public static void writeHeader(byte[] header, int offset, int pcmLength, int sampleRate) {
+        // wav header参数
+        long totalDataLen = pcmLength + 36; // 36 is the header size
+        // 字节率 = 采样率 × 声道数 × 每样本字节数
+        long byteRate = sampleRate * 1 * (16 / 8); // 单声道，16位 = 2字节
+
+        int o = offset;
+
+        // RIFF header
+        header[o] = 'R'; header[o + 1] = 'I'; header[o + 2] = 'F'; header[o + 3] = 'F';
+        writeIntLE(header, o + 4, totalDataLen);
+
+        // WAVE格式
+        header[o + 8] = 'W'; header[o + 9] = 'A'; header[o + 10] = 'V'; header[o + 11] = 'E';
+        header[o + 12] = 'f'; header[o + 13] = 'm'; header[o + 14] = 't'; header[o + 15] = ' ';
+
+        // 16 for PCM
+        header[o + 16] = 16; header[o + 17] = 0; header[o + 18] = 0; header[o + 19] = 0;
+
+        // PCM = 1
+        header[o + 20] = 1; header[o + 21] = 0;
+
+        // Mono = 1
+        header[o + 22] = 1; header[o + 23] = 0;
+
+        // Sample rate
+        writeIntLE(header, o + 24, sampleRate);
+
+        // Byte rate
+        writeIntLE(header, o + 28, byteRate);
+
+        // Block align
+        header[o + 32] = 2; header[o + 33] = 0;
+
+        // Bits per sample
+        header[o + 34] = 16; header[o + 35] = 0;
+
+        // Data header
+        header[o + 36] = 'd'; header[o + 37] = 'a'; header[o + 38] = 't'; header[o + 39] = 'a';
+        writeIntLE(header, o + 40, pcmLength);
+    }
+
+    // 把PCM数据加上WAV header，返回新数组.
+    public static byte[] fromPcm(byte[] pcmData, int offset, int length, int sampleRate) {
+        byte[] wavData = new byte[HEADER_SIZE + length];
+        writeHeader(wavData, 0, length, sampleRate);
+        System.arraycopy(pcmData, offset, wavData, HEADER_SIZE, length);
+        return wavData;
+    }
+
+    // 读取出的16位PCM WAV内容.
+    public static final class Data {
+        public final int sampleRate;
+        public final int channels;
+        public final byte[] pcm;
+
+        Data(int sampleRate, int channels, byte[] pcm) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.pcm = pcm;
+        }
+    }
+
+    // 读取16位PCM的WAV文件，跳过fmt和data以外的块（LIST等）.
+    public static Data read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] chunkHeader = new byte[8];
+            in.readFully(chunkHeader, 0, 4);
+            in.readInt();
+            in.readFully(chunkHeader, 4, 4);
+            if (!"RIFFWAVE".equals(new String(chunkHeader, 0, 8, "US-ASCII"))) {
+                throw new IOException("不是WAV文件: " + file);
+            }
+            int sampleRate = -1;
+            int channels = -1;
+            while (true) {
+                in.readFully(chunkHeader);
+                String id = new String(chunkHeader, 0, 4, "US-ASCII");
+                int size = readIntLE(chunkHeader, 4);
+                if (id.equals("fmt ")) {
+                    byte[] fmt = new byte[size];
+                    in.readFully(fmt);
+                    int format = (fmt[0] & 0xff) | ((fmt[1] & 0xff) << 8);
+                    int bits = (fmt[14] & 0xff) | ((fmt[15] & 0xff) << 8);
+                    if (format != 1 || bits != 16) {
+                        throw new IOException("只支持16位PCM: format=" + format + ", bits=" + bits);
+                    }
+                    channels = (fmt[2] & 0xff) | ((fmt[3] & 0xff) << 8);
+                    sampleRate = readIntLE(fmt, 4);
+                } else if (id.equals("data")) {
+                    if (sampleRate < 0) throw new IOException("缺少fmt块: " + file);
+                    // 录音中断时data长度可能没有回填，以文件实际内容为准.
+                    int available = (int) Math.min(file.length() - HEADER_SIZE, Integer.MAX_VALUE);
+                    int length = size > 0 && size <= available ? size : available;
+                    byte[] pcm = new byte[Math.max(length, 0)];
+                    int read = 0;
+                    while (read < pcm.length) {
+                        int n = in.read(pcm, read, pcm.length - read);
+                        if (n < 0) break;
+                        read += n;
+                    }
+                    return new Data(sampleRate, channels, read == pcm.length ? pcm : java.util.Arrays.copyOf(pcm, read));
+                } else {
+                    in.skipBytes(size + (size & 1));
+                }
+            }
+        }
+    }
+
+    static int readIntLE(byte[] src, int offset) {
+        return (src[offset] & 0xff)
+                | ((src[offset + 1] & 0xff) << 8)
+                | ((src[offset + 2] & 0xff) << 16)
+                | ((src[offset + 3] & 0xff) << 24);
+    }
+
+    static void writeIntLE(byte[] dst, int offset, long value) {
+        dst[offset] = (byte) (value & 0xff);
+        dst[offset + 1] = (byte) ((value >> 8) & 0xff);
+        dst[offset + 2] = (byte) ((value >> 16) & 0xff);
+        dst[offset + 3] = (byte) ((value >> 24) & 0xff);
+    }
+}
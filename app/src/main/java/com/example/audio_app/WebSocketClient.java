@@ -1,9 +1,5 @@
 package com.example.audio_app;
 
-import android.media.AudioAttributes;
-import android.media.AudioFormat;
-import android.media.AudioManager;
-import android.media.AudioTrack;
 import android.util.Base64;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -14,8 +10,11 @@ import okhttp3.WebSocketListener;
 import android.util.Log;
 import androidx.annotation.NonNull;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import okhttp3.Response;
 import static com.example.audio_app.Config.*;
@@ -24,23 +23,57 @@ import android.content.Context;
 public class WebSocketClient {
     private static final String TAG = "WebSocketClient";
     private static final int NORMAL_CLOSURE_STATUS = 1000;
-    private static final int MAX_RECONNECT_ATTEMPTS = 3; // 最大重连次数
-    private static final long RECONNECT_DELAY_MS = 1000; // 重连延迟时间
 
-    private WebSocket webSocket;
+    private volatile WebSocket webSocket;
     private final AudioHandler audioHandler;
     private final OkHttpClient client;
-    private boolean isConnected = false;
-    private final Queue<byte[]> audioQueue = new LinkedList<>();
-    private boolean isPlaying = false;
-    private AudioTrack audioTrack;
-    private boolean isAudioTrackInitialized = false;
+    private volatile boolean isConnected = false;
+    // 服务端地址（ws://host:port），默认Config.WS_BASE_URL，本地测试时指向假服务端.
+    private final String wsBaseUrl;
+    // 下行音频缓冲池和快速解码器，播放完的缓冲区归还到池中复用.
+    private final PcmBufferPool playbackPool = new PcmBufferPool(PLAYBACK_POOL_SIZE, PLAYBACK_BUFFER_CAPACITY);
+    private final AudioDeltaDecoder deltaDecoder = new AudioDeltaDecoder(playbackPool);
+    // 播放引擎：独立播放线程 + 抖动缓冲区，读线程只负责入队.
+    // 写入AudioTrack的PCM同时作为软件AEC的远端参考.
+    private final PlaybackEngine playbackEngine;
+    // 上行协议（JSON或二进制），握手时协商.
+    private final UplinkProtocol uplink = new UplinkProtocol();
+    // 上行发送队列：独立线程发送，按OkHttp的积压做背压.
+    private final SendScheduler sendScheduler;
+    // 上次commit之后的音频，断线期间继续记录，重连后重放.
+    private final UplinkJournal journal = new UplinkJournal(UPLINK_QUEUE_MAX_BYTES);
+    // 保证重放完成之前，新的音频不会先进入发送队列.
+    private final Object uplinkLock = new Object();
+    // 用户打断后，丢弃被取消回复的剩余音频，直到该回复结束或下一次commit.
+    private volatile boolean responseCancelled = false;
+    // 每轮延迟跟踪（AudioHandler持有），这里记录首个delta和audio.done.
+    private final TurnLatencyTrace latencyTrace;
 
     // 重连相关字段
     private String sessionId;
-    private boolean shouldReconnect = true;
-    private int reconnectAttempts = 0;
+    private volatile boolean shouldReconnect = true;
     private final Object reconnectLock = new Object();
+    // 重连线程：退避重连、切换备用连接、空闲检测.
+    private final ReconnectScheduler reconnectScheduler = new ReconnectScheduler(
+            RECONNECT_BASE_DELAY_MS, RECONNECT_MAX_DELAY_MS, RECONNECT_MAX_ATTEMPTS, new Random());
+    // 当前主连接和备用连接（reconnectLock保护）.
+    private volatile Connection active;
+    private final ArrayDeque<Connection> standbys = new ArrayDeque<>();
+    private int standbyTarget = RECONNECT_STANDBY_CONNECTIONS;
+    // 空闲检测：最后收到消息的时间，以及发出commit后还没等到回复结束的起始时间（0表示没有在等）.
+    private volatile long lastInboundNanos = 0;
+    private volatile long awaitingReplyNanos = 0;
+    private volatile long idleTimeoutMs = NETWORK_IDLE_TIMEOUT_MS;
+    private volatile int idleDisconnects = 0;
+    // 断线的时间（System.nanoTime，0表示在线）和重连耗时统计（微秒，reconnectLock保护）.
+    private long disconnectedNanos = 0;
+    private long lastReconnectMs = -1;
+    private final LatencyHistogram reconnectLatency = new LatencyHistogram();
+    // 第一次连接建立时完成；关闭或重连次数用完时异常结束. 启动流水线用它统计握手耗时.
+    private final CompletableFuture<Void> firstConnect = new CompletableFuture<>();
+    // close()的后台收尾完成时完成；closing由reconnectLock保护.
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+    private boolean closing = false;
     private Context context;
     private ReconnectFailedCallback reconnectFailedCallback;
 
@@ -50,6 +83,13 @@ public class WebSocketClient {
     }
 
     public WebSocketClient(String sessionId, AudioHandler audioHandler, Context context) {
+        this(WS_BASE_URL, sessionId, audioHandler, context, null);
+    }
+
+    // sink为null时用AudioTrack播放；测试时可以传入自己的输出端.
+    public WebSocketClient(String wsBaseUrl, String sessionId, AudioHandler audioHandler, Context context,
+                           PlaybackEngine.Sink sink) {
+        this.wsBaseUrl = wsBaseUrl;
         this.audioHandler = audioHandler;
         this.sessionId = sessionId;
         this.context = context;
@@ -60,7 +100,20 @@ public class WebSocketClient {
                 .connectTimeout(10, TimeUnit.SECONDS)
                 .build();
 
-        connect(sessionId);
+        this.latencyTrace = audioHandler != null ? audioHandler.getLatencyTrace() : null;
+        this.playbackEngine = new PlaybackEngine(sink != null ? sink
+                : new AudioTrackSink(audioHandler != null ? audioHandler.getAecManager() : null, latencyTrace,
+                        audioHandler != null ? audioHandler.getFlightRecorder() : null,
+                        audioHandler != null ? audioHandler.getBargeInDetector() : null),
+                playbackPool);
+        playbackEngine.start();
+        this.sendScheduler = new SendScheduler(new UplinkTransport(), UPLINK_QUEUE_MAX_BYTES,
+                UPLINK_SOCKET_HIGH_WATER_BYTES, UPLINK_COALESCE_BYTES,
+                UPLINK_BLOCK_WHEN_FULL ? SendScheduler.Policy.BLOCK : SendScheduler.Policy.DROP_OLDEST,
+                UPLINK_BLOCK_TIMEOUT_MS, UPLINK_DRAIN_POLL_MS);
+        sendScheduler.start();
+        reconnectScheduler.scheduleAtFixedRate(this::checkIdle, NETWORK_IDLE_CHECK_MS);
+        connect();
     }
 
     // 设置回调
@@ -68,322 +121,532 @@ public class WebSocketClient {
         this.reconnectFailedCallback = callback;
     }
 
-    private void connect(String sessionId) {
-        synchronized (reconnectLock) {
-            if (webSocket != null) {
-                webSocket.cancel();
+    // 一个WebSocket连接. 同一时刻只有active是主连接，其余是备用连接或已经被替换的旧连接.
+    private final class Connection extends WebSocketListener {
+        volatile WebSocket socket;
+        // 握手响应，建立后才有；备用连接切换成主连接时用来协商上行协议.
+        volatile Response handshake;
+
+        @Override
+        public void onOpen(@NonNull WebSocket webSocket, @NonNull Response response) {
+            super.onOpen(webSocket, response);
+            socket = webSocket;
+            handshake = response;
+            if (this == active) {
+                activate(this);
+            } else {
+                Log.d(TAG, "备用连接已就绪");
             }
         }
 
-        Request request = new Request.Builder()
-                .url(WS_BASE_URL + "/v1/realtime/sessions/" + sessionId)
-                .addHeader("Authorization", "Bearer " + AUTHORIZATION_TOKEN)
-                .build();
-
-        webSocket = client.newWebSocket(request, new WebSocketListener() {
-            @Override
-            public void onOpen(@NonNull WebSocket webSocket, @NonNull Response response) {
-                super.onOpen(webSocket, response);
-                isConnected = true;
-                reconnectAttempts = 0; // 连接成功后重置重连计数
-                Log.d(TAG, "WebSocket连接已建立");
+        @Override
+        public void onMessage(@NonNull WebSocket webSocket, @NonNull String text) {
+            // 备用连接和已经被替换的旧连接上的消息不处理.
+            if (this != active) return;
+            lastInboundNanos = System.nanoTime();
+            // 快速路径：audio delta不构建JSON树，直接解码进池化缓冲区.
+            if (AudioDeltaDecoder.isAudioDelta(text)) {
+                if (responseCancelled) return;
+                PcmBufferPool.Buffer pcm = deltaDecoder.decode(text);
+                if (pcm != null) {
+                    markLatency(TurnLatencyTrace.FIRST_DELTA);
+                    enqueueAudio(pcm);
+                    return;
+                }
             }
-
-            @Override
-            public void onMessage(@NonNull WebSocket webSocket, @NonNull String text) {
-                try {
-                    JSONObject json = new JSONObject(text);
-                    String type = json.optString("type");
-
-                    switch (type) {
-                        case "error":
-                            Log.w(TAG, "服务器返回错误: " + json.optString("error"));
-                            break;
-                        case "response.audio.delta":
-                            Log.d(TAG, "收到audio delta: " + type);
-                            handleAudioDelta(json);
-                            break;
-                        case "response.audio_transcript.delta":
-                            Log.d(TAG, "收到录音转写文本: " + json.optString("delta"));
-                            break;
-                        case "response.text.delta":
-                            Log.d(TAG, "收到回复的文本: " + json.optString("delta"));
-                            break;
-                        case "response.audio.done":
-                            Log.d(TAG, "回复结束标志!");
-                            resetPlayback();
-                            audioHandler.startRecording();
+            try {
+                JSONObject json = new JSONObject(text);
+                String type = json.optString("type");
+
+                switch (type) {
+                    case "error":
+                        Log.w(TAG, "服务器返回错误: " + json.optString("error"));
+                        break;
+                    case "response.audio.delta":
+                        Log.d(TAG, "收到audio delta（JSON解析）");
+                        handleAudioDelta(json);
+                        break;
+                    case "response.audio_transcript.delta":
+                        Log.d(TAG, "收到录音转写文本: " + json.optString("delta"));
+                        break;
+                    case "response.text.delta":
+                        Log.d(TAG, "收到回复的文本: " + json.optString("delta"));
+                        break;
+                    case "response.audio.done":
+                        Log.d(TAG, "回复结束标志!");
+                        awaitingReplyNanos = 0;
+                        if (responseCancelled) {
+                            // 被打断的回复，已经在监听，不需要再切换.
+                            responseCancelled = false;
                             break;
-                        default:
-                            Log.d(TAG, "收到未知消息类型: " + type);
-                    }
-                } catch (JSONException e) {
-                    Log.e(TAG, "JSON解析错误: " + e.getMessage());
+                        }
+                        markLatency(TurnLatencyTrace.AUDIO_DONE);
+                        // 等播放引擎把剩余音频播完再切回监听，录音设备和AudioTrack都保持打开.
+                        playbackEngine.endOfStream(() -> {
+                            logPlaybackStats();
+                            if (audioHandler != null) {
+                                audioHandler.startListening();
+                            }
+                        });
+                        break;
+                    default:
+                        Log.d(TAG, "收到未知消息类型: " + type);
                 }
+            } catch (JSONException e) {
+                Log.e(TAG, "JSON解析错误: " + e.getMessage());
             }
+        }
 
-            @Override
-            public void onClosed(@NonNull WebSocket webSocket, int code, @NonNull String reason) {
-                super.onClosed(webSocket, code, reason);
-                isConnected = false;
-                Log.d(TAG, "连接关闭: " + reason);
+        @Override
+        public void onClosed(@NonNull WebSocket webSocket, int code, @NonNull String reason) {
+            super.onClosed(webSocket, code, reason);
+            Log.d(TAG, "连接关闭: " + reason);
+            // 如果不是正常关闭，尝试重连
+            connectionLost(this, code != NORMAL_CLOSURE_STATUS);
+        }
 
-                // 如果不是正常关闭，尝试重连
-                if (code != NORMAL_CLOSURE_STATUS && shouldReconnect) {
-                    scheduleReconnect();
-                }
+        @Override
+        public void onFailure(@NonNull WebSocket webSocket, @NonNull Throwable t, Response response) {
+            super.onFailure(webSocket, t, response);
+            if (this != active) {
+                connectionLost(this, false);
+                return;
             }
+            // 详细记录错误信息.
+            Log.e(TAG, "连接失败详情:");
+            Log.e(TAG, "错误信息: " + t.getMessage());
+            Log.e(TAG, "错误类型: " + t.getClass().getSimpleName());
+            if (response != null) {
+                Log.e(TAG, "响应码: " + response.code());
+                Log.e(TAG, "响应信息: " + response.message());
+            }
+            // 连接失败时尝试重连
+            connectionLost(this, true);
+        }
+    }
 
-            @Override
-            public void onFailure(@NonNull WebSocket webSocket, @NonNull Throwable t, Response response) {
-                super.onFailure(webSocket, t, response);
-                isConnected = false;
-
-                // 详细记录错误信息.
-                Log.e(TAG, "连接失败详情:");
-                Log.e(TAG, "错误信息: " + t.getMessage());
-                Log.e(TAG, "错误类型: " + t.getClass().getSimpleName());
-                if (response != null) {
-                    Log.e(TAG, "响应码: " + response.code());
-                    Log.e(TAG, "响应信息: " + response.message());
-                }
+    private Request buildRequest() {
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(wsBaseUrl + "/v1/realtime/sessions/" + sessionId)
+                .addHeader("Authorization", "Bearer " + AUTHORIZATION_TOKEN);
+        if (BINARY_UPLOAD) {
+            // 请求二进制上行协议，服务端不支持时不会回传该子协议，自动退回JSON.
+            requestBuilder.addHeader(UplinkProtocol.SUBPROTOCOL_HEADER, UplinkProtocol.offeredSubprotocols(ADPCM_UPLOAD));
+        }
+        return requestBuilder.build();
+    }
 
-                // 连接失败时尝试重连
-                if (shouldReconnect) {
-                    scheduleReconnect();
-                }
-            }
-        });
+    // 新建主连接，替换掉旧的.
+    private void connect() {
+        Connection connection = new Connection();
+        Connection old;
+        synchronized (reconnectLock) {
+            old = active;
+            active = connection;
+        }
+        if (old != null && old.socket != null) {
+            old.socket.cancel();
+        }
+        connection.socket = client.newWebSocket(buildRequest(), connection);
     }
 
-    // 调度重连
-    private void scheduleReconnect() {
+    // 主连接建立（新连接握手完成，或者备用连接顶上）：协商协议，重放日志，恢复发送.
+    private void activate(Connection connection) {
+        webSocket = connection.socket;
+        UplinkProtocol.Mode mode = uplink.negotiate(connection.handshake);
+        // 先记下重连耗时再标记为已连接，看到isConnected的线程也能看到这次的耗时.
+        long reconnectMs = -1;
+        synchronized (reconnectLock) {
+            if (disconnectedNanos != 0) {
+                long micros = (System.nanoTime() - disconnectedNanos) / 1000;
+                reconnectMs = micros / 1000;
+                lastReconnectMs = reconnectMs;
+                reconnectLatency.record(micros);
+                disconnectedNanos = 0;
+            }
+        }
+        long replayed;
+        synchronized (uplinkLock) {
+            // close()之后才完成的握手不再启用，这个连接由close()关闭.
+            if (!shouldReconnect) return;
+            // 旧连接上没发出去的消息都在日志里，清掉后按顺序重放，再恢复实时发送.
+            sendScheduler.clear();
+            isConnected = true;
+            replayed = journal.replay(sendScheduler);
+        }
+        lastInboundNanos = System.nanoTime();
+        reconnectScheduler.reset(); // 连接成功后重置重连计数
+        firstConnect.complete(null);
+        Log.d(TAG, "WebSocket连接已建立，上行协议: " + mode);
+        if (reconnectMs >= 0) {
+            Log.d(TAG, "重连成功，耗时: " + reconnectMs + "ms，重放: " + replayed + "字节");
+        }
+    }
 
-        // 如果达到最大尝试次数 ，通知回调停止会话.
+    // 连接断开或失败. 主连接断开时在重连线程上切换到备用连接或者按退避重连.
+    private void connectionLost(Connection connection, boolean reconnect) {
         synchronized (reconnectLock) {
-            if (reconnectAttempts >= MAX_RECONNECT_ATTEMPTS) {
-                if (reconnectFailedCallback != null) {
-                    new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                        @Override
-                        public void run() {
-                            reconnectFailedCallback.onReconnectFailed();
-                        }
-                    });
-                }
-                return;
+            if (standbys.remove(connection)) return;
+            if (connection != active) return;
+            isConnected = false;
+            if (disconnectedNanos == 0) {
+                disconnectedNanos = System.nanoTime();
             }
+        }
+        if (reconnect && shouldReconnect) {
+            reconnectScheduler.execute(this::failover);
+        }
+    }
 
-            reconnectAttempts++;
-            Log.d(TAG, "计划重连，第 " + reconnectAttempts + " 次尝试");
-
-            // 使用Handler延迟执行重连
-            new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    if (shouldReconnect && !isConnected) {
-                        Log.d(TAG, "执行重连...");
-                        connect(sessionId);
-                    }
+    // 在重连线程上执行：有已经打开的备用连接就直接切换，否则按退避安排重连.
+    private void failover() {
+        if (!shouldReconnect || isConnected) return;
+        Connection standby = null;
+        Connection old;
+        synchronized (reconnectLock) {
+            for (Connection c : standbys) {
+                if (c.handshake != null) {
+                    standby = c;
+                    break;
                 }
-            }, RECONNECT_DELAY_MS);
+            }
+            if (standby == null) {
+                old = null;
+            } else {
+                standbys.remove(standby);
+                old = active;
+                active = standby;
+            }
         }
+        if (standby != null) {
+            Log.d(TAG, "切换到备用连接");
+            if (old != null && old.socket != null) {
+                old.socket.cancel();
+            }
+            activate(standby);
+            return;
+        }
+        scheduleReconnect();
     }
 
-    private void initializeAudioTrack() {
-        if (isAudioTrackInitialized) return;
+    // 调度重连
+    private void scheduleReconnect() {
+        if (!shouldReconnect) return;
+        long delay = reconnectScheduler.schedule(() -> {
+            if (shouldReconnect && !isConnected) {
+                Log.d(TAG, "执行重连...");
+                connect();
+            }
+        });
+        if (delay > 0) {
+            Log.d(TAG, "计划重连，第 " + reconnectScheduler.getAttempts() + " 次尝试，" + delay + "ms后");
+        }
+        if (delay >= 0 || !shouldReconnect) return;
+        // 如果达到最大尝试次数 ，通知回调停止会话.
+        Log.w(TAG, "重连失败达到最大次数");
+        firstConnect.completeExceptionally(new IllegalStateException("WebSocket连接失败"));
+        // 保留出错前几分钟的音频用于排查.
+        if (audioHandler != null) {
+            audioHandler.dumpFlightRecorderAsync("reconnect_failed");
+        }
+        // 在重连线程上回调，需要更新界面时由调用方切到主线程.
+        ReconnectFailedCallback callback = reconnectFailedCallback;
+        if (callback != null) {
+            callback.onReconnectFailed();
+        }
+    }
 
-        int bufferSize = AudioTrack.getMinBufferSize(
-                PLAYBACK_RATE,
-                PLAYBACK_CHANNELS,
-                PLAYBACK_FORMAT);
+    // 预先打开count个备用连接（连到同一个会话），主连接断开时直接切换，省掉重新握手的时间.
+    public void setStandbyConnections(int count) {
+        List<Connection> extra = new ArrayList<>();
+        synchronized (reconnectLock) {
+            standbyTarget = count;
+            while (standbys.size() > count) {
+                extra.add(standbys.pollLast());
+            }
+        }
+        for (Connection c : extra) {
+            if (c.socket != null) c.socket.close(NORMAL_CLOSURE_STATUS, "不再需要备用连接");
+        }
+        reconnectScheduler.execute(this::topUpStandbys);
+    }
 
-        audioTrack = new AudioTrack(
-                new AudioAttributes.Builder()
-                        .setUsage(AudioAttributes.USAGE_VOICE_COMMUNICATION)
-                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
-                        .build(),
-                new AudioFormat.Builder()
-                        .setSampleRate(PLAYBACK_RATE)
-                        .setChannelMask(PLAYBACK_CHANNELS)
-                        .setEncoding(PLAYBACK_FORMAT)
-                        .build(),
-                bufferSize,
-                AudioTrack.MODE_STREAM,
-                AudioManager.AUDIO_SESSION_ID_GENERATE);
+    private void topUpStandbys() {
+        while (shouldReconnect && isConnected) {
+            Connection connection = new Connection();
+            synchronized (reconnectLock) {
+                if (standbys.size() >= standbyTarget) return;
+                standbys.add(connection);
+            }
+            connection.socket = client.newWebSocket(buildRequest(), connection);
+        }
+    }
 
-        if (audioTrack.getState() == AudioTrack.STATE_INITIALIZED) {
-            isAudioTrackInitialized = true;
-            audioTrack.play();
+    // 空闲检测（重连线程上定时执行）：等待回复期间太久没有收到任何消息，认为连接已经断了（半开连接，
+    // TCP还没发现），主动断开重连；这一轮的回复不会再来，回到监听. 顺便补充备用连接.
+    private void checkIdle() {
+        topUpStandbys();
+        long since = awaitingReplyNanos;
+        if (!isConnected || since == 0) return;
+        long idleNanos = System.nanoTime() - Math.max(since, lastInboundNanos);
+        if (idleNanos < TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs)) return;
+
+        Log.w(TAG, "等待回复" + idleNanos / 1000000 + "ms没有收到任何消息，重新连接");
+        idleDisconnects++;
+        awaitingReplyNanos = 0;
+        Connection stalled = active;
+        connectionLost(stalled, true);
+        if (stalled != null && stalled.socket != null) {
+            stalled.socket.cancel();
+        }
+        if (audioHandler != null) {
+            audioHandler.startListening();
         }
     }
 
     private void handleAudioDelta(JSONObject json) throws JSONException {
+        if (responseCancelled) return;
         String raw_pcm = json.getString("delta");
-        byte[] pcmData = Base64.decode(raw_pcm, Base64.DEFAULT);
-        synchronized (audioQueue) {
-            audioQueue.add(pcmData);
-            if (!isPlaying) {
-                playNextAudio();
-            }
+        byte[] decoded = Base64.decode(raw_pcm, Base64.DEFAULT);
+        PcmBufferPool.Buffer pcm = playbackPool.acquire(decoded.length);
+        System.arraycopy(decoded, 0, pcm.data, 0, decoded.length);
+        pcm.length = decoded.length;
+        markLatency(TurnLatencyTrace.FIRST_DELTA);
+        enqueueAudio(pcm);
+    }
+
+    private void markLatency(int event) {
+        if (latencyTrace != null) {
+            latencyTrace.mark(event);
         }
     }
 
-    private void playNextAudio() {
-        synchronized (audioQueue) {
-            if (audioQueue.isEmpty()) {
-                isPlaying = false;
-                return;
-            }
+    private void enqueueAudio(PcmBufferPool.Buffer pcm) {
+        playbackEngine.enqueue(pcm);
+    }
 
-            isPlaying = true;
-            byte[] pcmData = audioQueue.poll();
+    private void logPlaybackStats() {
+        Log.d(TAG, "播放统计 - 欠载: " + playbackEngine.getUnderrunCount()
+                + ", 溢出: " + playbackEngine.getOverrunCount()
+                + ", 最大缓冲: " + playbackEngine.getMaxBufferedMs() + "ms");
+    }
 
-            // 确保AudioTrack已初始化
-            initializeAudioTrack();
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    // 第一次连接建立（握手完成、上行协议协商好）时完成.
+    public CompletableFuture<Void> whenConnected() {
+        return firstConnect;
+    }
+
+    public SendScheduler getSendScheduler() {
+        return sendScheduler;
+    }
 
-            // 直接写入音频数据到已初始化的AudioTrack
-            audioTrack.write(pcmData, 0, pcmData.length);
+    public UplinkJournal getJournal() {
+        return journal;
+    }
 
-            // 继续播放队列中的下一个音频片段
-            playNextAudio();
+    // 最近一次重连（从断线到新连接建立）的耗时，没有重连过返回-1.
+    public long getLastReconnectMs() {
+        synchronized (reconnectLock) {
+            return lastReconnectMs;
         }
     }
 
-    public void sendAudioData(byte[] pcmData) {
-        if (!isConnected) {
-            Log.w(TAG, "尝试发送数据但连接未就绪");
-            return;
+    // 等待回复时多久没有消息算断线，默认NETWORK_IDLE_TIMEOUT_MS.
+    public void setIdleTimeoutMs(long timeoutMs) {
+        this.idleTimeoutMs = timeoutMs;
+    }
+
+    public int getIdleDisconnects() {
+        return idleDisconnects;
+    }
+
+    // 已经完成握手、可以直接切换的备用连接数.
+    public int getStandbyCount() {
+        synchronized (reconnectLock) {
+            int ready = 0;
+            for (Connection c : standbys) {
+                if (c.handshake != null) ready++;
+            }
+            return ready;
         }
+    }
 
-        try {
-            byte[] wavData = convertPcmToWav(pcmData);
-            String base64Data = Base64.encodeToString(wavData, Base64.NO_WRAP);
+    public String reconnectSummary() {
+        synchronized (reconnectLock) {
+            return "重连: " + reconnectLatency.getCount() + "次"
+                    + ", p50 " + reconnectLatency.percentile(50) / 1000 + "ms"
+                    + ", 最大 " + reconnectLatency.getMax() / 1000 + "ms"
+                    + ", 重放: " + journal.getReplayedBytes() + "字节"
+                    + ", 日志溢出丢弃: " + journal.getDroppedBytes() + "字节"
+                    + ", 空闲断开: " + idleDisconnects + "次";
+        }
+    }
 
-            JSONObject json = new JSONObject();
-            json.put("type", "input_audio_buffer.append");
-            json.put("event_id", "evt_" + System.currentTimeMillis());
-            json.put("audio", base64Data);
+    // 发送线程通过当前连接和上行协议发送.
+    private final class UplinkTransport implements SendScheduler.Transport {
+        @Override
+        public boolean isReady() {
+            return isConnected;
+        }
 
-            webSocket.send(json.toString());
-            Log.d(TAG, "已发送音频数据，长度: " + wavData.length + "字节");
-        } catch (JSONException e) {
-            Log.e(TAG, "构建JSON消息失败: " + e.getMessage());
+        @Override
+        public long queueSize() {
+            WebSocket ws = webSocket;
+            return ws != null ? ws.queueSize() : 0;
+        }
+
+        @Override
+        public boolean sendAudio(byte[] pcm, int offset, int length) {
+            try {
+                if (uplink.sendAppend(webSocket, pcm, offset, length)) {
+                    Log.d(TAG, "已发送音频数据，长度: " + length + "字节");
+                    // 在真正交给WebSocket时记录，排队等待的时间算在endpointing里.
+                    markLatency(TurnLatencyTrace.SEGMENT_SENT);
+                    return true;
+                }
+                Log.w(TAG, "发送音频数据失败，连接正在关闭");
+            } catch (JSONException e) {
+                Log.e(TAG, "构建JSON消息失败: " + e.getMessage());
+            }
+            return false;
+        }
+
+        @Override
+        public boolean sendCommit() {
+            try {
+                if (uplink.sendCommit(webSocket)) {
+                    Log.d(TAG, "已发送commit消息");
+                    // 这一轮的音频不再需要重放.
+                    journal.commitSent();
+                    markLatency(TurnLatencyTrace.COMMIT);
+                    return true;
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, "构建commit消息失败: " + e.getMessage());
+            }
+            return false;
+        }
+
+        @Override
+        public boolean sendText(String text) {
+            return webSocket.send(text);
+        }
+    }
+
+    public void sendAudioData(byte[] pcmData) {
+        sendAudioData(pcmData, 0, pcmData.length);
+    }
+
+    // 只发送pcmData中 [offset, offset + length) 的部分，调用方可以直接传入复用缓冲区.
+    // 数据拷贝进发送队列后立即返回，不等网络.
+    // 断线期间只写进日志，重连后重放.
+    public void sendAudioData(byte[] pcmData, int offset, int length) {
+        synchronized (uplinkLock) {
+            journal.append(pcmData, offset, length);
+            if (!isConnected) {
+                Log.w(TAG, "连接未就绪，音频暂存等待重连");
+                return;
+            }
+            sendScheduler.appendAudio(pcmData, offset, length);
         }
     }
 
     public void sendCommit() {
+        // 新的一轮已经提交，之后收到的音频属于新的回复.
+        responseCancelled = false;
+        awaitingReplyNanos = System.nanoTime();
+        synchronized (uplinkLock) {
+            journal.markCommit();
+            if (!isConnected) {
+                Log.w(TAG, "连接未就绪，commit在重连后补发");
+                return;
+            }
+            // 排在这一轮的音频后面发送.
+            sendScheduler.commit();
+        }
+    }
+
+    // 用户打断：立即清空本地播放队列和AudioTrack，并通知服务端取消正在生成的回复.
+    public void cancelResponse() {
+        responseCancelled = true;
+        awaitingReplyNanos = 0;
+        playbackEngine.flush();
+
         if (!isConnected) {
-            Log.w(TAG, "尝试发送commit但连接未就绪");
+            Log.w(TAG, "尝试取消回复但连接未就绪");
             return;
         }
         try {
+            // 控制消息在二进制上行模式下也使用JSON文本帧.
             JSONObject json = new JSONObject();
-            json.put("type", "input_audio_buffer.commit");
+            json.put("type", "response.cancel");
             json.put("event_id", "evt_" + System.currentTimeMillis());
 
-            webSocket.send(json.toString());
-            Log.d(TAG, "已发送commit消息");
+            // 插到发送队列最前面，不等积压的音频.
+            sendScheduler.sendControl(json.toString());
+            Log.d(TAG, "已发送response.cancel消息");
         } catch (JSONException e) {
-            Log.e(TAG, "构建commit消息失败: " + e.getMessage());
-        }
-    }
-
-    private void resetPlayback() {
-
-        synchronized (audioQueue) {
-            audioQueue.clear();
-            isPlaying = false;
-        }
-
-        if (audioTrack != null) {
-            try {
-                if (audioTrack.getPlayState() == AudioTrack.PLAYSTATE_PLAYING) {
-                    audioTrack.pause();
-                }
-                audioTrack.flush();
-                audioTrack.stop();
-            } catch (IllegalStateException ignored) {}
-            try { audioTrack.release(); } catch (Exception ignored) {}
-            audioTrack = null;
-            isAudioTrackInitialized = false;
+            Log.e(TAG, "构建cancel消息失败: " + e.getMessage());
         }
     }
 
+    // 关闭：停止重连、关掉备用连接后立即返回，不阻塞调用方（一般是UI线程）. 排空发送队列、
+    // 关闭主连接和停止播放线程在后台线程做，完成后whenClosed()完成. 重复调用只关闭一次.
     public void close() {
+        List<Connection> spare;
         synchronized (reconnectLock) {
+            if (closing) return;
+            closing = true;
             shouldReconnect = false; // 停止自动重连
+            firstConnect.completeExceptionally(new IllegalStateException("WebSocket已关闭"));
+            spare = new ArrayList<>(standbys);
+            standbys.clear();
         }
-        if (webSocket != null) {
-            webSocket.close(NORMAL_CLOSURE_STATUS, "用户主动关闭");
+        reconnectScheduler.shutdown();
+        for (Connection c : spare) {
+            if (c.socket != null) c.socket.close(NORMAL_CLOSURE_STATUS, "用户主动关闭");
+        }
+        new Thread(this::finishClose, "WebSocketClose").start();
+    }
+
+    private void finishClose() {
+        // 先把队列里剩下的音频和commit发完.
+        sendScheduler.close(UPLINK_CLOSE_DRAIN_MS);
+        Log.d(TAG, "上行统计 - " + sendScheduler.summary() + ", 协议: " + uplink.getMode()
+                + ", PCM " + uplink.getPcmBytes() + "字节 -> 线路 " + uplink.getWireBytes() + "字节");
+        Log.d(TAG, reconnectSummary());
+        // 主连接可能还在握手，握手完成后OkHttp再发出关闭帧.
+        Connection current = active;
+        if (current != null && current.socket != null) {
+            current.socket.close(NORMAL_CLOSURE_STATUS, "用户主动关闭");
         }
         if (client != null) {
             client.dispatcher().executorService().shutdown();
         }
-        // 释放audioTrack和audioQueue
-        resetPlayback();
+        // 停止播放线程，释放audioTrack和播放队列
+        playbackEngine.release();
 
-        isConnected = false;
+        synchronized (uplinkLock) {
+            isConnected = false;
+        }
+        closed.complete(null);
+    }
+
+    // close()之后排空发送队列、关闭连接、停止播放都完成时完成.
+    public CompletableFuture<Void> whenClosed() {
+        return closed;
     }
 
     // 将pcm转换成wav，加上正确的header. (AI)
     public byte[] convertPcmToWav(byte[] pcmData) {
-        // wav header参数
-        long totalDataLen = pcmData.length + 36; // 36 is the header size
-        // 字节率 = 采样率 × 声道数 × 每样本字节数
-        long byteRate = RECORD_RATE * RECORD_CHANNELS * (16 / 8); // 16位 = 2字节
-
-        byte[] header = new byte[44];
-
-        // RIFF header
-        header[0] = 'R'; header[1] = 'I'; header[2] = 'F'; header[3] = 'F';
-        header[4] = (byte)(totalDataLen & 0xff);
-        header[5] = (byte)((totalDataLen >> 8) & 0xff);
-        header[6] = (byte)((totalDataLen >> 16) & 0xff);
-        header[7] = (byte)((totalDataLen >> 24) & 0xff);
-
-        // WAVE格式
-        header[8] = 'W'; header[9] = 'A'; header[10] = 'V'; header[11] = 'E';
-        header[12] = 'f'; header[13] = 'm'; header[14] = 't'; header[15] = ' ';
-
-        // 16 for PCM
-        header[16] = 16; header[17] = 0; header[18] = 0; header[19] = 0;
-
-        // PCM = 1
-        header[20] = 1; header[21] = 0;
-
-        // Mono = 1
-        header[22] = 1; header[23] = 0;
-
-        // Sample rate
-        header[24] = (byte)(RECORD_RATE & 0xff);
-        header[25] = (byte)((RECORD_RATE >> 8) & 0xff);
-        header[26] = (byte)((RECORD_RATE >> 16) & 0xff);
-        header[27] = (byte)((RECORD_RATE >> 24) & 0xff);
-
-        // Byte rate
-        header[28] = (byte)(byteRate & 0xff);
-        header[29] = (byte)((byteRate >> 8) & 0xff);
-        header[30] = (byte)((byteRate >> 16) & 0xff);
-        header[31] = (byte)((byteRate >> 24) & 0xff);
-
-        // Block align
-        header[32] = 2; header[33] = 0;
-
-        // Bits per sample
-        header[34] = 16; header[35] = 0;
-
-        // Data header
-        header[36] = 'd'; header[37] = 'a'; header[38] = 't'; header[39] = 'a';
-        header[40] = (byte)(pcmData.length & 0xff);
-        header[41] = (byte)((pcmData.length >> 8) & 0xff);
-        header[42] = (byte)((pcmData.length >> 16) & 0xff);
-        header[43] = (byte)((pcmData.length >> 24) & 0xff);
-
-        // Combine header and PCM data
-        byte[] wavData = new byte[header.length + pcmData.length];
-        System.arraycopy(header, 0, wavData, 0, header.length);
-        System.arraycopy(pcmData, 0, wavData, header.length, pcmData.length);
-
-        return wavData;
-    }
-}
\ No newline at end of file
+        return convertPcmToWav(pcmData, 0, pcmData.length);
+    }
+
+    public byte[] convertPcmToWav(byte[] pcmData, int offset, int length) {
+        return WavFile.fromPcm(pcmData, offset, length, RECORD_RATE);
+    }
+}
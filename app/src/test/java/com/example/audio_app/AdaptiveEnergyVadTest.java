@@ -0,0 +1,110 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import static com.example.audio_app.Config.FRAMES_PER_BUFFER;
+import static org.junit.Assert.*;
+
+public class AdaptiveEnergyVadTest {
+    private static final float ON_MARGIN = 10f;
+    private static final float OFF_MARGIN = 6f;
+    private static final float MIN_RMS = 150f;
+    private static final double NOISE_DB = 50;
+
+    private static AdaptiveEnergyVad newVad(int windowFrames) {
+        return new AdaptiveEnergyVad(ON_MARGIN, OFF_MARGIN, MIN_RMS, windowFrames);
+    }
+
+    // 方波，RMS对应的电平（toDb）正好是db.
+    private static byte[] frame(double db) {
+        int amplitude = (int) Math.round(Math.pow(10, db / 20) - 1);
+        byte[] pcm = new byte[FRAMES_PER_BUFFER];
+        for (int i = 0; i < pcm.length / 2; i++) {
+            short s = (short) (i % 2 == 0 ? amplitude : -amplitude);
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        return pcm;
+    }
+
+    private static boolean feed(AdaptiveEnergyVad vad, double db, int frames) {
+        byte[] pcm = frame(db);
+        boolean speech = false;
+        for (int i = 0; i < frames; i++) {
+            speech = vad.isSpeech(pcm, pcm.length);
+        }
+        return speech;
+    }
+
+    @Test
+    public void onset_requiresOnMarginAboveNoiseFloor() {
+        AdaptiveEnergyVad vad = newVad(50);
+        assertFalse(feed(vad, NOISE_DB, 20));
+        assertEquals(NOISE_DB, vad.getNoiseFloorDb(), 0.2);
+
+        // 高出噪声底不到onMargin：不是语音.
+        assertFalse(feed(vad, NOISE_DB + ON_MARGIN - 1, 1));
+        assertFalse(feed(vad, NOISE_DB, 5));
+        // 超过onMargin：进入语音.
+        assertTrue(feed(vad, NOISE_DB + ON_MARGIN + 1, 1));
+    }
+
+    @Test
+    public void offset_usesLowerThresholdSoSpeechHangsOverThroughDips() {
+        AdaptiveEnergyVad vad = newVad(50);
+        feed(vad, NOISE_DB, 20);
+        assertTrue(feed(vad, NOISE_DB + 20, 3));
+
+        // 语音中电平回落到开/关阈值之间（字间的弱音）：保持语音.
+        assertTrue(feed(vad, NOISE_DB + OFF_MARGIN + 2, 5));
+        // 低于offMargin：结束.
+        assertFalse(feed(vad, NOISE_DB + OFF_MARGIN - 2, 1));
+        // 静默状态下同样的电平不会重新进入语音，需要超过onMargin.
+        assertFalse(feed(vad, NOISE_DB + OFF_MARGIN + 2, 5));
+        assertTrue(feed(vad, NOISE_DB + ON_MARGIN + 2, 1));
+    }
+
+    @Test
+    public void noiseFloor_followsRisingBackgroundAfterWindow() {
+        int window = 20;
+        AdaptiveEnergyVad vad = newVad(window);
+        feed(vad, NOISE_DB, 30);
+
+        // 环境噪声突然变大（开了风扇）：刚开始像语音，窗口滑过后噪声底抬高，不再判定为语音.
+        double louder = NOISE_DB + 15;
+        assertTrue(feed(vad, louder, 1));
+        assertFalse(feed(vad, louder, window + 2));
+        assertEquals(louder, vad.getNoiseFloorDb(), 1.0); // 窗口里最早的几帧还在平滑上升
+
+        // 噪声回落：最小值立刻跟随下降.
+        assertFalse(feed(vad, NOISE_DB, 3));
+        assertTrue(vad.getNoiseFloorDb() < louder - 5);
+    }
+
+    @Test
+    public void quietRoom_stillNeedsMinimumSpeechLevel() {
+        AdaptiveEnergyVad vad = newVad(50);
+        double quietDb = AdaptiveEnergyVad.toDb(10);
+        feed(vad, quietDb, 20);
+
+        // 比噪声底高很多，但低于最小语音电平（MIN_RMS）：不算语音.
+        double belowMin = AdaptiveEnergyVad.toDb(MIN_RMS) - 2;
+        assertTrue(belowMin > quietDb + ON_MARGIN);
+        assertFalse(feed(vad, belowMin, 1));
+        assertTrue(feed(vad, AdaptiveEnergyVad.toDb(MIN_RMS) + 2, 1));
+    }
+
+    @Test
+    public void reset_clearsSpeechButKeepsNoiseFloor() {
+        AdaptiveEnergyVad vad = newVad(50);
+        feed(vad, NOISE_DB, 20);
+        assertTrue(feed(vad, NOISE_DB + 20, 2));
+        float floor = vad.getNoiseFloorDb();
+
+        vad.reset();
+
+        assertEquals(floor, vad.getNoiseFloorDb(), 0.001);
+        // 重置后处于静默状态：开/关之间的电平不算语音.
+        assertFalse(feed(vad, NOISE_DB + OFF_MARGIN + 2, 1));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.audio_app;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AudioDeltaDecoderTest {
+
+    private static byte[] randomPcm(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static String deltaMessage(byte[] pcm) throws Exception {
+        JSONObject json = new JSONObject();
+        json.put("type", "response.audio.delta");
+        json.put("event_id", "evt_1");
+        json.put("response_id", "resp_1");
+        json.put("delta", Base64.getEncoder().encodeToString(pcm));
+        return json.toString();
+    }
+
+    @Test
+    public void decode_matchesJsonPath() throws Exception {
+        PcmBufferPool pool = new PcmBufferPool(4, 1024);
+        AudioDeltaDecoder decoder = new AudioDeltaDecoder(pool);
+        for (int length : new int[]{0, 1, 2, 3, 4, 4800, 9601}) {
+            byte[] pcm = randomPcm(length, length);
+            String message = deltaMessage(pcm);
+
+            assertTrue(AudioDeltaDecoder.isAudioDelta(message));
+            PcmBufferPool.Buffer buffer = decoder.decode(message);
+            assertNotNull(buffer);
+            assertEquals(length, buffer.length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(pcm[i], buffer.data[i]);
+            }
+            pool.release(buffer);
+        }
+    }
+
+    @Test
+    public void decode_handlesEscapedSlashesAndWhitespace() {
+        byte[] pcm = {(byte) 0xff, (byte) 0xfe, (byte) 0xfd, 0x10};
+        assertEquals("//79EA==", Base64.getEncoder().encodeToString(pcm));
+        // org.json会把 '/' 转义成 "\/"；值里的空白跳过.
+        String message = "{ \"type\" : \"response.audio.delta\", \"delta\" : \"\\/\\/79 EA==\" }";
+
+        PcmBufferPool.Buffer buffer = new AudioDeltaDecoder(new PcmBufferPool(1, 16)).decode(message);
+
+        assertNotNull(buffer);
+        assertEquals(4, buffer.length);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(pcm[i], buffer.data[i]);
+        }
+    }
+
+    @Test
+    public void decode_fallsBackOnOtherEscapes() {
+        AudioDeltaDecoder decoder = new AudioDeltaDecoder(new PcmBufferPool(1, 16));
+        // System.Text.Json默认把 '+' 写成 \u002B；\n 也不是Base64内容. 都交给org.json解析.
+        assertNull(decoder.decode("{\"type\":\"response.audio.delta\",\"delta\":\"ab\\u002Bc\"}"));
+        assertNull(decoder.decode("{\"type\":\"response.audio.delta\",\"delta\":\"//79\\nEA==\"}"));
+    }
+
+    @Test
+    public void isAudioDelta_rejectsOtherMessages() {
+        assertFalse(AudioDeltaDecoder.isAudioDelta("{\"type\":\"response.audio_transcript.delta\",\"delta\":\"hi\"}"));
+        assertFalse(AudioDeltaDecoder.isAudioDelta("{\"type\":\"response.audio.done\"}"));
+        assertFalse(AudioDeltaDecoder.isAudioDelta("{}"));
+        assertNull(new AudioDeltaDecoder(new PcmBufferPool(1, 16))
+                .decode("{\"type\":\"response.audio.delta\",\"delta\":\"a*b\"}"));
+    }
+}
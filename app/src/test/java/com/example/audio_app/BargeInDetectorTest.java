@@ -0,0 +1,69 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BargeInDetectorTest {
+    private static final int FRAME = 640;
+
+    // 振幅恒定的一帧，RMS就是amplitude.
+    private static byte[] frame(int amplitude) {
+        byte[] pcm = new byte[FRAME];
+        for (int i = 0; i < FRAME / 2; i++) {
+            short s = (short) (i % 2 == 0 ? amplitude : -amplitude);
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        return pcm;
+    }
+
+    @Test
+    public void triggersAfterConsecutiveLoudFramesOncePlaying() {
+        BargeInDetector detector = new BargeInDetector(1000, 3);
+        detector.arm();
+
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+        assertTrue(detector.process(frame(3000), 0, FRAME));
+        // 打断后回到未启用状态，等下一次回复开始播放.
+        assertFalse(detector.isArmed());
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+    }
+
+    @Test
+    public void quietFrameResetsTheCount() {
+        BargeInDetector detector = new BargeInDetector(1000, 3);
+        detector.arm();
+
+        detector.process(frame(3000), 0, FRAME);
+        detector.process(frame(3000), 0, FRAME);
+        assertFalse(detector.process(frame(100), 0, FRAME));
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+        assertTrue(detector.process(frame(3000), 0, FRAME));
+    }
+
+    @Test
+    public void doesNothingBeforeReplyStartsPlaying() {
+        BargeInDetector detector = new BargeInDetector(1000, 3);
+
+        // commit之后用户的话尾或噪声：回复还没开始播放，不打断.
+        for (int i = 0; i < 10; i++) {
+            assertFalse(detector.process(frame(3000), 0, FRAME));
+        }
+        // 开始播放后重新计数.
+        detector.arm();
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+        assertTrue(detector.process(frame(3000), 0, FRAME));
+
+        // 新一轮commit后reset：要等这一轮的回复开始播放.
+        detector.arm();
+        detector.process(frame(3000), 0, FRAME);
+        detector.reset();
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+        assertFalse(detector.process(frame(3000), 0, FRAME));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.audio_app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DebugRecorderTest {
+    private static final int BLOCK = 4096;
+
+    private File dir;
+    private final List<File> saved = new ArrayList<>();
+    private final List<Boolean> truncated = new ArrayList<>();
+
+    private final DebugRecorder.Listener listener = new DebugRecorder.Listener() {
+        @Override
+        public synchronized void onSaved(File file, long pcmBytes, Pcm16.Stats stats, boolean isTruncated) {
+            saved.add(file);
+            truncated.add(isTruncated);
+        }
+
+        @Override
+        public void onError(File file, IOException e) {
+            throw new AssertionError(e);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("debug_recorder").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    private static byte[] ramp(int bytes, int seed) {
+        byte[] pcm = new byte[bytes];
+        for (int i = 0; i < bytes; i++) pcm[i] = (byte) (i * 7 + seed);
+        return pcm;
+    }
+
+    @Test
+    public void record_writesWavWithPatchedHeader() throws IOException {
+        DebugRecorder recorder = new DebugRecorder(dir, "rec_", 16000, BLOCK, 16, false, listener);
+        recorder.start();
+        byte[] first = ramp(3 * BLOCK + 100, 1);
+        byte[] second = ramp(BLOCK / 2, 5);
+
+        assertTrue(recorder.record(first, 0, first.length));
+        assertTrue(recorder.begin());
+        recorder.write(second, 0, 10);
+        recorder.write(second, 10, second.length - 10);
+        recorder.close();
+
+        assertEquals(2, saved.size());
+        assertEquals(2, recorder.getSavedFiles());
+        assertFalse(saved.get(0).equals(saved.get(1)));
+        WavFile.Data wav = WavFile.read(saved.get(0));
+        assertEquals(16000, wav.sampleRate);
+        assertArrayEquals(first, wav.pcm);
+        assertArrayEquals(second, WavFile.read(saved.get(1)).pcm);
+        // 文件头里的长度已回填.
+        byte[] header = Arrays.copyOf(Files.readAllBytes(saved.get(0).toPath()), WavFile.HEADER_SIZE);
+        assertEquals(first.length + 36, WavFile.readIntLE(header, 4));
+        assertEquals(first.length, WavFile.readIntLE(header, 40));
+        assertEquals(first.length + second.length, recorder.getWrittenBytes());
+    }
+
+    @Test
+    public void queueFull_dropsInsteadOfBlocking() throws IOException {
+        // 后台线程还没启动，队列只进不出.
+        DebugRecorder recorder = new DebugRecorder(dir, "rec_", 16000, BLOCK, 6, false, listener);
+        byte[] pcm = ramp(2 * BLOCK, 3);
+
+        assertTrue(recorder.begin());           // 占用2块（开始 + 预留的结束）
+        recorder.write(pcm, 0, pcm.length);     // 2块
+        recorder.write(pcm, 0, pcm.length);     // 2块，队列满
+        recorder.write(pcm, 0, BLOCK);          // 丢弃
+        recorder.end();
+        assertFalse(recorder.record(pcm, 0, pcm.length)); // 整个文件丢弃
+
+        assertEquals(BLOCK + pcm.length, recorder.getDroppedBytes());
+        assertEquals(2, recorder.getDroppedWrites());
+        assertEquals(1, recorder.getDroppedFiles());
+        assertEquals(6, recorder.getMaxQueuedBlocks());
+
+        recorder.start();
+        recorder.close();
+        assertEquals(1, saved.size());
+        assertTrue(truncated.get(0));
+        assertEquals(2 * pcm.length, WavFile.read(saved.get(0)).pcm.length);
+    }
+
+    @Test
+    public void lossless_writesLacThatDecodesBitExact() throws IOException {
+        DebugRecorder recorder = new DebugRecorder(dir, "rec_", 16000, BLOCK, 16, true, listener);
+        recorder.start();
+        byte[] pcm = ramp(5 * BLOCK + 3 * 2, 4);
+
+        recorder.begin();
+        recorder.write(pcm, 0, 1001);
+        recorder.write(pcm, 1001, pcm.length - 1001);
+        recorder.close();
+
+        assertEquals(1, saved.size());
+        assertTrue(saved.get(0).getName().endsWith(LacFile.EXTENSION));
+        WavFile.Data decoded = LacFile.read(saved.get(0));
+        assertEquals(16000, decoded.sampleRate);
+        assertArrayEquals(pcm, decoded.pcm);
+    }
+
+    @Test
+    public void interruptedFile_isStillReadable() throws IOException {
+        // 模拟崩溃：只写了占位头和数据，没有回填长度.
+        File file = new File(dir, "crash.wav");
+        byte[] pcm = ramp(1000, 9);
+        byte[] header = new byte[WavFile.HEADER_SIZE];
+        WavFile.writeHeader(header, 0, 0, 16000);
+        byte[] content = Arrays.copyOf(header, header.length + pcm.length);
+        System.arraycopy(pcm, 0, content, header.length, pcm.length);
+        Files.write(file.toPath(), content);
+
+        assertArrayEquals(pcm, WavFile.read(file).pcm);
+    }
+}
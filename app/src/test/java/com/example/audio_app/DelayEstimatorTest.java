@@ -0,0 +1,80 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static com.example.audio_app.Config.*;
+import static org.junit.Assert.*;
+
+public class DelayEstimatorTest {
+    private static final int BLOCK = SOFTWARE_AEC_BLOCK_SAMPLES;
+
+    private static float[] farEnd16k() throws Exception {
+        WavFile.Data wav = WavFile.read(new File("src/main/res/raw/aec_testing.wav"));
+        EchoReference reference = new EchoReference(wav.sampleRate, RECORD_RATE, wav.pcm.length);
+        reference.write(wav.pcm, 0, wav.pcm.length);
+        float[] far = new float[reference.size()];
+        reference.read(far, far.length);
+        return far;
+    }
+
+    // 麦克风 = 延迟后衰减的远端 + 一点混响和底噪；changeAt之后换成另一个延迟.
+    private static byte[] mic(float[] far, int delay, int changeAt, int newDelay) {
+        Random noise = new Random(1);
+        byte[] pcm = new byte[far.length * 2];
+        for (int n = 0; n < far.length; n++) {
+            int d = n < changeAt ? delay : newDelay;
+            double v = 0;
+            if (n - d >= 0) v += 0.3 * far[n - d];
+            if (n - d - 80 >= 0) v += 0.1 * far[n - d - 80];
+            v += noise.nextGaussian() * 30;
+            int value = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(v)));
+            pcm[2 * n] = (byte) value;
+            pcm[2 * n + 1] = (byte) (value >> 8);
+        }
+        return pcm;
+    }
+
+    private static DelayEstimator newEstimator() {
+        return new DelayEstimator(RECORD_RATE, AEC_DELAY_DECIMATION, AEC_DELAY_WINDOW_MS,
+                AEC_DELAY_MAX_MS, AEC_DELAY_UPDATE_MS);
+    }
+
+    private static void feed(DelayEstimator estimator, float[] far, byte[] mic, int from, int to) {
+        float[] block = new float[BLOCK];
+        for (int n = from; n + BLOCK <= to; n += BLOCK) {
+            System.arraycopy(far, n, block, 0, BLOCK);
+            estimator.process(block, mic, n * 2, BLOCK);
+        }
+    }
+
+    @Test
+    public void process_findsAndTracksEchoDelay() throws Exception {
+        float[] far = farEnd16k();
+        int half = far.length / 2;
+        int delay = 150 * RECORD_RATE / 1000;
+        int newDelay = 90 * RECORD_RATE / 1000;
+        byte[] mic = mic(far, delay, half, newDelay);
+        DelayEstimator estimator = newEstimator();
+
+        feed(estimator, far, mic, 0, half);
+        assertEquals(delay, estimator.getDelaySamples(), AEC_DELAY_DECIMATION);
+
+        feed(estimator, far, mic, half, far.length);
+        assertEquals(newDelay, estimator.getDelaySamples(), AEC_DELAY_DECIMATION);
+    }
+
+    @Test
+    public void process_reportsUnknownWhenFarEndIsSilent() {
+        DelayEstimator estimator = newEstimator();
+        float[] far = new float[RECORD_RATE * 3];
+        byte[] mic = new byte[far.length * 2];
+        new Random(2).nextBytes(mic);
+
+        feed(estimator, far, mic, 0, far.length);
+
+        assertEquals(-1, estimator.getDelaySamples());
+    }
+}
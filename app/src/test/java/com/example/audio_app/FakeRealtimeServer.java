@@ -0,0 +1,527 @@
+package com.example.audio_app;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ServerSocketFactory;
+
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.ByteString;
+
+// 进程内的假realtime服务端（基于MockWebServer），用于在普通Linux机器上做可复现的负载和延迟测试.
+// 实现 POST /v1/realtime/sessions 和 /v1/realtime/sessions/{id} 的WebSocket：
+// 接收 input_audio_buffer.append/commit（JSON、二进制PCM或ADPCM上行），每次commit按Script回复一串
+// response.audio.delta 和 response.audio.done，可以注入首包延迟、抖动、突发和断线.
+public class FakeRealtimeServer implements Closeable {
+    public static final int OUTPUT_RATE = Config.PLAYBACK_RATE;
+
+    // 一次回复的脚本. 时间都是毫秒，随机抖动用固定种子.
+    public static final class Script {
+        int deltaCount = 10;
+        int deltaBytes = OUTPUT_RATE * 2 / 10; // 100ms
+        long firstDelayMs = 200;
+        long intervalMs = 50;
+        long jitterMs = 0;
+        int burstSize = 1;
+        int disconnectAfterDeltas = -1;
+        boolean abruptDisconnect = true;
+        long seed = 1;
+
+        public Script deltas(int count, int bytes) {
+            this.deltaCount = count;
+            this.deltaBytes = bytes;
+            return this;
+        }
+
+        // commit到第一个delta的延迟.
+        public Script firstDelay(long ms) {
+            this.firstDelayMs = ms;
+            return this;
+        }
+
+        // 相邻两批delta的间隔.
+        public Script interval(long ms) {
+            this.intervalMs = ms;
+            return this;
+        }
+
+        // 每批在计划时间上再随机推迟 [0, ms].
+        public Script jitter(long ms) {
+            this.jitterMs = ms;
+            return this;
+        }
+
+        // 每批连续发送的delta数.
+        public Script burst(int size) {
+            this.burstSize = Math.max(1, size);
+            return this;
+        }
+
+        // 发完count个delta后断开：abrupt为true时直接关闭TCP连接（不发关闭帧），否则发送1011关闭帧.
+        public Script disconnectAfter(int count, boolean abrupt) {
+            this.disconnectAfterDeltas = count;
+            this.abruptDisconnect = abrupt;
+            return this;
+        }
+
+        public Script seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        // 每个delta相对commit的发送时间（毫秒），最后一个元素是audio.done的时间.
+        long[] schedule() {
+            Random random = new Random(seed);
+            long[] times = new long[deltaCount + 1];
+            long batchTime = firstDelayMs;
+            for (int i = 0; i < deltaCount; i++) {
+                if (i % burstSize == 0) {
+                    if (i > 0) batchTime = firstDelayMs + (long) (i / burstSize) * intervalMs;
+                    if (jitterMs > 0) batchTime += (long) (random.nextDouble() * (jitterMs + 1));
+                    // 同一个连接上的消息按顺序到达，抖动不会让后面的批次先发.
+                    if (i > 0) batchTime = Math.max(batchTime, times[i - 1]);
+                }
+                times[i] = batchTime;
+            }
+            times[deltaCount] = deltaCount == 0 ? firstDelayMs : times[deltaCount - 1];
+            return times;
+        }
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "FakeRealtimeServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Script script = new Script();
+    private volatile boolean binarySupported = true;
+    private volatile boolean adpcmSupported = true;
+    private final AtomicInteger rejectConnections = new AtomicInteger(0);
+    // 创建会话的响应延迟，模拟慢的HTTP请求.
+    private volatile long sessionDelayMs = 0;
+    // 当前打开的连接，按建立顺序.
+    private final List<Connection> live = new CopyOnWriteArrayList<>();
+
+    // 统计.
+    private final AtomicInteger sessionsCreated = new AtomicInteger(0);
+    private final AtomicInteger connections = new AtomicInteger(0);
+    private final AtomicInteger appendCount = new AtomicInteger(0);
+    private final AtomicLong audioBytes = new AtomicLong(0);
+    // 上行音频消息在线路上的字节数（二进制帧整帧，JSON为文本长度）.
+    private final AtomicLong uplinkBytes = new AtomicLong(0);
+    // 解码后收到的全部上行PCM，用来检查压缩后的音质.
+    private final java.io.ByteArrayOutputStream receivedPcm = new java.io.ByteArrayOutputStream();
+    private final AtomicInteger commitCount = new AtomicInteger(0);
+    private final AtomicInteger cancelCount = new AtomicInteger(0);
+    // 定时任务里第一次抛出的异常，close时报告，不会被ScheduledFuture吞掉.
+    private final AtomicReference<Throwable> taskFailure = new AtomicReference<>();
+    // 当前服务线程接受的连接. MockWebServer在同一个线程里读请求、dispatch和回调onOpen.
+    private final ThreadLocal<Socket> connectionSocket = new ThreadLocal<>();
+    // 事件（"open"、"append"、"commit"、"cancel"、"closed"），测试里用来等待.
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    // 每次commit到达的时间（System.nanoTime）.
+    private final BlockingQueue<Long> commitNanos = new LinkedBlockingQueue<>();
+
+    public FakeRealtimeServer() {
+        server.setServerSocketFactory(new TrackingServerSocketFactory());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return FakeRealtimeServer.this.dispatch(request);
+            }
+        });
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public String apiBaseUrl() {
+        return "http://" + server.getHostName() + ":" + server.getPort();
+    }
+
+    public String wsBaseUrl() {
+        return "ws://" + server.getHostName() + ":" + server.getPort();
+    }
+
+    public void setScript(Script script) {
+        this.script = script;
+    }
+
+    // 不支持二进制上行时，客户端应该退回JSON.
+    public void setBinarySupported(boolean supported) {
+        this.binarySupported = supported;
+    }
+
+    // 不支持ADPCM时，客户端应该使用原始PCM的二进制上行.
+    public void setAdpcmSupported(boolean supported) {
+        this.adpcmSupported = supported;
+    }
+
+    // 断开最早建立的一个连接：abrupt为true时直接关闭TCP连接（不发关闭帧），否则发送1011关闭帧.
+    // 没有连接时返回false.
+    public boolean dropConnection(boolean abrupt) {
+        if (live.isEmpty()) return false;
+        Connection connection = live.remove(0);
+        if (abrupt) {
+            connection.abort();
+        } else {
+            connection.webSocket.close(1011, "injected disconnect");
+        }
+        return true;
+    }
+
+    public int getLiveConnections() {
+        return live.size();
+    }
+
+    public void setSessionDelayMs(long delayMs) {
+        this.sessionDelayMs = delayMs;
+    }
+
+    // 接下来的count次WebSocket握手返回503.
+    public void rejectConnections(int count) {
+        rejectConnections.set(count);
+    }
+
+    private MockResponse dispatch(RecordedRequest request) {
+        String path = request.getPath() == null ? "" : request.getPath();
+        if ("POST".equals(request.getMethod()) && path.equals("/v1/realtime/sessions")) {
+            if (sessionDelayMs > 0) {
+                try {
+                    Thread.sleep(sessionDelayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int id = sessionsCreated.incrementAndGet();
+            return new MockResponse()
+                    .setHeader("Content-Type", "application/json")
+                    .setBody("{\"id\":\"sess_" + id + "\",\"object\":\"realtime.session\"}");
+        }
+        if (path.startsWith("/v1/realtime/sessions/")) {
+            if (rejectConnections.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                return new MockResponse().setResponseCode(503);
+            }
+            MockResponse response = new MockResponse().withWebSocketUpgrade(new Connection());
+            String accepted = selectSubprotocol(request.getHeader(UplinkProtocol.SUBPROTOCOL_HEADER));
+            if (accepted != null) {
+                response.setHeader(UplinkProtocol.SUBPROTOCOL_HEADER, accepted);
+            }
+            return response;
+        }
+        return new MockResponse().setResponseCode(404);
+    }
+
+    // 从客户端按优先级列出的子协议里选第一个支持的.
+    private String selectSubprotocol(String requested) {
+        if (requested == null || !binarySupported) return null;
+        for (String offered : requested.split(",")) {
+            String name = offered.trim();
+            if (name.equals(UplinkProtocol.SUBPROTOCOL_ADPCM) && adpcmSupported) return name;
+            if (name.equals(UplinkProtocol.SUBPROTOCOL_BINARY)) return name;
+        }
+        return null;
+    }
+
+    // 一个WebSocket连接：处理上行消息，commit时按脚本回复.
+    private final class Connection extends WebSocketListener {
+        // 在服务线程的dispatch里创建，拿到的是这个连接的socket.
+        private final Socket socket = connectionSocket.get();
+        private final List<ScheduledFuture<?>> pending = new ArrayList<>();
+        private volatile WebSocket webSocket;
+        private int responseId = 0;
+
+        @Override
+        public void onOpen(WebSocket webSocket, okhttp3.Response response) {
+            this.webSocket = webSocket;
+            connections.incrementAndGet();
+            live.add(this);
+            events.add("open");
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            try {
+                JSONObject json = new JSONObject(text);
+                switch (json.optString("type")) {
+                    case "input_audio_buffer.append":
+                        byte[] wav = Base64.getDecoder().decode(json.getString("audio"));
+                        int pcmLength = Math.max(0, wav.length - WavFile.HEADER_SIZE);
+                        onAppend(wav, WavFile.HEADER_SIZE, pcmLength, text.length());
+                        break;
+                    case "input_audio_buffer.commit":
+                        onCommit(webSocket);
+                        break;
+                    case "response.cancel":
+                        onCancel();
+                        break;
+                    default:
+                        break;
+                }
+            } catch (JSONException e) {
+                webSocket.send("{\"type\":\"error\",\"error\":\"invalid json\"}");
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, ByteString bytes) {
+            if (bytes.size() < UplinkProtocol.HEADER_SIZE
+                    || bytes.getByte(0) != UplinkProtocol.MAGIC_0 || bytes.getByte(1) != UplinkProtocol.MAGIC_1) {
+                webSocket.send("{\"type\":\"error\",\"error\":\"invalid frame\"}");
+                return;
+            }
+            byte type = bytes.getByte(3);
+            int payloadLength = bytes.size() - UplinkProtocol.HEADER_SIZE;
+            if (type == UplinkProtocol.TYPE_APPEND) {
+                onAppend(bytes.toByteArray(), UplinkProtocol.HEADER_SIZE, payloadLength, bytes.size());
+            } else if (type == UplinkProtocol.TYPE_APPEND_ADPCM) {
+                byte[] frame = bytes.toByteArray();
+                byte[] pcm = new byte[ImaAdpcm.decodedSize(frame, UplinkProtocol.HEADER_SIZE, payloadLength)];
+                if (ImaAdpcm.decode(frame, UplinkProtocol.HEADER_SIZE, payloadLength, pcm, 0) < 0) {
+                    webSocket.send("{\"type\":\"error\",\"error\":\"invalid adpcm block\"}");
+                    return;
+                }
+                onAppend(pcm, 0, pcm.length, bytes.size());
+            } else if (type == UplinkProtocol.TYPE_COMMIT) {
+                onCommit(webSocket);
+            }
+        }
+
+        private void onAppend(byte[] pcm, int offset, int length, int wireBytes) {
+            appendCount.incrementAndGet();
+            audioBytes.addAndGet(length);
+            uplinkBytes.addAndGet(wireBytes);
+            synchronized (receivedPcm) {
+                receivedPcm.write(pcm, offset, length);
+            }
+            events.add("append");
+        }
+
+        private synchronized void onCommit(WebSocket webSocket) {
+            commitNanos.add(System.nanoTime());
+            commitCount.incrementAndGet();
+            Script current = script;
+            String id = "resp_" + (++responseId);
+            long[] times = current.schedule();
+            // 已经发完的回复不再保留.
+            pending.removeIf(java.util.concurrent.Future::isDone);
+            for (int i = 0; i < current.deltaCount; i++) {
+                int index = i;
+                pending.add(schedule(() -> sendDelta(webSocket, current, id, index), times[i]));
+            }
+            pending.add(schedule(() -> {
+                webSocket.send("{\"type\":\"response.audio.done\",\"response_id\":\"" + id + "\"}");
+            }, times[current.deltaCount]));
+            // 回复安排好之后再通知，测试等到commit后关闭服务端不会和这里竞争.
+            events.add("commit");
+        }
+
+        private void sendDelta(WebSocket webSocket, Script current, String id, int index) {
+            if (index == current.disconnectAfterDeltas) {
+                cancelPending();
+                if (current.abruptDisconnect) {
+                    abort();
+                } else {
+                    webSocket.close(1011, "injected disconnect");
+                }
+                return;
+            }
+            webSocket.send(audioDelta(id, index, current.deltaBytes));
+        }
+
+        // 直接关闭TCP连接，不发关闭帧. 服务端的RealWebSocket没有Call，不能用cancel().
+        void abort() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private synchronized void onCancel() {
+            cancelCount.incrementAndGet();
+            events.add("cancel");
+            cancelPending();
+        }
+
+        private synchronized void cancelPending() {
+            for (ScheduledFuture<?> future : pending) future.cancel(false);
+            pending.clear();
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            live.remove(this);
+            cancelPending();
+            events.add("closed");
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, okhttp3.Response response) {
+            live.remove(this);
+            cancelPending();
+            events.add("closed");
+        }
+    }
+
+    // 在调度线程执行task. 异常记下来，close时抛出，同时发出"error"事件.
+    private ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return scheduler.schedule(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                taskFailure.compareAndSet(null, e);
+                events.add("error");
+                throw e;
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // 记录每个连接的socket：MockWebServer在服务线程里调用getInputStream.
+    private final class TrackingServerSocketFactory extends ServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = new Socket() {
+                        @Override
+                        public InputStream getInputStream() throws IOException {
+                            connectionSocket.set(this);
+                            return super.getInputStream();
+                        }
+                    };
+                    implAccept(socket);
+                    return socket;
+                }
+            };
+        }
+
+        // 和ServerSocket的构造函数一致：backlog小于1时用默认值，address为null时监听所有地址.
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            return createServerSocket(port, 0, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            return createServerSocket(port, backlog, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            ServerSocket serverSocket = createServerSocket();
+            try {
+                serverSocket.bind(new InetSocketAddress(address, port), backlog);
+            } catch (IOException e) {
+                serverSocket.close();
+                throw e;
+            }
+            return serverSocket;
+        }
+    }
+
+    // delta的PCM每个字节都是 (index + 1)，客户端可以据此检查顺序和完整性.
+    static String audioDelta(String responseId, int index, int bytes) {
+        byte[] pcm = new byte[bytes];
+        java.util.Arrays.fill(pcm, (byte) (index + 1));
+        return "{\"type\":\"response.audio.delta\",\"response_id\":\"" + responseId + "\","
+                + "\"item_id\":\"item_" + responseId + "\",\"output_index\":0,\"content_index\":0,"
+                + "\"delta\":\"" + Base64.getEncoder().encodeToString(pcm) + "\"}";
+    }
+
+    // 等待下一个指定事件，超时返回false.
+    public boolean awaitEvent(String event, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            String next = events.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return false;
+            if (next.equals(event)) return true;
+        }
+    }
+
+    // 下一次commit到达的时间（System.nanoTime），超时返回-1.
+    public long takeCommitNanos(long timeoutMs) throws InterruptedException {
+        Long nanos = commitNanos.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        return nanos == null ? -1 : nanos;
+    }
+
+    public int getSessionsCreated() {
+        return sessionsCreated.get();
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public int getAppendCount() {
+        return appendCount.get();
+    }
+
+    public long getAudioBytes() {
+        return audioBytes.get();
+    }
+
+    public long getUplinkBytes() {
+        return uplinkBytes.get();
+    }
+
+    public byte[] getReceivedPcm() {
+        synchronized (receivedPcm) {
+            return receivedPcm.toByteArray();
+        }
+    }
+
+    public int getCommitCount() {
+        return commitCount.get();
+    }
+
+    public int getCancelCount() {
+        return cancelCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        server.shutdown();
+        Throwable failure = taskFailure.get();
+        if (failure != null) {
+            throw new IOException("假服务端的定时任务失败", failure);
+        }
+    }
+}
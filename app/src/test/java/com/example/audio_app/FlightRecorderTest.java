@@ -0,0 +1,98 @@
+package com.example.audio_app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FlightRecorderTest {
+    private static final int SLOT = 256;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("flight_recorder").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+
+    // 第i帧的每个字节都是i.
+    private static byte[] frame(int index, int bytes) {
+        byte[] pcm = new byte[bytes];
+        java.util.Arrays.fill(pcm, (byte) index);
+        return pcm;
+    }
+
+    @Test
+    public void dump_keepsLatestFramesInOrderPerStream() throws IOException {
+        // 1秒 × 1000Hz × 2字节 / 256 = 7个槽.
+        FlightRecorder recorder = new FlightRecorder(new File(dir, "ring"), 1, 1000, 2000, SLOT);
+        for (int i = 1; i <= 20; i++) {
+            recorder.write(FlightRecorder.STREAM_RAW, frame(i, SLOT), 0, SLOT);
+        }
+        recorder.write(FlightRecorder.STREAM_PROCESSED, frame(1, 100), 0, 100);
+        // 超过槽大小的写入拆成多个槽.
+        recorder.write(FlightRecorder.STREAM_PLAYBACK, frame(9, 3 * SLOT + 10), 0, 3 * SLOT + 10);
+
+        File out = recorder.dump(dir, "test");
+
+        assertTrue(out.getName().startsWith("flight_") && out.getName().endsWith("_test"));
+        WavFile.Data raw = WavFile.read(new File(out, "raw.wav"));
+        assertEquals(1000, raw.sampleRate);
+        assertEquals(7 * SLOT, raw.pcm.length);
+        for (int i = 0; i < raw.pcm.length; i++) {
+            assertEquals((byte) (14 + i / SLOT), raw.pcm[i]);
+        }
+        assertArrayEquals(frame(1, 100), WavFile.read(new File(out, "processed.wav")).pcm);
+        WavFile.Data playback = WavFile.read(new File(out, "playback.wav"));
+        assertEquals(2000, playback.sampleRate);
+        assertArrayEquals(frame(9, 3 * SLOT + 10), playback.pcm);
+        assertEquals(4, recorder.getWrittenFrames(FlightRecorder.STREAM_PLAYBACK));
+
+        List<String> lines = Files.readAllLines(new File(out, "frames.csv").toPath());
+        assertEquals(1 + 7 + 1 + 4, lines.size());
+        assertTrue(lines.get(1).startsWith("raw,14,"));
+        assertTrue(lines.get(7).startsWith("raw,20,"));
+        assertTrue(lines.get(7).endsWith("," + 6 * SLOT + "," + SLOT));
+    }
+
+    @Test
+    public void reopen_keepsPreviousRingForPostMortem() throws IOException {
+        File ring = new File(dir, "ring");
+        FlightRecorder first = new FlightRecorder(ring, 1, 1000, 1000, SLOT);
+        first.write(FlightRecorder.STREAM_RAW, frame(5, SLOT), 0, SLOT);
+        first.flush();
+
+        FlightRecorder second = new FlightRecorder(ring, 1, 1000, 1000, SLOT);
+        File previous = FlightRecorder.previousFile(ring);
+        assertTrue(previous.exists());
+
+        File out = FlightRecorder.dump(previous, dir, "crash");
+        assertArrayEquals(frame(5, SLOT), WavFile.read(new File(out, "raw.wav")).pcm);
+        File current = second.dump(dir, null);
+        assertEquals(0, WavFile.read(new File(current, "raw.wav")).pcm.length);
+    }
+
+    @Test(expected = IOException.class)
+    public void dump_rejectsOtherFiles() throws IOException {
+        File other = new File(dir, "other");
+        Files.write(other.toPath(), new byte[128]);
+        FlightRecorder.dump(other, dir, null);
+    }
+}
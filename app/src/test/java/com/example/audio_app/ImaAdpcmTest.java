@@ -0,0 +1,91 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ImaAdpcmTest {
+    private static final int FRAME_BYTES = 640; // 20ms @ 16kHz
+
+    // 两个正弦叠加少量噪声，近似语音的频谱.
+    private static byte[] speechLike(int samples) {
+        Random random = new Random(4);
+        byte[] pcm = new byte[samples * 2];
+        for (int i = 0; i < samples; i++) {
+            int s = (int) (6000 * Math.sin(i * 0.06) + 3000 * Math.sin(i * 0.37)) + random.nextInt(200) - 100;
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        return pcm;
+    }
+
+    private static double snrDb(byte[] reference, byte[] decoded, int length) {
+        double signal = 0;
+        double noise = 0;
+        for (int i = 0; i + 1 < length; i += 2) {
+            int a = (short) ((reference[i] & 0xff) | (reference[i + 1] << 8));
+            int b = (short) ((decoded[i] & 0xff) | (decoded[i + 1] << 8));
+            signal += (double) a * a;
+            noise += (double) (a - b) * (a - b);
+        }
+        return 10 * Math.log10(signal / Math.max(noise, 1));
+    }
+
+    @Test
+    public void framesDecodeIndependently_withQuarterSize() {
+        byte[] pcm = speechLike(16000);
+        ImaAdpcm encoder = new ImaAdpcm();
+        byte[] block = new byte[ImaAdpcm.encodedSize(FRAME_BYTES)];
+        byte[] decoded = new byte[pcm.length];
+        long encodedBytes = 0;
+        for (int offset = 0; offset < pcm.length; offset += FRAME_BYTES) {
+            int n = encoder.encode(pcm, offset, FRAME_BYTES, block, 0);
+            assertEquals(ImaAdpcm.encodedSize(FRAME_BYTES), n);
+            // 每帧用新的缓冲单独解码，状态只来自块头.
+            assertEquals(FRAME_BYTES, ImaAdpcm.decode(block, 0, n, decoded, offset));
+            encodedBytes += n;
+        }
+
+        assertTrue("bytes " + encodedBytes, encodedBytes * 3.5 < pcm.length);
+        double snr = snrDb(pcm, decoded, pcm.length);
+        assertTrue("snr " + snr, snr > 25);
+    }
+
+    @Test
+    public void oddSampleCountsAndEmptyFrames() {
+        byte[] pcm = speechLike(1001);
+        ImaAdpcm encoder = new ImaAdpcm();
+        byte[] decoded = new byte[pcm.length];
+        int[] frames = {0, 2, 6, 998, 996};
+        int offset = 0;
+        for (int length : frames) {
+            byte[] block = new byte[ImaAdpcm.encodedSize(length)];
+            int n = encoder.encode(pcm, offset, length, block, 0);
+            assertEquals(block.length, n);
+            assertEquals(length, ImaAdpcm.decodedSize(block, 0, n));
+            assertEquals(length, ImaAdpcm.decode(block, 0, n, decoded, offset));
+            offset += length;
+        }
+        assertEquals(pcm.length, offset);
+        assertTrue(snrDb(pcm, decoded, pcm.length) > 20);
+    }
+
+    @Test
+    public void extremes_clampWithoutOverflow() {
+        byte[] pcm = new byte[4000];
+        for (int i = 0; i < pcm.length / 2; i++) {
+            int s = (i / 10) % 2 == 0 ? 32767 : -32768;
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        byte[] block = new byte[ImaAdpcm.encodedSize(pcm.length)];
+        byte[] decoded = new byte[pcm.length];
+        int n = new ImaAdpcm().encode(pcm, 0, pcm.length, block, 0);
+
+        assertEquals(pcm.length, ImaAdpcm.decode(block, 0, n, decoded, 0));
+        assertEquals(-1, ImaAdpcm.decode(new byte[] {0, 0, (byte) 89, 0}, 0, 4, decoded, 0));
+        assertEquals(-1, ImaAdpcm.decode(block, 0, 3, decoded, 0));
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.audio_app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LosslessCodecTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("lossless").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    private static byte[] toPcm(int[] samples) {
+        byte[] pcm = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            pcm[2 * i] = (byte) samples[i];
+            pcm[2 * i + 1] = (byte) (samples[i] >> 8);
+        }
+        return pcm;
+    }
+
+    private byte[] roundTrip(byte[] pcm, int channels) throws IOException {
+        File file = new File(dir, "t" + LacFile.EXTENSION);
+        LacFile.write(file, pcm, 0, pcm.length, 16000, channels);
+        WavFile.Data decoded = LacFile.read(file);
+        assertEquals(16000, decoded.sampleRate);
+        assertEquals(channels, decoded.channels);
+        return decoded.pcm;
+    }
+
+    @Test
+    public void roundTrip_edgeCaseSignals() throws IOException {
+        Random random = new Random(1);
+        int[][] signals = new int[6][];
+        signals[0] = new int[10000];                          // 静音
+        signals[1] = new int[9001];                           // 满幅方波（削波）
+        for (int i = 0; i < signals[1].length; i++) signals[1][i] = (i / 7) % 2 == 0 ? 32767 : -32768;
+        signals[2] = new int[8192];                           // 白噪声，只能原样保存
+        for (int i = 0; i < signals[2].length; i++) signals[2][i] = random.nextInt(65536) - 32768;
+        signals[3] = new int[12345];                          // 正弦 + 少量噪声
+        for (int i = 0; i < signals[3].length; i++) {
+            signals[3][i] = (int) (20000 * Math.sin(i * 0.05)) + random.nextInt(64) - 32;
+        }
+        signals[4] = new int[3];                              // 比预测阶数还短
+        signals[4][0] = -32768;
+        signals[4][2] = 32767;
+        signals[5] = new int[0];
+
+        for (int[] signal : signals) {
+            byte[] pcm = toPcm(signal);
+            assertArrayEquals(pcm, roundTrip(pcm, 1));
+        }
+    }
+
+    @Test
+    public void roundTrip_stereoInterleaved() throws IOException {
+        int[] samples = new int[2 * 5000];
+        for (int i = 0; i < 5000; i++) {
+            samples[2 * i] = (int) (10000 * Math.sin(i * 0.03));
+            samples[2 * i + 1] = (int) (-8000 * Math.cos(i * 0.11));
+        }
+        byte[] pcm = toPcm(samples);
+        assertArrayEquals(pcm, roundTrip(pcm, 2));
+    }
+
+    @Test
+    public void streamingWriter_matchesOneShotForAnyChunking() throws IOException {
+        int[] samples = new int[20000];
+        for (int i = 0; i < samples.length; i++) samples[i] = (int) (15000 * Math.sin(i * 0.02 + i * i * 1e-6));
+        byte[] pcm = toPcm(samples);
+        File oneShot = new File(dir, "a" + LacFile.EXTENSION);
+        LacFile.write(oneShot, pcm, 0, pcm.length, 16000, 1);
+
+        File streamed = new File(dir, "b" + LacFile.EXTENSION);
+        Random random = new Random(2);
+        try (RandomAccessFile raf = new RandomAccessFile(streamed, "rw")) {
+            LacFile.Writer writer = new LacFile.Writer(raf.getChannel(), 16000, 1);
+            for (int offset = 0; offset < pcm.length; ) {
+                int n = Math.min(pcm.length - offset, 1 + random.nextInt(3000)); // 包括奇数字节
+                writer.write(pcm, offset, n);
+                offset += n;
+            }
+            writer.finish();
+            assertEquals(samples.length, writer.getTotalFrames());
+        }
+
+        assertArrayEquals(Files.readAllBytes(oneShot.toPath()), Files.readAllBytes(streamed.toPath()));
+    }
+
+    @Test
+    public void interruptedFile_decodesCompleteBlocks() throws IOException {
+        int[] samples = new int[3 * LosslessCodec.MAX_BLOCK_SAMPLES + 100];
+        for (int i = 0; i < samples.length; i++) samples[i] = (int) (9000 * Math.sin(i * 0.07));
+        byte[] pcm = toPcm(samples);
+        File file = new File(dir, "c" + LacFile.EXTENSION);
+        LacFile.write(file, pcm, 0, pcm.length, 16000, 1);
+
+        // 模拟中断：总帧数没有回填，最后一块只写了一半.
+        byte[] content = Files.readAllBytes(file.toPath());
+        Arrays.fill(content, LacFile.HEADER_SIZE - 4, LacFile.HEADER_SIZE, (byte) 0);
+        Files.write(file.toPath(), Arrays.copyOf(content, content.length - 50));
+
+        byte[] decoded = LacFile.read(file).pcm;
+        assertEquals(3 * LosslessCodec.MAX_BLOCK_SAMPLES * 2, decoded.length);
+        assertArrayEquals(Arrays.copyOf(pcm, decoded.length), decoded);
+    }
+
+    @Test
+    public void readAudio_detectsFormatByContent() throws IOException {
+        byte[] pcm = toPcm(new int[] {1, -2, 300, -4000, 32767});
+        File wav = new File(dir, "x.lac");
+        Files.write(wav.toPath(), WavFile.fromPcm(pcm, 0, pcm.length, 16000));
+        File lac = new File(dir, "y.wav");
+        LacFile.write(lac, pcm, 0, pcm.length, 16000, 1);
+
+        assertArrayEquals(pcm, LacFile.readAudio(wav).pcm);
+        assertArrayEquals(pcm, LacFile.readAudio(lac).pcm);
+    }
+
+    // 录音语料逐个文件压缩再解码，逐位一致，整体压缩到原来的90%以下.
+    @Test
+    public void corpus_roundTripsBitExact() throws IOException {
+        List<File> files = ReplayHarness.collect(ReplayHarness.DEFAULT_CORPUS);
+        org.junit.Assume.assumeTrue(!files.isEmpty());
+        long wavBytes = 0;
+        long lacBytes = 0;
+        File out = new File(dir, "corpus" + LacFile.EXTENSION);
+        for (File file : files) {
+            WavFile.Data wav = WavFile.read(file);
+            lacBytes += LacFile.write(out, wav.pcm, 0, wav.pcm.length, wav.sampleRate, wav.channels);
+            WavFile.Data decoded = LacFile.read(out);
+
+            assertEquals(file.getPath(), wav.sampleRate, decoded.sampleRate);
+            assertEquals(file.getPath(), wav.channels, decoded.channels);
+            assertArrayEquals(file.getPath(), wav.pcm, decoded.pcm);
+            wavBytes += WavFile.HEADER_SIZE + wav.pcm.length;
+        }
+        assertTrue(lacBytes + " / " + wavBytes + " bytes", lacBytes < wavBytes * 0.9);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class Pcm16Test {
+    // 单元测试的工作目录是app模块.
+    private static final File RECORDINGS = new File("../recorded_wav_files");
+
+    private static byte[] pcm(int... samples) {
+        byte[] data = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            data[2 * i] = (byte) samples[i];
+            data[2 * i + 1] = (byte) (samples[i] >> 8);
+        }
+        return data;
+    }
+
+    private static List<File> recordings() {
+        List<File> files = new ArrayList<>();
+        collect(RECORDINGS, files);
+        return files;
+    }
+
+    private static void collect(File dir, List<File> out) {
+        File[] children = dir.listFiles();
+        if (children == null) return;
+        java.util.Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collect(child, out);
+            } else if (child.getName().endsWith(".wav")) {
+                out.add(child);
+            }
+        }
+    }
+
+    @Test
+    public void analyze_masksLowByteAndComputesAllStats() {
+        // 0x00ff 的低字节是负数，旧实现会把它符号扩展成 -1.
+        byte[] data = pcm(255, -2, 32767, -32768, 0, 1000);
+        Pcm16.Stats stats = new Pcm16.Stats();
+
+        Pcm16.analyze(data, 0, data.length, stats);
+
+        assertEquals(6, stats.sampleCount);
+        assertEquals(-32768, stats.min);
+        assertEquals(32767, stats.max);
+        assertEquals(32768, stats.peak());
+        assertEquals(2, stats.clipCount);
+        assertEquals((255 - 2 + 32767 - 32768 + 1000) / 6f, stats.dcOffset(), 1e-3);
+        double expectedRms = Math.sqrt((255.0 * 255 + 4 + 32767.0 * 32767 + 32768.0 * 32768 + 1000.0 * 1000) / 6);
+        assertEquals(expectedRms, stats.rms(), 1e-2);
+        assertEquals(stats.rms(), Pcm16.rms(data, 0, data.length), 1e-3);
+    }
+
+    @Test
+    public void rms_doesNotOverflowOnLoudFrames() {
+        // 1024个满幅样本的平方和超过int范围.
+        int[] samples = new int[1024];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (i & 1) == 0 ? 30000 : -30000;
+        }
+        byte[] data = pcm(samples);
+
+        assertEquals(30000f, Pcm16.rms(data, 0, data.length), 1e-2);
+    }
+
+    @Test
+    public void analyze_minAndMaxOfOneSignedSignal() {
+        byte[] data = pcm(500, 800, 600);
+        Pcm16.Stats stats = new Pcm16.Stats();
+
+        Pcm16.analyze(data, 0, data.length, stats);
+
+        assertEquals(500, stats.min);
+        assertEquals(800, stats.max);
+
+        Pcm16.analyze(data, 0, 0, stats);
+        assertEquals(0, stats.sampleCount);
+        assertEquals(0, stats.min);
+        assertEquals(0, stats.max);
+        assertEquals(0f, stats.rms(), 0);
+    }
+
+    // 对录音样本逐个文件对比：byte[]、ByteBuffer（堆内/直接）、ShortBuffer视图和逐样本的参考实现结果一致.
+    @Test
+    public void analyze_matchesReferenceOnRecordings() throws Exception {
+        List<File> files = recordings();
+        assertFalse("没有找到录音样本: " + RECORDINGS.getAbsolutePath(), files.isEmpty());
+
+        Pcm16.Stats stats = new Pcm16.Stats();
+        Pcm16.Stats viewStats = new Pcm16.Stats();
+        for (File file : files) {
+            WavFile.Data wav = WavFile.read(file);
+            byte[] data = wav.pcm;
+            assertEquals(file.getName(), 1, wav.channels);
+
+            long sum = 0;
+            long sumSquares = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int clipped = 0;
+            for (int i = 0; i + 1 < data.length; i += 2) {
+                int sample = ByteBuffer.wrap(data, i, 2).order(ByteOrder.LITTLE_ENDIAN).getShort();
+                sum += sample;
+                sumSquares += (long) sample * sample;
+                min = Math.min(min, sample);
+                max = Math.max(max, sample);
+                if (Math.abs(sample) >= Pcm16.CLIP_LEVEL) clipped++;
+            }
+            if (data.length < 2) {
+                min = 0;
+                max = 0;
+            }
+
+            Pcm16.analyze(data, 0, data.length, stats);
+            String name = file.getName();
+            assertEquals(name, data.length / 2, stats.sampleCount);
+            assertEquals(name, sum, stats.sum);
+            assertEquals(name, sumSquares, stats.sumSquares);
+            assertEquals(name, min, stats.min);
+            assertEquals(name, max, stats.max);
+            assertEquals(name, clipped, stats.clipCount);
+            assertEquals(name, stats.rms(), Pcm16.rms(data, 0, data.length), 1e-3);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data).flip();
+            Pcm16.analyze(direct, viewStats);
+            assertEquals(name, sumSquares, viewStats.sumSquares);
+            assertEquals(name, min, viewStats.min);
+            assertEquals(0, direct.position());
+
+            Pcm16.analyze(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer(), viewStats);
+            assertEquals(name, sum, viewStats.sum);
+            assertEquals(name, sumSquares, viewStats.sumSquares);
+            assertEquals(name, max, viewStats.max);
+            assertEquals(name, clipped, viewStats.clipCount);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PcmRingBufferTest {
+
+    @Test
+    public void offer_dropsAndCountsWhenFull() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, 8);
+        byte[] frame = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(frame, 0, frame.length));
+        }
+
+        assertFalse(ring.offer(frame, 0, frame.length));
+        assertEquals(1, ring.getOverrunCount());
+        assertEquals(4, ring.getMaxDepth());
+    }
+
+    @Test
+    public void poll_timesOutWhenEmptyAndReportsClose() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, 8);
+        byte[] dst = new byte[8];
+
+        assertEquals(0, ring.poll(dst, 1, TimeUnit.MILLISECONDS));
+        ring.close();
+        assertEquals(-1, ring.poll(dst, 1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void poll_returnsLastFrameOfferedBeforeClose() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, 8);
+        byte[] dst = new byte[8];
+        ring.offer(new byte[]{1, 2, 3}, 0, 3);
+        ring.close();
+
+        // 已关闭但还有数据：先取完再返回-1.
+        assertEquals(3, ring.poll(dst, 1, TimeUnit.MILLISECONDS));
+        assertEquals(3, dst[2]);
+        assertEquals(-1, ring.poll(dst, 1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void closeRightAfterLastOffer_neverLosesTheFrame() throws Exception {
+        byte[] dst = new byte[8];
+        for (int round = 0; round < 2000; round++) {
+            PcmRingBuffer ring = new PcmRingBuffer(4, 8);
+            Thread producer = new Thread(() -> {
+                ring.offer(new byte[]{7}, 0, 1);
+                ring.close();
+            });
+            producer.start();
+            int frames = 0;
+            int length;
+            while ((length = ring.poll(dst, 1000, TimeUnit.MILLISECONDS)) >= 0) {
+                if (length > 0) frames++;
+            }
+            producer.join();
+            assertEquals("round " + round, 1, frames);
+        }
+    }
+
+    @Test
+    public void producerAndConsumer_preserveOrderAcrossThreads() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(8, 4);
+        int frames = 20000;
+
+        Thread producer = new Thread(() -> {
+            byte[] frame = new byte[4];
+            for (int i = 0; i < frames; i++) {
+                frame[0] = (byte) i;
+                frame[1] = (byte) (i >> 8);
+                frame[2] = (byte) (i >> 16);
+                while (!ring.offer(frame, 0, 3)) {
+                    Thread.yield();
+                }
+            }
+            ring.close();
+        });
+        producer.start();
+
+        byte[] dst = new byte[4];
+        int expected = 0;
+        int length;
+        while ((length = ring.poll(dst, 100, TimeUnit.MILLISECONDS)) >= 0) {
+            if (length == 0) continue;
+            assertEquals(3, length);
+            int value = (dst[0] & 0xff) | (dst[1] & 0xff) << 8 | (dst[2] & 0xff) << 16;
+            assertEquals(expected++, value);
+        }
+        producer.join();
+
+        assertEquals(frames, expected);
+    }
+}
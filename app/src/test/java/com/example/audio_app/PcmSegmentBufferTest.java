@@ -0,0 +1,82 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import static com.example.audio_app.Config.FRAMES_PER_BUFFER;
+import static com.example.audio_app.Config.RECORD_RATE;
+import static org.junit.Assert.*;
+
+public class PcmSegmentBufferTest {
+
+    private static byte[] frame(int seed) {
+        byte[] frame = new byte[FRAMES_PER_BUFFER];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (byte) (seed * 31 + i);
+        }
+        return frame;
+    }
+
+    @Test
+    public void append_keepsFramesInOrder() {
+        PcmSegmentBuffer buffer = new PcmSegmentBuffer(FRAMES_PER_BUFFER);
+        for (int n = 0; n < 10; n++) {
+            buffer.append(frame(n));
+        }
+
+        assertEquals(10 * FRAMES_PER_BUFFER, buffer.length());
+        byte[] data = buffer.array();
+        for (int n = 0; n < 10; n++) {
+            byte[] expected = frame(n);
+            for (int i = 0; i < FRAMES_PER_BUFFER; i++) {
+                assertEquals(expected[i], data[n * FRAMES_PER_BUFFER + i]);
+            }
+        }
+    }
+
+    @Test
+    public void allocation_staysLinearForLongUtterance() {
+        // 30秒语音，逐帧追加.
+        int totalBytes = RECORD_RATE * 2 * 30;
+        int frames = totalBytes / FRAMES_PER_BUFFER;
+        PcmSegmentBuffer buffer = new PcmSegmentBuffer(FRAMES_PER_BUFFER);
+        byte[] frame = frame(1);
+
+        for (int n = 0; n < frames; n++) {
+            buffer.append(frame);
+        }
+
+        int length = buffer.length();
+        assertEquals(frames * FRAMES_PER_BUFFER, length);
+        // 翻倍扩容：累计分配量不超过最终长度的4倍，扩容次数是对数级.
+        assertTrue("allocated " + buffer.getAllocatedBytes(), buffer.getAllocatedBytes() <= 4L * length);
+        assertTrue("grew " + buffer.getGrowCount() + " times", buffer.getGrowCount() <= 32 - Integer.numberOfLeadingZeros(frames));
+    }
+
+    @Test
+    public void clear_reusesStorageAcrossSegments() {
+        PcmSegmentBuffer buffer = new PcmSegmentBuffer(FRAMES_PER_BUFFER);
+        byte[] frame = frame(2);
+        for (int n = 0; n < 100; n++) {
+            buffer.append(frame);
+        }
+        long allocated = buffer.getAllocatedBytes();
+        byte[] storage = buffer.array();
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        for (int n = 0; n < 100; n++) {
+            buffer.append(frame);
+        }
+
+        assertSame(storage, buffer.array());
+        assertEquals(allocated, buffer.getAllocatedBytes());
+    }
+
+    @Test
+    public void toByteArray_copiesOnlyValidRange() {
+        PcmSegmentBuffer buffer = new PcmSegmentBuffer(16);
+        buffer.append(new byte[]{1, 2, 3, 4, 5}, 1, 3);
+
+        assertArrayEquals(new byte[]{2, 3, 4}, buffer.toByteArray());
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.audio_app;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PlaybackEngineTest {
+    private static final int BYTES_PER_MS = Config.PLAYBACK_RATE * 2 / 1000;
+    private static final int CHUNK_MS = 20;
+
+    private final PcmBufferPool pool = new PcmBufferPool(64, CHUNK_MS * BYTES_PER_MS);
+    private PlaybackEngine engine;
+
+    // 记录写出的数据；gate没打开时写入阻塞，模拟卡住的输出设备.
+    private static final class FakeSink implements PlaybackEngine.Sink {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final CountDownLatch gate;
+        // 第一次进入write时打开.
+        final CountDownLatch writing = new CountDownLatch(1);
+        volatile int flushes = 0;
+
+        FakeSink(boolean open) {
+            gate = new CountDownLatch(open ? 0 : 1);
+        }
+
+        @Override
+        public int write(byte[] data, int offset, int length) {
+            writing.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                return -1;
+            }
+            synchronized (this) {
+                written.write(data, offset, length);
+                notifyAll();
+            }
+            return length;
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void release() {
+            gate.countDown();
+        }
+
+        synchronized int size() {
+            return written.size();
+        }
+
+        synchronized byte[] await(int bytes) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (written.size() < bytes && System.currentTimeMillis() < deadline) wait(50);
+            return written.toByteArray();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (engine != null) engine.release();
+    }
+
+    private PlaybackEngine start(FakeSink sink, int targetMs, int maxMs, long prerollTimeoutMs) {
+        engine = new PlaybackEngine(sink, pool, targetMs, maxMs, prerollTimeoutMs);
+        engine.start();
+        return engine;
+    }
+
+    // 第index块的每个字节都是index.
+    private void enqueue(int index) {
+        PcmBufferPool.Buffer pcm = pool.acquire(CHUNK_MS * BYTES_PER_MS);
+        java.util.Arrays.fill(pcm.data, 0, CHUNK_MS * BYTES_PER_MS, (byte) index);
+        pcm.length = CHUNK_MS * BYTES_PER_MS;
+        engine.enqueue(pcm);
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) Thread.sleep(2);
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void preroll_waitsForTargetDepthBeforeWriting() throws Exception {
+        FakeSink sink = new FakeSink(true);
+        start(sink, 100, 400, 60000);
+
+        for (int i = 0; i < 4; i++) enqueue(i); // 80ms，不到目标深度
+        Thread.sleep(50);
+        assertEquals(0, sink.size());
+
+        enqueue(4); // 达到100ms
+        byte[] played = sink.await(5 * CHUNK_MS * BYTES_PER_MS);
+        assertEquals(5 * CHUNK_MS * BYTES_PER_MS, played.length);
+        for (int i = 0; i < 5; i++) {
+            assertEquals((byte) i, played[i * CHUNK_MS * BYTES_PER_MS]);
+        }
+    }
+
+    @Test
+    public void endOfStream_playsShortReplyWithoutWaitingForTarget() throws Exception {
+        FakeSink sink = new FakeSink(true);
+        start(sink, 100, 400, 60000);
+        CountDownLatch drained = new CountDownLatch(1);
+
+        enqueue(1);
+        engine.endOfStream(drained::countDown);
+
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        assertEquals(CHUNK_MS * BYTES_PER_MS, sink.size());
+        // 回复正常结束不算欠载.
+        assertEquals(0, engine.getUnderrunCount());
+    }
+
+    @Test
+    public void underrun_countedOnlyWhenReplyContinuesAfterGap() throws Exception {
+        FakeSink sink = new FakeSink(true);
+        start(sink, 20, 400, 60000);
+
+        enqueue(1);
+        sink.await(CHUNK_MS * BYTES_PER_MS);
+        waitUntil(() -> engine.getBufferedMs() == 0);
+        Thread.sleep(20); // 播放线程发现队列空了
+        // 最后一块播完后才收到audio.done：正常结束.
+        CountDownLatch drained = new CountDownLatch(1);
+        engine.endOfStream(drained::countDown);
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        assertEquals(0, engine.getUnderrunCount());
+
+        // 下一段回复中间断流后又来了数据：欠载一次.
+        enqueue(2);
+        sink.await(2 * CHUNK_MS * BYTES_PER_MS);
+        Thread.sleep(20);
+        enqueue(3);
+        sink.await(3 * CHUNK_MS * BYTES_PER_MS);
+        assertEquals(1, engine.getUnderrunCount());
+    }
+
+    @Test
+    public void overrun_dropsOldestWhenSinkIsStuck() throws Exception {
+        FakeSink sink = new FakeSink(false);
+        start(sink, 20, 100, 0);
+
+        for (int i = 0; i < 20; i++) enqueue(i);
+
+        // 播放线程拿走一块卡在输出端，队列保持在最大深度内，多出的最旧数据被丢弃.
+        assertTrue(engine.getBufferedMs() <= 100);
+        assertTrue(engine.getMaxBufferedMs() <= 100);
+        assertTrue(engine.getOverrunCount() > 0);
+        long dropped = engine.getDroppedBytes();
+        assertEquals(0, dropped % (CHUNK_MS * BYTES_PER_MS));
+
+        sink.gate.countDown();
+        CountDownLatch drained = new CountDownLatch(1);
+        engine.endOfStream(drained::countDown);
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        byte[] played = sink.await(0);
+        assertEquals(20L * CHUNK_MS * BYTES_PER_MS, played.length + dropped);
+        // 保留的是最新的数据.
+        assertEquals((byte) 19, played[played.length - 1]);
+    }
+
+    @Test
+    public void burst_isBufferedWithoutBlockingEnqueue() throws Exception {
+        FakeSink sink = new FakeSink(false);
+        start(sink, 20, 1000, 0);
+
+        // 一段回复的数据一次全部到达，输出端还没开始消耗：入队全部立即返回，不丢数据.
+        for (int i = 0; i < 30; i++) enqueue(i);
+        assertEquals(0, engine.getOverrunCount());
+        assertTrue(engine.getBufferedMs() >= 29 * CHUNK_MS);
+
+        sink.gate.countDown();
+        CountDownLatch drained = new CountDownLatch(1);
+        engine.endOfStream(drained::countDown);
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        byte[] played = sink.await(30 * CHUNK_MS * BYTES_PER_MS);
+        assertEquals(30 * CHUNK_MS * BYTES_PER_MS, played.length);
+        assertEquals((byte) 29, played[played.length - 1]);
+        assertEquals(0, engine.getOverrunCount());
+    }
+
+    @Test
+    public void flush_stopsTheChunkBeingWritten() throws Exception {
+        FakeSink sink = new FakeSink(false);
+        start(sink, 20, 400, 0);
+        int slice = Config.PLAYBACK_WRITE_SLICE_MS * BYTES_PER_MS;
+
+        // 播放线程取走第一块，卡在写第一片.
+        enqueue(1);
+        assertTrue(sink.writing.await(5, TimeUnit.SECONDS));
+        engine.flush();
+        assertEquals(1, sink.flushes);
+
+        // 写入中的那一片写完后播放线程再清空一次，这一块剩下的部分不再写.
+        sink.gate.countDown();
+        waitUntil(() -> sink.flushes == 2);
+        assertEquals(slice, sink.size());
+
+        // 之后的回复正常播放.
+        enqueue(2);
+        byte[] played = sink.await(slice + CHUNK_MS * BYTES_PER_MS);
+        assertEquals(slice + CHUNK_MS * BYTES_PER_MS, played.length);
+        assertEquals((byte) 2, played[slice]);
+        assertEquals(2, sink.flushes);
+    }
+}
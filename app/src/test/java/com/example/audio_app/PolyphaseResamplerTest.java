@@ -0,0 +1,75 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import static com.example.audio_app.Config.PLAYBACK_RATE;
+import static com.example.audio_app.Config.RECORD_RATE;
+import static org.junit.Assert.*;
+
+public class PolyphaseResamplerTest {
+
+    private static byte[] sinePcm(double frequency, int rate, int samples, double amplitude) {
+        byte[] pcm = new byte[samples * 2];
+        for (int i = 0; i < samples; i++) {
+            int value = (int) Math.round(amplitude * Math.sin(2 * Math.PI * frequency * i / rate));
+            pcm[2 * i] = (byte) value;
+            pcm[2 * i + 1] = (byte) (value >> 8);
+        }
+        return pcm;
+    }
+
+    private static float[] resample(PolyphaseResampler resampler, byte[] pcm, int chunkBytes) {
+        float[] out = new float[resampler.maxOutput(pcm.length / 2)];
+        int produced = 0;
+        for (int offset = 0; offset < pcm.length; offset += chunkBytes) {
+            produced += resampler.process(pcm, offset, Math.min(chunkBytes, pcm.length - offset), out, produced);
+        }
+        return java.util.Arrays.copyOf(out, produced);
+    }
+
+    private static double rms(float[] samples, int from) {
+        double sum = 0;
+        for (int i = from; i < samples.length; i++) sum += samples[i] * samples[i];
+        return Math.sqrt(sum / (samples.length - from));
+    }
+
+    @Test
+    public void process_keepsInBandToneAndTiming() {
+        PolyphaseResampler resampler = new PolyphaseResampler(PLAYBACK_RATE, RECORD_RATE, 24);
+        byte[] pcm = sinePcm(1000, PLAYBACK_RATE, PLAYBACK_RATE, 10000);
+
+        float[] out = resample(resampler, pcm, pcm.length);
+
+        assertEquals(RECORD_RATE, out.length, 1);
+        // 扣除滤波器群延迟后和理想的16k正弦一致.
+        double delay = resampler.getDelay();
+        double maxError = 0;
+        for (int n = 200; n < out.length; n++) {
+            double expected = 10000 * Math.sin(2 * Math.PI * 1000 * (n - delay) / RECORD_RATE);
+            maxError = Math.max(maxError, Math.abs(out[n] - expected));
+        }
+        assertTrue("max error " + maxError, maxError < 100);
+    }
+
+    @Test
+    public void process_rejectsToneAboveOutputNyquist() {
+        PolyphaseResampler resampler = new PolyphaseResampler(PLAYBACK_RATE, RECORD_RATE, 24);
+        // 10kHz在16k采样率下会混叠到6kHz，抗混叠滤波应该把它压下去.
+        byte[] pcm = sinePcm(10000, PLAYBACK_RATE, PLAYBACK_RATE / 2, 10000);
+
+        float[] out = resample(resampler, pcm, pcm.length);
+
+        double attenuationDb = 20 * Math.log10(rms(out, 200) / (10000 / Math.sqrt(2)));
+        assertTrue("attenuation " + attenuationDb + " dB", attenuationDb < -40);
+    }
+
+    @Test
+    public void process_chunkedInputMatchesOneShot() {
+        byte[] pcm = sinePcm(440, PLAYBACK_RATE, 4801, 8000);
+
+        float[] whole = resample(new PolyphaseResampler(PLAYBACK_RATE, RECORD_RATE, 24), pcm, pcm.length);
+        float[] chunked = resample(new PolyphaseResampler(PLAYBACK_RATE, RECORD_RATE, 24), pcm, 2 * 37);
+
+        assertArrayEquals(whole, chunked, 0f);
+    }
+}
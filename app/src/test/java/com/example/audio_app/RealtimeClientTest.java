@@ -0,0 +1,349 @@
+package com.example.audio_app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.audio_app.Config.RECORD_RATE;
+import static org.junit.Assert.*;
+
+// SessionManager和WebSocketClient连本地假服务端：上行、脚本化回复、抖动/突发和断线.
+public class RealtimeClientTest {
+    private static final int SLICE_BYTES = RECORD_RATE * 2 / 10; // 100ms
+
+    private FakeRealtimeServer server;
+    private WebSocketClient client;
+
+    // 记录播放引擎写出的PCM、第一次写入的时间和释放它的线程.
+    private static final class RecordingSink implements PlaybackEngine.Sink {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private volatile long firstWriteNanos = -1;
+        private volatile Thread releaseThread;
+
+        @Override
+        public synchronized int write(byte[] data, int offset, int length) {
+            if (firstWriteNanos < 0) firstWriteNanos = System.nanoTime();
+            written.write(data, offset, length);
+            notifyAll();
+            return length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void release() {
+            releaseThread = Thread.currentThread();
+        }
+
+        synchronized byte[] awaitBytes(int count, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (written.size() < count) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) break;
+                wait(remaining);
+            }
+            return written.toByteArray();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeRealtimeServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+            client.whenClosed().get(5, TimeUnit.SECONDS);
+        }
+        server.close();
+    }
+
+    private RecordingSink connect() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        client = new WebSocketClient(server.wsBaseUrl(), "sess_test", null, null, sink);
+        assertTrue(server.awaitEvent("open", 5000));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!client.isConnected() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertTrue(client.isConnected());
+        return sink;
+    }
+
+    private static boolean waitUntil(java.util.function.BooleanSupplier condition, long timeoutMs)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) Thread.sleep(2);
+        return condition.getAsBoolean();
+    }
+
+    private void speak(int slices) {
+        byte[] slice = new byte[SLICE_BYTES];
+        for (int i = 0; i < slices; i++) {
+            client.sendAudioData(slice, 0, slice.length);
+        }
+        client.sendCommit();
+    }
+
+    // 检查回复完整且按顺序：第i个delta的每个字节都是 i + 1.
+    private static void assertReply(byte[] played, int deltaCount, int deltaBytes) {
+        assertEquals(deltaCount * deltaBytes, played.length);
+        for (int i = 0; i < played.length; i++) {
+            assertEquals("byte " + i, (byte) (i / deltaBytes + 1), played[i]);
+        }
+    }
+
+    @Test
+    public void createSession_usesConfiguredEndpoint() {
+        SessionManager sessionManager = new SessionManager(server.apiBaseUrl(), server.wsBaseUrl());
+
+        assertTrue(sessionManager.createSession());
+        assertEquals("sess_1", sessionManager.getSessionId());
+        assertEquals(1, server.getSessionsCreated());
+    }
+
+    @Test
+    public void roundTrip_uploadsAudioAndPlaysScriptedReply() throws Exception {
+        server.setScript(new FakeRealtimeServer.Script().deltas(10, 4800).firstDelay(150).interval(20));
+        RecordingSink sink = connect();
+
+        speak(8);
+        long commitNanos = server.takeCommitNanos(5000);
+        byte[] played = sink.awaitBytes(10 * 4800, 5000);
+
+        // 发送线程落后时相邻的音频会合并成一条.
+        assertTrue(server.getAppendCount() >= 1 && server.getAppendCount() <= 8);
+        assertEquals(8L * SLICE_BYTES, server.getAudioBytes());
+        assertReply(played, 10, 4800);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(sink.firstWriteNanos - commitNanos) >= 150);
+    }
+
+    @Test
+    public void close_drainsAndStopsPlaybackOffTheCallingThread() throws Exception {
+        RecordingSink sink = connect();
+
+        speak(5);
+        client.close();
+        client.whenClosed().get(5, TimeUnit.SECONDS);
+
+        // 排空发送队列和停止播放都不在调用close()的线程上做，队列里的音频和commit照样发出.
+        assertNotNull(sink.releaseThread);
+        assertNotSame(Thread.currentThread(), sink.releaseThread);
+        assertTrue(server.awaitEvent("commit", 5000));
+        assertEquals(5L * SLICE_BYTES, server.getAudioBytes());
+        assertFalse(client.isConnected());
+    }
+
+    @Test
+    public void jsonUplink_whenServerDoesNotNegotiateBinary() throws Exception {
+        server.setBinarySupported(false);
+        server.setScript(new FakeRealtimeServer.Script().deltas(3, 4800).firstDelay(10));
+        RecordingSink sink = connect();
+
+        speak(4);
+        assertTrue(server.awaitEvent("commit", 5000));
+
+        assertEquals(4L * SLICE_BYTES, server.getAudioBytes());
+        assertReply(sink.awaitBytes(3 * 4800, 5000), 3, 4800);
+    }
+
+    // 协商到ADPCM时上行字节约为PCM的1/4，服务端解码后的音频和原始音频接近.
+    @Test
+    public void adpcmUplink_cutsBytesAndKeepsAudio() throws Exception {
+        server.setScript(new FakeRealtimeServer.Script().deltas(1, 4800).firstDelay(10));
+        connect();
+
+        byte[] slice = new byte[SLICE_BYTES];
+        short[] expected = new short[10 * SLICE_BYTES / 2];
+        for (int s = 0; s < 10; s++) {
+            for (int i = 0; i < SLICE_BYTES / 2; i++) {
+                int n = s * SLICE_BYTES / 2 + i;
+                short sample = (short) (8000 * Math.sin(2 * Math.PI * 300 * n / RECORD_RATE));
+                expected[n] = sample;
+                slice[2 * i] = (byte) sample;
+                slice[2 * i + 1] = (byte) (sample >> 8);
+            }
+            client.sendAudioData(slice, 0, slice.length);
+        }
+        client.sendCommit();
+        assertTrue(server.awaitEvent("commit", 5000));
+
+        assertEquals(10L * SLICE_BYTES, server.getAudioBytes());
+        assertTrue("uplink " + server.getUplinkBytes(), server.getUplinkBytes() < 10L * SLICE_BYTES / 3);
+        byte[] received = server.getReceivedPcm();
+        double signal = 0;
+        double noise = 0;
+        for (int i = 0; i < expected.length; i++) {
+            int decoded = (short) ((received[2 * i] & 0xff) | (received[2 * i + 1] << 8));
+            signal += (double) expected[i] * expected[i];
+            noise += (double) (decoded - expected[i]) * (decoded - expected[i]);
+        }
+        assertTrue("snr", 10 * Math.log10(signal / noise) > 20);
+    }
+
+    @Test
+    public void pcmUplink_whenServerDoesNotNegotiateAdpcm() throws Exception {
+        server.setAdpcmSupported(false);
+        connect();
+
+        speak(4);
+        assertTrue(server.awaitEvent("commit", 5000));
+
+        assertEquals(4L * SLICE_BYTES, server.getAudioBytes());
+        assertEquals(4L * SLICE_BYTES + server.getAppendCount() * UplinkProtocol.HEADER_SIZE,
+                server.getUplinkBytes());
+    }
+
+    @Test
+    public void jitterAndBursts_deliverAllAudioInOrder() throws Exception {
+        server.setScript(new FakeRealtimeServer.Script()
+                .deltas(40, 2400).firstDelay(50).interval(40).jitter(120).burst(5).seed(7));
+        RecordingSink sink = connect();
+
+        speak(5);
+
+        assertReply(sink.awaitBytes(40 * 2400, 10000), 40, 2400);
+    }
+
+    @Test
+    public void disconnect_midReplyMarksClientDisconnected() throws Exception {
+        server.setScript(new FakeRealtimeServer.Script().deltas(10, 4800).firstDelay(10).interval(10)
+                .disconnectAfter(3, true));
+        RecordingSink sink = connect();
+
+        speak(2);
+        assertTrue(server.awaitEvent("closed", 5000));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.isConnected() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+
+        assertFalse(client.isConnected());
+        assertTrue(sink.awaitBytes(10 * 4800, 500).length <= 3 * 4800);
+        // 断线后发送直接返回，不抛异常.
+        client.sendAudioData(new byte[SLICE_BYTES], 0, SLICE_BYTES);
+    }
+
+    // 说到一半断线：断线期间的音频和commit记在日志里，重连后整段重放，这一轮照常得到回复.
+    @Test
+    public void reconnect_replaysUncommittedAudio() throws Exception {
+        server.setScript(new FakeRealtimeServer.Script().deltas(3, 4800).firstDelay(10));
+        RecordingSink sink = connect();
+        byte[] slice = new byte[SLICE_BYTES];
+        for (int i = 0; i < 3; i++) client.sendAudioData(slice, 0, slice.length);
+        assertTrue(waitUntil(() -> server.getAudioBytes() == 3L * SLICE_BYTES, 5000));
+
+        assertTrue(server.dropConnection(true));
+        assertTrue(waitUntil(() -> !client.isConnected(), 5000));
+        for (int i = 0; i < 2; i++) client.sendAudioData(slice, 0, slice.length);
+        client.sendCommit();
+
+        assertTrue(server.awaitEvent("commit", 5000));
+        assertTrue(client.isConnected());
+        assertEquals(2, server.getConnections());
+        // 第二个连接上收到了这一轮的全部5段.
+        assertEquals(8L * SLICE_BYTES, server.getAudioBytes());
+        assertEquals(1, server.getCommitCount());
+        assertReply(sink.awaitBytes(3 * 4800, 5000), 3, 4800);
+        assertEquals(5L * SLICE_BYTES, client.getJournal().getReplayedBytes());
+        assertTrue(client.getLastReconnectMs() >= 0 && client.getLastReconnectMs() < 2000);
+    }
+
+    // 服务端暂时拒绝握手：按指数退避重试，第3次成功. 退避下限 125 + 250 + 500ms.
+    @Test
+    public void reconnect_backsOffWhileServerRejects() throws Exception {
+        connect();
+        server.rejectConnections(2);
+
+        assertTrue(server.dropConnection(true));
+        assertTrue(waitUntil(() -> !client.isConnected(), 5000));
+        assertTrue(waitUntil(() -> client.isConnected(), 10000));
+
+        // 服务端在回完101之后才回调onOpen，可能比客户端晚一点.
+        assertTrue(waitUntil(() -> server.getConnections() == 2, 5000));
+        assertTrue("reconnect " + client.getLastReconnectMs(), client.getLastReconnectMs() >= 800);
+    }
+
+    // 预先打开的备用连接：主连接断开时直接切换，不用重新握手.
+    @Test
+    public void standby_takesOverWithoutNewHandshake() throws Exception {
+        server.setScript(new FakeRealtimeServer.Script().deltas(2, 4800).firstDelay(10));
+        RecordingSink sink = connect();
+        client.setStandbyConnections(1);
+        assertTrue(waitUntil(() -> client.getStandbyCount() == 1 && server.getLiveConnections() == 2, 5000));
+
+        // 切换期间服务端拒绝所有新的握手：客户端只能靠已经打开的备用连接恢复.
+        server.rejectConnections(Integer.MAX_VALUE);
+        assertTrue(server.dropConnection(true)); // 最早的连接是主连接
+        assertTrue(waitUntil(() -> client.getLastReconnectMs() >= 0, 5000));
+        assertTrue(client.isConnected());
+
+        speak(2);
+        assertReply(sink.awaitBytes(2 * 4800, 5000), 2, 4800);
+        assertEquals(2, server.getConnections());
+
+        // 空闲检测时补充新的备用连接.
+        server.rejectConnections(0);
+        assertTrue(waitUntil(() -> client.getStandbyCount() == 1 && server.getLiveConnections() == 2, 5000));
+        assertEquals(3, server.getConnections());
+    }
+
+    // 发出commit后服务端一直没有消息（半开连接）：空闲检测主动断开重连.
+    @Test
+    public void idleDetector_reconnectsStalledLink() throws Exception {
+        server.setScript(new FakeRealtimeServer.Script().deltas(1, 4800).firstDelay(60000));
+        connect();
+        client.setIdleTimeoutMs(300);
+
+        speak(2);
+        assertTrue(server.awaitEvent("commit", 5000));
+        assertTrue(waitUntil(() -> client.getIdleDisconnects() == 1, 5000));
+        assertTrue(waitUntil(() -> client.isConnected() && server.getConnections() == 2, 5000));
+        Thread.sleep(700);
+        assertEquals(1, client.getIdleDisconnects());
+    }
+
+    @Test
+    public void schedule_isDeterministicAndOrdered() {
+        FakeRealtimeServer.Script script = new FakeRealtimeServer.Script()
+                .deltas(20, 2400).firstDelay(100).interval(30).jitter(50).burst(4).seed(3);
+
+        long[] times = script.schedule();
+
+        assertArrayEquals(times, script.schedule());
+        assertEquals(21, times.length);
+        assertTrue(times[0] >= 100 && times[0] <= 150);
+        for (int i = 1; i < times.length; i++) {
+            assertTrue(times[i] >= times[i - 1]);
+            // 同一批的delta同时发送.
+            if (i < 20 && i % 4 != 0) assertEquals(times[i - 1], times[i]);
+        }
+    }
+
+    // 比实时快得多地连续上传：发送队列按预算排队，全部音频按顺序送达，没有丢弃. 吞吐看UplinkBenchmark.
+    @Test
+    public void uplink_burstIsDeliveredWithoutDrops() throws Exception {
+        server.setScript(new FakeRealtimeServer.Script().deltas(5, 4800).firstDelay(0).interval(0));
+        RecordingSink sink = connect();
+
+        int slices = 500;
+        byte[] slice = new byte[SLICE_BYTES];
+        for (int i = 0; i < slices; i++) {
+            // 发送队列积压过半时等一等，避免超出预算丢弃最旧的音频.
+            while (client.getSendScheduler().getQueuedBytes() > Config.UPLINK_QUEUE_MAX_BYTES / 2) {
+                Thread.sleep(1);
+            }
+            client.sendAudioData(slice, 0, slice.length);
+        }
+        client.sendCommit();
+        assertTrue(server.takeCommitNanos(10000) > 0);
+        sink.awaitBytes(5 * 4800, 5000);
+
+        assertEquals((long) slices * SLICE_BYTES, server.getAudioBytes());
+        assertEquals(0, client.getSendScheduler().getDroppedBytes());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.audio_app;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ReconnectSchedulerTest {
+    private ReconnectScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    @Test
+    public void delay_growsExponentiallyWithJitterUpToCap() {
+        scheduler = new ReconnectScheduler(100, 3000, 20, new Random(1));
+        long[] upper = {100, 200, 400, 800, 1600, 3000, 3000, 3000};
+        for (int attempt = 0; attempt < upper.length; attempt++) {
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            for (int i = 0; i < 1000; i++) {
+                long delay = scheduler.delayMs(attempt);
+                min = Math.min(min, delay);
+                max = Math.max(max, delay);
+            }
+            assertTrue("attempt " + attempt + " min " + min, min >= upper[attempt] / 2);
+            assertTrue("attempt " + attempt + " max " + max, max <= upper[attempt]);
+            // 抖动覆盖了大部分区间.
+            assertTrue(max - min > upper[attempt] / 3);
+        }
+        // 很大的次数不会溢出.
+        long delay = scheduler.delayMs(1000);
+        assertTrue(delay >= 1500 && delay <= 3000);
+    }
+
+    @Test
+    public void schedule_stopsAfterMaxAttemptsUntilReset() throws Exception {
+        scheduler = new ReconnectScheduler(10, 40, 3, new Random(2));
+        AtomicInteger runs = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            CountDownLatch ran = new CountDownLatch(1);
+            assertTrue(scheduler.schedule(() -> {
+                runs.incrementAndGet();
+                ran.countDown();
+            }) > 0);
+            assertTrue(ran.await(1, TimeUnit.SECONDS));
+            Thread.sleep(20); // 等任务完全结束，不然会被当成还在等待
+        }
+        assertEquals(-1, scheduler.schedule(runs::incrementAndGet));
+        assertEquals(3, runs.get());
+
+        scheduler.reset();
+        assertEquals(0, scheduler.getAttempts());
+        assertTrue(scheduler.schedule(runs::incrementAndGet) > 0);
+    }
+
+    @Test
+    public void schedule_doesNotStackWhileOneIsPending() {
+        scheduler = new ReconnectScheduler(10000, 10000, 5, new Random(3));
+        assertTrue(scheduler.schedule(() -> { }) >= 5000);
+        assertEquals(0, scheduler.schedule(() -> { }));
+        assertEquals(1, scheduler.getAttempts());
+        // 连接成功后取消等待中的重连.
+        scheduler.reset();
+        assertTrue(scheduler.schedule(() -> { }) >= 5000);
+    }
+}
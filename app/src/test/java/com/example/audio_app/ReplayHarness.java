@@ -0,0 +1,237 @@
+package com.example.audio_app;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static com.example.audio_app.Config.*;
+
+// 离线回放：把录音（recorded_wav_files）逐帧送进和AudioHandler相同的SpeechSegmenter，尽快跑完，
+// 统计语音段、commit位置、因太短丢弃的音频和处理速度（实时倍数），用于不上真机调阈值和发现回归.
+// 每个文件单独一轮，末尾补一段静音让最后的语音段走到commit. 非16k的录音先重采样.
+// 支持.wav和无损压缩的.lac（按文件内容识别）.
+//
+// 用法: java ... ReplayHarness [目录或wav文件...] [--vad=rms|adaptive|spectral] [--tail-ms=N] [--streaming]
+public class ReplayHarness {
+    public static final File DEFAULT_CORPUS = new File("../recorded_wav_files");
+
+    // 单个文件的回放结果，时间都是帧时间（毫秒，从文件开头算）.
+    public static final class FileResult {
+        public final File file;
+        public final long audioMs;
+        public final List<long[]> segments = new ArrayList<>(); // {结束时间, 长度ms}
+        public final List<Long> commits = new ArrayList<>();
+        public long sentBytes = 0;
+        public int droppedCount = 0;
+        public long droppedBytes = 0;
+        public int speechFrames = 0;
+        public long processNanos = 0;
+
+        FileResult(File file, long audioMs) {
+            this.file = file;
+            this.audioMs = audioMs;
+        }
+    }
+
+    // 整个语料的汇总.
+    public static final class Report {
+        public final List<FileResult> files = new ArrayList<>();
+
+        public int segmentCount() {
+            int n = 0;
+            for (FileResult r : files) n += r.segments.size();
+            return n;
+        }
+
+        public int commitCount() {
+            int n = 0;
+            for (FileResult r : files) n += r.commits.size();
+            return n;
+        }
+
+        public long droppedBytes() {
+            long n = 0;
+            for (FileResult r : files) n += r.droppedBytes;
+            return n;
+        }
+
+        public long audioMs() {
+            long n = 0;
+            for (FileResult r : files) n += r.audioMs;
+            return n;
+        }
+
+        public long processNanos() {
+            long n = 0;
+            for (FileResult r : files) n += r.processNanos;
+            return n;
+        }
+
+        // 处理速度：音频时长 / 处理耗时.
+        public double realtimeFactor() {
+            return processNanos() == 0 ? 0 : audioMs() * 1e6 / processNanos();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (FileResult r : files) {
+                sb.append(String.format(Locale.ROOT, "%-60s %6dms  段=%d commit=%s 丢弃=%d(%dB) 语音帧=%d%n",
+                        r.file.getPath(), r.audioMs, r.segments.size(), r.commits, r.droppedCount,
+                        r.droppedBytes, r.speechFrames));
+            }
+            sb.append(String.format(Locale.ROOT,
+                    "文件=%d 音频=%.1fs 语音段=%d commit=%d 丢弃=%dB 处理=%.1fms (%.0fx实时)%n",
+                    files.size(), audioMs() / 1000.0, segmentCount(), commitCount(), droppedBytes(),
+                    processNanos() / 1e6, realtimeFactor()));
+            return sb.toString();
+        }
+    }
+
+    private final int vadType;
+    private final int tailMs;
+    private final boolean streaming;
+
+    public ReplayHarness(int vadType, int tailMs, boolean streaming) {
+        this.vadType = vadType;
+        this.tailMs = tailMs;
+        this.streaming = streaming;
+    }
+
+    // 默认参数和AudioHandler一致，末尾补足长静默加两帧.
+    public ReplayHarness() {
+        this(VAD_TYPE, (int) (LONG_SILENCE_DURATION * 1000) + 2 * FRAMES_PER_BUFFER / 2 * 1000 / RECORD_RATE,
+                STREAMING_UPLOAD);
+    }
+
+    // 递归收集wav和lac文件，按路径排序保证结果稳定.
+    public static List<File> collect(File... roots) {
+        List<File> files = new ArrayList<>();
+        for (File root : roots) collect(root, files);
+        files.sort(null);
+        return files;
+    }
+
+    private static void collect(File file, List<File> out) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) return;
+            for (File child : children) collect(child, out);
+        } else if (file.getName().endsWith(".wav") || file.getName().endsWith(LacFile.EXTENSION)) {
+            out.add(file);
+        }
+    }
+
+    public Report run(List<File> files) throws java.io.IOException {
+        Report report = new Report();
+        for (File file : files) {
+            report.files.add(replay(file, load(file)));
+        }
+        return report;
+    }
+
+    // 读取录音并转成16k单声道PCM.
+    static byte[] load(File file) throws java.io.IOException {
+        WavFile.Data wav = LacFile.readAudio(file);
+        byte[] pcm = wav.pcm;
+        if (wav.channels > 1) {
+            pcm = firstChannel(pcm, wav.channels);
+        }
+        if (wav.sampleRate != RECORD_RATE) {
+            pcm = resample(pcm, wav.sampleRate);
+        }
+        return pcm;
+    }
+
+    private static byte[] firstChannel(byte[] pcm, int channels) {
+        byte[] mono = new byte[pcm.length / channels / 2 * 2];
+        for (int i = 0; i < mono.length / 2; i++) {
+            mono[2 * i] = pcm[2 * i * channels];
+            mono[2 * i + 1] = pcm[2 * i * channels + 1];
+        }
+        return mono;
+    }
+
+    private static byte[] resample(byte[] pcm, int sampleRate) {
+        PolyphaseResampler resampler = new PolyphaseResampler(sampleRate, RECORD_RATE, 24);
+        float[] out = new float[resampler.maxOutput(pcm.length / 2)];
+        int count = resampler.process(pcm, 0, pcm.length, out, 0);
+        byte[] result = new byte[count * 2];
+        for (int i = 0; i < count; i++) {
+            int value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(out[i])));
+            result[2 * i] = (byte) value;
+            result[2 * i + 1] = (byte) (value >> 8);
+        }
+        return result;
+    }
+
+    // 回放一段16k PCM：和处理线程一样逐帧调用SpeechSegmenter.
+    public FileResult replay(File file, byte[] pcm) {
+        int frames = (pcm.length + FRAMES_PER_BUFFER - 1) / FRAMES_PER_BUFFER
+                + (tailMs * RECORD_RATE / 1000 * 2 + FRAMES_PER_BUFFER - 1) / FRAMES_PER_BUFFER;
+        byte[] padded = Arrays.copyOf(pcm, frames * FRAMES_PER_BUFFER);
+        FileResult result = new FileResult(file, (long) frames * FRAMES_PER_BUFFER / 2 * 1000 / RECORD_RATE);
+
+        SpeechSegmenter[] holder = new SpeechSegmenter[1];
+        SpeechSegmenter segmenter = new SpeechSegmenter(SpeechSegmenter.createVad(vadType), streaming,
+                new SpeechSegmenter.Listener() {
+                    @Override
+                    public void onSpeechStart() {
+                    }
+
+                    @Override
+                    public void onAudio(byte[] data, int offset, int length) {
+                        result.sentBytes += length;
+                    }
+
+                    @Override
+                    public void onSegment(byte[] data, int length) {
+                        result.segments.add(new long[] {holder[0].getPositionMs(),
+                                (long) length / 2 * 1000 / RECORD_RATE});
+                    }
+
+                    @Override
+                    public void onDropped(int length) {
+                        result.droppedCount++;
+                        result.droppedBytes += length;
+                    }
+
+                    @Override
+                    public void onCommit() {
+                        result.commits.add(holder[0].getPositionMs());
+                    }
+                });
+        holder[0] = segmenter;
+        segmenter.reset();
+
+        byte[] frame = new byte[FRAMES_PER_BUFFER];
+        long start = System.nanoTime();
+        for (int offset = 0; offset < padded.length; offset += FRAMES_PER_BUFFER) {
+            System.arraycopy(padded, offset, frame, 0, FRAMES_PER_BUFFER);
+            if (segmenter.process(frame, FRAMES_PER_BUFFER)) result.speechFrames++;
+        }
+        result.processNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ReplayHarness defaults = new ReplayHarness();
+        int vadType = defaults.vadType;
+        int tailMs = defaults.tailMs;
+        boolean streaming = defaults.streaming;
+        List<File> roots = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--vad=rms")) vadType = VAD_TYPE_RMS;
+            else if (arg.equals("--vad=adaptive")) vadType = VAD_TYPE_ADAPTIVE;
+            else if (arg.equals("--vad=spectral")) vadType = VAD_TYPE_SPECTRAL;
+            else if (arg.startsWith("--tail-ms=")) tailMs = Integer.parseInt(arg.substring("--tail-ms=".length()));
+            else if (arg.equals("--streaming")) streaming = true;
+            else roots.add(new File(arg));
+        }
+        if (roots.isEmpty()) roots.add(DEFAULT_CORPUS);
+        Report report = new ReplayHarness(vadType, tailMs, streaming).run(collect(roots.toArray(new File[0])));
+        System.out.print(report);
+    }
+}
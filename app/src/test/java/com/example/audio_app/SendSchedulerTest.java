@@ -0,0 +1,230 @@
+package com.example.audio_app;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SendSchedulerTest {
+    private static final int FRAME = 1000;
+
+    private SendScheduler scheduler;
+
+    // 记录发出的消息；backlog模拟OkHttp队列的积压，由测试控制.
+    private static final class FakeTransport implements SendScheduler.Transport {
+        final List<String> sent = new ArrayList<>();
+        final List<byte[]> audio = new ArrayList<>();
+        volatile boolean ready = true;
+        volatile long backlog = 0;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public long queueSize() {
+            return backlog;
+        }
+
+        @Override
+        public synchronized boolean sendAudio(byte[] pcm, int offset, int length) {
+            sent.add("audio:" + length);
+            audio.add(java.util.Arrays.copyOfRange(pcm, offset, offset + length));
+            notifyAll();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean sendCommit() {
+            sent.add("commit");
+            notifyAll();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean sendText(String text) {
+            sent.add("text:" + text);
+            notifyAll();
+            return true;
+        }
+
+        synchronized List<String> await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (sent.size() < count && System.currentTimeMillis() < deadline) wait(50);
+            return new ArrayList<>(sent);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (scheduler != null) scheduler.close(1000);
+    }
+
+    private SendScheduler start(FakeTransport transport, int maxBytes, SendScheduler.Policy policy) {
+        scheduler = new SendScheduler(transport, maxBytes, 100, 4 * FRAME, policy, 100, 5);
+        scheduler.start();
+        return scheduler;
+    }
+
+    // 第i帧的每个字节都是i.
+    private static byte[] frame(int index) {
+        byte[] pcm = new byte[FRAME];
+        java.util.Arrays.fill(pcm, (byte) index);
+        return pcm;
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) Thread.sleep(2);
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void backlog_coalescesAudioAndKeepsCommitAfterIt() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        transport.backlog = 1000; // OkHttp队列高于高水位，先积压在本地
+        start(transport, 100 * FRAME, SendScheduler.Policy.DROP_OLDEST);
+
+        for (int i = 0; i < 10; i++) scheduler.appendAudio(frame(i), 0, FRAME);
+        scheduler.commit();
+        scheduler.appendAudio(frame(10), 0, FRAME);
+        Thread.sleep(30);
+        assertTrue(transport.sent.isEmpty());
+        assertEquals(11 * FRAME, scheduler.getQueuedBytes());
+        transport.backlog = 0;
+
+        List<String> sent = transport.await(5);
+        assertEquals(java.util.Arrays.asList("audio:4000", "audio:4000", "audio:2000", "commit", "audio:1000"), sent);
+        for (int i = 0; i < 10; i++) {
+            assertEquals((byte) i, transport.audio.get(i / 4)[(i % 4) * FRAME]);
+        }
+        assertEquals(7, scheduler.getCoalescedWrites());
+        // 统计在transport返回之后才更新.
+        waitFor(() -> scheduler.getSentAudioBytes() == 11 * FRAME);
+        assertEquals(11 * FRAME, scheduler.getMaxQueuedBytes());
+        assertTrue(scheduler.getSocketWaits() > 0);
+        assertEquals(0, scheduler.getDroppedBytes());
+    }
+
+    @Test
+    public void dropOldest_staysWithinBudgetAndKeepsCommits() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        transport.backlog = 1000;
+        start(transport, 8 * FRAME, SendScheduler.Policy.DROP_OLDEST);
+
+        for (int i = 0; i < 6; i++) scheduler.appendAudio(frame(i), 0, FRAME);
+        scheduler.commit();
+        for (int i = 6; i < 20; i++) scheduler.appendAudio(frame(i), 0, FRAME);
+        scheduler.commit();
+        assertTrue(scheduler.getQueuedBytes() <= 8 * FRAME);
+        transport.backlog = 0;
+
+        List<String> sent = transport.await(5);
+        // 第一轮已经commit的音频完整保留；预算不够时丢的是第二轮（还没commit）最旧的音频.
+        assertEquals(java.util.Arrays.asList("audio:4000", "audio:2000", "commit", "audio:2000", "commit"), sent);
+        for (int i = 0; i < 6; i++) {
+            assertEquals((byte) i, transport.audio.get(i / 4)[(i % 4) * FRAME]);
+        }
+        assertEquals((byte) 18, transport.audio.get(2)[0]);
+        assertEquals((byte) 19, transport.audio.get(2)[FRAME]);
+        assertEquals(12 * FRAME, scheduler.getDroppedBytes());
+        assertEquals(6, scheduler.getDroppedMessages());
+        assertTrue(scheduler.getMaxQueuedBytes() <= 8 * FRAME);
+    }
+
+    @Test
+    public void dropOldest_waitsWhenOnlyCommittedAudioIsQueued() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        transport.backlog = 1000;
+        start(transport, 4 * FRAME, SendScheduler.Policy.DROP_OLDEST);
+
+        for (int i = 0; i < 4; i++) scheduler.appendAudio(frame(i), 0, FRAME);
+        scheduler.commit();
+        // 预算被已经commit的音频占满：等发送线程，超时后丢弃新来的音频，不动已经commit的.
+        scheduler.appendAudio(frame(4), 0, FRAME);
+        assertEquals(FRAME, scheduler.getDroppedBytes());
+        assertTrue(scheduler.getBlockedMs() >= 90);
+
+        // 发送线程在等待期间腾出空间：新音频排在commit后面.
+        Thread unblock = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            transport.backlog = 0;
+        });
+        unblock.start();
+        scheduler.appendAudio(frame(5), 0, FRAME);
+        unblock.join();
+
+        List<String> sent = transport.await(3);
+        assertEquals(java.util.Arrays.asList("audio:4000", "commit", "audio:1000"), sent);
+        assertEquals((byte) 3, transport.audio.get(0)[3 * FRAME]);
+        assertEquals((byte) 5, transport.audio.get(1)[0]);
+        assertEquals(FRAME, scheduler.getDroppedBytes());
+    }
+
+    @Test
+    public void block_waitsForSenderThenDropsAfterTimeout() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        transport.backlog = 1000;
+        start(transport, 4 * FRAME, SendScheduler.Policy.BLOCK);
+        for (int i = 0; i < 4; i++) scheduler.appendAudio(frame(i), 0, FRAME);
+
+        // 发送线程一直卡着：等满超时后丢弃最旧的.
+        long start = System.nanoTime();
+        scheduler.appendAudio(frame(4), 0, FRAME);
+        assertTrue((System.nanoTime() - start) / 1000000 >= 90);
+        assertEquals(4 * FRAME, scheduler.getDroppedBytes());
+
+        // 发送线程在等待期间腾出空间：不丢数据.
+        Thread unblock = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            transport.backlog = 0;
+        });
+        unblock.start();
+        for (int i = 5; i < 8; i++) scheduler.appendAudio(frame(i), 0, FRAME);
+        scheduler.appendAudio(frame(8), 0, FRAME);
+        unblock.join();
+        waitFor(() -> scheduler.getSentAudioBytes() == 5 * FRAME);
+        assertEquals(4 * FRAME, scheduler.getDroppedBytes());
+        assertTrue(scheduler.getBlockedMs() >= 90);
+    }
+
+    @Test
+    public void control_jumpsAheadOfQueuedAudio() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        transport.backlog = 1000;
+        start(transport, 100 * FRAME, SendScheduler.Policy.DROP_OLDEST);
+
+        scheduler.appendAudio(frame(1), 0, FRAME);
+        scheduler.commit();
+        scheduler.sendControl("cancel");
+
+        assertEquals("text:cancel", transport.await(1).get(0));
+        transport.backlog = 0;
+        assertEquals(java.util.Arrays.asList("text:cancel", "audio:1000", "commit"), transport.await(3));
+    }
+
+    @Test
+    public void close_drainsQueueBeforeStopping() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        start(transport, 100 * FRAME, SendScheduler.Policy.DROP_OLDEST);
+        for (int i = 0; i < 50; i++) scheduler.appendAudio(frame(i), 0, FRAME);
+        scheduler.commit();
+
+        scheduler.close(2000);
+
+        assertEquals(50 * FRAME, scheduler.getSentAudioBytes());
+        assertEquals("commit", transport.sent.get(transport.sent.size() - 1));
+        scheduler.appendAudio(frame(0), 0, FRAME); // 关闭后忽略
+        assertEquals(0, scheduler.getQueuedBytes());
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.audio_app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static com.example.audio_app.Config.RECORD_RATE;
+import static org.junit.Assert.*;
+
+// 启动流水线连本地假服务端：各阶段并行，连接建立前录到的音频在连上后按顺序发出，取消时撤销已打开的资源.
+public class SessionBootstrapTest {
+    private static final int SLICE_BYTES = RECORD_RATE * 2 / 10; // 100ms
+
+    private FakeRealtimeServer server;
+    private SessionManager sessionManager;
+    private final ExecutorService executor = Executors.newFixedThreadPool(Config.BOOTSTRAP_THREADS);
+
+    private static final class NullSink implements PlaybackEngine.Sink {
+        @Override
+        public int write(byte[] data, int offset, int length) {
+            return length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    // 和MainActivity一样：音频经AudioHandler用的PreConnectUplink上行，connect时把客户端交给它.
+    // 各阶段之间的先后由latch控制，测试不依赖耗时.
+    private class Steps implements SessionBootstrap.Steps {
+        final PreConnectUplink uplink = new PreConnectUplink(Config.UPLINK_QUEUE_MAX_BYTES);
+        // 麦克风阶段录完音频后打开，会话请求等它，音频一定先进缓存.
+        final CountDownLatch audioCaptured = new CountDownLatch(1);
+        final CountDownLatch connectCalled = new CountDownLatch(1);
+        // 麦克风阶段在检查取消之前等它.
+        final CountDownLatch micGate = new CountDownLatch(1);
+        final CountDownLatch undone = new CountDownLatch(1);
+        final AtomicBoolean connectBeforeMicFinished = new AtomicBoolean(false);
+        final AtomicInteger microphoneOpens = new AtomicInteger();
+        final AtomicInteger microphoneCloses = new AtomicInteger();
+        volatile WebSocketClient disconnected;
+        // 相当于AudioHandler的锁.
+        private final Object recordingLock = new Object();
+
+        @Override
+        public boolean createSession() {
+            await(audioCaptured);
+            return sessionManager.createSession();
+        }
+
+        @Override
+        public boolean openMicrophone(BooleanSupplier cancelled) {
+            // 设备打开后马上说了一句话，这时会话还没创建好.
+            byte[] slice = new byte[SLICE_BYTES];
+            for (int i = 0; i < 5; i++) {
+                Arrays.fill(slice, (byte) (i + 1));
+                uplink.sendAudio(slice, 0, slice.length);
+            }
+            uplink.sendCommit();
+            audioCaptured.countDown();
+            // 麦克风阶段还没结束时连接就已经开始.
+            connectBeforeMicFinished.set(await(connectCalled));
+            await(micGate);
+            synchronized (recordingLock) {
+                if (cancelled.getAsBoolean()) return false;
+                microphoneOpens.incrementAndGet();
+                return true;
+            }
+        }
+
+        @Override
+        public void warmUpPlayback() {
+        }
+
+        @Override
+        public WebSocketClient connect() {
+            sessionManager.connectWebSocket(null, new NullSink());
+            WebSocketClient client = sessionManager.getWebSocketClient();
+            uplink.setClient(client);
+            connectCalled.countDown();
+            return client;
+        }
+
+        @Override
+        public void closeMicrophone() {
+            synchronized (recordingLock) {
+                microphoneCloses.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void disconnect(WebSocketClient client) {
+            uplink.clearClient(client);
+            client.close();
+            disconnected = client;
+            undone.countDown();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeRealtimeServer();
+        server.start();
+        sessionManager = new SessionManager(server.apiBaseUrl(), server.wsBaseUrl());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sessionManager.close();
+        server.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void phasesOverlap_andAudioBeforeConnectIsDelivered() throws Exception {
+        server.setAdpcmSupported(false); // 无损上行，按字节检查顺序
+        Steps steps = new Steps();
+        steps.micGate.countDown();
+        SessionBootstrap bootstrap = new SessionBootstrap(steps, executor);
+
+        WebSocketClient client = bootstrap.start().get(10, TimeUnit.SECONDS);
+
+        assertTrue(client.isConnected());
+        // 麦克风阶段结束前连接就已经开始，而不是等麦克风打开后再串行创建连接.
+        assertTrue(steps.connectBeforeMicFinished.get());
+        assertEquals(1, steps.microphoneOpens.get());
+        for (int phase = SessionBootstrap.PHASE_SESSION; phase <= SessionBootstrap.PHASE_TOTAL; phase++) {
+            assertTrue(bootstrap.summary(), bootstrap.getPhaseMs(phase) >= 0);
+        }
+
+        // 连接前录的音频和commit经PreConnectUplink在连上后按顺序发出.
+        assertSame(client, steps.uplink.getClient());
+        assertEquals(0, steps.uplink.getPendingBytes());
+        assertTrue(server.awaitEvent("commit", 5000));
+        assertEquals(5L * SLICE_BYTES, server.getAudioBytes());
+        byte[] received = server.getReceivedPcm();
+        for (int i = 0; i < 5; i++) {
+            assertEquals((byte) (i + 1), received[i * SLICE_BYTES]);
+        }
+    }
+
+    @Test
+    public void cancelDuringBootstrap_doesNotOpenMicAndClosesClient() throws Exception {
+        Steps steps = new Steps();
+        SessionBootstrap bootstrap = new SessionBootstrap(steps, executor);
+        CompletableFuture<WebSocketClient> future = bootstrap.start();
+
+        // 连接已经创建、麦克风阶段还没打开设备时停止会话.
+        assertTrue(await(steps.connectCalled));
+        WebSocketClient client = sessionManager.getWebSocketClient();
+        bootstrap.cancel();
+        steps.micGate.countDown();
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("取消后应该异常结束");
+        } catch (CancellationException expected) {
+        }
+        assertTrue(await(steps.undone));
+        assertEquals(0, steps.microphoneOpens.get());
+        assertEquals(0, steps.microphoneCloses.get());
+        assertSame(client, steps.disconnected);
+        assertNull(steps.uplink.getClient());
+        client.whenClosed().get(5, TimeUnit.SECONDS);
+        assertFalse(client.isConnected());
+    }
+
+    @Test
+    public void cancelAfterCompletion_undoesMicAndClient() throws Exception {
+        Steps steps = new Steps();
+        steps.micGate.countDown();
+        SessionBootstrap bootstrap = new SessionBootstrap(steps, executor);
+        WebSocketClient client = bootstrap.start().get(10, TimeUnit.SECONDS);
+
+        // 结果交给调用方之前会话被停止或重新开始：cancel()直接撤销，只撤销一次.
+        bootstrap.cancel();
+        bootstrap.cancel();
+
+        assertEquals(1, steps.microphoneCloses.get());
+        assertSame(client, steps.disconnected);
+        assertNull(steps.uplink.getClient());
+        client.whenClosed().get(5, TimeUnit.SECONDS);
+        assertFalse(client.isConnected());
+    }
+
+    @Test
+    public void sessionFailure_failsPipelineWithoutConnecting() throws Exception {
+        sessionManager = new SessionManager(server.apiBaseUrl() + "/missing", server.wsBaseUrl());
+        Steps steps = new Steps();
+        // 不会连接，麦克风阶段不用等.
+        steps.connectCalled.countDown();
+        steps.micGate.countDown();
+        SessionBootstrap bootstrap = new SessionBootstrap(steps, executor);
+
+        try {
+            bootstrap.start().get(10, TimeUnit.SECONDS);
+            fail("创建会话失败时应该异常结束");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertNull(sessionManager.getWebSocketClient());
+        assertEquals(-1, bootstrap.getPhaseMs(SessionBootstrap.PHASE_SESSION));
+        assertEquals(-1, bootstrap.getPhaseMs(SessionBootstrap.PHASE_TOTAL));
+    }
+}
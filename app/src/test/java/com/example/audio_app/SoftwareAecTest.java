@@ -0,0 +1,176 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static com.example.audio_app.Config.*;
+import static org.junit.Assert.*;
+
+// 用 res/raw/aec_testing.wav 作远端（播放的声音），合成带回声的麦克风信号离线测试.
+public class SoftwareAecTest {
+    private static final File FAR_END = new File("src/main/res/raw/aec_testing.wav");
+    private static final int BLOCK = SOFTWARE_AEC_BLOCK_SAMPLES;
+    private static final int PARTITIONS = SOFTWARE_AEC_TAIL_MS * RECORD_RATE / 1000 / BLOCK;
+
+    // 远端参考：按播放时的方式写入EchoReference，重采样到16k.
+    private static float[] farEnd16k() throws Exception {
+        WavFile.Data wav = WavFile.read(FAR_END);
+        assertEquals(PLAYBACK_RATE, wav.sampleRate);
+        EchoReference reference = new EchoReference(wav.sampleRate, RECORD_RATE, wav.pcm.length);
+        // 和播放线程一样分块写入.
+        for (int offset = 0; offset < wav.pcm.length; offset += 4800) {
+            reference.write(wav.pcm, offset, Math.min(4800, wav.pcm.length - offset));
+        }
+        float[] far = new float[reference.size()];
+        reference.read(far, far.length);
+        return far;
+    }
+
+    // 回声路径：40ms延迟 + 60ms指数衰减的随机冲激响应.
+    private static float[] echoPath(long seed) {
+        Random random = new Random(seed);
+        int delay = 40 * RECORD_RATE / 1000;
+        int decay = 60 * RECORD_RATE / 1000;
+        float[] h = new float[delay + decay];
+        double energy = 0;
+        for (int i = 0; i < decay; i++) {
+            h[delay + i] = (float) (random.nextGaussian() * Math.exp(-5.0 * i / decay));
+            energy += h[delay + i] * h[delay + i];
+        }
+        // 回声增益约 -6dB.
+        float gain = (float) (0.5 / Math.sqrt(energy));
+        for (int i = 0; i < h.length; i++) h[i] *= gain;
+        return h;
+    }
+
+    private static float[] convolve(float[] x, float[] h) {
+        float[] y = new float[x.length];
+        for (int n = 0; n < x.length; n++) {
+            float sum = 0;
+            for (int k = 0; k < h.length && k <= n; k++) {
+                sum += h[k] * x[n - k];
+            }
+            y[n] = sum;
+        }
+        return y;
+    }
+
+    private static byte[] toPcm(float[] samples) {
+        byte[] pcm = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            int value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(samples[i])));
+            pcm[2 * i] = (byte) value;
+            pcm[2 * i + 1] = (byte) (value >> 8);
+        }
+        return pcm;
+    }
+
+    private static float sample(byte[] pcm, int index) {
+        return (short) ((pcm[2 * index] & 0xff) | (pcm[2 * index + 1] << 8));
+    }
+
+    // 逐块运行AEC，返回输出PCM.
+    private static byte[] run(SoftwareAec aec, byte[] mic, float[] far) {
+        byte[] out = new byte[mic.length];
+        float[] farBlock = new float[BLOCK];
+        int blocks = mic.length / 2 / BLOCK;
+        for (int n = 0; n < blocks; n++) {
+            System.arraycopy(far, n * BLOCK, farBlock, 0, BLOCK);
+            aec.process(mic, n * BLOCK * 2, farBlock, out, n * BLOCK * 2);
+        }
+        return out;
+    }
+
+    private static double energy(byte[] pcm, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            float s = sample(pcm, i);
+            sum += s * s;
+        }
+        return sum;
+    }
+
+    private static SoftwareAec newAec() {
+        return new SoftwareAec(BLOCK, PARTITIONS, SOFTWARE_AEC_STEP_SIZE);
+    }
+
+    @Test
+    public void process_cancelsEchoOfTestRecording() throws Exception {
+        float[] far = farEnd16k();
+        float[] echo = convolve(far, echoPath(1));
+        Random noise = new Random(2);
+        for (int i = 0; i < echo.length; i++) echo[i] += (float) (noise.nextGaussian() * 20);
+        byte[] mic = toPcm(echo);
+
+        SoftwareAec aec = newAec();
+        byte[] out = run(aec, mic, far);
+
+        // 前3秒收敛，之后统计回声抑制量.
+        int from = 3 * RECORD_RATE;
+        int to = mic.length / 2 / BLOCK * BLOCK;
+        double erle = 10 * Math.log10(energy(mic, from, to) / energy(out, from, to));
+        assertTrue("ERLE " + erle + " dB", erle > 12);
+    }
+
+    // 双讲：后半段叠加近端说话（录音样本），近端语音应该基本保留，滤波器不发散.
+    @Test
+    public void process_keepsNearEndSpeechDuringDoubleTalk() throws Exception {
+        float[] far = farEnd16k();
+        float[] mixed = convolve(far, echoPath(3));
+        WavFile.Data near = WavFile.read(firstRecording());
+        float[] nearSpeech = new float[mixed.length];
+        int start = mixed.length / 2;
+        for (int i = start; i < mixed.length && i - start < near.pcm.length / 2; i++) {
+            nearSpeech[i] = sample(near.pcm, i - start);
+            mixed[i] += nearSpeech[i];
+        }
+        byte[] mic = toPcm(mixed);
+
+        byte[] out = run(newAec(), mic, far);
+
+        // 输出减去近端语音后剩下的是残留回声+失真，和不做回声消除时比较.
+        int to = mic.length / 2 / BLOCK * BLOCK;
+        double speechEnergy = 0;
+        double distortion = 0;
+        double echoEnergy = 0;
+        for (int i = start; i < to; i++) {
+            double diff = sample(out, i) - nearSpeech[i];
+            double echo = sample(mic, i) - nearSpeech[i];
+            speechEnergy += nearSpeech[i] * nearSpeech[i];
+            distortion += diff * diff;
+            echoEnergy += echo * echo;
+        }
+        double snrBefore = 10 * Math.log10(speechEnergy / echoEnergy);
+        double snrAfter = 10 * Math.log10(speechEnergy / distortion);
+        assertTrue("SNR " + snrBefore + " -> " + snrAfter + " dB", snrAfter - snrBefore > 10);
+    }
+
+    @Test
+    public void process_passesNearEndThroughWhenFarEndIsSilent() {
+        Random random = new Random(4);
+        float[] nearEnd = new float[BLOCK * 20];
+        for (int i = 0; i < nearEnd.length; i++) nearEnd[i] = (float) (random.nextGaussian() * 3000);
+        byte[] mic = toPcm(nearEnd);
+
+        byte[] out = run(newAec(), mic, new float[nearEnd.length]);
+
+        assertArrayEquals(mic, out);
+    }
+
+    private static File firstRecording() {
+        File[] dirs = new File("../recorded_wav_files").listFiles(File::isDirectory);
+        assertNotNull(dirs);
+        java.util.Arrays.sort(dirs);
+        for (File dir : dirs) {
+            File[] files = dir.listFiles((d, name) -> name.endsWith(".wav") && new File(d, name).length() > 64000);
+            if (files != null && files.length > 0) {
+                java.util.Arrays.sort(files);
+                return files[0];
+            }
+        }
+        fail("没有找到录音样本");
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.example.audio_app.Config.*;
+import static org.junit.Assert.*;
+
+public class SpectralVadTest {
+    private static final int FRAME_SAMPLES = FRAMES_PER_BUFFER / 2;
+
+    // 能量检测始终通过，只测试频谱特征.
+    private static final VoiceActivityDetector ALWAYS_LOUD = new VoiceActivityDetector() {
+        @Override
+        public boolean isSpeech(byte[] frame, int length) {
+            return true;
+        }
+
+        @Override
+        public void reset() {
+        }
+    };
+
+    private static SpectralVad newVad() {
+        return new SpectralVad(ALWAYS_LOUD, FRAME_SAMPLES, RECORD_RATE,
+                SPECTRAL_VAD_MIN_BAND_RATIO, SPECTRAL_VAD_MAX_FLATNESS, SPECTRAL_VAD_MAX_ZCR);
+    }
+
+    private static byte[] toPcm(double[] samples) {
+        byte[] pcm = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            int value = (int) Math.max(-32768, Math.min(32767, Math.round(samples[i])));
+            pcm[2 * i] = (byte) value;
+            pcm[2 * i + 1] = (byte) (value >> 8);
+        }
+        return pcm;
+    }
+
+    // 类似元音：基频150Hz的谐波，能量集中在500~2500Hz的共振峰附近.
+    private static byte[] voicedFrame() {
+        double[] samples = new double[FRAME_SAMPLES];
+        for (int h = 1; h * 150 < 4000; h++) {
+            double f = h * 150;
+            double gain = Math.exp(-Math.pow((f - 700) / 300, 2)) + 0.6 * Math.exp(-Math.pow((f - 1800) / 400, 2));
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] += 3000 * gain * Math.sin(2 * Math.PI * f * i / RECORD_RATE + h);
+            }
+        }
+        return toPcm(samples);
+    }
+
+    private static byte[] whiteNoiseFrame(long seed) {
+        Random random = new Random(seed);
+        double[] samples = new double[FRAME_SAMPLES];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextGaussian() * 2000;
+        }
+        return toPcm(samples);
+    }
+
+    // 风扇/电源的低频嗡声.
+    private static byte[] humFrame() {
+        double[] samples = new double[FRAME_SAMPLES];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = 4000 * Math.sin(2 * Math.PI * 100 * i / RECORD_RATE)
+                    + 1500 * Math.sin(2 * Math.PI * 200 * i / RECORD_RATE);
+        }
+        return toPcm(samples);
+    }
+
+    @Test
+    public void fft_matchesNaiveDft() {
+        int n = 64;
+        Random random = new Random(7);
+        float[] re = new float[n];
+        float[] im = new float[n];
+        double[] inputRe = new double[n];
+        double[] inputIm = new double[n];
+        for (int i = 0; i < n; i++) {
+            re[i] = (float) (inputRe[i] = random.nextGaussian());
+            im[i] = (float) (inputIm[i] = random.nextGaussian());
+        }
+
+        new Fft(n).transform(re, im);
+
+        for (int k = 0; k < n; k++) {
+            double sumRe = 0;
+            double sumIm = 0;
+            for (int t = 0; t < n; t++) {
+                double angle = -2 * Math.PI * k * t / n;
+                sumRe += inputRe[t] * Math.cos(angle) - inputIm[t] * Math.sin(angle);
+                sumIm += inputRe[t] * Math.sin(angle) + inputIm[t] * Math.cos(angle);
+            }
+            assertEquals(sumRe, re[k], 1e-3);
+            assertEquals(sumIm, im[k], 1e-3);
+        }
+    }
+
+    @Test
+    public void isSpeech_acceptsVoicedAndRejectsNoise() {
+        SpectralVad vad = newVad();
+        byte[] voiced = voicedFrame();
+        byte[] noise = whiteNoiseFrame(1);
+        byte[] hum = humFrame();
+
+        assertTrue(vad.isSpeech(voiced, voiced.length));
+        assertFalse(vad.isSpeech(noise, noise.length));
+        assertTrue(vad.getLastFlatness() > SPECTRAL_VAD_MAX_FLATNESS);
+        assertFalse(vad.isSpeech(hum, hum.length));
+        assertTrue(vad.getLastBandRatio() < SPECTRAL_VAD_MIN_BAND_RATIO);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.audio_app.Config.*;
+import static org.junit.Assert.*;
+
+public class SpeechSegmenterTest {
+    private static final int FRAME_MS = FRAMES_PER_BUFFER / 2 * 1000 / RECORD_RATE;
+
+    // 按时间段拼接的测试信号：amplitude为0的段是静音，其余是300Hz正弦.
+    private static byte[] signal(int... msAndAmplitude) {
+        int total = 0;
+        for (int i = 0; i < msAndAmplitude.length; i += 2) total += msAndAmplitude[i] * RECORD_RATE / 1000;
+        byte[] pcm = new byte[total * 2];
+        int n = 0;
+        for (int i = 0; i < msAndAmplitude.length; i += 2) {
+            int samples = msAndAmplitude[i] * RECORD_RATE / 1000;
+            for (int j = 0; j < samples; j++, n++) {
+                int value = (int) Math.round(msAndAmplitude[i + 1] * Math.sin(2 * Math.PI * 300 * n / RECORD_RATE));
+                pcm[2 * n] = (byte) value;
+                pcm[2 * n + 1] = (byte) (value >> 8);
+            }
+        }
+        return pcm;
+    }
+
+    private static ReplayHarness rmsHarness() {
+        return new ReplayHarness(VAD_TYPE_RMS, 0, false);
+    }
+
+    @Test
+    public void replay_sendsSegmentAndCommitsAfterLongSilence() {
+        byte[] pcm = signal(500, 0, 1500, 5000, 3000, 0);
+
+        ReplayHarness.FileResult result = rmsHarness().replay(new File("synthetic"), pcm);
+
+        assertEquals(1, result.segments.size());
+        assertEquals(1, result.commits.size());
+        assertEquals(0, result.droppedCount);
+        // 语音段 = 预缓存5帧 + 1.5s语音 + 短静默前的帧，长静默（1.8s）后commit.
+        long segmentMs = result.segments.get(0)[1];
+        assertTrue("segment " + segmentMs + "ms", segmentMs >= 1500 && segmentMs <= 1500 + 6 * FRAME_MS + 500);
+        long commitMs = result.commits.get(0);
+        long expected = 2000 + (long) (LONG_SILENCE_DURATION * 1000);
+        assertEquals(expected, commitMs, 2 * FRAME_MS);
+        assertEquals(segmentMs * RECORD_RATE / 1000 * 2, result.sentBytes, 2 * FRAMES_PER_BUFFER);
+    }
+
+    @Test
+    public void replay_shortPauseSendsWithoutCommit() {
+        byte[] pcm = signal(500, 0, 1000, 5000, 1000, 0, 1000, 5000, 2500, 0);
+
+        ReplayHarness.FileResult result = rmsHarness().replay(new File("synthetic"), pcm);
+
+        assertEquals(2, result.segments.size());
+        assertEquals(1, result.commits.size());
+        assertTrue(result.segments.get(0)[0] < result.commits.get(0));
+    }
+
+    @Test
+    public void replay_streamingSendsSameBytesAsBatch() {
+        byte[] pcm = signal(500, 0, 3000, 5000, 2500, 0);
+
+        ReplayHarness.FileResult batch = new ReplayHarness(VAD_TYPE_RMS, 0, false).replay(new File("batch"), pcm);
+        ReplayHarness.FileResult streaming =
+                new ReplayHarness(VAD_TYPE_RMS, 0, true).replay(new File("streaming"), pcm);
+
+        assertEquals(batch.sentBytes, streaming.sentBytes);
+        assertEquals(batch.commits, streaming.commits);
+    }
+
+    // 流式模式直接驱动SpeechSegmenter：第一个字节非0的帧是语音，记下每次发送的长度和发生在第几帧.
+    @Test
+    public void streaming_sendsFixedSlicesAboveMinSegmentAndTailAtShortSilence() {
+        List<int[]> sends = new ArrayList<>();
+        List<Integer> segments = new ArrayList<>();
+        int[] frameIndex = {0};
+        SpeechSegmenter segmenter = new SpeechSegmenter(new VoiceActivityDetector() {
+            @Override
+            public boolean isSpeech(byte[] frame, int length) {
+                return frame[0] != 0;
+            }
+
+            @Override
+            public void reset() {
+            }
+        }, true, new SpeechSegmenter.Listener() {
+            @Override
+            public void onSpeechStart() {
+            }
+
+            @Override
+            public void onAudio(byte[] pcm, int offset, int length) {
+                sends.add(new int[]{frameIndex[0], length});
+            }
+
+            @Override
+            public void onSegment(byte[] pcm, int length) {
+                segments.add(length);
+            }
+
+            @Override
+            public void onDropped(int length) {
+            }
+
+            @Override
+            public void onCommit() {
+            }
+        });
+        byte[] speech = new byte[FRAMES_PER_BUFFER];
+        Arrays.fill(speech, (byte) 1);
+        byte[] silence = new byte[FRAMES_PER_BUFFER];
+
+        // 语音段不超过MIN_SEGMENT_BYTES时什么都不发.
+        int minFrames = SpeechSegmenter.MIN_SEGMENT_BYTES / FRAMES_PER_BUFFER;
+        for (; frameIndex[0] < minFrames; frameIndex[0]++) {
+            segmenter.process(speech, FRAMES_PER_BUFFER);
+        }
+        assertTrue(sends.isEmpty());
+
+        // 超过之后每个切片正好STREAM_SLICE_BYTES.
+        int speechFrames = minFrames + 20;
+        for (; frameIndex[0] < speechFrames; frameIndex[0]++) {
+            segmenter.process(speech, FRAMES_PER_BUFFER);
+        }
+        assertFalse(sends.isEmpty());
+        for (int[] send : sends) {
+            assertEquals(STREAM_SLICE_BYTES, send[1]);
+        }
+        int slices = sends.size();
+        assertEquals(speechFrames * FRAMES_PER_BUFFER / STREAM_SLICE_BYTES, slices);
+
+        // 短静默时发出剩下的尾巴，整段语音都发出去了.
+        int shortSilenceFrames = (int) Math.ceil(SHORT_SILENCE_DURATION * RECORD_RATE * 2 / FRAMES_PER_BUFFER) + 1;
+        for (int i = 0; i < shortSilenceFrames; i++, frameIndex[0]++) {
+            segmenter.process(silence, FRAMES_PER_BUFFER);
+        }
+        assertEquals(1, segments.size());
+        int[] tail = sends.get(sends.size() - 1);
+        assertTrue(tail[1] > 0 && tail[1] < STREAM_SLICE_BYTES);
+        assertEquals(frameIndex[0] - 1, tail[0]);
+        long sent = 0;
+        for (int[] send : sends) sent += send[1];
+        assertEquals((long) segments.get(0), sent);
+    }
+
+    // 回放仓库里的真实录音：每个文件都能正常走完. 统计报告用ReplayHarness.main查看，耗时看SegmentBenchmark.
+    @Test
+    public void replay_recordedCorpus() throws Exception {
+        assumeCorpus();
+        ReplayHarness.Report report = new ReplayHarness().run(ReplayHarness.collect(ReplayHarness.DEFAULT_CORPUS));
+
+        assertFalse(report.files.isEmpty());
+        // 录音本身就是保存下来的语音段，大多数文件应该检测到语音并commit.
+        assertTrue("commits " + report.commitCount(), report.commitCount() >= report.files.size() / 2);
+    }
+
+    private static void assumeCorpus() {
+        org.junit.Assume.assumeTrue(ReplayHarness.DEFAULT_CORPUS.isDirectory());
+    }
+
+    @Test
+    public void collect_isSortedAndOnlyWav() {
+        assumeCorpus();
+        java.util.List<File> files = ReplayHarness.collect(ReplayHarness.DEFAULT_CORPUS);
+        java.util.List<File> sorted = new java.util.ArrayList<>(files);
+        Collections.sort(sorted);
+        assertEquals(sorted, files);
+        for (File f : files) assertTrue(f.getName().endsWith(".wav"));
+    }
+}
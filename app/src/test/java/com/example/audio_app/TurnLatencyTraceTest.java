@@ -0,0 +1,146 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.audio_app.TurnLatencyTrace.*;
+import static org.junit.Assert.*;
+
+public class TurnLatencyTraceTest {
+    private static final long MS = 1_000_000L;
+
+    // 一轮：t0说话结束，之后各事件相对t0的毫秒数.
+    private static void turn(TurnLatencyTrace trace, long t0, int commitMs, int deltaMs, int playMs, int doneMs) {
+        trace.markAt(SPEECH_END, t0);
+        trace.markAt(SEGMENT_SENT, t0 + commitMs * MS - MS);
+        trace.markAt(COMMIT, t0 + commitMs * MS);
+        trace.markAt(FIRST_DELTA, t0 + deltaMs * MS);
+        trace.markAt(FIRST_DELTA, t0 + (deltaMs + 50) * MS);
+        trace.markAt(FIRST_PLAYBACK, t0 + playMs * MS);
+        trace.markAt(FIRST_PLAYBACK, t0 + (playMs + 50) * MS);
+        trace.markAt(AUDIO_DONE, t0 + doneMs * MS);
+    }
+
+    @Test
+    public void markAt_recordsIntervalsOfCompletedTurn() {
+        TurnLatencyTrace trace = new TurnLatencyTrace(8);
+
+        turn(trace, 1000 * MS, 1800, 2300, 2400, 5000);
+
+        assertEquals(1, trace.getCompletedTurns());
+        assertEquals(1800, trace.getPercentileMs(ENDPOINTING, 50), 1800 / 16.0);
+        assertEquals(500, trace.getPercentileMs(SERVER_FIRST_BYTE, 50), 500 / 16.0);
+        assertEquals(100, trace.getPercentileMs(PLAYBACK_START, 50), 100 / 16.0);
+        assertEquals(2400, trace.getPercentileMs(END_TO_END, 50), 2400 / 16.0);
+        assertEquals(3200, trace.getPercentileMs(RESPONSE, 50), 3200 / 16.0);
+    }
+
+    // 短回复：audio.done先到，预缓冲之后才开始播放，端到端延迟照样记录.
+    @Test
+    public void markAt_playbackAfterAudioDoneStillRecordsEndToEnd() {
+        TurnLatencyTrace trace = new TurnLatencyTrace(8);
+        trace.markAt(SPEECH_END, 1000 * MS);
+        trace.markAt(COMMIT, 2800 * MS);
+        trace.markAt(FIRST_DELTA, 3300 * MS);
+        trace.markAt(AUDIO_DONE, 3350 * MS);
+        assertEquals(0, trace.getCompletedTurns());
+
+        trace.markAt(FIRST_PLAYBACK, 3500 * MS);
+
+        assertEquals(1, trace.getCompletedTurns());
+        assertEquals(2500, trace.getPercentileMs(END_TO_END, 50), 2500 / 16.0);
+        assertEquals(200, trace.getPercentileMs(PLAYBACK_START, 50), 200 / 16.0);
+        assertEquals(550, trace.getPercentileMs(RESPONSE, 50), 550 / 16.0);
+    }
+
+    // 没有音频的回复：audio.done之后这一轮保持打开，下一轮开始时结束.
+    @Test
+    public void markAt_replyWithoutPlaybackClosesAtNextTurn() {
+        TurnLatencyTrace trace = new TurnLatencyTrace(8);
+        trace.markAt(SPEECH_END, 1000 * MS);
+        trace.markAt(COMMIT, 2800 * MS);
+        trace.markAt(AUDIO_DONE, 3000 * MS);
+        assertEquals(0, trace.getCompletedTurns());
+
+        trace.markAt(SPEECH_END, 6000 * MS);
+
+        assertEquals(1, trace.getCompletedTurns());
+        assertEquals(1, trace.getCount(RESPONSE));
+        assertEquals(0, trace.getCount(END_TO_END));
+    }
+
+    @Test
+    public void markAt_ignoresDownstreamEventsBeforeCommit() {
+        TurnLatencyTrace trace = new TurnLatencyTrace(8);
+
+        trace.markAt(FIRST_DELTA, 10 * MS);
+        trace.markAt(AUDIO_DONE, 20 * MS);
+
+        assertEquals(0, trace.getCompletedTurns());
+        assertEquals(-1, trace.getPercentileMs(SERVER_FIRST_BYTE, 50), 0);
+    }
+
+    @Test
+    public void markAt_newSpeechAfterCommitClosesInterruptedTurn() {
+        TurnLatencyTrace trace = new TurnLatencyTrace(8);
+        trace.markAt(SPEECH_END, 0);
+        trace.markAt(COMMIT, 1800 * MS);
+        trace.markAt(FIRST_DELTA, 2200 * MS);
+        // 打断：回复被取消，没有audio.done，用户又说了一段.
+        trace.markAt(SPEECH_END, 4000 * MS);
+
+        assertEquals(1, trace.getCompletedTurns());
+        assertEquals(1, trace.getCount(SERVER_FIRST_BYTE));
+        assertEquals(0, trace.getCount(RESPONSE));
+        assertEquals(0, trace.getCount(END_TO_END));
+
+        trace.markAt(COMMIT, 5800 * MS);
+        trace.markAt(FIRST_DELTA, 6000 * MS);
+        trace.markAt(FIRST_PLAYBACK, 6100 * MS);
+        trace.markAt(AUDIO_DONE, 7000 * MS);
+        assertEquals(2, trace.getCompletedTurns());
+        assertEquals(2100, trace.getPercentileMs(END_TO_END, 50), 2100 / 16.0);
+    }
+
+    @Test
+    public void percentiles_matchSortedSamples() {
+        TurnLatencyTrace trace = new TurnLatencyTrace(8);
+        Random random = new Random(3);
+        long[] endToEnd = new long[1000];
+        long t = 0;
+        for (int i = 0; i < endToEnd.length; i++) {
+            int server = 200 + random.nextInt(1800);
+            turn(trace, t, 1800, 1800 + server, 1900 + server, 4000 + server);
+            endToEnd[i] = 1900 + server;
+            t += 10_000 * MS;
+        }
+        java.util.Arrays.sort(endToEnd);
+
+        for (double p : new double[] {50, 95, 99}) {
+            long expected = endToEnd[(int) Math.ceil(p / 100 * endToEnd.length) - 1];
+            assertEquals("p" + p, expected, trace.getPercentileMs(END_TO_END, p), expected / 16.0);
+        }
+    }
+
+    @Test
+    public void dump_writesHistogramsAndRecentTurns() throws Exception {
+        TurnLatencyTrace trace = new TurnLatencyTrace(2);
+        for (int i = 0; i < 3; i++) {
+            turn(trace, (i + 1) * 10_000 * MS, 1800, 2300, 2400, 5000);
+        }
+        File file = File.createTempFile("latency", ".csv");
+        file.deleteOnExit();
+
+        trace.dump(file);
+
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertTrue(lines.get(4), lines.get(4).startsWith("end_to_end,3,"));
+        // 只保留最近2轮，时间点相对于commit.
+        assertEquals("1,-1800.0,-1.0,0.0,500.0,600.0,3200.0", lines.get(lines.size() - 2));
+        assertEquals("2,-1800.0,-1.0,0.0,500.0,600.0,3200.0", lines.get(lines.size() - 1));
+    }
+}
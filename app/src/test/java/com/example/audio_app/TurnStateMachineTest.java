@@ -0,0 +1,203 @@
+package com.example.audio_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.audio_app.Config.*;
+import static org.junit.Assert.*;
+
+public class TurnStateMachineTest {
+    // 长静默需要的帧数，多两帧保证超过阈值.
+    private static final int LONG_SILENCE_FRAMES =
+            (int) (LONG_SILENCE_DURATION * RECORD_RATE * 2 / FRAMES_PER_BUFFER) + 2;
+
+    // 第一个字节非0的帧是语音，帧内容就是它的编号，可以检查语音段由哪些帧组成.
+    private static final class MarkerVad implements VoiceActivityDetector {
+        @Override
+        public boolean isSpeech(byte[] frame, int length) {
+            return frame[0] != 0;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+
+    private final List<String> events = new ArrayList<>();
+    private final List<byte[]> segments = new ArrayList<>();
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    private final TurnLatencyTrace trace = new TurnLatencyTrace(10);
+    private TurnStateMachine turns;
+
+    @Before
+    public void setUp() {
+        turns = create(null);
+    }
+
+    private TurnStateMachine create(BargeInDetector bargeIn) {
+        SpeechSegmenter segmenter = new SpeechSegmenter(new MarkerVad(), false, new SpeechSegmenter.Listener() {
+            @Override
+            public void onSpeechStart() {
+                events.add("start");
+            }
+
+            @Override
+            public void onAudio(byte[] pcm, int offset, int length) {
+                sent.write(pcm, offset, length);
+            }
+
+            @Override
+            public void onSegment(byte[] pcm, int length) {
+                segments.add(Arrays.copyOf(pcm, length));
+            }
+
+            @Override
+            public void onDropped(int length) {
+                events.add("dropped");
+            }
+
+            @Override
+            public void onCommit() {
+                events.add("commit");
+                turns.onCommit();
+            }
+        });
+        return new TurnStateMachine(segmenter, bargeIn, () -> events.add("barge-in"), trace);
+    }
+
+    private static byte[] frame(int marker) {
+        byte[] frame = new byte[FRAMES_PER_BUFFER];
+        Arrays.fill(frame, (byte) marker);
+        return frame;
+    }
+
+    private void feed(int marker, int frames) {
+        for (int i = 0; i < frames; i++) {
+            turns.process(frame(marker), FRAMES_PER_BUFFER);
+        }
+    }
+
+    // 一轮：说话后长静默，commit.
+    private void speakTurn(int marker, int frames) {
+        feed(marker, frames);
+        feed(0, LONG_SILENCE_FRAMES);
+    }
+
+    @Test
+    public void turnCycle_idleListeningSpeakingListening() {
+        assertEquals(TurnStateMachine.State.IDLE, turns.getState());
+        // 设备打开前的帧不进入分段.
+        feed(1, 10);
+        assertTrue(events.isEmpty());
+
+        turns.startListening();
+        assertEquals(TurnStateMachine.State.LISTENING, turns.getState());
+        speakTurn(1, 10);
+        assertEquals(Arrays.asList("start", "commit"), events);
+        assertEquals(TurnStateMachine.State.SPEAKING, turns.getState());
+
+        // AI回复期间麦克风数据不进入分段，不会开始新的语音段.
+        feed(2, 10);
+        assertEquals(2, events.size());
+
+        turns.startListening();
+        assertEquals(TurnStateMachine.State.LISTENING, turns.getState());
+        speakTurn(3, 10);
+        assertEquals(Arrays.asList("start", "commit", "start", "commit"), events);
+
+        turns.stop();
+        assertEquals(TurnStateMachine.State.IDLE, turns.getState());
+        feed(4, 10);
+        assertEquals(4, events.size());
+    }
+
+    @Test
+    public void startListening_resetsSegmentAndPreRoll() {
+        turns.startListening();
+        // 上一轮说到一半（预缓存里是编号1的帧）就切换了轮次.
+        feed(1, 10);
+        turns.startListening();
+        feed(0, 2);
+        feed(2, 10);
+        feed(0, LONG_SILENCE_FRAMES);
+
+        // 新的语音段只包含切换之后的帧：预缓存是两帧静音，后面是编号2的帧，没有上一轮的残留.
+        assertEquals(1, segments.size());
+        byte[] segment = segments.get(0);
+        for (int i = 0; i < segment.length; i += FRAMES_PER_BUFFER) {
+            byte marker = segment[i];
+            assertTrue("frame " + i / FRAMES_PER_BUFFER + " = " + marker, marker == 0 || marker == 2);
+        }
+        assertEquals(0, segment[0]);
+        assertEquals(2, segment[2 * FRAMES_PER_BUFFER]);
+        assertArrayEquals(segment, sent.toByteArray());
+    }
+
+    @Test
+    public void startListening_recordsTurnSwitchLatencyOnFirstFrame() {
+        assertEquals(-1, turns.getLastTurnSwitchLatencyNanos());
+
+        turns.startListening();
+        // 处理线程还没处理到新的一帧.
+        assertEquals(-1, turns.getLastTurnSwitchLatencyNanos());
+        feed(0, 1);
+        long first = turns.getLastTurnSwitchLatencyNanos();
+        assertTrue(first >= 0);
+
+        // 同一轮里后面的帧不再更新.
+        feed(0, 5);
+        assertEquals(first, turns.getLastTurnSwitchLatencyNanos());
+
+        speakTurn(1, 10);
+        turns.startListening();
+        feed(0, 1);
+        assertTrue(turns.getLastTurnSwitchLatencyNanos() >= 0);
+    }
+
+    @Test
+    public void speechEnd_markedOncePerTurnAtCommit() {
+        turns.startListening();
+        speakTurn(1, 10);
+        // 发送线程发出commit，回复没有播放（比如被取消）.
+        trace.mark(TurnLatencyTrace.COMMIT);
+
+        // 下一轮说话中间的短暂停顿不算说话结束，不会提前结束上一轮的统计.
+        turns.startListening();
+        feed(2, 10);
+        feed(0, 2);
+        feed(2, 10);
+        assertEquals(0, trace.getCompletedTurns());
+
+        // commit时才记说话结束，上一轮完整结束：说话结束 -> commit的区间有数据.
+        feed(0, LONG_SILENCE_FRAMES);
+        assertEquals(Arrays.asList("start", "commit", "start", "commit"), events);
+        assertEquals(1, trace.getCompletedTurns());
+        assertEquals(1, trace.getCount(TurnLatencyTrace.ENDPOINTING));
+    }
+
+    @Test
+    public void bargeIn_startsNewSegmentFromPreRoll() {
+        BargeInDetector bargeIn = new BargeInDetector(100, 3);
+        turns = create(bargeIn);
+        turns.startListening();
+        speakTurn(1, 10);
+        assertEquals(TurnStateMachine.State.SPEAKING, turns.getState());
+
+        // 回复开始播放后用户连续说话，切回监听，语音段从预缓存开始.
+        bargeIn.arm();
+        feed(5, 3);
+        assertEquals(Arrays.asList("start", "commit", "barge-in", "start"), events);
+        assertEquals(TurnStateMachine.State.LISTENING, turns.getState());
+        feed(5, 5);
+        feed(0, LONG_SILENCE_FRAMES);
+        // 预缓存的最后三帧就是触发打断的那三帧.
+        byte[] segment = segments.get(segments.size() - 1);
+        assertEquals(0, segment[(PRE_AUDIO_BUFFER_SIZE - 4) * FRAMES_PER_BUFFER]);
+        assertEquals(5, segment[(PRE_AUDIO_BUFFER_SIZE - 3) * FRAMES_PER_BUFFER]);
+    }
+}
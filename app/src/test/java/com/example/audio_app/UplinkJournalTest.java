@@ -0,0 +1,98 @@
+package com.example.audio_app;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UplinkJournalTest {
+
+    // 把重放结果记成 "a:<字节数>" 和 "commit"，并拼接音频内容.
+    private static final class RecordingSink implements UplinkJournal.Sink {
+        final List<String> events = new ArrayList<>();
+        final ByteArrayOutputStream audio = new ByteArrayOutputStream();
+
+        @Override
+        public void appendAudio(byte[] pcm, int offset, int length) {
+            events.add("a:" + length);
+            audio.write(pcm, offset, length);
+        }
+
+        @Override
+        public void commit() {
+            events.add("commit");
+        }
+    }
+
+    private static byte[] bytes(int from, int count) {
+        byte[] data = new byte[count];
+        for (int i = 0; i < count; i++) data[i] = (byte) (from + i);
+        return data;
+    }
+
+    @Test
+    public void replay_keepsAudioUntilCommitIsSent() {
+        UplinkJournal journal = new UplinkJournal(1000);
+        journal.append(bytes(0, 100), 0, 100);
+        journal.markCommit();
+        journal.append(bytes(100, 50), 0, 50);
+
+        // commit还没发出：两段音频和commit都要重放，commit在第一段后面.
+        RecordingSink sink = new RecordingSink();
+        assertEquals(150, journal.replay(sink));
+        assertEquals(java.util.Arrays.asList("a:100", "commit", "a:50"), sink.events);
+        assertArrayEquals(bytes(0, 150), sink.audio.toByteArray());
+
+        journal.commitSent();
+        assertEquals(50, journal.getPendingBytes());
+        assertEquals(0, journal.getPendingCommits());
+        RecordingSink after = new RecordingSink();
+        journal.replay(after);
+        assertEquals(java.util.Arrays.asList("a:50"), after.events);
+        assertArrayEquals(bytes(100, 50), after.audio.toByteArray());
+        assertEquals(200, journal.getReplayedBytes());
+        assertEquals(2, journal.getReplayCount());
+    }
+
+    @Test
+    public void overflow_dropsOldestAndWrapsAround() {
+        UplinkJournal journal = new UplinkJournal(256);
+        for (int i = 0; i < 10; i++) journal.append(bytes(i * 60, 60), 0, 60);
+
+        RecordingSink sink = new RecordingSink();
+        assertEquals(256, journal.replay(sink));
+        // 环形缓冲区回绕时分两段输出，内容是最新的256字节.
+        assertEquals(2, sink.events.size());
+        assertArrayEquals(bytes(600 - 256, 256), sink.audio.toByteArray());
+        assertEquals(600 - 256, journal.getDroppedBytes());
+
+        // 一次写入超过容量只保留最后的部分.
+        journal.append(bytes(0, 300), 0, 300);
+        RecordingSink big = new RecordingSink();
+        journal.replay(big);
+        assertArrayEquals(bytes(300 - 256, 256), big.audio.toByteArray());
+    }
+
+    @Test
+    public void commitsWhoseAudioWasDropped_areStillReplayedInOrder() {
+        UplinkJournal journal = new UplinkJournal(100);
+        journal.append(bytes(0, 80), 0, 80);
+        journal.markCommit();
+        journal.markCommit(); // 空的一轮
+        journal.append(bytes(80, 80), 0, 80);
+
+        RecordingSink sink = new RecordingSink();
+        journal.replay(sink);
+        // 后一段在环形缓冲区里回绕，分两次输出.
+        assertEquals(java.util.Arrays.asList("a:20", "commit", "commit", "a:20", "a:60"), sink.events);
+        assertArrayEquals(bytes(60, 100), sink.audio.toByteArray());
+
+        journal.commitSent();
+        journal.commitSent();
+        journal.commitSent(); // 多余的确认不影响
+        assertEquals(80, journal.getPendingBytes());
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.audio_app;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class UplinkProtocolTest {
+    private MockWebServer server;
+    private OkHttpClient client;
+    // 服务端收到的消息：文本帧为String，二进制帧为ByteString.
+    private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+
+    private final WebSocketListener serverListener = new WebSocketListener() {
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            received.add(text);
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, ByteString bytes) {
+            received.add(bytes);
+        }
+
+        // 回应客户端的关闭帧，否则服务端的连接一直不结束，shutdown等不到队列退出.
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, null);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.dispatcher().executorService().shutdown();
+        server.shutdown();
+    }
+
+    private WebSocket open(UplinkProtocol protocol) throws Exception {
+        CountDownLatch opened = new CountDownLatch(1);
+        Request request = new Request.Builder()
+                .url(server.url("/v1/realtime/sessions/test"))
+                .addHeader(UplinkProtocol.SUBPROTOCOL_HEADER, UplinkProtocol.SUBPROTOCOL_BINARY)
+                .build();
+        WebSocket webSocket = client.newWebSocket(request, new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                protocol.negotiate(response);
+                opened.countDown();
+            }
+        });
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+        return webSocket;
+    }
+
+    private static byte[] pcm(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        return data;
+    }
+
+    @Test
+    public void binaryMode_sendsRawPcmWithFixedHeader() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader(UplinkProtocol.SUBPROTOCOL_HEADER, UplinkProtocol.SUBPROTOCOL_BINARY)
+                .withWebSocketUpgrade(serverListener));
+        UplinkProtocol protocol = new UplinkProtocol();
+        WebSocket webSocket = open(protocol);
+        assertEquals(UplinkProtocol.Mode.BINARY, protocol.getMode());
+
+        byte[] data = pcm(4096);
+        assertTrue(protocol.sendAppend(webSocket, data, 100, 2000));
+        assertTrue(protocol.sendCommit(webSocket));
+
+        ByteBuffer append = ((ByteString) received.poll(5, TimeUnit.SECONDS)).asByteBuffer()
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(UplinkProtocol.HEADER_SIZE + 2000, append.remaining());
+        assertEquals(UplinkProtocol.MAGIC_0, append.get(0));
+        assertEquals(UplinkProtocol.MAGIC_1, append.get(1));
+        assertEquals(UplinkProtocol.VERSION, append.get(2));
+        assertEquals(UplinkProtocol.TYPE_APPEND, append.get(3));
+        assertEquals(0, append.getInt(4));
+        assertEquals(2000, append.getInt(8));
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(data[100 + i], append.get(UplinkProtocol.HEADER_SIZE + i));
+        }
+
+        ByteBuffer commit = ((ByteString) received.poll(5, TimeUnit.SECONDS)).asByteBuffer()
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(UplinkProtocol.HEADER_SIZE, commit.remaining());
+        assertEquals(UplinkProtocol.TYPE_COMMIT, commit.get(3));
+        assertEquals(1, commit.getInt(4));
+
+        webSocket.close(1000, null);
+    }
+
+    @Test
+    public void adpcmMode_sendsSelfContainedBlocks() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader(UplinkProtocol.SUBPROTOCOL_HEADER, UplinkProtocol.SUBPROTOCOL_ADPCM)
+                .withWebSocketUpgrade(serverListener));
+        UplinkProtocol protocol = new UplinkProtocol();
+        WebSocket webSocket = open(protocol);
+        assertEquals(UplinkProtocol.Mode.ADPCM, protocol.getMode());
+
+        byte[] data = pcm(4096);
+        assertTrue(protocol.sendAppend(webSocket, data, 0, 2000));
+        assertTrue(protocol.sendAppend(webSocket, data, 2000, 2000));
+        assertTrue(protocol.sendCommit(webSocket));
+
+        ImaAdpcm reference = new ImaAdpcm();
+        byte[] expected = new byte[ImaAdpcm.encodedSize(2000)];
+        for (int seq = 0; seq < 2; seq++) {
+            byte[] frame = ((ByteString) received.poll(5, TimeUnit.SECONDS)).toByteArray();
+            ByteBuffer header = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(UplinkProtocol.TYPE_APPEND_ADPCM, header.get(3));
+            assertEquals(seq, header.getInt(4));
+            assertEquals(expected.length, header.getInt(8));
+            // 与连续编码的结果一致，编码器状态在帧之间延续.
+            reference.encode(data, seq * 2000, 2000, expected, 0);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], frame[UplinkProtocol.HEADER_SIZE + i]);
+            }
+        }
+        ByteBuffer commit = ((ByteString) received.poll(5, TimeUnit.SECONDS)).asByteBuffer()
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(UplinkProtocol.TYPE_COMMIT, commit.get(3));
+        assertEquals(2, commit.getInt(4));
+        assertEquals(4000, protocol.getPcmBytes());
+        assertEquals(2L * (UplinkProtocol.HEADER_SIZE + expected.length), protocol.getWireBytes());
+
+        webSocket.close(1000, null);
+    }
+
+    @Test
+    public void jsonMode_fallsBackWhenServerDoesNotNegotiate() throws Exception {
+        server.enqueue(new MockResponse().withWebSocketUpgrade(serverListener));
+        UplinkProtocol protocol = new UplinkProtocol();
+        WebSocket webSocket = open(protocol);
+        assertEquals(UplinkProtocol.Mode.JSON, protocol.getMode());
+
+        byte[] data = pcm(4096);
+        assertTrue(protocol.sendAppend(webSocket, data, 100, 2000));
+        assertTrue(protocol.sendCommit(webSocket));
+
+        JSONObject append = new JSONObject((String) received.poll(5, TimeUnit.SECONDS));
+        assertEquals("input_audio_buffer.append", append.getString("type"));
+        byte[] wav = ByteString.decodeBase64(append.getString("audio")).toByteArray();
+        assertEquals(WavFile.HEADER_SIZE + 2000, wav.length);
+        assertEquals('R', wav[0]);
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(data[100 + i], wav[WavFile.HEADER_SIZE + i]);
+        }
+
+        JSONObject commit = new JSONObject((String) received.poll(5, TimeUnit.SECONDS));
+        assertEquals("input_audio_buffer.commit", commit.getString("type"));
+
+        webSocket.close(1000, null);
+    }
+}
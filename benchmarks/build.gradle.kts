@@ -0,0 +1,65 @@
+import java.util.Properties
+
+// JMH基准测试：./gradlew :benchmarks:jmh，结果在 build/results/jmh/results.txt.
+// 只跑一部分：./gradlew :benchmarks:jmh -PjmhIncludes=VadBenchmark
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// app是Android模块，JVM模块不能直接依赖它. 这里直接编译app中不依赖Android运行时的源文件，
+// 被测代码和app里的完全一致. Config引用了android.media.AudioFormat的常量，编译时需要android.jar，
+// 常量在编译期内联，运行时不需要.
+val appSources = listOf(
+    "Config", "WavFile", "Pcm16", "Fft", "VoiceActivityDetector", "RmsVad", "AdaptiveEnergyVad",
+    "SpectralVad", "PcmSegmentBuffer", "SpeechSegmenter", "PcmBufferPool", "AudioDeltaDecoder",
+    "UplinkProtocol", "PolyphaseResampler", "ImaAdpcm", "SoftwareAec",
+    "DelayEstimator", "LatencyHistogram", "TurnLatencyTrace", "DebugRecorder", "LacFile", "LosslessCodec",
+    "FlightRecorder"
+)
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            appSources.forEach { include("com/example/audio_app/$it.java") }
+        }
+    }
+}
+
+// 和app模块一样从ANDROID_HOME或local.properties的sdk.dir找SDK，找不到直接报错，不要拼出null路径.
+val androidSdk: String = System.getenv("ANDROID_HOME") ?: rootProject.file("local.properties")
+    .takeIf { it.exists() }
+    ?.let { file -> Properties().apply { file.inputStream().use { load(it) } }.getProperty("sdk.dir") }
+    ?: throw GradleException("benchmarks需要Android SDK：设置ANDROID_HOME或在local.properties中设置sdk.dir")
+val androidJar = file("$androidSdk/platforms/android-36/android.jar").also {
+    if (!it.exists()) throw GradleException("找不到 ${it.path}，请用SDK Manager安装 Android 36 platform")
+}
+
+dependencies {
+    compileOnly(files(androidJar))
+    implementation(libs.okhttp)
+    implementation(libs.org.json)
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    timeUnit.set("us")
+    benchmarkMode.set(listOf("avgt"))
+    resultFormat.set("TEXT")
+    // gc分析器输出每次调用分配的字节数（gc.alloc.rate.norm），捕获和播放路径上应该是0.
+    profilers.set(listOf("gc"))
+    (project.findProperty("jmhIncludes") as String?)?.let { includes.set(listOf(it)) }
+    // 录音语料的位置，基准数据按语料里语音段的实际长度选取.
+    jvmArgsAppend.set(listOf("-Dcorpus.dir=${rootProject.file("recorded_wav_files").absolutePath}"))
+}
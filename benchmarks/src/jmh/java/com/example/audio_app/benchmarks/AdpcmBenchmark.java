@@ -0,0 +1,57 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.ImaAdpcm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static com.example.audio_app.Config.RECORD_RATE;
+
+// IMA-ADPCM上行编码：每个op按frameMs分帧编码1秒16k音频，吞吐（ops/s）就是实时倍数，
+// 倒数是每秒音频的编码耗时. decode是假服务端那一侧的开销. 编码在处理线程上，gc profiler里的分配率应该是0.
+@State(Scope.Benchmark)
+public class AdpcmBenchmark {
+    @Param({"20", "100"})
+    public int frameMs;
+
+    private byte[] pcm;
+    private byte[] encoded;
+    private byte[] decoded;
+    private int frameBytes;
+    private ImaAdpcm encoder;
+
+    @Setup
+    public void setup() {
+        pcm = Fixtures.speechLike(RECORD_RATE * 2, Fixtures.SEED);
+        frameBytes = RECORD_RATE * 2 * frameMs / 1000;
+        encoder = new ImaAdpcm();
+        encoded = new byte[ImaAdpcm.encodedSize(frameBytes) * (pcm.length / frameBytes)];
+        decoded = new byte[frameBytes];
+        int o = 0;
+        for (int offset = 0; offset + frameBytes <= pcm.length; offset += frameBytes) {
+            o += encoder.encode(pcm, offset, frameBytes, encoded, o);
+        }
+    }
+
+    @Benchmark
+    public int encodeOneSecond() {
+        int o = 0;
+        for (int offset = 0; offset + frameBytes <= pcm.length; offset += frameBytes) {
+            o += encoder.encode(pcm, offset, frameBytes, encoded, o);
+        }
+        return o;
+    }
+
+    @Benchmark
+    public int decodeOneSecond() {
+        int blockBytes = ImaAdpcm.encodedSize(frameBytes);
+        int total = 0;
+        for (int o = 0; o + blockBytes <= encoded.length; o += blockBytes) {
+            total += ImaAdpcm.decode(encoded, o, blockBytes, decoded, 0);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.DelayEstimator;
+import com.example.audio_app.SoftwareAec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+import static com.example.audio_app.Config.AEC_DELAY_DECIMATION;
+import static com.example.audio_app.Config.AEC_DELAY_MAX_MS;
+import static com.example.audio_app.Config.AEC_DELAY_UPDATE_MS;
+import static com.example.audio_app.Config.AEC_DELAY_WINDOW_MS;
+import static com.example.audio_app.Config.RECORD_RATE;
+import static com.example.audio_app.Config.SOFTWARE_AEC_BLOCK_SAMPLES;
+import static com.example.audio_app.Config.SOFTWARE_AEC_STEP_SIZE;
+import static com.example.audio_app.Config.SOFTWARE_AEC_TAIL_MS;
+
+// 软件AEC：每个op逐块处理1秒16k音频（远端是语音样信号，麦克风是它的延迟衰减回声），
+// 倒数是每秒音频的处理耗时，要远小于1秒才能在录音线程上实时运行. estimateDelay是同一路
+// 信号上回声延迟估计的开销，两者都在录音线程上，都不应该有分配（看gc profiler）.
+@State(Scope.Benchmark)
+public class AecBenchmark {
+    private static final int BLOCK = SOFTWARE_AEC_BLOCK_SAMPLES;
+
+    private float[] far;
+    private byte[] mic;
+    private byte[] out;
+    private float[] farBlock;
+    private SoftwareAec aec;
+    private DelayEstimator estimator;
+
+    @Setup
+    public void setup() {
+        byte[] farPcm = Fixtures.speechLike(RECORD_RATE * 2, Fixtures.SEED);
+        far = new float[RECORD_RATE];
+        for (int i = 0; i < far.length; i++) {
+            far[i] = (short) ((farPcm[2 * i] & 0xff) | (farPcm[2 * i + 1] << 8));
+        }
+        // 40ms延迟、约-6dB的回声加一点噪声.
+        int delay = 40 * RECORD_RATE / 1000;
+        Random noise = new Random(Fixtures.SEED);
+        mic = new byte[far.length * 2];
+        for (int i = 0; i < far.length; i++) {
+            float echo = i >= delay ? far[i - delay] * 0.5f : 0;
+            int value = Math.round(echo + (float) noise.nextGaussian() * 20);
+            value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            mic[2 * i] = (byte) value;
+            mic[2 * i + 1] = (byte) (value >> 8);
+        }
+        out = new byte[mic.length];
+        farBlock = new float[BLOCK];
+        aec = new SoftwareAec(BLOCK, SOFTWARE_AEC_TAIL_MS * RECORD_RATE / 1000 / BLOCK, SOFTWARE_AEC_STEP_SIZE);
+        estimator = new DelayEstimator(RECORD_RATE, AEC_DELAY_DECIMATION, AEC_DELAY_WINDOW_MS,
+                AEC_DELAY_MAX_MS, AEC_DELAY_UPDATE_MS);
+    }
+
+    @Benchmark
+    public byte[] processOneSecond() {
+        int blocks = far.length / BLOCK;
+        for (int n = 0; n < blocks; n++) {
+            System.arraycopy(far, n * BLOCK, farBlock, 0, BLOCK);
+            aec.process(mic, n * BLOCK * 2, farBlock, out, n * BLOCK * 2);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public int estimateDelayOneSecond() {
+        int blocks = far.length / BLOCK;
+        for (int n = 0; n < blocks; n++) {
+            System.arraycopy(far, n * BLOCK, farBlock, 0, BLOCK);
+            estimator.process(farBlock, mic, n * BLOCK * 2, BLOCK);
+        }
+        return estimator.getDelaySamples();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.DebugRecorder;
+import com.example.audio_app.Pcm16;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static com.example.audio_app.Config.DEBUG_RECORDING_BLOCK_BYTES;
+import static com.example.audio_app.Config.DEBUG_RECORDING_QUEUE_BLOCKS;
+import static com.example.audio_app.Config.RECORD_RATE;
+
+// 调试录音在处理线程上的开销：每个op交出一个p50长度的语音段（begin/write/end），文件I/O在后台线程.
+// 后台线程跟不上时这一段被丢弃，调用方的开销不变；gc profiler里处理线程这一侧的分配应该是0.
+@State(Scope.Benchmark)
+public class DebugRecorderBenchmark {
+    @Param({"false", "true"})
+    public boolean lossless;
+
+    private byte[] segment;
+    private File dir;
+    private DebugRecorder recorder;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        segment = Fixtures.utterance("p50");
+        dir = Files.createTempDirectory("debug-recorder").toFile();
+        recorder = new DebugRecorder(dir, "bench_", RECORD_RATE, DEBUG_RECORDING_BLOCK_BYTES,
+                DEBUG_RECORDING_QUEUE_BLOCKS, lossless, new DebugRecorder.Listener() {
+                    @Override
+                    public void onSaved(File file, long pcmBytes, Pcm16.Stats stats, boolean truncated) {
+                        file.delete();
+                    }
+
+                    @Override
+                    public void onError(File file, IOException e) {
+                    }
+                });
+        recorder.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        recorder.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public boolean recordSegment() {
+        return recorder.record(segment, 0, segment.length);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.AudioDeltaDecoder;
+import com.example.audio_app.PcmBufferPool;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Base64;
+
+// WebSocketClient.onMessage里的audio delta解析：快速路径（AudioDeltaDecoder + 缓冲区池）
+// 和原来的JSONObject + Base64解码路径对比. delta大小是24k单声道的100ms / 200ms / 400ms.
+@State(Scope.Benchmark)
+public class DeltaDecodeBenchmark {
+    @Param({"4800", "9600", "19200"})
+    public int deltaBytes;
+
+    private String message;
+    private PcmBufferPool pool;
+    private AudioDeltaDecoder decoder;
+
+    @Setup
+    public void setup() {
+        message = Fixtures.audioDelta(deltaBytes, Fixtures.SEED);
+        pool = new PcmBufferPool(8, deltaBytes);
+        decoder = new AudioDeltaDecoder(pool);
+    }
+
+    @Benchmark
+    public int fastPath() {
+        if (!AudioDeltaDecoder.isAudioDelta(message)) return -1;
+        PcmBufferPool.Buffer buffer = decoder.decode(message);
+        int length = buffer.length;
+        // 播放完归还，和PlaybackEngine一致.
+        pool.release(buffer);
+        return length;
+    }
+
+    @Benchmark
+    public byte[] jsonPath() throws JSONException {
+        JSONObject json = new JSONObject(message);
+        return Base64.getDecoder().decode(json.getString("delta"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.PolyphaseResampler;
+import com.example.audio_app.WavFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.audio_app.Config.FRAMES_PER_BUFFER;
+import static com.example.audio_app.Config.RECORD_RATE;
+
+// 基准测试的输入数据. 语音段取自录音语料（recorded_wav_files，按长度排序后取分位数），
+// 语料不存在时用固定种子合成同样长度的信号，保证每次运行的数据完全一样.
+final class Fixtures {
+    // 语料里语音段长度的 p50 / p90 / 最大值（字节，16k单声道，帧对齐），语料缺失时使用.
+    static final int[] FALLBACK_UTTERANCE_BYTES = {67584, 102400, 176128};
+    static final long SEED = 20250815L;
+
+    private Fixtures() {}
+
+    // percentile: "p50" / "p90" / "max".
+    static byte[] utterance(String percentile) throws IOException {
+        int index = "p50".equals(percentile) ? 0 : "p90".equals(percentile) ? 1 : 2;
+        List<File> files = corpus();
+        if (files.isEmpty()) {
+            return speechLike(FALLBACK_UTTERANCE_BYTES[index], SEED + index);
+        }
+        List<byte[]> utterances = new ArrayList<>();
+        for (File file : files) {
+            utterances.add(load(file));
+        }
+        utterances.sort((a, b) -> Integer.compare(a.length, b.length));
+        int position = index == 0 ? utterances.size() / 2
+                : index == 1 ? utterances.size() * 9 / 10 : utterances.size() - 1;
+        byte[] pcm = utterances.get(position);
+        // 帧对齐，和录音线程读到的数据一致.
+        return java.util.Arrays.copyOf(pcm, pcm.length / FRAMES_PER_BUFFER * FRAMES_PER_BUFFER);
+    }
+
+    private static List<File> corpus() {
+        List<File> files = new ArrayList<>();
+        collect(new File(System.getProperty("corpus.dir", "../recorded_wav_files")), files);
+        files.sort(null);
+        return files;
+    }
+
+    private static void collect(File file, List<File> out) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) return;
+            for (File child : children) collect(child, out);
+        } else if (file.getName().endsWith(".wav")) {
+            out.add(file);
+        }
+    }
+
+    private static byte[] load(File file) throws IOException {
+        WavFile.Data wav = WavFile.read(file);
+        if (wav.sampleRate == RECORD_RATE) return wav.pcm;
+        PolyphaseResampler resampler = new PolyphaseResampler(wav.sampleRate, RECORD_RATE, 24);
+        float[] out = new float[resampler.maxOutput(wav.pcm.length / 2)];
+        int count = resampler.process(wav.pcm, 0, wav.pcm.length, out, 0);
+        byte[] pcm = new byte[count * 2];
+        for (int i = 0; i < count; i++) {
+            int value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(out[i])));
+            pcm[2 * i] = (byte) value;
+            pcm[2 * i + 1] = (byte) (value >> 8);
+        }
+        return pcm;
+    }
+
+    // 类似语音的信号：音节长度的包络调制的谐波加底噪.
+    static byte[] speechLike(int bytes, long seed) {
+        Random random = new Random(seed);
+        byte[] pcm = new byte[bytes];
+        double pitch = 120 + random.nextInt(100);
+        for (int n = 0; n < bytes / 2; n++) {
+            double t = (double) n / RECORD_RATE;
+            double envelope = Math.max(0, Math.sin(2 * Math.PI * 4 * t));
+            double voiced = 0;
+            for (int h = 1; h <= 8; h++) {
+                voiced += Math.sin(2 * Math.PI * pitch * h * t) / h;
+            }
+            double value = 4000 * envelope * voiced + random.nextGaussian() * 60;
+            int sample = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+            pcm[2 * n] = (byte) sample;
+            pcm[2 * n + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+
+    // 服务端下发的 response.audio.delta 消息，字段顺序和实际消息一致.
+    static String audioDelta(int pcmBytes, long seed) {
+        byte[] pcm = speechLike(pcmBytes, seed);
+        return "{\"type\":\"response.audio.delta\",\"event_id\":\"event_" + seed + "\","
+                + "\"response_id\":\"resp_001\",\"item_id\":\"item_001\",\"output_index\":0,"
+                + "\"content_index\":0,\"delta\":\"" + Base64.getEncoder().encodeToString(pcm) + "\"}";
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.FlightRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static com.example.audio_app.Config.FLIGHT_RECORDER_SECONDS;
+import static com.example.audio_app.Config.FLIGHT_RECORDER_SLOT_BYTES;
+import static com.example.audio_app.Config.FRAMES_PER_BUFFER;
+import static com.example.audio_app.Config.PLAYBACK_RATE;
+import static com.example.audio_app.Config.RECORD_RATE;
+
+// 飞行记录器：每个op是录音线程处理一帧时的两次写入（原始 + AEC后），直接写进映射的环形文件.
+// 在录音线程上调用，gc profiler里的分配率应该是0.
+@State(Scope.Benchmark)
+public class FlightRecorderBenchmark {
+    private byte[] frame;
+    private File dir;
+    private FlightRecorder recorder;
+
+    @Setup
+    public void setup() throws IOException {
+        frame = Fixtures.speechLike(FRAMES_PER_BUFFER, Fixtures.SEED);
+        dir = Files.createTempDirectory("flight-recorder").toFile();
+        recorder = new FlightRecorder(new File(dir, "ring"), FLIGHT_RECORDER_SECONDS, RECORD_RATE,
+                PLAYBACK_RATE, FLIGHT_RECORDER_SLOT_BYTES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public long writeFrame() {
+        recorder.write(FlightRecorder.STREAM_RAW, frame, 0, frame.length);
+        recorder.write(FlightRecorder.STREAM_PROCESSED, frame, 0, frame.length);
+        return recorder.getWrittenFrames(FlightRecorder.STREAM_PROCESSED);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.TurnLatencyTrace;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// 延迟跟踪：每个op记录完整的一轮（6个时间点，最后结束这一轮并计入直方图）.
+// mark在录音、发送、接收和播放线程上调用，gc profiler里的分配率应该是0.
+@State(Scope.Benchmark)
+public class LatencyTraceBenchmark {
+    private TurnLatencyTrace trace;
+
+    @Setup
+    public void setup() {
+        trace = new TurnLatencyTrace(64);
+    }
+
+    @Benchmark
+    public long markOneTurn() {
+        trace.mark(TurnLatencyTrace.SPEECH_END);
+        trace.mark(TurnLatencyTrace.SEGMENT_SENT);
+        trace.mark(TurnLatencyTrace.COMMIT);
+        trace.mark(TurnLatencyTrace.FIRST_DELTA);
+        trace.mark(TurnLatencyTrace.FIRST_PLAYBACK);
+        trace.mark(TurnLatencyTrace.AUDIO_DONE);
+        return trace.getCompletedTurns();
+    }
+}
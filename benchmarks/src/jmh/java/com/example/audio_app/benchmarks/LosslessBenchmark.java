@@ -0,0 +1,49 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.LosslessCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+// 调试录音的无损编码（DebugRecorder后台线程里LacFile.Writer做的事，不含文件I/O）：
+// 每个op把一整段语音按块编码. 结果除以语音时长就是编码速度，gc profiler里的分配率应该是0.
+@State(Scope.Benchmark)
+public class LosslessBenchmark {
+    @Param({"p50", "max"})
+    public String utterance;
+
+    private int[] samples;
+    private int[] block;
+    private final LosslessCodec.Encoder encoder = new LosslessCodec.Encoder();
+    private final LosslessCodec.BitWriter bits =
+            new LosslessCodec.BitWriter(LosslessCodec.MAX_BLOCK_SAMPLES * 2 + 64);
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] pcm = Fixtures.utterance(utterance);
+        samples = new int[pcm.length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((pcm[2 * i] & 0xff) | (pcm[2 * i + 1] << 8));
+        }
+        block = new int[LosslessCodec.MAX_BLOCK_SAMPLES];
+    }
+
+    @Benchmark
+    public int encodeUtterance() {
+        int total = 0;
+        for (int start = 0; start < samples.length; start += block.length) {
+            int n = Math.min(block.length, samples.length - start);
+            System.arraycopy(samples, start, block, 0, n);
+            bits.reset();
+            encoder.encode(block, n, bits);
+            bits.align();
+            total += bits.length();
+        }
+        return total;
+    }
+}
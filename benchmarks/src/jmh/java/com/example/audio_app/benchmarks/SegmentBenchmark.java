@@ -0,0 +1,84 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.PcmSegmentBuffer;
+import com.example.audio_app.SpeechSegmenter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+import static com.example.audio_app.Config.FRAMES_PER_BUFFER;
+import static com.example.audio_app.Config.LONG_SILENCE_DURATION;
+import static com.example.audio_app.Config.PRE_AUDIO_BUFFER_SIZE;
+import static com.example.audio_app.Config.RECORD_RATE;
+import static com.example.audio_app.Config.VAD_TYPE_RMS;
+
+// 语音段累积（原handleVoiceActive，现在的SpeechSegmenter）：一次调用处理一整段语音
+// 加上触发commit的长静默. accumulate只测PcmSegmentBuffer逐帧追加，turn测完整的分段流程.
+@State(Scope.Benchmark)
+public class SegmentBenchmark {
+    @Param({"p50", "p90", "max"})
+    public String utterance;
+
+    private byte[] turn;
+    private byte[] utterancePcm;
+    private PcmSegmentBuffer buffer;
+    private SpeechSegmenter segmenter;
+    private final byte[] frame = new byte[FRAMES_PER_BUFFER];
+
+    @Setup
+    public void setup(Blackhole blackhole) throws IOException {
+        utterancePcm = Fixtures.utterance(utterance);
+        int silenceFrames = (int) (LONG_SILENCE_DURATION * RECORD_RATE * 2) / FRAMES_PER_BUFFER + 2;
+        turn = java.util.Arrays.copyOf(utterancePcm, utterancePcm.length + silenceFrames * FRAMES_PER_BUFFER);
+        buffer = new PcmSegmentBuffer((PRE_AUDIO_BUFFER_SIZE + 16) * FRAMES_PER_BUFFER);
+        // RMS VAD开销最小，结果里主要是分段本身的开销.
+        segmenter = new SpeechSegmenter(SpeechSegmenter.createVad(VAD_TYPE_RMS), false,
+                new SpeechSegmenter.Listener() {
+                    @Override
+                    public void onSpeechStart() {
+                    }
+
+                    @Override
+                    public void onAudio(byte[] pcm, int offset, int length) {
+                        blackhole.consume(length);
+                    }
+
+                    @Override
+                    public void onSegment(byte[] pcm, int length) {
+                        blackhole.consume(pcm);
+                    }
+
+                    @Override
+                    public void onDropped(int length) {
+                    }
+
+                    @Override
+                    public void onCommit() {
+                    }
+                });
+    }
+
+    @Benchmark
+    public int accumulate() {
+        buffer.clear();
+        for (int offset = 0; offset < utterancePcm.length; offset += FRAMES_PER_BUFFER) {
+            buffer.append(utterancePcm, offset, FRAMES_PER_BUFFER);
+        }
+        return buffer.length();
+    }
+
+    @Benchmark
+    public void turn() {
+        segmenter.reset();
+        for (int offset = 0; offset < turn.length; offset += FRAMES_PER_BUFFER) {
+            System.arraycopy(turn, offset, frame, 0, FRAMES_PER_BUFFER);
+            segmenter.process(frame, FRAMES_PER_BUFFER);
+        }
+    }
+}
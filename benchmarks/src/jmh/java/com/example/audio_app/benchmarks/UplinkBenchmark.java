@@ -0,0 +1,96 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.UplinkProtocol;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+// WebSocketClient.sendAudioData：JSON模式（WAV + Base64 + JSON）、二进制PCM和ADPCM模式的帧构建，
+// WebSocket只把消息交给Blackhole，不包含网络开销.
+@State(Scope.Benchmark)
+public class UplinkBenchmark {
+    @Param({"p50", "p90", "max"})
+    public String utterance;
+
+    @Param({"JSON", "BINARY", "ADPCM"})
+    public String mode;
+
+    private byte[] pcm;
+    private UplinkProtocol uplink;
+    private SinkWebSocket webSocket;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws IOException {
+        pcm = Fixtures.utterance(utterance);
+        uplink = new UplinkProtocol();
+        Response.Builder handshake = new Response.Builder()
+                .request(new Request.Builder().url("http://localhost/").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(101)
+                .message("Switching Protocols");
+        if ("BINARY".equals(mode)) {
+            handshake.header(UplinkProtocol.SUBPROTOCOL_HEADER, UplinkProtocol.SUBPROTOCOL_BINARY);
+        } else if ("ADPCM".equals(mode)) {
+            handshake.header(UplinkProtocol.SUBPROTOCOL_HEADER, UplinkProtocol.SUBPROTOCOL_ADPCM);
+        }
+        uplink.negotiate(handshake.build());
+        webSocket = new SinkWebSocket(blackhole);
+    }
+
+    @Benchmark
+    public boolean sendAppend() throws JSONException {
+        return uplink.sendAppend(webSocket, pcm, 0, pcm.length);
+    }
+
+    private static final class SinkWebSocket implements WebSocket {
+        private final Blackhole blackhole;
+
+        SinkWebSocket(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public Request request() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long queueSize() {
+            return 0;
+        }
+
+        @Override
+        public boolean send(String text) {
+            blackhole.consume(text);
+            return true;
+        }
+
+        @Override
+        public boolean send(ByteString bytes) {
+            blackhole.consume(bytes);
+            return true;
+        }
+
+        @Override
+        public boolean close(int code, String reason) {
+            return true;
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.Pcm16;
+import com.example.audio_app.SpeechSegmenter;
+import com.example.audio_app.VoiceActivityDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+import static com.example.audio_app.Config.FRAMES_PER_BUFFER;
+import static com.example.audio_app.Config.VAD_TYPE_ADAPTIVE;
+import static com.example.audio_app.Config.VAD_TYPE_RMS;
+import static com.example.audio_app.Config.VAD_TYPE_SPECTRAL;
+
+// 处理线程每帧的RMS和VAD开销（包括SpectralVad的FFT，要求不分配内存）. 每次调用处理一帧（FRAMES_PER_BUFFER字节），
+// 帧依次取自p50语音段，VAD的内部状态和真机上一样连续变化.
+@State(Scope.Benchmark)
+public class VadBenchmark {
+    @Param({"RMS", "ADAPTIVE", "SPECTRAL"})
+    public String vadType;
+
+    private byte[] pcm;
+    private int frames;
+    private int next = 0;
+    private VoiceActivityDetector vad;
+    private final byte[] frame = new byte[FRAMES_PER_BUFFER];
+
+    @Setup
+    public void setup() throws IOException {
+        pcm = Fixtures.utterance("p50");
+        frames = pcm.length / FRAMES_PER_BUFFER;
+        int type = "RMS".equals(vadType) ? VAD_TYPE_RMS
+                : "SPECTRAL".equals(vadType) ? VAD_TYPE_SPECTRAL : VAD_TYPE_ADAPTIVE;
+        vad = SpeechSegmenter.createVad(type);
+    }
+
+    private byte[] nextFrame() {
+        System.arraycopy(pcm, next * FRAMES_PER_BUFFER, frame, 0, FRAMES_PER_BUFFER);
+        next = next + 1 == frames ? 0 : next + 1;
+        return frame;
+    }
+
+    @Benchmark
+    public float rms() {
+        return Pcm16.rms(nextFrame(), 0, FRAMES_PER_BUFFER);
+    }
+
+    @Benchmark
+    public boolean isSpeech() {
+        return vad.isSpeech(nextFrame(), FRAMES_PER_BUFFER);
+    }
+}
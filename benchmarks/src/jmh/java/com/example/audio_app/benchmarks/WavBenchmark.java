@@ -0,0 +1,32 @@
+package com.example.audio_app.benchmarks;
+
+import com.example.audio_app.WavFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+import static com.example.audio_app.Config.RECORD_RATE;
+
+// WebSocketClient.convertPcmToWav（保存录音和JSON上行时给整段语音加WAV头）.
+@State(Scope.Benchmark)
+public class WavBenchmark {
+    @Param({"p50", "p90", "max"})
+    public String utterance;
+
+    private byte[] pcm;
+
+    @Setup
+    public void setup() throws IOException {
+        pcm = Fixtures.utterance(utterance);
+    }
+
+    @Benchmark
+    public byte[] convertPcmToWav() {
+        return WavFile.fromPcm(pcm, 0, pcm.length, RECORD_RATE);
+    }
+}
@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "audio_app"
 include(":app")
+include(":benchmarks")